@@ -0,0 +1,115 @@
+/***
+ *
+ * File       : BenchmarkFixtures.java
+ * Description: Frame and recording fixtures shared by the benchmarks, so that none of them need a Leap sensor.
+ * Author     : Al Lansley
+ * Date       : 17/10/2026
+ * Version    : 0.1
+ *
+ */
+
+package au.edu.federation.leapbenchmark;
+
+import au.edu.federation.leapdatarecorder.LeapDataWriter;
+import au.edu.federation.leapdatarecorder.RecordingFormat;
+import au.edu.federation.leapwebsocket.SyntheticFrameGenerator;
+import au.edu.federation.leapwebsocket.WebSocketFrame;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+// Helper class which hands out the frames the benchmarks work on. There are two kinds of fixture:
+//
+// - "leap" is a frame laid out exactly as the Leap WebSocket server sends it, with every key it sends (two hands,
+//   ten fingers and a circle gesture), bundled as fixtures/leap-frame.json, and
+// - "synthetic1" / "synthetic2" are one and two-handed frames made up by the SyntheticFrameGenerator.
+//
+// Recordings for the reader benchmarks are written out to a temp file from synthetic frames at setup time, unless
+// a real recording is given with -Dleapbench.recording=path/to/recording.
+final class BenchmarkFixtures
+{
+	// Seed used for every synthetic fixture so that runs are comparable
+	static final long SEED = 20261017L;
+
+	// The bundled frame in the Leap's own JSON layout
+	static final String LEAP_FRAME_RESOURCE = "/fixtures/leap-frame.json";
+
+	// System property which can point the reader benchmarks at a real recording
+	static final String RECORDING_PROPERTY = "leapbench.recording";
+
+	private BenchmarkFixtures() { }
+
+	// Method to return the JSON for the named fixture
+	static String json(String fixture)
+	{
+		switch (fixture)
+		{
+			case "leap":       return readResource(LEAP_FRAME_RESOURCE);
+			case "synthetic1": return new SyntheticFrameGenerator(SEED, 1).nextJson();
+			case "synthetic2": return new SyntheticFrameGenerator(SEED, 2).nextJson();
+			default:
+				throw new IllegalArgumentException("Unknown fixture: " + fixture);
+		}
+	}
+
+	// Method to return a series of generated frames with the given number of hands
+	static WebSocketFrame[] syntheticFrames(int numHands, int numFrames)
+	{
+		SyntheticFrameGenerator generator = new SyntheticFrameGenerator(SEED, numHands);
+		WebSocketFrame[] frames = new WebSocketFrame[numFrames];
+		for (int i = 0; i < numFrames; ++i)
+		{
+			frames[i] = generator.next();
+		}
+		return frames;
+	}
+
+	// Method to write the given frames out to a temp recording and return the file, which is deleted on exit
+	static File writeRecording(WebSocketFrame[] frames, RecordingFormat format, boolean compressed) throws IOException
+	{
+		File file = File.createTempFile("leapbench-" + format, ".ldr");
+		file.deleteOnExit();
+
+		LeapDataWriter writer = new LeapDataWriter(file.getPath(), compressed, format, false);
+		for (WebSocketFrame wsf : frames)
+		{
+			writer.writeWebSocketFrame(wsf);
+		}
+		writer.close();
+
+		return file;
+	}
+
+	// Method to return the real recording to read from, or null if we should make one up
+	static String recordingOverride()
+	{
+		return System.getProperty(RECORDING_PROPERTY);
+	}
+
+	private static String readResource(String name)
+	{
+		try (InputStream in = BenchmarkFixtures.class.getResourceAsStream(name))
+		{
+			if (in == null)
+			{
+				throw new IllegalStateException("Missing benchmark fixture: " + name);
+			}
+
+			ByteArrayOutputStream out = new ByteArrayOutputStream();
+			byte[] buffer = new byte[8192];
+			int read;
+			while ( (read = in.read(buffer)) != -1 )
+			{
+				out.write(buffer, 0, read);
+			}
+			return new String( out.toByteArray(), StandardCharsets.UTF_8 );
+		}
+		catch (IOException ioe)
+		{
+			throw new IllegalStateException("Could not read benchmark fixture: " + name, ioe);
+		}
+	}
+}
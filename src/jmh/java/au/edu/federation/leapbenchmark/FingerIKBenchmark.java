@@ -0,0 +1,184 @@
+/***
+ *
+ * File       : FingerIKBenchmark.java
+ * Description: Benchmarks for building and solving a FabrikChain3D per finger, as done in Application.drawFingersCalikoIK.
+ * Author     : Al Lansley
+ * Date       : 17/10/2026
+ * Version    : 0.1
+ *
+ */
+
+package au.edu.federation.leapbenchmark;
+
+import au.edu.federation.caliko.FabrikBone3D;
+import au.edu.federation.caliko.FabrikChain3D;
+import au.edu.federation.calikoleaptest.FingerChainCache;
+import au.edu.federation.leapwebsocket.WebSocketFrame;
+import au.edu.federation.leapwebsocket.WebSocketHand;
+import au.edu.federation.leapwebsocket.WebSocketPointable;
+import au.edu.federation.utils.Vec3f;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static au.edu.federation.calikoleaptest.Application.CARPOMETACARPEL_RATIO;
+import static au.edu.federation.calikoleaptest.Application.DISTAL_RATIO;
+import static au.edu.federation.calikoleaptest.Application.METACARPOPHALANGEAL_RATIO;
+import static au.edu.federation.calikoleaptest.Application.PROXIMAL_RATIO;
+
+// The application used to build a brand new four bone chain (three for the thumb) for each finger on every frame from
+// the golden-ratio joint model, then solve it for a target just past the fingertip. This benchmark does the same for
+// all five fingers of a hand over a stream of synthetic frames, taking the finger data from WebSocketPointables rather
+// than live Leap Finger objects, and with the arm direction approximated by the palm direction.
+//
+// buildAndSolve is the work per frame as the application used to do it. solveOnly re-solves chains that were built
+// once up front, which shows how much of that is spent building the chains rather than solving them, and cached is
+// what the application does now - a FingerChainCache moving last frame's solution into place and solving from there.
+@State(Scope.Thread)
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FingerIKBenchmark
+{
+	private static final int NUM_FRAMES = 1000;
+
+	private WebSocketFrame[] frames;
+	private int next;
+
+	private final FabrikChain3D[] fingerChain = new FabrikChain3D[5];
+	private final FabrikChain3D[] prebuilt    = new FabrikChain3D[5];
+
+	private final FingerChainCache cache = new FingerChainCache();
+
+	@Setup
+	public void setup()
+	{
+		frames = BenchmarkFixtures.syntheticFrames(1, NUM_FRAMES);
+
+		WebSocketFrame first = frames[0];
+		List<WebSocketPointable> fingers = first.getPointablesOnHand( first.hands().get(0).getId() );
+		for (int f = 0; f < 5; ++f)
+		{
+			prebuilt[f] = buildFingerChain( fingers.get(f), first.hands().get(0), f == 0 );
+		}
+	}
+
+	@Benchmark
+	public float buildAndSolve()
+	{
+		WebSocketFrame wsf = nextFrame();
+		WebSocketHand hand = wsf.hands().get(0);
+		List<WebSocketPointable> fingers = wsf.getPointablesOnHand( hand.getId() );
+
+		float totalDistance = 0.0f;
+		for (int f = 0; f < fingers.size(); ++f)
+		{
+			WebSocketPointable finger = fingers.get(f);
+			fingerChain[f] = buildFingerChain(finger, hand, f == 0);
+			totalDistance += fingerChain[f].solveForTarget( target(finger) );
+		}
+		return totalDistance;
+	}
+
+	@Benchmark
+	public float solveOnly()
+	{
+		WebSocketFrame wsf = nextFrame();
+		List<WebSocketPointable> fingers = wsf.getPointablesOnHand( wsf.hands().get(0).getId() );
+
+		float totalDistance = 0.0f;
+		for (int f = 0; f < fingers.size(); ++f)
+		{
+			totalDistance += prebuilt[f].solveForTarget( target( fingers.get(f) ) );
+		}
+		return totalDistance;
+	}
+
+	@Benchmark
+	public float cached()
+	{
+		WebSocketFrame wsf = nextFrame();
+		WebSocketHand hand = wsf.hands().get(0);
+		float[] palmDir    = hand.getPalmDirection();
+
+		// There's only the one hand, so every pointable is one of its fingers
+		List<WebSocketPointable> fingers = wsf.pointables();
+
+		cache.beginFrame();
+		float totalDistance = 0.0f;
+		for (int f = 0; f < fingers.size(); ++f)
+		{
+			WebSocketPointable finger = fingers.get(f);
+			float[] tip = finger.getTipPosition();
+			float[] dir = finger.getDirection();
+
+			FabrikChain3D chain = cache.solveFinger( hand.getId(), finger.getId(), f == 0,
+			                                         tip[0], tip[1], tip[2],
+			                                         dir[0], dir[1], dir[2],
+			                                         finger.getLength(),
+			                                         palmDir[0], palmDir[1], palmDir[2] );
+			totalDistance += chain.getCurrentSolveDistance();
+		}
+		return totalDistance;
+	}
+
+	private WebSocketFrame nextFrame()
+	{
+		WebSocketFrame wsf = frames[next];
+		if (++next == NUM_FRAMES) { next = 0; }
+		return wsf;
+	}
+
+	// The same joint construction Application.drawFingersCalikoIK used before it had a FingerChainCache
+	private static FabrikChain3D buildFingerChain(WebSocketPointable finger, WebSocketHand hand, boolean thumb)
+	{
+		float[] tipPosition  = finger.getTipPosition();
+		float[] direction    = finger.getDirection();
+		float[] palmDir      = hand.getPalmDirection();
+		float   len          = finger.getLength();
+
+		Vec3f tipToBaseDir        = new Vec3f( -direction[0], -direction[1], -direction[2] );
+		Vec3f armDir              = new Vec3f( -palmDir[0], -palmDir[1], -palmDir[2] );
+
+		Vec3f tip                 = new Vec3f( tipPosition[0], tipPosition[1], tipPosition[2] );
+		Vec3f distal              = new Vec3f( tip.plus( tipToBaseDir.times(DISTAL_RATIO).times(len) ) );
+		Vec3f proximal            = new Vec3f( distal.plus( tipToBaseDir.times(PROXIMAL_RATIO).times(len) ) );
+		Vec3f metacarpophalangeal = new Vec3f( proximal.plus( tipToBaseDir.times(METACARPOPHALANGEAL_RATIO).times(len) ) );
+		Vec3f carpometacarpel     = new Vec3f( metacarpophalangeal.plus( armDir.times(CARPOMETACARPEL_RATIO).times(len) ) );
+
+		FabrikChain3D chain = new FabrikChain3D();
+
+		// Only add a 4th segment if we are NOT a thumb!
+		if (!thumb) { chain.addBone( new FabrikBone3D(carpometacarpel, metacarpophalangeal) ); }
+
+		chain.addBone( new FabrikBone3D(metacarpophalangeal, proximal) );
+		chain.addBone( new FabrikBone3D(proximal, distal) );
+		chain.addBone( new FabrikBone3D(distal, tip) );
+
+		return chain;
+	}
+
+	// The target the application solves for, just past the fingertip
+	private static Vec3f target(WebSocketPointable finger)
+	{
+		float[] tipPosition = finger.getTipPosition();
+		float[] direction   = finger.getDirection();
+		float   offset      = finger.getLength() * 0.09f;
+
+		return new Vec3f( tipPosition[0] + direction[0] * offset,
+		                  tipPosition[1] + direction[1] * offset,
+		                  tipPosition[2] + direction[2] * offset );
+	}
+}
@@ -0,0 +1,92 @@
+/***
+ *
+ * File       : FrameBusBenchmark.java
+ * Description: Benchmark of passing frames through a FrameBus from a producer to a parser stage and the stages after it.
+ * Author     : Al Lansley
+ * Date       : 17/10/2026
+ * Version    : 0.1
+ *
+ */
+
+package au.edu.federation.leapbenchmark;
+
+import au.edu.federation.leapwebsocket.DeliveryPolicy;
+import au.edu.federation.leapwebsocket.FrameBus;
+import au.edu.federation.leapwebsocket.FrameBus.WaitStrategy;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+// Publishes a batch of events into a FrameBus laid out like a LeapWebSocket's - a parser stage, and a frame stage and a
+// recorder stage which both depend on it - and waits for the last stage to finish with them, so the score is the rate
+// frames get all the way through rather than just the rate the producer can drop them in. The stages do next to no
+// work, so this is the bus's own overhead. At full sensor rate the Leap sends 110 frames a second, so anything over
+// 10,000 frames/s (0.01 ops/us) leaves plenty of headroom; it also has to allocate nothing. The frame stage can also be
+// run as a LATEST consumer, to see what conflating costs.
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FrameBusBenchmark
+{
+	private static final int BATCH = 1000;
+
+	@Param({ "YIELDING", "SLEEPING", "BLOCKING" })
+	public WaitStrategy waitStrategy;
+
+	@Param({ "LOSSLESS", "LATEST" })
+	public String framePolicy;
+
+	private FrameBus<long[]> bus;
+	private FrameBus<long[]>.Consumer frameStage;
+	private FrameBus<long[]>.Consumer recorderStage;
+
+	@Setup
+	public void setup()
+	{
+		bus = new FrameBus<long[]>( FrameBus.DEFAULT_SIZE, () -> new long[2] );
+		FrameBus<long[]>.Consumer parserStage = bus.addConsumer("parser", (event, sequence, endOfBatch) -> event[1] = event[0] * 2L, waitStrategy);
+		DeliveryPolicy policy = framePolicy.equals("LATEST") ? DeliveryPolicy.LATEST : DeliveryPolicy.LOSSLESS;
+		frameStage    = bus.addConsumer("frame",    (event, sequence, endOfBatch) -> {}, policy, waitStrategy, parserStage);
+		recorderStage = bus.addConsumer("recorder", (event, sequence, endOfBatch) -> {}, waitStrategy, parserStage);
+	}
+
+	@TearDown
+	public void tearDown()
+	{
+		bus.shutdown( TimeUnit.SECONDS.toNanos(1) );
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(BATCH)
+	public long publishBatch()
+	{
+		long sequence = -1L;
+		for (int i = 0; i < BATCH; ++i)
+		{
+			sequence = bus.next();
+			bus.get(sequence)[0] = sequence;
+			bus.publish(sequence);
+		}
+
+		while ( frameStage.getSequence() < sequence || recorderStage.getSequence() < sequence )
+		{
+			Thread.yield();
+		}
+		return sequence;
+	}
+}
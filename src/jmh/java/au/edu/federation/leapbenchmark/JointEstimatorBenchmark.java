@@ -0,0 +1,87 @@
+/***
+ *
+ * File       : JointEstimatorBenchmark.java
+ * Description: Benchmark comparing estimating finger joints one pointable at a time with doing the whole frame at once.
+ * Author     : Al Lansley
+ * Date       : 17/10/2026
+ * Version    : 0.1
+ *
+ */
+
+package au.edu.federation.leapbenchmark;
+
+import au.edu.federation.leapwebsocket.JointEstimator;
+import au.edu.federation.leapwebsocket.WebSocketFrame;
+import au.edu.federation.leapwebsocket.WebSocketPointable;
+import au.edu.federation.utils.Vec3f;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// Estimates the joint locations of every finger in a frame:
+//
+// - perPointable calls WebSocketPointable.getJointLocations on each finger, allocating as it goes,
+// - perPointableReused does the same into one re-used array, allocating nothing, and
+// - estimator fills in a JointEstimator from the frame and estimates every finger in one pass, allocating nothing.
+@State(Scope.Thread)
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JointEstimatorBenchmark
+{
+	@Param({ "1", "2" })
+	public int hands;
+
+	private WebSocketFrame frame;
+	private JointEstimator estimator;
+	private Vec3f[] jointLocations = new Vec3f[4];
+
+	@Setup
+	public void setup()
+	{
+		frame     = BenchmarkFixtures.syntheticFrames(hands, 1)[0];
+		estimator = new JointEstimator( frame.pointables().size() );
+	}
+
+	@Benchmark
+	public void perPointable(Blackhole blackhole)
+	{
+		List<WebSocketPointable> pointables = frame.pointables();
+		for (int i = 0; i < pointables.size(); ++i)
+		{
+			blackhole.consume( pointables.get(i).getJointLocations() );
+		}
+	}
+
+	@Benchmark
+	public void perPointableReused(Blackhole blackhole)
+	{
+		List<WebSocketPointable> pointables = frame.pointables();
+		for (int i = 0; i < pointables.size(); ++i)
+		{
+			blackhole.consume( pointables.get(i).getJointLocations(jointLocations) );
+		}
+	}
+
+	@Benchmark
+	public float estimator()
+	{
+		int count = estimator.set(frame);
+		estimator.estimate(count);
+		return estimator.getJointX(count - 1, JointEstimator.WRIST);
+	}
+}
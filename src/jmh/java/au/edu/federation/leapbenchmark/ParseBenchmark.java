@@ -0,0 +1,92 @@
+/***
+ *
+ * File       : ParseBenchmark.java
+ * Description: Benchmarks for turning the Leap's JSON into WebSocketFrames, as done in LeapWebSocket.onMessage.
+ * Author     : Al Lansley
+ * Date       : 17/10/2026
+ * Version    : 0.1
+ *
+ */
+
+package au.edu.federation.leapbenchmark;
+
+import au.edu.federation.leapwebsocket.LeapJsonParser;
+import au.edu.federation.leapwebsocket.WebSocketFrame;
+import au.edu.federation.leapwebsocket.WebSocketFramePool;
+import com.google.gson.Gson;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+// The three ways LeapWebSocket.onMessage can parse a frame:
+//
+// - gson:         Gson reflection, used when LeapWebSocket.setUseGsonParser(true) has been called,
+// - parser:       the streaming LeapJsonParser, making a new frame each time (the default), and
+// - parserPooled: the LeapJsonParser filling in a frame from a WebSocketFramePool (when a pool is set).
+//
+// parserBytes covers the binary onMessage(ByteBuffer) path.
+@State(Scope.Thread)
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ParseBenchmark
+{
+	@Param({ "leap", "synthetic1", "synthetic2" })
+	public String fixture;
+
+	private String json;
+	private ByteBuffer jsonBytes;
+
+	private final Gson gson                 = new Gson();
+	private final LeapJsonParser parser     = new LeapJsonParser();
+	private final WebSocketFramePool pool   = new WebSocketFramePool(4);
+
+	@Setup
+	public void setup()
+	{
+		json      = BenchmarkFixtures.json(fixture);
+		jsonBytes = ByteBuffer.wrap( json.getBytes(StandardCharsets.UTF_8) );
+	}
+
+	@Benchmark
+	public WebSocketFrame gson()
+	{
+		return gson.fromJson(json, WebSocketFrame.class);
+	}
+
+	@Benchmark
+	public WebSocketFrame parser()
+	{
+		return parser.parse(json);
+	}
+
+	@Benchmark
+	public long parserPooled()
+	{
+		WebSocketFrame wsf = pool.acquire();
+		parser.parseInto(json, wsf);
+		long id = wsf.getId();
+		wsf.release();
+		return id;
+	}
+
+	@Benchmark
+	public WebSocketFrame parserBytes()
+	{
+		return parser.parse( jsonBytes.duplicate() );
+	}
+}
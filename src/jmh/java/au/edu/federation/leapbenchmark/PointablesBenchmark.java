@@ -0,0 +1,62 @@
+/***
+ *
+ * File       : PointablesBenchmark.java
+ * Description: Benchmark for WebSocketFrame.getPointablesOnHand, which is called for every hand on every frame.
+ * Author     : Al Lansley
+ * Date       : 17/10/2026
+ * Version    : 0.1
+ *
+ */
+
+package au.edu.federation.leapbenchmark;
+
+import au.edu.federation.leapwebsocket.WebSocketFrame;
+import au.edu.federation.leapwebsocket.WebSocketHand;
+import au.edu.federation.leapwebsocket.WebSocketPointable;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// Looks up the fingers on each hand of a frame, the way the application does before building its finger chains.
+@State(Scope.Thread)
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PointablesBenchmark
+{
+	@Param({ "1", "2" })
+	public int hands;
+
+	private WebSocketFrame frame;
+
+	@Setup
+	public void setup()
+	{
+		frame = BenchmarkFixtures.syntheticFrames(hands, 1)[0];
+	}
+
+	@Benchmark
+	public void getPointablesOnHand(Blackhole blackhole)
+	{
+		List<WebSocketHand> handList = frame.hands();
+		for (int i = 0; i < handList.size(); ++i)
+		{
+			List<WebSocketPointable> fingers = frame.getPointablesOnHand( handList.get(i).getId() );
+			blackhole.consume(fingers);
+		}
+	}
+}
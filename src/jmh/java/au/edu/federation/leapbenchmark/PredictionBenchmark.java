@@ -0,0 +1,88 @@
+/***
+ *
+ * File       : PredictionBenchmark.java
+ * Description: Benchmark of filtering and predicting every fingertip and palm in a frame with a OneEuroPredictor.
+ * Author     : Al Lansley
+ * Date       : 17/10/2026
+ * Version    : 0.1
+ *
+ */
+
+package au.edu.federation.leapbenchmark;
+
+import au.edu.federation.leapwebsocket.OneEuroPredictor;
+import au.edu.federation.leapwebsocket.WebSocketFrame;
+import au.edu.federation.leapwebsocket.WebSocketHand;
+import au.edu.federation.leapwebsocket.WebSocketPointable;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// Runs every palm and pointable of a frame through a OneEuroPredictor, as FramePredictor does for each frame as it
+// arrives. The results go into a separate array rather than back into the frame, and each call moves the timestamp on
+// by a frame at 110fps, so every call takes the filtering path rather than starting the points afresh. At full sensor
+// rate this has to keep well inside the 9ms between frames, and allocate nothing.
+@State(Scope.Thread)
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PredictionBenchmark
+{
+	private static final long FRAME_MICROS = 9091L;
+
+	@Param({ "1", "2" })
+	public int hands;
+
+	private WebSocketFrame frame;
+	private OneEuroPredictor palmPredictor;
+	private OneEuroPredictor tipPredictor;
+	private float[] predicted;
+	private long timestamp;
+
+	@Setup
+	public void setup()
+	{
+		frame         = BenchmarkFixtures.syntheticFrames(hands, 1)[0];
+		palmPredictor = new OneEuroPredictor();
+		tipPredictor  = new OneEuroPredictor();
+		predicted     = new float[3];
+		timestamp     = frame.getTimestamp();
+	}
+
+	@Benchmark
+	public float predictFrame()
+	{
+		timestamp += FRAME_MICROS;
+
+		palmPredictor.beginFrame();
+		List<WebSocketHand> frameHands = frame.hands();
+		for (int i = 0; i < frameHands.size(); ++i)
+		{
+			WebSocketHand wsh = frameHands.get(i);
+			palmPredictor.filter( wsh.getId(), timestamp, wsh.getPalmPosition(), 0, wsh.getPalmVelocity(), 0, 0.03f, predicted, 0 );
+		}
+
+		tipPredictor.beginFrame();
+		List<WebSocketPointable> pointables = frame.pointables();
+		for (int i = 0; i < pointables.size(); ++i)
+		{
+			WebSocketPointable wsp = pointables.get(i);
+			tipPredictor.filter( wsp.getId(), timestamp, wsp.getTipPosition(), 0, wsp.getTipVelocity(), 0, 0.03f, predicted, 0 );
+		}
+
+		return predicted[0];
+	}
+}
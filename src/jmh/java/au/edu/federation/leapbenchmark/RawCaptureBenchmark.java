@@ -0,0 +1,146 @@
+/***
+ *
+ * File       : RawCaptureBenchmark.java
+ * Description: Benchmarks for capturing raw Leap JSON with a RawCaptureWriter, against parsing and recording it, and for
+ *              reading captures back.
+ * Author     : Al Lansley
+ * Date       : 17/10/2026
+ * Version    : 0.1
+ *
+ */
+
+package au.edu.federation.leapbenchmark;
+
+import au.edu.federation.leapdatarecorder.LeapDataWriter;
+import au.edu.federation.leapdatarecorder.RawCaptureReader;
+import au.edu.federation.leapdatarecorder.RawCaptureWriter;
+import au.edu.federation.leapdatarecorder.RecordingFormat;
+import au.edu.federation.leapwebsocket.LeapJsonParser;
+import au.edu.federation.leapwebsocket.WebSocketFrame;
+import com.google.gson.Gson;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// What recording costs whoever is doing it, per frame:
+//
+// - capture:       appending the message as it arrived to a RawCaptureWriter, and
+// - parseAndWrite: parsing the message (as the LeapWebSocket's parser stage does) and writing it to a BINARY recording.
+//
+// Then what reading a capture back costs: readInto parses one frame at a time, and decodeAll decodes a whole capture of
+// NUM_FRAMES frames on the common fork-join pool (so it's per capture, not per frame).
+//
+// The messages are the synthetic two-handed frames as the LeapWebSocketEmulator would send them.
+@State(Scope.Thread)
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RawCaptureBenchmark
+{
+	// Number of distinct messages to cycle through, which is also the length of the capture we read back
+	private static final int NUM_FRAMES = 5000;
+
+	private String[] messages;
+	private int next;
+
+	private final LeapJsonParser parser = new LeapJsonParser();
+	private final WebSocketFrame parsed = new WebSocketFrame();
+
+	private File captureFile;
+	private File writeFile;
+	private RawCaptureWriter captureWriter;
+	private LeapDataWriter   recordingWriter;
+
+	private RawCaptureReader reader;
+	private final WebSocketFrame readFrame = new WebSocketFrame();
+
+	@Setup(Level.Trial)
+	public void setupTrial() throws IOException
+	{
+		WebSocketFrame[] frames = BenchmarkFixtures.syntheticFrames(2, NUM_FRAMES);
+		Gson gson = new Gson();
+		messages = new String[NUM_FRAMES];
+		for (int loop = 0; loop < NUM_FRAMES; ++loop)
+		{
+			messages[loop] = gson.toJson( frames[loop] );
+		}
+
+		captureFile = File.createTempFile("leapbench-capture", RawCaptureWriter.CAPTURE_EXTENSION);
+		captureFile.deleteOnExit();
+		RawCaptureWriter writer = new RawCaptureWriter( captureFile.getPath() );
+		for (String message : messages)
+		{
+			writer.append( System.nanoTime(), message );
+		}
+		writer.close();
+
+		reader = new RawCaptureReader(captureFile.getPath(), true);
+	}
+
+	@Setup(Level.Iteration)
+	public void setupIteration() throws IOException
+	{
+		writeFile       = File.createTempFile("leapbench-write", ".ldr");
+		captureWriter   = new RawCaptureWriter( writeFile.getPath() + RawCaptureWriter.CAPTURE_EXTENSION );
+		recordingWriter = new LeapDataWriter(writeFile.getPath(), false, RecordingFormat.BINARY, false);
+	}
+
+	@TearDown(Level.Iteration)
+	public void tearDownIteration()
+	{
+		captureWriter.close();
+		recordingWriter.close();
+		new File( captureWriter.getFilename() ).delete();
+		writeFile.delete();
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDownTrial()
+	{
+		reader.close();
+		captureFile.delete();
+	}
+
+	@Benchmark
+	public void capture()
+	{
+		captureWriter.append( System.nanoTime(), messages[next] );
+		if (++next == NUM_FRAMES) { next = 0; }
+	}
+
+	@Benchmark
+	public void parseAndWrite()
+	{
+		parser.parseInto( messages[next], parsed );
+		recordingWriter.writeWebSocketFrame(parsed);
+		if (++next == NUM_FRAMES) { next = 0; }
+	}
+
+	@Benchmark
+	public boolean readInto()
+	{
+		return reader.readWebSocketFrame(readFrame);
+	}
+
+	@Benchmark
+	public List<WebSocketFrame> decodeAll() throws IOException
+	{
+		return RawCaptureReader.decodeAll( captureFile.getPath() );
+	}
+}
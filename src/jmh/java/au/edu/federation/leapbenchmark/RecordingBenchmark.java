@@ -0,0 +1,120 @@
+/***
+ *
+ * File       : RecordingBenchmark.java
+ * Description: Benchmarks for LeapDataWriter.writeWebSocketFrame and LeapDataReader.readWebSocketFrame.
+ * Author     : Al Lansley
+ * Date       : 17/10/2026
+ * Version    : 0.1
+ *
+ */
+
+package au.edu.federation.leapbenchmark;
+
+import au.edu.federation.leapdatarecorder.LeapDataReader;
+import au.edu.federation.leapdatarecorder.LeapDataWriter;
+import au.edu.federation.leapdatarecorder.RecordingFormat;
+import au.edu.federation.leapwebsocket.WebSocketFrame;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+// Writes and reads frames in each recording format, with and without compression.
+//
+// The writer gets a fresh temp file each iteration (deleted afterwards) and cycles through a set of synthetic frames.
+// The readers loop over a recording of the same frames, so they never run dry - pass
+// -jvmArgsAppend -Dleapbench.recording=path/to/recording to read a real recording instead, in which case the format
+// and compressed parameters only affect the write benchmark.
+@State(Scope.Thread)
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RecordingBenchmark
+{
+	// Number of distinct frames to cycle through, which is also the length of the recording we read back
+	private static final int NUM_FRAMES = 5000;
+
+	@Param({ "SERIALIZED", "BINARY", "DELTA" })
+	public RecordingFormat format;
+
+	@Param({ "false", "true" })
+	public boolean compressed;
+
+	private WebSocketFrame[] frames;
+	private int next;
+
+	private File writeFile;
+	private LeapDataWriter writer;
+
+	private LeapDataReader reader;
+	private final WebSocketFrame readFrame = new WebSocketFrame();
+
+	@Setup(Level.Trial)
+	public void setupTrial() throws IOException
+	{
+		frames = BenchmarkFixtures.syntheticFrames(2, NUM_FRAMES);
+
+		String recording = BenchmarkFixtures.recordingOverride();
+		if (recording == null)
+		{
+			recording = BenchmarkFixtures.writeRecording(frames, format, compressed).getPath();
+		}
+		reader = new LeapDataReader(recording, true);
+	}
+
+	@Setup(Level.Iteration)
+	public void setupIteration() throws IOException
+	{
+		writeFile = File.createTempFile("leapbench-write", ".ldr");
+		writer    = new LeapDataWriter(writeFile.getPath(), compressed, format, false);
+	}
+
+	@TearDown(Level.Iteration)
+	public void tearDownIteration()
+	{
+		writer.close();
+		writeFile.delete();
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDownTrial()
+	{
+		reader.close();
+	}
+
+	@Benchmark
+	public void write()
+	{
+		writer.writeWebSocketFrame( frames[next] );
+		if (++next == NUM_FRAMES) { next = 0; }
+	}
+
+	// Reads into the same frame every time, as the replayer does
+	@Benchmark
+	public boolean readInto()
+	{
+		return reader.readWebSocketFrame(readFrame);
+	}
+
+	// Reads a brand new frame every time
+	@Benchmark
+	public WebSocketFrame read()
+	{
+		return reader.readWebSocketFrame();
+	}
+}
@@ -10,6 +10,12 @@ import static org.lwjgl.system.MemoryUtil.*;
 import au.edu.federation.caliko.*;
 import au.edu.federation.utils.*;
 import au.edu.federation.caliko.visualisation.*;
+import au.edu.federation.leapwebsocket.DeliveryPolicy;
+import au.edu.federation.leapwebsocket.FrameBus.WaitStrategy;
+import au.edu.federation.leapwebsocket.JointEstimator;
+import au.edu.federation.leapwebsocket.LatencyHistogram;
+import au.edu.federation.leapwebsocket.LatencyMonitor;
+import au.edu.federation.leapwebsocket.SequencedPublisher;
 
 import com.leapmotion.leap.*;
 
@@ -34,31 +40,65 @@ public class Application
     // Grids to give perspective
     private static Grid upperGrid, lowerGrid;
 
-    private static Line3D line;
+    // All of the bones for a frame are collected into one batch, uploaded and drawn together
+    private static final LineBatch lineBatch = new LineBatch();
+    private static LineBatchRenderer lineBatchRenderer;
 
     static Colour4f leapIKHandColour   = Utils.RED;
     static Colour4f calikoIKHandColour = Utils.BLUE;
 
     //static FabrikStructure3D rightHandStructure = new FabrikStructure3D("right hand structure");
-    static FabrikChain3D[] fingerChain = new FabrikChain3D[5];
+
+    // Solves the finger chains on its own thread as Leap frames arrive. The chains are drawn to the right of the Leap's own bones.
+    static IKSolverThread ikSolver = createIKSolver();
+
+    // How long the solves for each Leap frame may take between them. Frames arrive every 9ms or so (at 110fps) and are
+    // drawn every 16.7ms (at 60Hz), so this leaves room to spare for both.
+    public static final long IK_FRAME_BUDGET_NANOS = 4000000L;
+
+    // Scratch locations used when drawing so we don't allocate per bone
+    private static final Vec3f drawStart = new Vec3f();
+    private static final Vec3f drawEnd   = new Vec3f();
+
+    // Render-side staleness and latency, reported every STATS_INTERVAL_NANOS when LatencyMonitor.ENABLED (run with
+    // -Dleap.latency=true)
+    public static final long STATS_INTERVAL_NANOS = 5000000000L;
+    private static long lastDrawnFrameId = -1L;
+    private static long rendersDrawn, rendersStale, totalAgeNanos, maxAgeNanos, lastStatsNanos;
+
+    // Whether the solver should predict where the fingertips will be by the time each frame is on screen. The time it
+    // takes is estimated from how old frames are when drawn plus how long until the next swap, smoothed by LEAD_SMOOTHING.
+    static boolean predictFingertips = true;
+    private static final float LEAD_SMOOTHING = 0.05f;
+    private static float meanAgeNanos, meanRenderIntervalNanos;
+    private static long lastRenderNanos;
+
+    // Latency stages, only recorded into when LatencyMonitor.ENABLED (run with -Dleap.latency=true), and reported every
+    // STATS_INTERVAL_NANOS along with the stages before them
+    private static final LatencyHistogram LOOP_LATENCY       = LatencyMonitor.stage("render.loop",     "Buffer swap to buffer swap");
+    private static final LatencyHistogram AGE_LATENCY        = LatencyMonitor.stage("render.age",      "Frame received from the Leap to swapped on to the screen");
+    private static final LatencyHistogram END_TO_END_LATENCY = LatencyMonitor.stage("render.endToEnd", "Leap timestamp to swapped on to the screen");
+    private static long lastSwapNanos;
 
     // ----- Leap Static properties -----
     static Controller leapController = new Controller();
     static Listener   leapListener   = new LeapListener(LeapListener.ListenerType.USB_LISTENER);
     //static Listener   leapListener   = new LeapListener(LeapListener.ListenerType.WEBSOCKET_LISTENER);
-    static Frame frame;
-    static Hand hand;
+    // The latest frame from the Leap. It's published from the solver's consumer of the Leap listener's frame bus, so read
+    // it through this from anywhere else.
+    static final SequencedPublisher<Frame> latestFrame = new SequencedPublisher<Frame>();
     static Finger firstFinger;
-    static FingerList fingerList;
 
 
     // ----- Constants -----
-    public static final float GOLDEN_RATIO              = 1.6181033f;
-    public static final float HAND_RATIO                = 5.23606797f;
-    public static final float DISTAL_RATIO              = 1.0f / HAND_RATIO;
-    public static final float PROXIMAL_RATIO            = GOLDEN_RATIO / HAND_RATIO;
-    public static final float METACARPOPHALANGEAL_RATIO = (GOLDEN_RATIO * GOLDEN_RATIO) / HAND_RATIO;
-    public static final float CARPOMETACARPEL_RATIO     = (GOLDEN_RATIO * GOLDEN_RATIO * GOLDEN_RATIO) / HAND_RATIO;
+
+    // The anatomical finger model's proportions - see JointEstimator
+    public static final float GOLDEN_RATIO              = JointEstimator.GOLDEN_RATIO;
+    public static final float HAND_RATIO                = JointEstimator.HAND_RATIO;
+    public static final float DISTAL_RATIO              = JointEstimator.DISTAL_RATIO;
+    public static final float PROXIMAL_RATIO            = JointEstimator.PROXIMAL_RATIO;
+    public static final float METACARPOPHALANGEAL_RATIO = JointEstimator.METACARPOPHALANGEAL_RATIO;
+    public static final float CARPOMETACARPEL_RATIO     = JointEstimator.CARPOMETACARPEL_RATIO;
 
 
 
@@ -66,140 +106,131 @@ public class Application
     public static final float LEAP_DRAW_OFFSET   = -150.0f;
     public static final float CALIKO_DRAW_OFFSET = 150.0f;
 
-    private static void drawFingersLeapIK()
+    // Method to add the Leap's own bones for every finger to this frame's line batch
+    private static void drawFingersLeapIK(SolvedFrame solved)
     {
-        // Loop over all fingers in the list of fingers
-        for (Finger f : fingerList)
+        // Loop over all fingers of all hands in the solved frame
+        for (int f = 0; f < SolvedFrame.MAX_SLOTS; ++f)
         {
             // Loop over finger bones drawing each. Bone order is:
             // TYPE_METACARPAL   - prevJoint at wrist
             // TYPE_PROXIMAL     - prevJoint at 'finger base'   - this is the third 'base-of-finger' joint
             // TYPE_INTERMEDIATE -                              - this is the second 'knuckle' joint
             // TYPE_DISTAL       - nextJoint at finger tip      - this is the first joint, closest to fingertip
-            int count = 0;
-            for ( Bone.Type boneType : Bone.Type.values() )
+            int numBones = solved.getLeapJointCount(f) - 1;
+            for (int bone = 0; bone < numBones; ++bone)
             {
-                Bone bone = f.bone(boneType);
-
-                Vector boneStart = bone.prevJoint();
-                Vector boneEnd   = bone.nextJoint();
-                Vec3f start      = new Vec3f( boneStart.getX() + LEAP_DRAW_OFFSET, boneStart.getY() - VERTICAL_OFFSET, boneStart.getZ() );
-                Vec3f end        = new Vec3f( boneEnd.getX()   + LEAP_DRAW_OFFSET, boneEnd.getY()   - VERTICAL_OFFSET, boneEnd.getZ()   );
-
-                if (count % 2 == 0)
-                {
-                    line.draw(start, end, Utils.BLUE, 5.0f, mvpMatrix);
-                }
-                else
-                {
-                    line.draw(start, end, Utils.MID_BLUE, 5.0f, mvpMatrix);
-                }
-                ++count;
+                solved.getLeapJoint(f, bone,     drawStart);
+                solved.getLeapJoint(f, bone + 1, drawEnd);
+                drawStart.x += LEAP_DRAW_OFFSET; drawStart.y -= VERTICAL_OFFSET;
+                drawEnd.x   += LEAP_DRAW_OFFSET; drawEnd.y   -= VERTICAL_OFFSET;
+
+                lineBatch.addLine(drawStart, drawEnd, (bone % 2 == 0) ? Utils.BLUE : Utils.MID_BLUE, 5.0f);
             }
 
         } // End of loop over fingers
     }
 
-    private static void drawFingersCalikoIK()
+    // Method to add our solved chains for every finger to this frame's line batch
+    private static void drawFingersCalikoIK(SolvedFrame solved)
     {
-        // Loop over all fingers in the list of fingers
-        int count = 0;
-        for (Finger f : fingerList)
+        // The chains were solved on the IK solver thread, and already have the draw offset applied
+        for (int f = 0; f < SolvedFrame.MAX_SLOTS; ++f)
         {
-            // Get the tip and base location of the finger
-            Vector tipLocation  = f.tipPosition();
-            Vector baseLocation = f.direction().opposite().times( f.length() );
-
-            // Use golden-ratio based anatomical model to calculate joint locations.
-            //Vec3f tip  = new Vec3f( tipLocation.getX() + CALIKO_DRAW_OFFSET,  tipLocation.getY()  - VERTICAL_OFFSET, tipLocation.getZ()  );
-            //Vec3f base = new Vec3f( baseLocation.getX() + CALIKO_DRAW_OFFSET, baseLocation.getY() - VERTICAL_OFFSET, baseLocation.getZ() );
-
-            // Create joints for fingers in a straight line along finger direction then solve them to get the curve
-            //Vec3f tip = new Vec3f(tipLocation.getX(), tipLocation.getY(), tipLocation.getZ());
-            //Vec3f direction = new Vec3f(f.direction)
-            //Vec3f distalJoint = new Vec
-
-            Vec3f  tipToBaseDir = new Vec3f( f.direction().opposite().getX(), f.direction().opposite().getY(), f.direction().opposite().getZ()  );
-            float  len          = f.length();
-            //System.out.println(count + " " + len);
-
-            // Construct joint locations using golden ration based anatomical model
-            Vec3f tip                 = new Vec3f( tipLocation.getX(), tipLocation.getY(), tipLocation.getZ()                       );
-            Vec3f distal              = new Vec3f( tip.plus( tipToBaseDir.times(DISTAL_RATIO).times(len)                          ) );
-            Vec3f proximal            = new Vec3f( distal.plus( tipToBaseDir.times(PROXIMAL_RATIO).times(len)                     ) );
-            Vec3f metacarpophalangeal = new Vec3f( proximal.plus( tipToBaseDir.times(METACARPOPHALANGEAL_RATIO).times(len)        ) );
-
-            // The location of the metacrpophalangeal joint is fixed relative to the hand, so we obtain it by taking a direction from the fingertip to the hand
-            Hand h = frame.hands().rightmost();
-            Vector handPosition = h.palmPosition();
-            Vec3f armDir = new Vec3f(h.arm().direction().opposite().getX(),h.arm().direction().opposite().getY(), h.arm().direction().opposite().getZ() );
-
-            Vec3f carpometacarpel     = new Vec3f( metacarpophalangeal.plus( armDir.times(CARPOMETACARPEL_RATIO).times(len) ) );
-
-
-
-            System.out.println(handPosition);
-
-            //Vec3f carpometacarpel     = new Vec3f( handPosition.getX(), handPosition.getY(), handPosition.getZ() );
-
-            // Push to the right and up
-            tip.x                 += CALIKO_DRAW_OFFSET;
-            tip.y                 -= VERTICAL_OFFSET;
-            distal.x              += CALIKO_DRAW_OFFSET;
-            distal.y              -= VERTICAL_OFFSET;
-            proximal.x            += CALIKO_DRAW_OFFSET;
-            proximal.y            -= VERTICAL_OFFSET;
-            metacarpophalangeal.x += CALIKO_DRAW_OFFSET;
-            metacarpophalangeal.y -= VERTICAL_OFFSET;
-            carpometacarpel.x     += CALIKO_DRAW_OFFSET;
-            carpometacarpel.y     -= VERTICAL_OFFSET;
-
-            FabrikBone3D carpoBone  = new FabrikBone3D(carpometacarpel, metacarpophalangeal); carpoBone.setColour(Utils.RED);
-            FabrikBone3D metaBone   = new FabrikBone3D(metacarpophalangeal, proximal);        metaBone.setColour(Utils.MID_RED);
-            FabrikBone3D distilBone = new FabrikBone3D(proximal, distal);                     distilBone.setColour(Utils.RED);
-            FabrikBone3D tipBone    = new FabrikBone3D(distal, tip);                          tipBone.setColour(Utils.MID_RED);
+            // Colours alternate from the fingertip back, so the thumb (which has no carpometacarpal bone) matches the fingers
+            int numBones = solved.getChainJointCount(f) - 1;
+            for (int bone = 0; bone < numBones; ++bone)
+            {
+                solved.getChainJoint(f, bone,     drawStart);
+                solved.getChainJoint(f, bone + 1, drawEnd);
 
-            fingerChain[count] = new FabrikChain3D();
+                lineBatch.addLine(drawStart, drawEnd, ((numBones - 1 - bone) % 2 == 0) ? Utils.MID_RED : Utils.RED, 5.0f);
+            }
+        }
+    }
 
-            // Only add a 4th segment if we are NOT a thumb!
-            if (count != 0) { fingerChain[count].addBone(carpoBone); }
+    // Method to set up the IK solver thread, with its solves for each frame kept within IK_FRAME_BUDGET_NANOS
+    private static IKSolverThread createIKSolver()
+    {
+        ParallelIKEngine engine = new ParallelIKEngine( new FingerChainCache(CALIKO_DRAW_OFFSET, -VERTICAL_OFFSET, 0.0f) );
+        engine.setScheduler( new IKSolveScheduler(IK_FRAME_BUDGET_NANOS) );
+        return new IKSolverThread(engine);
+    }
 
-            fingerChain[count].addBone(metaBone);
-            fingerChain[count].addBone(distilBone);
-            fingerChain[count].addBone(tipBone);
+    // Method to keep track of how stale each rendered frame is (and so how far ahead the solver should predict), and
+    // print a summary every so often if the LatencyMonitor is enabled
+    private static void recordRender(SolvedFrame solved)
+    {
+        long now = System.nanoTime();
+        if ( solved.hasFrame() )
+        {
+            long age = solved.getAgeNanos(now);
+            meanAgeNanos += LEAD_SMOOTHING * (age - meanAgeNanos);
 
-            fingerChain[count].solveForTarget( tip.minus( tipToBaseDir.times( f.length() * 0.09f) ) );
+            if (LatencyMonitor.ENABLED)
+            {
+                ++rendersDrawn;
+                if (solved.getFrameId() == lastDrawnFrameId) { ++rendersStale; }
+                lastDrawnFrameId = solved.getFrameId();
 
-            FabrikLine3D.draw(fingerChain[count], 5.0f, mvpMatrix);
+                totalAgeNanos += age;
+                if (age > maxAgeNanos) { maxAgeNanos = age; }
+            }
+        }
 
-            /*
-            line.draw(tip, distal, Utils.RED, 5.0f, mvpMatrix);
-            line.draw(distal, proximal, Utils.GREEN, 5.0f, mvpMatrix);
-            line.draw(proximal, metacarpophalangeal, Utils.BLUE, 5.0f, mvpMatrix);
-            line.draw(metacarpophalangeal, carpometacarpel, Utils.YELLOW, 5.0f, mvpMatrix);
-             */
+        // A frame drawn now is on screen after the next swap, so predict that far ahead
+        if (lastRenderNanos != 0L)
+        {
+            meanRenderIntervalNanos += LEAD_SMOOTHING * ( (now - lastRenderNanos) - meanRenderIntervalNanos );
+        }
+        lastRenderNanos = now;
+        ikSolver.setPredictionLeadNanos( predictFingertips ? (long)(meanAgeNanos + meanRenderIntervalNanos) : -1L );
 
-            // Increment counter to move to next finger on next pass
-            ++count;
+        if (LatencyMonitor.ENABLED && now - lastStatsNanos >= STATS_INTERVAL_NANOS)
+        {
+            if (rendersDrawn > 0)
+            {
+                System.out.println( "Rendered " + rendersDrawn + " frames (" + rendersStale + " repeats), mean age " + (totalAgeNanos / rendersDrawn) / 1000L +
+                                    "us, max age " + maxAgeNanos / 1000L + "us | " + ikSolver + " | " + lineBatchRenderer + " | " + LeapListener.getFrameBus() );
+            }
+            rendersDrawn = rendersStale = totalAgeNanos = maxAgeNanos = 0L;
+            lastStatsNanos = now;
         }
     }
 
-    // Assign new frame by reference
-    public static void updateFrame(Frame f)
+    // Method to record how long this time round the render loop took, and how old the frame just swapped on to the screen
+    // is - both since it reached us and since the Leap captured it
+    private static void recordLatency(SolvedFrame solved)
     {
-        frame = f;
+        long now = System.nanoTime();
+        if (lastSwapNanos != 0L)
+        {
+            LOOP_LATENCY.record(now - lastSwapNanos);
+        }
+        lastSwapNanos = now;
 
-        if (frame != null && frame.isValid() && frame.hands().count() > 0)
+        if ( solved.hasFrame() )
         {
-            // 	Get the leftmost hand
-            hand = frame.hands().leftmost();
+            AGE_LATENCY.record( solved.getAgeNanos(now) );
 
-            // Get all fingers on the hand
-            fingerList = hand.fingers();
+            long sensorAge = LeapListener.getSensorClock().ageNanos(solved.getLeapTimestamp(), now);
+            if (sensorAge >= 0L)
+            {
+                END_TO_END_LATENCY.record(sensorAge);
+            }
         }
-        else
+    }
+
+    // Publish a new frame which arrived at the given System.nanoTime(). Must only be called from the one thread (the
+    // solver's consumer of the Leap listener's frame bus).
+    public static void updateFrame(Frame f, long arrivalNanos)
+    {
+        latestFrame.publish(f);
+
+        // Hand it straight to the solver, which solves the fingers of every hand
+        if (f != null)
         {
-            //System.out.println("Got a frame, but no hands visible.");
+            ikSolver.offer(f, arrivalNanos);
         }
     }
 
@@ -212,6 +243,12 @@ public class Application
         }
         finally
         {
+            // Free our OpenGL objects while we still have a context
+            if (lineBatchRenderer != null)
+            {
+                lineBatchRenderer.destroy();
+            }
+
             // Free the keyboard callback and destroy the window
             keyCB.close();
             glfwDestroyWindow(window);
@@ -277,14 +314,8 @@ public class Application
         viewMatrix.translate(0.0f, 0.0f,-200.0f);
         mvpMatrix = projMatrix.times(viewMatrix);
 
-        // Create a Line3D we'll use to draw things (we have to wait until we have a valid OpenGL context to do this)
-        line = new Line3D();
-
-        // Create empty FabrikChain3D objects
-        for (int loop = 0; loop < 5; ++loop)
-        {
-            fingerChain[loop] = new FabrikChain3D();
-        }
+        // Create the renderer we'll draw the bones with (we have to wait until we have a valid OpenGL context to do this)
+        lineBatchRenderer = new LineBatchRenderer();
     }
 
     private void loop()
@@ -302,25 +333,49 @@ public class Application
             upperGrid.draw(mvpMatrix);
             lowerGrid.draw(mvpMatrix);
 
-            // Got a hand containing fingers? Draw!
-            if (fingerList != null && !fingerList.isEmpty())
+            // Got a hand containing fingers? Draw the latest solve!
+            SolvedFrame solved = ikSolver.latest();
+            lineBatch.clear();
+            if (solved.getNumHands() > 0)
             {
-                drawFingersLeapIK();
-                drawFingersCalikoIK();
+                drawFingersLeapIK(solved);
+                drawFingersCalikoIK(solved);
             }
+            lineBatchRenderer.draw(lineBatch, mvpMatrix);
+            recordRender(solved);
 
             glfwSwapBuffers(window); // Swap colour buf.
+            if (LatencyMonitor.ENABLED)
+            {
+                recordLatency(solved);
+            }
             glfwPollEvents();        // Poll for events.
         }
     }
 
     public static void main(String[] args)
     {
-        // Bind a listener to the Leap device
+        // Pick up frames from the Leap's USB connection as they arrive. Only the latest frame is ever drawn, so if we fall
+        // behind we skip straight to it...
+        if (LeapListener.getListenerType() == LeapListener.ListenerType.USB_LISTENER)
+        {
+            LeapListener.getFrameBus().addConsumer("solver", (event, sequence, endOfBatch) -> updateFrame( event.getFrame(), event.getArrivalNanos() ),
+                                                   DeliveryPolicy.LATEST, WaitStrategy.BLOCKING);
+        }
+
+        // ...and bind a listener to the Leap device
         leapController.addListener(leapListener);
 
+        // Start solving frames as they arrive
+        ikSolver.start();
+
+        // Print the latency of each stage every so often (only if the LatencyMonitor is enabled, as for the render stats)
+        LatencyMonitor.startReporting(STATS_INTERVAL_NANOS);
+
         new Application().run();
 
+        ikSolver.stop();
+
         // Remove the listener from the Leap device
         leapController.removeListener(leapListener);
     }
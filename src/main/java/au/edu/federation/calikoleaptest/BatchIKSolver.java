@@ -0,0 +1,365 @@
+package au.edu.federation.calikoleaptest;
+
+import au.edu.federation.leapdatarecorder.LeapDataReader;
+import au.edu.federation.leapwebsocket.WebSocketFrame;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+// Class which solves the finger chains for every frame of a recording (or every recording under a directory) without a
+// window, using the same anatomical model and FabrikChain3D solve as the Application, and writes the solved joint
+// locations out with a SolvedSkeletonWriter. This is for re-processing captured sessions after the solver changes.
+//
+// All the work shares one fork-join pool. Recordings are solved in parallel with each other, and within a recording
+// frames are read, solved and written a batch at a time, with each batch solved by a ParallelIKEngine on the same pool:
+//
+// - When warm-starting (the default) each finger carries on from its own solution in the frame before, exactly as
+//   it does live, and the fingers of a batch are solved in parallel with each other.
+// - With warm-starting off every frame is solved from a straight chain, so frames don't depend on each other at all and
+//   the frames of a batch are solved in parallel. This keeps every core busy even when there's only one recording.
+//
+// Example usage (from the command line):
+//
+//     java au.edu.federation.calikoleaptest.BatchIKSolver archive/ solved/ --threads 8
+//
+// or, from Gradle:
+//
+//     gradle solveIK -Pargs="archive/ solved/ --cold"
+public class BatchIKSolver
+{
+    // Extension added to the name of each recording to give the name of its output file
+    public static final String OUTPUT_EXTENSION = ".skel";
+
+    private boolean warmStart      = true;
+    private boolean compress       = true;
+    private int     framesPerBatch = 1024;
+    private int     parallelism    = Runtime.getRuntime().availableProcessors();
+    private String  extension;     // Only solve files ending with this (null for all files)
+
+    public void setWarmStart(boolean value)    { warmStart = value;                       }
+    public void setCompress(boolean value)     { compress = value;                        }
+    public void setFramesPerBatch(int frames)  { framesPerBatch = Math.max(1, frames);    }
+    public void setParallelism(int threads)    { parallelism = Math.max(1, threads);      }
+    public void setExtension(String value)     { extension = value;                       }
+
+    // ----- Solving -----
+
+    // Method to solve every recording under the input directory, writing each one's output to the same relative path
+    // under the output directory (with OUTPUT_EXTENSION added), and returning the result for each file
+    public List<FileResult> solveDirectory(File inputDirectory, File outputDirectory)
+    {
+        List<File> inputs = new ArrayList<File>();
+        findRecordings(inputDirectory, inputs);
+        Collections.sort(inputs);
+
+        List<File> outputs = new ArrayList<File>();
+        String inputRoot = inputDirectory.getAbsolutePath();
+        for (File input : inputs)
+        {
+            outputs.add( new File( outputDirectory, input.getAbsolutePath().substring( inputRoot.length() ) + OUTPUT_EXTENSION ) );
+        }
+
+        return solveFiles(inputs, outputs);
+    }
+
+    // Method to solve a list of recordings, each to the output file at the same index
+    public List<FileResult> solveFiles(List<File> inputs, List<File> outputs)
+    {
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try
+        {
+            return pool.invoke( new SolveTask(inputs, outputs, 0, inputs.size()) );
+        }
+        finally
+        {
+            pool.shutdown();
+        }
+    }
+
+    // Method to solve a single recording, running the solves on the given pool
+    FileResult solveFile(File input, File output, ForkJoinPool pool)
+    {
+        FileResult result = new FileResult(input, output);
+        long startTime = System.nanoTime();
+
+        File parent = output.getAbsoluteFile().getParentFile();
+        if ( parent != null && !parent.isDirectory() && !parent.mkdirs() )
+        {
+            result.error = "could not create " + parent;
+            return result;
+        }
+
+        FingerChainCache cache = new FingerChainCache();
+        cache.setWarmStart(warmStart);
+        ParallelIKEngine engine = new ParallelIKEngine(cache, pool);
+
+        IKFrameInput[] frameInputs = new IKFrameInput[framesPerBatch];
+        SolvedFrame[]  solved      = new SolvedFrame[framesPerBatch];
+        for (int loop = 0; loop < framesPerBatch; ++loop)
+        {
+            frameInputs[loop] = new IKFrameInput();
+            solved[loop]      = new SolvedFrame();
+        }
+
+        try
+        {
+            // A recording we can't open, or can't read to its end, fails rather than being solved as far as it goes
+            LeapDataReader reader = LeapDataReader.open(input.getPath(), false);
+            try
+            {
+                SolvedSkeletonWriter writer = new SolvedSkeletonWriter(output.getPath(), compress);
+                try
+                {
+                    solveFrames(reader, writer, engine, frameInputs, solved, result);
+                }
+                finally
+                {
+                    writer.close();
+                }
+            }
+            finally
+            {
+                reader.close();
+            }
+
+            if (reader.getError() != null)
+            {
+                result.error = "could not read " + input + " - " + reader.getError();
+            }
+        }
+        catch (IOException | RuntimeException e)
+        {
+            // e.g. a file in the directory which isn't a recording at all, or has been removed since we found it
+            result.error = e.toString();
+        }
+
+        result.chainsBuilt = cache.getChainsBuilt();
+        result.inputBytes  = input.length();
+        result.outputBytes = output.length();
+        result.nanos       = System.nanoTime() - startTime;
+        return result;
+    }
+
+    // Method to read a batch of frames, solve it, write it out, and repeat until we run out of frames
+    private static void solveFrames(LeapDataReader reader, SolvedSkeletonWriter writer, ParallelIKEngine engine,
+                                    IKFrameInput[] frameInputs, SolvedFrame[] solved, FileResult result) throws IOException
+    {
+        WebSocketFrame wsf = new WebSocketFrame();
+        int count;
+        do
+        {
+            count = 0;
+            while ( count < frameInputs.length && reader.readWebSocketFrame(wsf) )
+            {
+                frameInputs[count++].set(wsf);
+            }
+
+            engine.solveAll(frameInputs, solved, count);
+
+            for (int loop = 0; loop < count; ++loop)
+            {
+                writer.write( solved[loop] );
+                result.fingers += frameInputs[loop].getTotalFingers();
+            }
+            result.frames += count;
+        }
+        while (count == frameInputs.length);
+    }
+
+    // Method to find all of the recordings under a directory
+    private void findRecordings(File directory, List<File> recordings)
+    {
+        File[] files = directory.listFiles();
+        if (files == null)
+        {
+            return;
+        }
+
+        for (File file : files)
+        {
+            if ( file.isDirectory() )
+            {
+                findRecordings(file, recordings);
+            }
+            else if ( extension == null || file.getName().endsWith(extension) )
+            {
+                recordings.add(file);
+            }
+        }
+    }
+
+    // ----- Fork-join task -----
+
+    // Task to solve a range of files - ranges of more than one file are split in half and the halves run in parallel
+    private class SolveTask extends RecursiveTask<List<FileResult>>
+    {
+        private static final long serialVersionUID = 1L;
+
+        private final List<File> inputs;
+        private final List<File> outputs;
+        private final int from, to;
+
+        SolveTask(List<File> inputs, List<File> outputs, int from, int to)
+        {
+            this.inputs  = inputs;
+            this.outputs = outputs;
+            this.from    = from;
+            this.to      = to;
+        }
+
+        @Override
+        protected List<FileResult> compute()
+        {
+            if (to - from <= 1)
+            {
+                List<FileResult> results = new ArrayList<FileResult>();
+                if (to > from)
+                {
+                    FileResult result = solveFile( inputs.get(from), outputs.get(from), getPool() );
+                    System.out.println(result);
+                    results.add(result);
+                }
+                return results;
+            }
+
+            int middle = (from + to) >>> 1;
+            SolveTask left  = new SolveTask(inputs, outputs, from, middle);
+            SolveTask right = new SolveTask(inputs, outputs, middle, to);
+            left.fork();
+
+            List<FileResult> results = right.compute();
+            results.addAll(0, left.join());
+            return results;
+        }
+    }
+
+    // ----- Results -----
+
+    // The outcome of solving one file
+    public static class FileResult
+    {
+        public final File input;
+        public final File output;
+
+        public long   frames;
+        public long   fingers;      // Number of finger chains solved
+        public long   chainsBuilt;  // How many of those were built from scratch rather than warm-started
+        public long   inputBytes;
+        public long   outputBytes;
+        public long   nanos;
+        public String error;        // Null if the file was solved successfully
+
+        FileResult(File input, File output)
+        {
+            this.input  = input;
+            this.output = output;
+        }
+
+        public boolean isOk() { return error == null; }
+
+        @Override
+        public String toString()
+        {
+            double seconds = nanos / 1.0e9;
+            return String.format(Locale.ROOT, "%s %s: %d frames, %d chains (%d built), %.2f MB -> %.2f MB, %.0f frames/s%s",
+                                 isOk() ? "OK  " : "FAIL", input.getPath(), frames, fingers, chainsBuilt,
+                                 inputBytes / 1.0e6, outputBytes / 1.0e6, frames / seconds,
+                                 isOk() ? "" : " - " + error);
+        }
+    }
+
+    // ----- Command line -----
+
+    private static void printUsage()
+    {
+        System.out.println("Usage: BatchIKSolver <input recording or directory> <output file or directory> [options]");
+        System.out.println("  --cold                 Solve every frame from a straight chain rather than from the frame before");
+        System.out.println("  --compress true|false  Whether to GZIP the output (default true)");
+        System.out.println("  --threads N            Number of threads to solve with (default: number of cores)");
+        System.out.println("  --batch N              Number of frames of a recording to solve at once (default 1024)");
+        System.out.println("  --extension EXT        Only solve files ending with EXT, e.g. .gzip (default: all files)");
+    }
+
+    public static void main(String[] args)
+    {
+        if (args.length < 2)
+        {
+            printUsage();
+            System.exit(-1);
+        }
+
+        File input  = new File(args[0]);
+        File output = new File(args[1]);
+        if ( input.getAbsoluteFile().equals( output.getAbsoluteFile() ) )
+        {
+            System.out.println("The output must be different to the input.");
+            System.exit(-1);
+        }
+
+        BatchIKSolver solver = new BatchIKSolver();
+        int threads = Runtime.getRuntime().availableProcessors();
+        try
+        {
+            for (int i = 2; i < args.length; ++i)
+            {
+                switch (args[i])
+                {
+                    case "--cold":      solver.setWarmStart(false);                                  break;
+                    case "--compress":  solver.setCompress( Boolean.parseBoolean( args[++i] ) );     break;
+                    case "--threads":   threads = Integer.parseInt( args[++i] );                     break;
+                    case "--batch":     solver.setFramesPerBatch( Integer.parseInt( args[++i] ) );   break;
+                    case "--extension": solver.setExtension( args[++i] );                            break;
+                    default:
+                        System.out.println("Unknown option: " + args[i]);
+                        printUsage();
+                        System.exit(-1);
+                }
+            }
+        }
+        catch (RuntimeException e)
+        {
+            printUsage();
+            System.exit(-1);
+        }
+        solver.setParallelism(threads);
+
+        long startTime = System.nanoTime();
+        List<FileResult> results;
+        if ( input.isDirectory() )
+        {
+            results = solver.solveDirectory(input, output);
+        }
+        else
+        {
+            results = solver.solveFiles( Collections.singletonList(input), Collections.singletonList(output) );
+        }
+        double seconds = (System.nanoTime() - startTime) / 1.0e9;
+
+        // Totals
+        long frames = 0L, fingers = 0L;
+        int failures = 0;
+        for (FileResult result : results)
+        {
+            frames  += result.frames;
+            fingers += result.fingers;
+            if ( !result.isOk() )
+            {
+                ++failures;
+            }
+        }
+
+        System.out.println();
+        System.out.println( String.format(Locale.ROOT, "Solved %d files (%d failed) using %d threads in %.2f seconds%s",
+                                          results.size(), failures, threads, seconds, solver.warmStart ? "" : " (cold)") );
+        System.out.println( String.format(Locale.ROOT, "%d frames, %d chains, %.0f frames/s, %.0f chains/s",
+                                          frames, fingers, frames / seconds, fingers / seconds) );
+
+        System.exit(failures == 0 ? 0 : 1);
+    }
+}
@@ -0,0 +1,401 @@
+package au.edu.federation.calikoleaptest;
+
+import au.edu.federation.caliko.FabrikBone3D;
+import au.edu.federation.caliko.FabrikChain3D;
+import au.edu.federation.leapwebsocket.JointEstimator;
+import au.edu.federation.utils.Utils;
+import au.edu.federation.utils.Vec3f;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+// Class which keeps a FabrikChain3D for every finger of every tracked hand from one frame to the next, rather than
+// building brand new chains each frame. Chains are looked up by Leap hand id and finger id. Each frame the joint
+// locations are worked out from the golden-ratio model by a JointEstimator, and then:
+//
+// - the first time we see a finger (or if its length changes) its chain is built in a straight line, as before, but
+// - every other time the chain we already have is moved so that its base sits on the new base location, keeping the
+//   shape it was solved into last frame, and solved from there.
+//
+// As fingers only move a little between frames, last frame's solution is already close to this frame's and the solver
+// gets within its distance threshold in far fewer iterations than it does from a straight line. Apart from when a new
+// hand or finger turns up, nothing here allocates (what the Caliko solver allocates internally is up to it).
+//
+// Warm-starting can be turned off with setWarmStart(false), in which case every chain is built in a straight line
+// every frame just like the original application did. That's slower, but each frame's solution then depends only on
+// that frame, so frames can be solved in any order (see ParallelIKEngine.solveAll).
+//
+// Note: Looking fingers up (beginFrame, solveFinger by id, lookup) must all happen on one thread at a time, but once
+// a finger has been looked up its chain can be solved on any thread with solveFinger(FingerChain, ...), as each
+// finger keeps its own scratch space - this is what the ParallelIKEngine does.
+//
+// Example usage (once per rendered frame):
+//
+//     cache.beginFrame();
+//     for (Finger f : hand.fingers())
+//     {
+//         FabrikChain3D chain = cache.solveFinger( hand.id(), f.id(), isThumb, tipX, tipY, tipZ, dirX, dirY, dirZ, f.length(), armX, armY, armZ );
+//         FabrikLine3D.draw(chain, 5.0f, mvpMatrix);
+//     }
+public class FingerChainCache
+{
+    // Number of hands we keep chains for. The Leap only tracks two, but a hand that's lost and found again comes back
+    // with a new id, so we keep a couple of spare slots rather than thrashing while the old id ages out.
+    public static final int MAX_HANDS = 4;
+
+    // Number of fingers on a hand
+    public static final int FINGERS_PER_HAND = 5;
+
+    // Hands we haven't seen for this many frames are dropped
+    public static final int EVICT_AFTER_FRAMES = 60;
+
+    // The relative change in finger length that makes us rebuild a chain rather than re-use it (Leap finger lengths
+    // settle down within the first second or so of a hand being tracked, and then barely move)
+    public static final float LENGTH_TOLERANCE = 0.005f;
+
+    // How far past the fingertip we place the target, as a proportion of the finger length
+    public static final float TARGET_OVERSHOOT = 0.09f;
+
+    // Translation applied to every joint location, e.g. to draw the chains off to one side of the Leap's own bones
+    private final float offsetX, offsetY, offsetZ;
+
+    // Whether to start each solve from last frame's solution (true) or from a straight chain (false)
+    private volatile boolean warmStart = true;
+
+    private final HandChains[] hands = new HandChains[MAX_HANDS];
+
+    // Joint estimator for fingers solved one at a time by id
+    private final JointEstimator singleFinger = new JointEstimator(1);
+
+    // Frame counter used to work out which hands and fingers are stale
+    private long frameNumber;
+
+    // Statistics
+    private final AtomicLong chainsBuilt  = new AtomicLong();
+    private final AtomicLong chainsReused = new AtomicLong();
+
+    // Default constructor - chains are placed exactly where the Leap says the fingers are
+    public FingerChainCache()
+    {
+        this(0.0f, 0.0f, 0.0f);
+    }
+
+    // Constructor which moves every joint by the given offset
+    public FingerChainCache(float offsetX, float offsetY, float offsetZ)
+    {
+        this.offsetX = offsetX;
+        this.offsetY = offsetY;
+        this.offsetZ = offsetZ;
+
+        for (int loop = 0; loop < MAX_HANDS; ++loop)
+        {
+            hands[loop] = new HandChains();
+        }
+    }
+
+    // Method to call once at the start of each frame, before solving any fingers. Drops any hands which haven't been
+    // seen for EVICT_AFTER_FRAMES frames.
+    public void beginFrame()
+    {
+        ++frameNumber;
+
+        for (HandChains hc : hands)
+        {
+            if (hc.handId != -1 && frameNumber - hc.lastSeenFrame > EVICT_AFTER_FRAMES)
+            {
+                hc.clear();
+            }
+        }
+    }
+
+    // Method to update and solve the chain for a finger, returning the solved chain.
+    //
+    // The tip location and finger direction (pointing from the base of the finger towards the tip) and finger length
+    // are as given by the Leap. The arm direction (pointing from the elbow towards the wrist) is used to place the
+    // carpometacarpal joint at the base of each non-thumb finger.
+    //
+    // Note: The returned chain belongs to the cache and is updated in place next frame - don't hold on to it.
+    public FabrikChain3D solveFinger(int handId, int fingerId, boolean thumb,
+                                     float tipX, float tipY, float tipZ,
+                                     float dirX, float dirY, float dirZ,
+                                     float length,
+                                     float armX, float armY, float armZ)
+    {
+        FingerChain fc = lookup(handId, fingerId);
+        singleFinger.setFinger(0, tipX, tipY, tipZ, dirX, dirY, dirZ, length, armX, armY, armZ);
+        singleFinger.estimate(1);
+        return solveFinger(fc, fc.generation, thumb, singleFinger, 0, null);
+    }
+
+    // Method to find (or make room for) the cache entry for a finger, marking it as used this frame
+    FingerChain lookup(int handId, int fingerId)
+    {
+        return getHand(handId).getFinger(fingerId, frameNumber);
+    }
+
+    // Method to update and solve the chain for a finger which has already been looked up, where generation is the
+    // entry's generation when it was looked up, and the finger's joints have already been estimated by the given
+    // estimator (which isn't changed). This only touches the given entry, so different fingers can be solved on
+    // different threads at the same time - and as lookups never touch the chain itself, a run of lookups can be done
+    // ahead of the solves without changing the result.
+    //
+    // If a scheduler is given, it decides whether the finger has moved enough to be worth solving, whether there's time
+    // left to solve it this frame, and with what settings. Without one, every finger is solved with the chain's own settings.
+    FabrikChain3D solveFinger(FingerChain fc, int generation, boolean thumb, JointEstimator estimator, int finger, IKSolveScheduler scheduler)
+    {
+        // Take the joint locations from the golden-ratio based anatomical model
+        Vec3f[] joints = fc.joints;
+        for (int joint = 0; joint < JointEstimator.NUM_JOINTS; ++joint)
+        {
+            joints[joint].set( estimator.getJointX(finger, joint) + offsetX, estimator.getJointY(finger, joint) + offsetY, estimator.getJointZ(finger, joint) + offsetZ );
+        }
+        Vec3f tip      = joints[JointEstimator.TIP];
+        Vec3f distal   = joints[JointEstimator.DISTAL];
+        Vec3f proximal = joints[JointEstimator.PROXIMAL];
+        Vec3f meta     = joints[JointEstimator.KNUCKLE];
+        Vec3f carpo    = joints[JointEstimator.WRIST];
+
+        float length = estimator.getLength(finger);
+        float dirX   = estimator.getDirectionX(finger);
+        float dirY   = estimator.getDirectionY(finger);
+        float dirZ   = estimator.getDirectionZ(finger);
+
+        // We solve for a target just past the fingertip, with the base pinned where the model says it is
+        float overshoot = length * TARGET_OVERSHOOT;
+        float targetX   = tip.x + dirX * overshoot;
+        float targetY   = tip.y + dirY * overshoot;
+        float targetZ   = tip.z + dirZ * overshoot;
+        Vec3f newBase   = thumb ? meta : carpo;
+
+        if (!warmStart || fc.chain == null || fc.chainGeneration != generation || fc.thumb != thumb || Math.abs(fc.length - length) > length * LENGTH_TOLERANCE)
+        {
+            // New finger, one whose size has changed, or we're not warm-starting - build it in a straight line
+            fc.chain           = buildChain(thumb, carpo, meta, proximal, distal, tip);
+            fc.chainGeneration = generation;
+            fc.thumb  = thumb;
+            fc.length = length;
+            fc.base.set(newBase);
+            chainsBuilt.incrementAndGet();
+        }
+        else
+        {
+            // Existing finger - if it's barely moved since it was last solved then that solution will do...
+            if ( scheduler != null && scheduler.isUnmoved(fc.base, newBase, fc.target, targetX, targetY, targetZ) )
+            {
+                return fc.chain;
+            }
+
+            // ...otherwise move last frame's solution across so its base sits on the new base location
+            translate( fc.chain, fc.scratch, newBase.x - fc.base.x, newBase.y - fc.base.y, newBase.z - fc.base.z );
+            fc.base.set(newBase);
+            chainsReused.incrementAndGet();
+        }
+
+        fc.chain.setBaseLocation(fc.base);
+        if (scheduler == null)
+        {
+            fc.target.set(targetX, targetY, targetZ);
+            fc.chain.solveForTarget(fc.target);
+            return fc.chain;
+        }
+
+        // Out of time this frame - the chain keeps last frame's shape, at the new base location
+        if ( !scheduler.beforeSolve(fc.chain) )
+        {
+            return fc.chain;
+        }
+
+        fc.target.set(targetX, targetY, targetZ);
+        long solveStart = System.nanoTime();
+        fc.chain.solveForTarget(fc.target);
+        scheduler.afterSolve( System.nanoTime() - solveStart, fc.chain.getCurrentSolveDistance() );
+        return fc.chain;
+    }
+
+    // Method to forget every cached chain
+    public void clear()
+    {
+        for (HandChains hc : hands)
+        {
+            hc.clear();
+        }
+    }
+
+    // Method to make a new, empty cache with the same offset and warm-start setting as this one
+    FingerChainCache copySettings()
+    {
+        FingerChainCache copy = new FingerChainCache(offsetX, offsetY, offsetZ);
+        copy.warmStart = warmStart;
+        return copy;
+    }
+
+    // Method to add the statistics of another cache to this one's
+    void addStatistics(FingerChainCache other)
+    {
+        chainsBuilt.addAndGet( other.getChainsBuilt() );
+        chainsReused.addAndGet( other.getChainsReused() );
+    }
+
+    // ----- Getters / setters -----
+
+    public boolean isWarmStart()  { return warmStart;          }
+    public long getChainsBuilt()  { return chainsBuilt.get();  }
+    public long getChainsReused() { return chainsReused.get(); }
+
+    public void setWarmStart(boolean value) { warmStart = value; }
+
+    @Override
+    public String toString()
+    {
+        return "FingerChainCache [built=" + getChainsBuilt() + ", reused=" + getChainsReused() + "]";
+    }
+
+    // ----- Helpers -----
+
+    // Method to find the chains for a hand, taking over a free slot (or the least recently seen one) for a new hand
+    private HandChains getHand(int handId)
+    {
+        HandChains oldest = null;
+        for (HandChains hc : hands)
+        {
+            if (hc.handId == handId)
+            {
+                hc.lastSeenFrame = frameNumber;
+                return hc;
+            }
+
+            if (oldest == null || hc.handId == -1 || (oldest.handId != -1 && hc.lastSeenFrame < oldest.lastSeenFrame))
+            {
+                oldest = hc;
+            }
+        }
+
+        oldest.clear();
+        oldest.handId        = handId;
+        oldest.lastSeenFrame = frameNumber;
+        return oldest;
+    }
+
+    // Method to build a chain from the joint locations, with the same bones and colours as the application always had
+    private static FabrikChain3D buildChain(boolean thumb, Vec3f carpo, Vec3f meta, Vec3f proximal, Vec3f distal, Vec3f tip)
+    {
+        FabrikChain3D chain = new FabrikChain3D();
+
+        // Only add a 4th segment if we are NOT a thumb!
+        if (!thumb)
+        {
+            FabrikBone3D carpoBone = new FabrikBone3D( new Vec3f(carpo), new Vec3f(meta) );
+            carpoBone.setColour(Utils.RED);
+            chain.addBone(carpoBone);
+        }
+
+        FabrikBone3D metaBone   = new FabrikBone3D( new Vec3f(meta),     new Vec3f(proximal) ); metaBone.setColour(Utils.MID_RED);
+        FabrikBone3D distilBone = new FabrikBone3D( new Vec3f(proximal), new Vec3f(distal)   ); distilBone.setColour(Utils.RED);
+        FabrikBone3D tipBone    = new FabrikBone3D( new Vec3f(distal),   new Vec3f(tip)      ); tipBone.setColour(Utils.MID_RED);
+
+        chain.addBone(metaBone);
+        chain.addBone(distilBone);
+        chain.addBone(tipBone);
+
+        return chain;
+    }
+
+    // Method to move every bone in a chain by the same amount, keeping its shape
+    private static void translate(FabrikChain3D chain, Vec3f scratch, float dx, float dy, float dz)
+    {
+        for (int loop = 0; loop < chain.getNumBones(); ++loop)
+        {
+            FabrikBone3D bone = chain.getBone(loop);
+
+            Vec3f start = bone.getStartLocation();
+            bone.setStartLocation( scratch.set(start.x + dx, start.y + dy, start.z + dz) );
+
+            Vec3f end = bone.getEndLocation();
+            bone.setEndLocation( scratch.set(end.x + dx, end.y + dy, end.z + dz) );
+        }
+    }
+
+    // ----- Cache entries -----
+
+    // The chains for each finger of one hand
+    static final class HandChains
+    {
+        int handId = -1;
+        long lastSeenFrame;
+
+        final FingerChain[] fingers = new FingerChain[FINGERS_PER_HAND];
+
+        HandChains()
+        {
+            for (int loop = 0; loop < FINGERS_PER_HAND; ++loop)
+            {
+                fingers[loop] = new FingerChain();
+            }
+        }
+
+        // Method to find the entry for a finger, taking over a free slot (or the least recently used one) if it's new
+        FingerChain getFinger(int fingerId, long frameNumber)
+        {
+            FingerChain oldest = fingers[0];
+            for (FingerChain fc : fingers)
+            {
+                if (fc.fingerId == fingerId)
+                {
+                    fc.lastUsedFrame = frameNumber;
+                    return fc;
+                }
+
+                if (fc.lastUsedFrame < oldest.lastUsedFrame)
+                {
+                    oldest = fc;
+                }
+            }
+
+            oldest.clear();
+            oldest.fingerId      = fingerId;
+            oldest.lastUsedFrame = frameNumber;
+            return oldest;
+        }
+
+        void clear()
+        {
+            handId        = -1;
+            lastSeenFrame = 0L;
+            for (FingerChain fc : fingers)
+            {
+                fc.clear();
+            }
+        }
+    }
+
+    // The chain for a single finger, along with what it was built from
+    static final class FingerChain
+    {
+        int fingerId = -1;
+        long lastUsedFrame;
+
+        // Bumped every time this entry is cleared and handed to another finger. The chain is only re-used while the
+        // generation it was built for is still current.
+        int generation;
+        int chainGeneration = -1;
+
+        boolean thumb;
+        float length;
+        FabrikChain3D chain;
+
+        // Where the base of the chain is pinned, and the target it was last solved for. These are owned by this entry
+        // so they can be handed to the chain without being changed underneath it.
+        final Vec3f base   = new Vec3f();
+        final Vec3f target = new Vec3f();
+
+        // Scratch joint locations (in JointEstimator order, tip first) and bone end point
+        final Vec3f[] joints  = { new Vec3f(), new Vec3f(), new Vec3f(), new Vec3f(), new Vec3f() };
+        final Vec3f   scratch = new Vec3f();
+
+        void clear()
+        {
+            fingerId      = -1;
+            lastUsedFrame = 0L;
+            ++generation;
+        }
+    }
+}
@@ -0,0 +1,266 @@
+package au.edu.federation.calikoleaptest;
+
+import au.edu.federation.leapwebsocket.JointEstimator;
+import au.edu.federation.leapwebsocket.OneEuroPredictor;
+import au.edu.federation.leapwebsocket.WebSocketFrame;
+import au.edu.federation.leapwebsocket.WebSocketHand;
+import au.edu.federation.leapwebsocket.WebSocketPointable;
+
+import com.leapmotion.leap.Finger;
+import com.leapmotion.leap.Frame;
+import com.leapmotion.leap.Hand;
+import com.leapmotion.leap.Vector;
+
+import java.util.List;
+
+// Class holding just the parts of a frame the IK solver needs - for each hand its id and arm direction, and for each
+// finger its id, tip location and velocity, direction and length - copied out into flat arrays.
+//
+// Pulling this out of the Leap's Frame (or a WebSocketFrame from a recording) up front means the solver doesn't have
+// to call back into the Leap API from its worker threads, and that frames from either source are solved the same way.
+// Inputs are meant to be re-used: call set() again to fill one in with a new frame.
+//
+// Fingers are stored in slots, MAX_FINGERS per hand, so the fingers of hand h are in slots h * MAX_FINGERS onwards.
+// Per hand vectors are stored as x/y/z triples, while each finger's tip, direction, length and arm direction go
+// straight into a JointEstimator, which estimates the joints of every finger in the frame in one go when they're first
+// asked for.
+//
+// To make up for the time it takes a frame to reach the screen, predictTips() can move each fingertip to where a
+// OneEuroPredictor expects it to be a little later - the rest of the finger is estimated back from the tip, so the
+// whole finger moves with it.
+public class IKFrameInput
+{
+    public static final int MAX_HANDS   = 2;
+    public static final int MAX_FINGERS = 5;
+    public static final int MAX_SLOTS   = MAX_HANDS * MAX_FINGERS;
+
+    long frameId = -1L;
+    long timestamp;
+    int numHands;
+
+    // ----- Per hand -----
+
+    final int[]     handIds       = new int[MAX_HANDS];
+    final int[]     numFingers    = new int[MAX_HANDS];
+    final float[]   armDirections = new float[MAX_HANDS * 3];
+
+    // ----- Per finger slot -----
+
+    final int[]     fingerIds     = new int[MAX_SLOTS];
+    final boolean[] thumbs        = new boolean[MAX_SLOTS];
+    final float[]   tipVelocities = new float[MAX_SLOTS * 3];
+
+    final JointEstimator joints   = new JointEstimator(MAX_SLOTS);
+    private boolean jointsEstimated;
+
+    // Somewhere to put each tip while it's being predicted, as the estimator keeps its x, y and z apart
+    private final float[] tip = new float[3];
+
+    // Method to empty this input ready to be filled in again
+    public void clear()
+    {
+        frameId   = -1L;
+        timestamp = 0L;
+        numHands  = 0;
+        for (int loop = 0; loop < MAX_HANDS; ++loop)
+        {
+            numFingers[loop] = 0;
+        }
+        jointsEstimated = false;
+    }
+
+    // Method to fill this input in from a live Leap frame. Hands past MAX_HANDS and fingers past MAX_FINGERS are ignored.
+    public IKFrameInput set(Frame frame)
+    {
+        clear();
+        frameId   = frame.id();
+        timestamp = frame.timestamp();
+
+        if (!frame.isValid())
+        {
+            return this;
+        }
+
+        for (Hand hand : frame.hands())
+        {
+            if (numHands == MAX_HANDS)
+            {
+                break;
+            }
+
+            Vector arm = hand.arm().direction();
+            int h = addHand( hand.id(), arm.getX(), arm.getY(), arm.getZ() );
+
+            for (Finger f : hand.fingers())
+            {
+                Vector tip = f.tipPosition();
+                Vector dir = f.direction();
+                int slot = addFinger( h, f.id(), f.type() == Finger.Type.TYPE_THUMB, tip.getX(), tip.getY(), tip.getZ(), dir.getX(), dir.getY(), dir.getZ(), f.length() );
+                if (slot != -1)
+                {
+                    Vector vel = f.tipVelocity();
+                    setTipVelocity( slot, vel.getX(), vel.getY(), vel.getZ() );
+                }
+            }
+        }
+
+        return this;
+    }
+
+    // Method to fill this input in from a WebSocketFrame, e.g. one read back from a recording.
+    // Note: The WebSocket data doesn't include the arm, so the palm direction stands in for the arm direction, and the
+    // thumb is taken to be the first finger listed for each hand (which is the order the Leap sends them in).
+    public IKFrameInput set(WebSocketFrame wsf)
+    {
+        clear();
+        frameId   = wsf.getId();
+        timestamp = wsf.getTimestamp();
+
+        List<WebSocketHand> hands           = wsf.hands();
+        List<WebSocketPointable> pointables = wsf.pointables();
+        for (int i = 0; i < hands.size() && numHands < MAX_HANDS; ++i)
+        {
+            WebSocketHand wsh = hands.get(i);
+            float[] palmDirection = wsh.getPalmDirection();
+            int h = addHand( wsh.getId(), palmDirection[0], palmDirection[1], palmDirection[2] );
+
+            for (int j = 0; j < pointables.size(); ++j)
+            {
+                WebSocketPointable wsp = pointables.get(j);
+                if (wsp.getHandId() != wsh.getId() || wsp.isTool())
+                {
+                    continue;
+                }
+
+                float[] tip = wsp.getTipPosition();
+                float[] dir = wsp.getDirection();
+                int slot = addFinger( h, wsp.getId(), numFingers[h] == 0, tip[0], tip[1], tip[2], dir[0], dir[1], dir[2], wsp.getLength() );
+                if (slot != -1)
+                {
+                    float[] vel = wsp.getTipVelocity();
+                    setTipVelocity( slot, vel[0], vel[1], vel[2] );
+                }
+            }
+        }
+
+        return this;
+    }
+
+    // Method to add a hand, returning its index
+    public int addHand(int handId, float armX, float armY, float armZ)
+    {
+        if (numHands == MAX_HANDS)
+        {
+            throw new IllegalStateException("An IKFrameInput can only hold " + MAX_HANDS + " hands.");
+        }
+
+        int h = numHands++;
+        handIds[h]    = handId;
+        numFingers[h] = 0;
+        set3(armDirections, h, armX, armY, armZ);
+        return h;
+    }
+
+    // Method to add a finger to a hand, returning its slot. Returns -1 (and ignores the finger) if the hand already has
+    // MAX_FINGERS. The finger's tip velocity starts off as zero - see setTipVelocity.
+    public int addFinger(int hand, int fingerId, boolean thumb, float tipX, float tipY, float tipZ, float dirX, float dirY, float dirZ, float length)
+    {
+        if (numFingers[hand] == MAX_FINGERS)
+        {
+            return -1;
+        }
+
+        int slot = hand * MAX_FINGERS + numFingers[hand]++;
+        int arm  = hand * 3;
+        fingerIds[slot] = fingerId;
+        thumbs[slot]    = thumb;
+        joints.setFinger( slot, tipX, tipY, tipZ, dirX, dirY, dirZ, length, armDirections[arm], armDirections[arm + 1], armDirections[arm + 2] );
+        set3(tipVelocities, slot, 0.0f, 0.0f, 0.0f);
+        jointsEstimated = false;
+        return slot;
+    }
+
+    // Method to set the velocity of a finger's tip, in mm/s
+    public void setTipVelocity(int slot, float x, float y, float z)
+    {
+        set3(tipVelocities, slot, x, y, z);
+    }
+
+    // Method to replace every fingertip with where the predictor expects it to be leadSeconds after this frame was
+    // captured. The predictor keeps track of each finger by id between frames, so feed it every frame in order.
+    public void predictTips(OneEuroPredictor predictor, float leadSeconds)
+    {
+        predictor.beginFrame();
+        for (int h = 0; h < numHands; ++h)
+        {
+            for (int f = 0; f < numFingers[h]; ++f)
+            {
+                int slot = h * MAX_FINGERS + f;
+                tip[0] = joints.getJointX(slot, JointEstimator.TIP);
+                tip[1] = joints.getJointY(slot, JointEstimator.TIP);
+                tip[2] = joints.getJointZ(slot, JointEstimator.TIP);
+                predictor.filter(fingerIds[slot], timestamp, tip, 0, tipVelocities, slot * 3, leadSeconds, tip, 0);
+                joints.setTip(slot, tip[0], tip[1], tip[2]);
+            }
+        }
+        jointsEstimated = false;
+    }
+
+    // Method to get the estimated joint locations of every finger, by slot, estimating them first if need be.
+    // Note: As this may fill in the estimates, call it once from the thread that filled this input in before sharing it.
+    public JointEstimator getJoints()
+    {
+        if (!jointsEstimated)
+        {
+            joints.estimate(numHands * MAX_FINGERS);
+            jointsEstimated = true;
+        }
+        return joints;
+    }
+
+    // Method to make this input a copy of another
+    public IKFrameInput copyFrom(IKFrameInput other)
+    {
+        frameId   = other.frameId;
+        timestamp = other.timestamp;
+        numHands  = other.numHands;
+        System.arraycopy(other.handIds,       0, handIds,       0, MAX_HANDS);
+        System.arraycopy(other.numFingers,    0, numFingers,    0, MAX_HANDS);
+        System.arraycopy(other.armDirections, 0, armDirections, 0, MAX_HANDS * 3);
+        System.arraycopy(other.fingerIds,     0, fingerIds,     0, MAX_SLOTS);
+        System.arraycopy(other.thumbs,        0, thumbs,        0, MAX_SLOTS);
+        System.arraycopy(other.tipVelocities, 0, tipVelocities, 0, MAX_SLOTS * 3);
+        joints.copyFrom(other.joints, MAX_SLOTS);
+        jointsEstimated = other.jointsEstimated;
+        return this;
+    }
+
+    // ----- Getters -----
+
+    public long getFrameId()              { return frameId;                  }
+    public long getTimestamp()            { return timestamp;                }
+    public int getNumHands()              { return numHands;                 }
+    public int getHandId(int hand)        { return handIds[hand];            }
+    public int getNumFingers(int hand)    { return numFingers[hand];         }
+    public int getFingerId(int slot)      { return fingerIds[slot];          }
+    public boolean isThumb(int slot)      { return thumbs[slot];             }
+    public float getLength(int slot)      { return joints.getLength(slot);   }
+
+    // Method to return the total number of fingers across all hands
+    public int getTotalFingers()
+    {
+        int total = 0;
+        for (int h = 0; h < numHands; ++h)
+        {
+            total += numFingers[h];
+        }
+        return total;
+    }
+
+    private static void set3(float[] array, int index, float x, float y, float z)
+    {
+        array[index * 3]     = x;
+        array[index * 3 + 1] = y;
+        array[index * 3 + 2] = z;
+    }
+}
@@ -0,0 +1,198 @@
+package au.edu.federation.calikoleaptest;
+
+import au.edu.federation.caliko.FabrikChain3D;
+import au.edu.federation.utils.Vec3f;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+// Class which keeps the finger solves for each frame within a time budget, so that a few slow solves can't hold up the
+// frames behind them. Each frame:
+//
+// - the frame's budget is shared out equally between its fingers (so a hand gets the share of however many fingers it
+//   has), taking into account how many are being solved at once,
+// - a finger whose target and base haven't moved more than the movement epsilon since it was last solved isn't solved
+//   again - last frame's solution still stands,
+// - every chain that is solved gets this frame's maximum iteration count and solve distance threshold, and
+// - once the frame's deadline has passed, any fingers not yet started are dropped for this frame. With warm-starting
+//   their chains are still moved to the new base location, so they keep last frame's shape rather than vanishing.
+//
+// At the end of each frame the settings are adjusted for the next one: if the frame overran its budget (or any finger
+// overran its share) the iteration count is cut and the threshold loosened, and while frames are finishing well
+// within budget they're moved back towards the defaults. So the solve error only grows for as long as we're short of
+// time, and by no more than it needs to.
+//
+// The per-finger methods are safe to call from many threads at once (as the ParallelIKEngine does), but beginFrame and
+// endFrame must be called from one thread, before and after the frame's solves.
+//
+// Example usage:
+//
+//     IKSolveScheduler scheduler = new IKSolveScheduler(4000000L);    // 4ms per frame
+//     ParallelIKEngine engine = new ParallelIKEngine( new FingerChainCache() );
+//     engine.setScheduler(scheduler);
+//     ...
+//     System.out.println(scheduler);                                 // Deadline misses, solve error etc.
+public class IKSolveScheduler
+{
+    // Caliko's own defaults, which we start from and return to when there's time
+    public static final int   DEFAULT_MAX_ITERATIONS   = 20;
+    public static final float DEFAULT_SOLVE_THRESHOLD  = 1.0f;
+
+    // The least we'll cut the iterations to, and the most we'll loosen the threshold to (in mm)
+    public static final int   MIN_ITERATIONS           = 2;
+    public static final float MAX_SOLVE_THRESHOLD      = 8.0f;
+
+    // How far (in mm) a finger's target or base has to move before we bother solving it again
+    public static final float DEFAULT_MOVEMENT_EPSILON = 0.1f;
+
+    // Frames which take less than this fraction of their budget let the settings move back towards the defaults
+    private static final float RELAX_BELOW = 0.5f;
+
+    private final long frameBudgetNanos;
+    private volatile float movementEpsilon = DEFAULT_MOVEMENT_EPSILON;
+
+    // This frame's settings, which only change between frames
+    private volatile int   maxIterations  = DEFAULT_MAX_ITERATIONS;
+    private volatile float solveThreshold = DEFAULT_SOLVE_THRESHOLD;
+
+    // This frame's timing
+    private volatile long frameStartNanos;
+    private volatile long frameDeadlineNanos;
+    private volatile long fingerBudgetNanos;
+    private final AtomicLong frameOverruns = new AtomicLong();
+
+    // Statistics
+    private long framesScheduled;
+    private long deadlineMisses;
+    private long maxOverrunNanos;
+    private final AtomicLong fingersSolved     = new AtomicLong();
+    private final AtomicLong fingersUnmoved    = new AtomicLong();
+    private final AtomicLong fingersDropped    = new AtomicLong();
+    private final AtomicLong fingerOverruns    = new AtomicLong();
+    private final AtomicLong totalErrorMicrons = new AtomicLong();   // Sum of solve distances, in microns
+    private volatile float maxError;
+
+    // Constructor taking how long all the solves for a frame may take between them
+    public IKSolveScheduler(long frameBudgetNanos)
+    {
+        this.frameBudgetNanos = frameBudgetNanos;
+    }
+
+    // ----- Per frame -----
+
+    // Method to start scheduling a frame with the given number of fingers, of which up to lanes will be solved at once
+    public void beginFrame(int numFingers, int lanes)
+    {
+        long now  = System.nanoTime();
+        int share = Math.max( 1, (numFingers + Math.max(1, lanes) - 1) / Math.max(1, lanes) );
+
+        frameStartNanos    = now;
+        frameDeadlineNanos = now + frameBudgetNanos;
+        fingerBudgetNanos  = frameBudgetNanos / share;
+        frameOverruns.set(0L);
+    }
+
+    // Method to finish a frame, updating the statistics and adjusting the settings for the next frame
+    public void endFrame()
+    {
+        long elapsed = System.nanoTime() - frameStartNanos;
+        ++framesScheduled;
+
+        if (elapsed > frameBudgetNanos || frameOverruns.get() > 0L)
+        {
+            if (elapsed > frameBudgetNanos)
+            {
+                ++deadlineMisses;
+                maxOverrunNanos = Math.max(maxOverrunNanos, elapsed - frameBudgetNanos);
+            }
+
+            // Short of time - back off quickly
+            maxIterations  = Math.max( MIN_ITERATIONS, maxIterations - Math.max(1, maxIterations / 4) );
+            solveThreshold = Math.min( MAX_SOLVE_THRESHOLD, solveThreshold * 1.5f );
+        }
+        else if (elapsed < frameBudgetNanos * RELAX_BELOW)
+        {
+            // Plenty of time - creep back towards the defaults
+            maxIterations  = Math.min( DEFAULT_MAX_ITERATIONS, maxIterations + 1 );
+            solveThreshold = Math.max( DEFAULT_SOLVE_THRESHOLD, solveThreshold / 1.25f );
+        }
+    }
+
+    // ----- Per finger -----
+
+    // Method to check whether a finger has moved little enough since it was last solved that it needn't be solved again
+    boolean isUnmoved(Vec3f lastBase, Vec3f newBase, Vec3f lastTarget, float targetX, float targetY, float targetZ)
+    {
+        float eps = movementEpsilon;
+        boolean unmoved = Math.abs(newBase.x - lastBase.x) <= eps && Math.abs(newBase.y - lastBase.y) <= eps && Math.abs(newBase.z - lastBase.z) <= eps &&
+                          Math.abs(targetX - lastTarget.x) <= eps && Math.abs(targetY - lastTarget.y) <= eps && Math.abs(targetZ - lastTarget.z) <= eps;
+        if (unmoved)
+        {
+            fingersUnmoved.incrementAndGet();
+        }
+        return unmoved;
+    }
+
+    // Method to call just before solving a chain. Returns false if the frame's deadline has already passed, in which
+    // case the chain shouldn't be solved, or otherwise applies this frame's settings to the chain and returns true.
+    boolean beforeSolve(FabrikChain3D chain)
+    {
+        if (System.nanoTime() > frameDeadlineNanos)
+        {
+            fingersDropped.incrementAndGet();
+            return false;
+        }
+
+        chain.setMaxIterationAttempts(maxIterations);
+        chain.setSolveDistanceThreshold(solveThreshold);
+        return true;
+    }
+
+    // Method to call once a chain has been solved, with how long it took and how far from its target it ended up
+    void afterSolve(long solveNanos, float solveDistance)
+    {
+        fingersSolved.incrementAndGet();
+        totalErrorMicrons.addAndGet( (long)(solveDistance * 1000.0f) );
+        if (solveDistance > maxError)
+        {
+            maxError = solveDistance;
+        }
+
+        if (solveNanos > fingerBudgetNanos)
+        {
+            fingerOverruns.incrementAndGet();
+            frameOverruns.incrementAndGet();
+        }
+    }
+
+    // ----- Getters / setters -----
+
+    public long getFrameBudgetNanos()  { return frameBudgetNanos;       }
+    public float getMovementEpsilon()  { return movementEpsilon;        }
+    public int getMaxIterations()      { return maxIterations;          }
+    public float getSolveThreshold()   { return solveThreshold;         }
+    public long getFramesScheduled()   { return framesScheduled;        }
+    public long getDeadlineMisses()    { return deadlineMisses;         }
+    public long getMaxOverrunNanos()   { return maxOverrunNanos;        }
+    public long getFingersSolved()     { return fingersSolved.get();    }
+    public long getFingersUnmoved()    { return fingersUnmoved.get();   }
+    public long getFingersDropped()    { return fingersDropped.get();   }
+    public long getFingerOverruns()    { return fingerOverruns.get();   }
+    public float getMaxError()         { return maxError;               }
+
+    // The mean distance (in mm) between the end of each solved chain and its target
+    public float getMeanError()
+    {
+        long solved = fingersSolved.get();
+        return (solved == 0L) ? 0.0f : (totalErrorMicrons.get() / 1000.0f) / solved;
+    }
+
+    public void setMovementEpsilon(float value) { movementEpsilon = value; }
+
+    @Override
+    public String toString()
+    {
+        return "IKSolveScheduler [frames=" + framesScheduled + ", deadlineMisses=" + deadlineMisses + ", maxOverrunMicros=" + maxOverrunNanos / 1000L +
+               ", solved=" + getFingersSolved() + ", unmoved=" + getFingersUnmoved() + ", dropped=" + getFingersDropped() +
+               ", meanError=" + getMeanError() + ", maxError=" + maxError + ", iterations=" + maxIterations + ", threshold=" + solveThreshold + "]";
+    }
+}
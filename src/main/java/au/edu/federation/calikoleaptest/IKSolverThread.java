@@ -0,0 +1,300 @@
+package au.edu.federation.calikoleaptest;
+
+import au.edu.federation.leapwebsocket.LatencyHistogram;
+import au.edu.federation.leapwebsocket.LatencyMonitor;
+import au.edu.federation.leapwebsocket.OneEuroPredictor;
+import au.edu.federation.leapwebsocket.SequencedPublisher;
+import au.edu.federation.leapwebsocket.SequencedPublisher.Sequenced;
+
+import com.leapmotion.leap.Bone;
+import com.leapmotion.leap.Finger;
+import com.leapmotion.leap.Frame;
+import com.leapmotion.leap.Hand;
+import com.leapmotion.leap.Vector;
+
+// Class which solves the finger chains of every visible hand in each Leap frame on its own thread, so that the render
+// loop only has to draw the results and the solver isn't held back by (or able to hold up) v-sync. The fingers
+// themselves are solved in parallel by a ParallelIKEngine.
+//
+// Frames are handed over with offer() as they arrive from the Leap, and published to the solver through a
+// SequencedPublisher. The solver waits for a frame newer than the last one it solved and always works on the most recent
+// - if more than one frame turns up while it's busy, the ones in between are skipped. Results go out through a
+// TripleBuffer of SolvedFrames, which the render loop picks up with latest().
+//
+// Given a prediction lead (see setPredictionLeadNanos) the fingertips of each frame are moved to where a
+// OneEuroPredictor expects them to be that long after the frame arrived before the chains are solved, so the solved
+// hand keeps up with the real one rather than trailing it. The Leap's own bones are drawn as they were captured.
+//
+// When the LatencyMonitor is enabled, how long each frame waits for the solver and how long it takes to solve are
+// recorded in the ik.* stages.
+//
+// Example usage:
+//
+//     IKSolverThread solver = new IKSolverThread( new FingerChainCache() );
+//     solver.start();
+//     ...
+//     solver.offer(leapFrame);                  // From one thread (e.g. the Leap listener's), for every frame
+//     ...
+//     SolvedFrame sf = solver.latest();         // From the render loop, every time round
+//     ...
+//     solver.stop();
+public class IKSolverThread
+{
+    // How long the solver waits for a new frame before checking whether it's been stopped
+    private static final long IDLE_WAIT_NANOS = 5000000L;
+
+    // Latency stages, only recorded into when LatencyMonitor.ENABLED
+    private static final LatencyHistogram QUEUE_LATENCY = LatencyMonitor.stage("ik.queue", "Frame offered to picked up by the solver");
+    private static final LatencyHistogram SOLVE_LATENCY = LatencyMonitor.stage("ik.solve", "Caliko solve of every finger in a frame");
+
+    private final ParallelIKEngine ikEngine;
+
+    // The solver's copy of the frame currently being solved
+    private final IKFrameInput input = new IKFrameInput();
+
+    // Fingertip prediction, which is only touched by the solver thread. A negative lead turns it off.
+    private final OneEuroPredictor tipPredictor = new OneEuroPredictor();
+    private volatile long predictionLeadNanos = -1L;
+
+    private final TripleBuffer<SolvedFrame> solvedFrames = new TripleBuffer<SolvedFrame>( new SolvedFrame(), new SolvedFrame(), new SolvedFrame() );
+
+    // Frames handed to the solver, numbered in the order they were offered
+    private final SequencedPublisher<PendingFrame> pendingFrames = new SequencedPublisher<PendingFrame>();
+
+    private volatile Thread solverThread;
+    private volatile boolean running;
+
+    // Statistics
+    private volatile long framesSkipped;
+    private volatile long framesSolved;
+    private volatile long totalSolveNanos;
+    private volatile long maxSolveNanos;
+
+    // Constructor which solves the fingers of each frame in parallel on the common fork-join pool
+    public IKSolverThread(FingerChainCache fingerChainCache)
+    {
+        this( new ParallelIKEngine(fingerChainCache) );
+    }
+
+    // Constructor using a particular engine
+    public IKSolverThread(ParallelIKEngine ikEngine)
+    {
+        this.ikEngine = ikEngine;
+    }
+
+    // Method to start the solver thread. Does nothing if it's already running.
+    public synchronized void start()
+    {
+        if (running)
+        {
+            return;
+        }
+
+        running = true;
+        solverThread = new Thread(this::solveLoop, "IKSolverThread");
+        solverThread.setDaemon(true);
+        solverThread.start();
+    }
+
+    // Method to stop the solver thread and wait for it to finish the frame it's on
+    public synchronized void stop()
+    {
+        Thread thread = solverThread;
+        if (thread == null)
+        {
+            return;
+        }
+
+        running = false;
+        thread.interrupt();
+
+        try
+        {
+            thread.join();
+        }
+        catch (InterruptedException ie)
+        {
+            Thread.currentThread().interrupt();
+        }
+
+        solverThread = null;
+    }
+
+    // Method to hand the solver a new Leap frame. This must always be called from the same thread (e.g. the Leap
+    // listener's).
+    public void offer(Frame frame)
+    {
+        offer( frame, System.nanoTime() );
+    }
+
+    // Method to hand the solver a Leap frame which arrived at the given System.nanoTime(), e.g. when it's been passed
+    // along a FrameBus first. The same thread rules apply.
+    public void offer(Frame frame, long arrivalNanos)
+    {
+        pendingFrames.publish( new PendingFrame(frame, arrivalNanos) );
+    }
+
+    // Method to get the most recently solved frame. This should only be called from the one (render) thread, and the
+    // frame returned belongs to that thread until it next calls latest(). Check hasFrame() on the result, as nothing
+    // may have been solved yet.
+    public SolvedFrame latest()
+    {
+        solvedFrames.update();
+        return solvedFrames.getReadBuffer();
+    }
+
+    // Method to set how far ahead of each frame to predict the fingertips - ideally the time until the frame will be on
+    // screen. Pass a negative lead to stop predicting. Safe to call from any thread.
+    public void setPredictionLeadNanos(long leadNanos) { predictionLeadNanos = leadNanos; }
+
+    // ----- Getters -----
+
+    public boolean isRunning()           { return running;                     }
+    public long getPredictionLeadNanos() { return predictionLeadNanos;         }
+    public long getFramesOffered()       { return pendingFrames.getSequence(); }
+    public long getFramesSkipped()       { return framesSkipped;               }
+    public long getFramesSolved()        { return framesSolved;                }
+    public long getMaxSolveNanos()       { return maxSolveNanos;               }
+
+    public long getMeanSolveNanos()
+    {
+        long solved = framesSolved;
+        return (solved == 0L) ? 0L : totalSolveNanos / solved;
+    }
+
+    @Override
+    public String toString()
+    {
+        return "IKSolverThread [offered=" + getFramesOffered() + ", solved=" + getFramesSolved() + ", skipped=" + getFramesSkipped() +
+               ", meanSolveMicros=" + getMeanSolveNanos() / 1000L + ", maxSolveMicros=" + getMaxSolveNanos() / 1000L +
+               (predictionLeadNanos < 0L ? "" : ", predictionLeadMicros=" + predictionLeadNanos / 1000L) + "]" +
+               (ikEngine.getScheduler() == null ? "" : " " + ikEngine.getScheduler());
+    }
+
+    // ----- Solver thread -----
+
+    private void solveLoop()
+    {
+        long lastSequence = 0L;
+        while (running)
+        {
+            Sequenced<PendingFrame> next;
+            try
+            {
+                next = pendingFrames.awaitNewer(lastSequence, IDLE_WAIT_NANOS);
+            }
+            catch (InterruptedException ie)
+            {
+                // We've been stopped
+                break;
+            }
+            if (next == null)
+            {
+                continue;
+            }
+
+            framesSkipped += next.getSequence() - lastSequence - 1L;
+            lastSequence = next.getSequence();
+            PendingFrame pf = next.getValue();
+
+            SolvedFrame sf = solvedFrames.getWriteBuffer();
+            try
+            {
+                solve(pf.frame, pf.arrivalNanos, sf);
+            }
+            catch (RuntimeException re)
+            {
+                // Don't let one bad frame take the solver down with it
+                re.printStackTrace();
+                continue;
+            }
+
+            sf.publishNanos = System.nanoTime();
+            solvedFrames.publish();
+
+            long solveNanos = sf.publishNanos - sf.solveStartNanos;
+            totalSolveNanos += solveNanos;
+            if (solveNanos > maxSolveNanos) { maxSolveNanos = solveNanos; }
+            ++framesSolved;
+
+            if (LatencyMonitor.ENABLED)
+            {
+                QUEUE_LATENCY.record( sf.getQueueNanos() );
+                SOLVE_LATENCY.record(solveNanos);
+            }
+        }
+    }
+
+    // Method to fill in a SolvedFrame from every hand in a Leap frame
+    private void solve(Frame frame, long arrivalNanos, SolvedFrame sf)
+    {
+        long solveStartNanos = System.nanoTime();
+
+        // Solve our chains for all the fingers at once, from where we expect the tips to be by the time they're drawn...
+        input.set(frame);
+        long leadNanos = predictionLeadNanos;
+        if (leadNanos >= 0L)
+        {
+            input.predictTips(tipPredictor, leadNanos / 1.0e9f);
+        }
+        ikEngine.solve(input, sf);
+        sf.arrivalNanos    = arrivalNanos;
+        sf.solveStartNanos = solveStartNanos;
+
+        if (!frame.isValid())
+        {
+            return;
+        }
+
+        // ...and copy out the Leap's own bones, from the wrist end of the metacarpal to the fingertip, into the same
+        // slots (the hands and fingers come out in the same order as IKFrameInput.set saw them)
+        int h = 0;
+        for (Hand hand : frame.hands())
+        {
+            if (h == SolvedFrame.MAX_HANDS)
+            {
+                break;
+            }
+
+            int f = 0;
+            for (Finger finger : hand.fingers())
+            {
+                if (f == SolvedFrame.MAX_FINGERS)
+                {
+                    break;
+                }
+
+                int slot  = h * SolvedFrame.MAX_FINGERS + f;
+                int joint = 0;
+                for ( Bone.Type boneType : Bone.Type.values() )
+                {
+                    Bone bone = finger.bone(boneType);
+                    if (joint == 0)
+                    {
+                        Vector prev = bone.prevJoint();
+                        sf.setLeapJoint(slot, joint++, prev.getX(), prev.getY(), prev.getZ());
+                    }
+                    Vector next = bone.nextJoint();
+                    sf.setLeapJoint(slot, joint++, next.getX(), next.getY(), next.getZ());
+                }
+
+                ++f;
+            }
+
+            ++h;
+        }
+    }
+
+    // A frame waiting to be solved, along with when it arrived
+    private static final class PendingFrame
+    {
+        final Frame frame;
+        final long arrivalNanos;
+
+        PendingFrame(Frame frame, long arrivalNanos)
+        {
+            this.frame        = frame;
+            this.arrivalNanos = arrivalNanos;
+        }
+    }
+}
@@ -0,0 +1,23 @@
+package au.edu.federation.calikoleaptest;
+
+import com.leapmotion.leap.Frame;
+
+// Class holding one slot of the LeapListener's FrameBus - a Leap frame and when it arrived. The slots are re-used, so
+// consumers should copy out anything they need from the event itself rather than holding on to it (holding on to the
+// Frame is fine).
+public class LeapFrameEvent
+{
+    private Frame frame;
+    private long arrivalNanos;
+
+    void set(Frame frame, long arrivalNanos)
+    {
+        this.frame        = frame;
+        this.arrivalNanos = arrivalNanos;
+    }
+
+    // ----- Getters -----
+
+    public Frame getFrame()       { return frame;        }
+    public long getArrivalNanos() { return arrivalNanos; } // System.nanoTime() when the frame arrived from the Leap
+}
@@ -1,16 +1,39 @@
 package au.edu.federation.calikoleaptest;
 
+import au.edu.federation.leapwebsocket.DeliveryPolicy;
+import au.edu.federation.leapwebsocket.FrameBus;
+import au.edu.federation.leapwebsocket.FrameBus.WaitStrategy;
+import au.edu.federation.leapwebsocket.LatencyHistogram;
+import au.edu.federation.leapwebsocket.LatencyMonitor;
 import au.edu.federation.leapwebsocket.LeapWebSocket;
+import au.edu.federation.leapwebsocket.SensorClock;
 import com.leapmotion.leap.Controller;
 import com.leapmotion.leap.Frame;
 import com.leapmotion.leap.Listener;
 import org.java_websocket.drafts.Draft_6455;
 
-import java.net.URI;
 import java.net.URISyntaxException;
 
+// Class listening for frames from the Leap. Each frame is published into a FrameBus on the Leap's thread and picked up
+// by whatever wants it (the console log, the IK solver and so on) on their own threads - add them with
+// LeapListener.getFrameBus().addConsumer().
+//
+// When the LatencyMonitor is enabled, how long ago each frame was captured when it reached us and how long the Leap's
+// thread spent publishing it are recorded in the listener.* stages.
+//
+// Example usage:
+//
+//     LeapListener.getFrameBus().addConsumer("solver", (event, sequence, endOfBatch) -> ..., DeliveryPolicy.LATEST, WaitStrategy.BLOCKING);
+//     leapController.addListener( new LeapListener(LeapListener.ListenerType.USB_LISTENER) );
 public class LeapListener extends Listener
 {
+    // Number of frames the bus holds - at 110fps this is over half a second for a consumer to fall behind by before the
+    // Leap's thread has to wait for it
+    private static final int FRAME_BUS_SIZE = 64;
+
+    // How long to wait on exit for the consumers to finish with the frames already published
+    private static final long FRAME_BUS_DRAIN_NANOS = 2000000000L;
+
     // A listener is either a a USB listener or a websocket listener
     public enum ListenerType { USB_LISTENER, WEBSOCKET_LISTENER }
 
@@ -20,6 +43,16 @@ public class LeapListener extends Listener
     // Websocket we can listen on if we're not a USB listener
     private static LeapWebSocket leapWebSocket;
 
+    // Bus each Leap frame is published into. Only ever published to from onFrame on the Leap's thread.
+    private static final FrameBus<LeapFrameEvent> frameBus = new FrameBus<LeapFrameEvent>(FRAME_BUS_SIZE, LeapFrameEvent::new);
+
+    // Latency stages, only recorded into when LatencyMonitor.ENABLED
+    private static final LatencyHistogram RECEIVE_LATENCY  = LatencyMonitor.stage("listener.receive", "Leap timestamp to frame received from the Leap");
+    private static final LatencyHistogram ON_FRAME_LATENCY = LatencyMonitor.stage("listener.onFrame", "Frame received from the Leap to published on the bus");
+
+    // Relates the Leap's frame timestamps to our clock. Only observed from onFrame on the Leap's thread.
+    private static final SensorClock sensorClock = new SensorClock();
+
     // Constructor
     LeapListener(ListenerType lt)
     {
@@ -28,8 +61,21 @@ public class LeapListener extends Listener
 
         // Assign the listener type
         leapListenerType = lt;
+
+        // Log frames to the console without holding up the Leap's thread - if the console can't keep up then it just
+        // skips to the latest frame
+        frameBus.addConsumer("console", LeapListener::logFrame, DeliveryPolicy.LATEST, WaitStrategy.SLEEPING);
     }
 
+    // Method to get the bus Leap frames are published into, to add consumers to
+    public static FrameBus<LeapFrameEvent> getFrameBus() { return frameBus; }
+
+    public static ListenerType getListenerType() { return leapListenerType; }
+
+    // Method to get the clock relating the Leap's frame timestamps to System.nanoTime(), e.g. to see how long ago a frame
+    // was captured. It only follows the Leap while the LatencyMonitor is enabled.
+    public static SensorClock getSensorClock() { return sensorClock; }
+
     @Override
     public void onInit(Controller controller)
     {
@@ -38,10 +84,11 @@ public class LeapListener extends Listener
         // If we're using the WebSocket interface then initialise a LeapWebSocket
         if (leapListenerType == ListenerType.WEBSOCKET_LISTENER)
         {
-            // Initialise the leap socket to capture the web socket data. Default port is 6437.
+            // Initialise the leap socket to capture the web socket data. Default port is 6437 - set the leap.websocket.uri
+            // system property to connect elsewhere (e.g. to a LeapWebSocketEmulator).
             try
             {
-                leapWebSocket = new LeapWebSocket( new URI( "ws://localhost:6437" ), new Draft_6455() );
+                leapWebSocket = new LeapWebSocket( LeapWebSocket.getDefaultURI(), new Draft_6455() );
             }
             catch (URISyntaxException e)
             {
@@ -67,12 +114,30 @@ public class LeapListener extends Listener
     @Override
     public void onFrame(Controller controller)
     {
-        Frame leapFrame = controller.frame();
+        long arrivalNanos = System.nanoTime();
+        Frame frame = controller.frame();
+
+        // Just publish the frame - everything else happens on the consumers' threads
+        long sequence = frameBus.next();
+        frameBus.get(sequence).set(frame, arrivalNanos);
+        frameBus.publish(sequence);
+
+        if (LatencyMonitor.ENABLED)
+        {
+            long timestamp = frame.timestamp();
+            sensorClock.observe(timestamp, arrivalNanos);
+            RECEIVE_LATENCY.record( sensorClock.ageNanos(timestamp, arrivalNanos) );
+            ON_FRAME_LATENCY.recordSince(arrivalNanos);
+        }
+    }
+
+    // Console consumer
+    private static void logFrame(LeapFrameEvent event, long sequence, boolean endOfBatch)
+    {
+        Frame leapFrame = event.getFrame();
 
-        // Update from the USB obtained frame if that's what we're listening to...
         if (leapListenerType == ListenerType.USB_LISTENER)
         {
-            Application.updateFrame(leapFrame);
             System.out.println("Updating frame @ " + leapFrame.timestamp());
         }
 
@@ -84,6 +149,9 @@ public class LeapListener extends Listener
     {
         System.out.println("LeapListener exiting.");
 
+        // Let the consumers finish with the frames already published
+        frameBus.shutdown(FRAME_BUS_DRAIN_NANOS);
+
         // If we're a web socket listener then close our connection to the web socket
         if (leapListenerType == ListenerType.WEBSOCKET_LISTENER)
         {
@@ -0,0 +1,137 @@
+package au.edu.federation.calikoleaptest;
+
+import au.edu.federation.utils.Colour4f;
+import au.edu.federation.utils.Vec3f;
+
+import java.util.Arrays;
+
+// Class which collects all of the line segments to be drawn in a frame - their end points, colours and widths - into a
+// single packed float array, so they can be uploaded to the GPU in one go and drawn together by a LineBatchRenderer
+// rather than each being set up, uploaded and drawn on its own. Nothing in here touches OpenGL, so batches can be built
+// (and checked) without a window.
+//
+// Each vertex is FLOATS_PER_VERTEX floats: x, y, z, then the r, g, b and a of its line's colour. Each line is two
+// vertices. As the line width is set once per draw call, lines are grouped into runs of the same width - a new run is
+// started whenever the width changes, so add lines of the same width together to keep the draw calls down.
+//
+// Batches are meant to be re-used: clear() empties one without giving up its storage, so once it's grown to the size
+// of a typical frame, building a frame allocates nothing.
+//
+// Example usage:
+//
+//     batch.clear();
+//     batch.addLine(start, end, Utils.RED, 5.0f);       // For every bone
+//     ...
+//     renderer.draw(batch, mvpMatrix);                  // One upload and (for a single width) one draw call
+public class LineBatch
+{
+    public static final int FLOATS_PER_VERTEX = 7;
+    public static final int VERTICES_PER_LINE = 2;
+
+    private float[] vertexData;
+    private int vertexCount;
+
+    // Runs of lines of the same width - the width of each, and the first vertex and number of vertices in it
+    private float[] runWidths;
+    private int[]   runFirstVertex;
+    private int[]   runVertexCount;
+    private int     runCount;
+
+    // Default constructor, with room for a couple of hands' worth of bones
+    public LineBatch()
+    {
+        this(64);
+    }
+
+    // Constructor with room for the given number of lines before having to grow
+    public LineBatch(int initialLines)
+    {
+        int lines      = Math.max(1, initialLines);
+        vertexData     = new float[lines * VERTICES_PER_LINE * FLOATS_PER_VERTEX];
+        runWidths      = new float[4];
+        runFirstVertex = new int[4];
+        runVertexCount = new int[4];
+    }
+
+    // Method to empty the batch ready for the next frame
+    public void clear()
+    {
+        vertexCount = 0;
+        runCount    = 0;
+    }
+
+    // Method to add a line between two locations
+    public void addLine(Vec3f start, Vec3f end, Colour4f colour, float width)
+    {
+        addLine(start.x, start.y, start.z, end.x, end.y, end.z, colour.r, colour.g, colour.b, colour.a, width);
+    }
+
+    // Method to add a line between two locations, given as floats
+    public void addLine(float startX, float startY, float startZ, float endX, float endY, float endZ, float r, float g, float b, float a, float width)
+    {
+        // Start a new run if this is the first line or the width has changed
+        if (runCount == 0 || runWidths[runCount - 1] != width)
+        {
+            if (runCount == runWidths.length)
+            {
+                runWidths      = Arrays.copyOf(runWidths,      runCount * 2);
+                runFirstVertex = Arrays.copyOf(runFirstVertex, runCount * 2);
+                runVertexCount = Arrays.copyOf(runVertexCount, runCount * 2);
+            }
+            runWidths[runCount]      = width;
+            runFirstVertex[runCount] = vertexCount;
+            runVertexCount[runCount] = 0;
+            ++runCount;
+        }
+
+        int needed = (vertexCount + VERTICES_PER_LINE) * FLOATS_PER_VERTEX;
+        if (needed > vertexData.length)
+        {
+            vertexData = Arrays.copyOf( vertexData, Math.max(needed, vertexData.length * 2) );
+        }
+
+        int index = vertexCount * FLOATS_PER_VERTEX;
+        index = putVertex(index, startX, startY, startZ, r, g, b, a);
+        putVertex(index, endX, endY, endZ, r, g, b, a);
+
+        vertexCount += VERTICES_PER_LINE;
+        runVertexCount[runCount - 1] += VERTICES_PER_LINE;
+    }
+
+    private int putVertex(int index, float x, float y, float z, float r, float g, float b, float a)
+    {
+        float[] data = vertexData;
+        data[index]     = x;
+        data[index + 1] = y;
+        data[index + 2] = z;
+        data[index + 3] = r;
+        data[index + 4] = g;
+        data[index + 5] = b;
+        data[index + 6] = a;
+        return index + FLOATS_PER_VERTEX;
+    }
+
+    // ----- Getters -----
+
+    public boolean isEmpty()                  { return vertexCount == 0;                     }
+    public int getVertexCount()               { return vertexCount;                          }
+    public int getLineCount()                 { return vertexCount / VERTICES_PER_LINE;      }
+    public int getFloatCount()                { return vertexCount * FLOATS_PER_VERTEX;      }
+
+    // The number of draw calls it takes to draw this batch, one per run of lines of the same width
+    public int getDrawCallCount()             { return runCount;                             }
+
+    public float getRunWidth(int run)         { return runWidths[run];                       }
+    public int getRunFirstVertex(int run)     { return runFirstVertex[run];                  }
+    public int getRunVertexCount(int run)     { return runVertexCount[run];                  }
+
+    // The packed vertex data. Only the first getFloatCount() floats are in use, and the array may be replaced by a
+    // bigger one when lines are added, so don't hold on to it.
+    public float[] getVertexData()            { return vertexData;                           }
+
+    @Override
+    public String toString()
+    {
+        return "LineBatch [lines=" + getLineCount() + ", vertices=" + vertexCount + ", drawCalls=" + runCount + "]";
+    }
+}
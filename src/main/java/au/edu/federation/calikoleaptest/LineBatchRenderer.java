@@ -0,0 +1,207 @@
+package au.edu.federation.calikoleaptest;
+
+import au.edu.federation.utils.Mat4f;
+
+import org.lwjgl.BufferUtils;
+
+import java.nio.FloatBuffer;
+
+import static org.lwjgl.opengl.GL11.*;
+import static org.lwjgl.opengl.GL15.*;
+import static org.lwjgl.opengl.GL20.*;
+import static org.lwjgl.opengl.GL30.*;
+
+// Class which draws a LineBatch with a single buffer upload and one draw call per run of lines of the same width (so
+// one draw call for all of the hands, as they're all drawn at the same width), with the colours passed per vertex.
+//
+// The vertex buffer is re-used from frame to frame and only re-allocated when a batch needs more room than it has, so
+// drawing a frame doesn't allocate anything on the Java side.
+//
+// Note: Like Caliko's own Line3D this must be created and used on the thread that owns the OpenGL context, after the
+// context has been made current.
+//
+// Example usage:
+//
+//     LineBatchRenderer renderer = new LineBatchRenderer();
+//     ...
+//     renderer.draw(batch, mvpMatrix);                      // Every frame
+//     ...
+//     renderer.destroy();
+public class LineBatchRenderer
+{
+    private static final String VERTEX_SHADER =
+        "#version 330\n"                                                    +
+        "in vec3 vertexLocation;\n"                                         +
+        "in vec4 vertexColour;\n"                                           +
+        "out vec4 colour;\n"                                                +
+        "uniform mat4 mvpMatrix;\n"                                         +
+        "void main()\n"                                                     +
+        "{\n"                                                               +
+        "    colour = vertexColour;\n"                                      +
+        "    gl_Position = mvpMatrix * vec4(vertexLocation, 1.0);\n"        +
+        "}\n";
+
+    private static final String FRAGMENT_SHADER =
+        "#version 330\n"                                                    +
+        "in vec4 colour;\n"                                                 +
+        "out vec4 outputColour;\n"                                          +
+        "void main()\n"                                                     +
+        "{\n"                                                               +
+        "    outputColour = colour;\n"                                      +
+        "}\n";
+
+    private final int shaderProgram;
+    private final int mvpMatrixLocation;
+    private final int vao;
+    private final int vbo;
+
+    // Client-side copy of the data to upload, and how many floats the GPU buffer currently has room for
+    private FloatBuffer uploadBuffer;
+    private int bufferCapacityFloats;
+
+    // Statistics
+    private long framesDrawn;
+    private long drawCalls;
+    private long verticesDrawn;
+    private long bytesUploaded;
+    private int  lastDrawCalls;
+    private int  lastVertexCount;
+
+    // Constructor which compiles the shaders and sets up the vertex buffer
+    public LineBatchRenderer()
+    {
+        shaderProgram     = createProgram(VERTEX_SHADER, FRAGMENT_SHADER);
+        mvpMatrixLocation = glGetUniformLocation(shaderProgram, "mvpMatrix");
+        int locationAttribute = glGetAttribLocation(shaderProgram, "vertexLocation");
+        int colourAttribute   = glGetAttribLocation(shaderProgram, "vertexColour");
+
+        vao = glGenVertexArrays();
+        vbo = glGenBuffers();
+
+        // Describe the packed vertex layout once - it's kept by the vertex array object
+        int stride = LineBatch.FLOATS_PER_VERTEX * Float.BYTES;
+        glBindVertexArray(vao);
+        glBindBuffer(GL_ARRAY_BUFFER, vbo);
+        glEnableVertexAttribArray(locationAttribute);
+        glVertexAttribPointer(locationAttribute, 3, GL_FLOAT, false, stride, 0L);
+        glEnableVertexAttribArray(colourAttribute);
+        glVertexAttribPointer(colourAttribute, 4, GL_FLOAT, false, stride, 3L * Float.BYTES);
+        glBindBuffer(GL_ARRAY_BUFFER, 0);
+        glBindVertexArray(0);
+
+        uploadBuffer = BufferUtils.createFloatBuffer(LineBatch.FLOATS_PER_VERTEX * 256);
+    }
+
+    // Method to draw every line in a batch
+    public void draw(LineBatch batch, Mat4f mvpMatrix)
+    {
+        lastDrawCalls   = 0;
+        lastVertexCount = 0;
+        if ( batch.isEmpty() )
+        {
+            return;
+        }
+
+        // Copy the batch into our direct buffer, growing it if need be
+        int floats = batch.getFloatCount();
+        if (uploadBuffer.capacity() < floats)
+        {
+            uploadBuffer = BufferUtils.createFloatBuffer( Math.max(floats, uploadBuffer.capacity() * 2) );
+        }
+        uploadBuffer.clear();
+        uploadBuffer.put(batch.getVertexData(), 0, floats);
+        uploadBuffer.flip();
+
+        glUseProgram(shaderProgram);
+        glUniformMatrix4fv( mvpMatrixLocation, false, mvpMatrix.toArray() );
+        glBindVertexArray(vao);
+        glBindBuffer(GL_ARRAY_BUFFER, vbo);
+
+        // One upload for the whole batch. Re-specifying the storage first orphans last frame's, so we don't stall
+        // waiting for its draw to finish with it.
+        if (floats > bufferCapacityFloats)
+        {
+            bufferCapacityFloats = uploadBuffer.capacity();
+        }
+        glBufferData(GL_ARRAY_BUFFER, (long)bufferCapacityFloats * Float.BYTES, GL_STREAM_DRAW);
+        glBufferSubData(GL_ARRAY_BUFFER, 0L, uploadBuffer);
+
+        // One draw call per run of lines of the same width
+        for (int run = 0; run < batch.getDrawCallCount(); ++run)
+        {
+            glLineWidth( batch.getRunWidth(run) );
+            glDrawArrays( GL_LINES, batch.getRunFirstVertex(run), batch.getRunVertexCount(run) );
+        }
+
+        glBindBuffer(GL_ARRAY_BUFFER, 0);
+        glBindVertexArray(0);
+        glUseProgram(0);
+
+        lastDrawCalls   = batch.getDrawCallCount();
+        lastVertexCount = batch.getVertexCount();
+        ++framesDrawn;
+        drawCalls     += lastDrawCalls;
+        verticesDrawn += lastVertexCount;
+        bytesUploaded += (long)floats * Float.BYTES;
+    }
+
+    // Method to release the OpenGL objects
+    public void destroy()
+    {
+        glDeleteBuffers(vbo);
+        glDeleteVertexArrays(vao);
+        glDeleteProgram(shaderProgram);
+    }
+
+    // ----- Getters -----
+
+    public long getFramesDrawn()    { return framesDrawn;     }
+    public long getDrawCalls()      { return drawCalls;       }
+    public long getVerticesDrawn()  { return verticesDrawn;   }
+    public long getBytesUploaded()  { return bytesUploaded;   }
+    public int getLastDrawCalls()   { return lastDrawCalls;   }
+    public int getLastVertexCount() { return lastVertexCount; }
+
+    @Override
+    public String toString()
+    {
+        return "LineBatchRenderer [frames=" + framesDrawn + ", drawCallsPerFrame=" + (framesDrawn == 0 ? 0 : drawCalls / framesDrawn) +
+               ", verticesPerFrame=" + (framesDrawn == 0 ? 0 : verticesDrawn / framesDrawn) + ", uploadedKB=" + bytesUploaded / 1024L + "]";
+    }
+
+    // ----- Helpers -----
+
+    private static int createProgram(String vertexSource, String fragmentSource)
+    {
+        int vertexShader   = compileShader(GL_VERTEX_SHADER, vertexSource);
+        int fragmentShader = compileShader(GL_FRAGMENT_SHADER, fragmentSource);
+
+        int program = glCreateProgram();
+        glAttachShader(program, vertexShader);
+        glAttachShader(program, fragmentShader);
+        glLinkProgram(program);
+        if (glGetProgrami(program, GL_LINK_STATUS) == GL_FALSE)
+        {
+            throw new RuntimeException( "Line batch shader program failed to link: " + glGetProgramInfoLog(program) );
+        }
+
+        // The program keeps what it needs from the shaders once linked
+        glDetachShader(program, vertexShader);
+        glDetachShader(program, fragmentShader);
+        glDeleteShader(vertexShader);
+        glDeleteShader(fragmentShader);
+        return program;
+    }
+
+    private static int compileShader(int type, String source)
+    {
+        int shader = glCreateShader(type);
+        glShaderSource(shader, source);
+        glCompileShader(shader);
+        if (glGetShaderi(shader, GL_COMPILE_STATUS) == GL_FALSE)
+        {
+            throw new RuntimeException( "Line batch shader failed to compile: " + glGetShaderInfoLog(shader) );
+        }
+        return shader;
+    }
+}
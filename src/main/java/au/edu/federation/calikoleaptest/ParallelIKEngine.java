@@ -0,0 +1,386 @@
+package au.edu.federation.calikoleaptest;
+
+import au.edu.federation.caliko.FabrikChain3D;
+import au.edu.federation.calikoleaptest.FingerChainCache.FingerChain;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+
+// Class which solves the finger chains for every finger of every hand in parallel on a ForkJoinPool, giving exactly
+// the same results as solving them one after another with a FingerChainCache.
+//
+// That's possible because each finger's chain only depends on that same finger's chain from the frame before (it's
+// warm-started from last frame's solution), never on any other finger. So:
+//
+// - solve() does the cache lookups for a frame on the calling thread, then solves all of its fingers at once, and
+// - solveAll() does the lookups for a whole run of frames up front, then hands each finger's chain its run of frames
+//   to work through in order, with all the chains running at once. This is how we keep many frames in flight when
+//   solving a recording offline - there's one task per finger track rather than one per frame.
+//
+// How much of the machine this can use is bounded by the number of fingers - 10 for two hands in solve(), and the
+// number of distinct finger tracks over the run in solveAll(). If the cache isn't warm-starting, frames don't depend on
+// each other at all and solveAll() instead splits the run up by frame, so it can use every core on its own.
+//
+// Engines can be nested inside other work on the same pool (e.g. one engine per recording with many recordings being
+// solved at once) - tasks are then forked from the current worker rather than submitted to the pool from outside.
+//
+// Example usage:
+//
+//     ParallelIKEngine engine = new ParallelIKEngine( new FingerChainCache() );
+//     engine.solve( input.set(leapFrame), solvedFrame );           // One frame
+//     engine.solveAll(inputs, solvedFrames);                       // A whole recording's worth
+public class ParallelIKEngine
+{
+    // How many frames each task solves when frames are solved independently of each other
+    private static final int FRAMES_PER_TASK = 16;
+
+    private final FingerChainCache fingerChainCache;
+    private final ForkJoinPool pool;
+
+    // Keeps solve() and solveSerial() within a time budget, if set (solveAll() always solves everything in full)
+    private volatile IKSolveScheduler scheduler;
+
+    // Per-frame scratch for solve() - the cache entry for each finger slot and its generation when looked up
+    private final FingerChain[] entries     = new FingerChain[IKFrameInput.MAX_SLOTS];
+    private final int[]         generations = new int[IKFrameInput.MAX_SLOTS];
+
+    // Constructor using the common fork-join pool
+    public ParallelIKEngine(FingerChainCache fingerChainCache)
+    {
+        this( fingerChainCache, ForkJoinPool.commonPool() );
+    }
+
+    // Constructor using a particular fork-join pool
+    public ParallelIKEngine(FingerChainCache fingerChainCache, ForkJoinPool pool)
+    {
+        this.fingerChainCache = fingerChainCache;
+        this.pool             = pool;
+    }
+
+    // Method to solve every finger in a frame, in parallel, into a SolvedFrame. The output's timings aren't touched.
+    // Note: Only one thread should call solve() or solveAll() at a time.
+    public void solve(IKFrameInput input, SolvedFrame output)
+    {
+        int numSlots = lookup(input, entries, generations);
+        output.setFrame(input);
+
+        IKSolveScheduler frameScheduler = scheduler;
+        if (frameScheduler != null)
+        {
+            frameScheduler.beginFrame( input.getTotalFingers(), pool.getParallelism() );
+        }
+
+        if (pool.getParallelism() == 1)
+        {
+            solveSlots(input, output, entries, generations, 0, numSlots, frameScheduler);
+        }
+        else
+        {
+            invoke( new SlotTask(input, output, entries, generations, 0, numSlots, frameScheduler) );
+        }
+
+        if (frameScheduler != null)
+        {
+            frameScheduler.endFrame();
+        }
+    }
+
+    // Method to solve the fingers in a frame one after another on the calling thread. This gives the same results as
+    // solve() and is here to check against, and for when a pool isn't worth it.
+    public void solveSerial(IKFrameInput input, SolvedFrame output)
+    {
+        int numSlots = lookup(input, entries, generations);
+        output.setFrame(input);
+
+        IKSolveScheduler frameScheduler = scheduler;
+        if (frameScheduler != null)
+        {
+            frameScheduler.beginFrame( input.getTotalFingers(), 1 );
+        }
+
+        solveSlots(input, output, entries, generations, 0, numSlots, frameScheduler);
+
+        if (frameScheduler != null)
+        {
+            frameScheduler.endFrame();
+        }
+    }
+
+    // Method to solve a run of frames in order, one output per input. Each finger's chain works through the frames
+    // it appears in, in order, while the chains are solved in parallel with each other.
+    public void solveAll(IKFrameInput[] inputs, SolvedFrame[] outputs)
+    {
+        solveAll(inputs, outputs, inputs.length);
+    }
+
+    // Method to solve the first count frames of a run, as above. Runs solved one after another carry on from each
+    // other, so a long recording can be solved a piece at a time with the same results as solving it all at once.
+    public void solveAll(IKFrameInput[] inputs, SolvedFrame[] outputs, int count)
+    {
+        if (count > inputs.length || count > outputs.length)
+        {
+            throw new IllegalArgumentException("Asked to solve " + count + " frames but there are " + inputs.length + " inputs and " + outputs.length + " outputs");
+        }
+
+        // Without warm-starting each frame stands alone, so split the run up by frame instead
+        if ( !fingerChainCache.isWarmStart() )
+        {
+            invoke( new FrameTask(inputs, outputs, 0, count) );
+            return;
+        }
+
+        // Do every lookup up front, in frame order, exactly as solving frame by frame would - and collect the frame
+        // and slot of each job for each cache entry. An entry can be handed over to a new finger part way through the
+        // run, but its jobs are still in frame order so it's solved exactly as it would have been serially.
+        Map<FingerChain, Track> tracks = new IdentityHashMap<FingerChain, Track>();
+        List<Track> trackList = new ArrayList<Track>();
+        FingerChain[] frameEntries = new FingerChain[IKFrameInput.MAX_SLOTS];
+        int[] frameGenerations     = new int[IKFrameInput.MAX_SLOTS];
+        for (int frame = 0; frame < count; ++frame)
+        {
+            IKFrameInput input = inputs[frame];
+            int numSlots = lookup(input, frameEntries, frameGenerations);
+            outputs[frame].setFrame(input);
+
+            for (int slot = 0; slot < numSlots; ++slot)
+            {
+                if ( !isUsed(input, slot) )
+                {
+                    continue;
+                }
+
+                Track track = tracks.get( frameEntries[slot] );
+                if (track == null)
+                {
+                    track = new Track( frameEntries[slot] );
+                    tracks.put( frameEntries[slot], track );
+                    trackList.add(track);
+                }
+                track.add( frame, slot, frameGenerations[slot] );
+            }
+        }
+
+        invoke( new TrackTask(inputs, outputs, trackList, 0, trackList.size()) );
+    }
+
+    // ----- Getters -----
+
+    public FingerChainCache getFingerChainCache() { return fingerChainCache; }
+    public ForkJoinPool getPool()                 { return pool;             }
+    public IKSolveScheduler getScheduler()        { return scheduler;        }
+
+    // Method to set the scheduler used by solve() and solveSerial(), or null to always solve every finger in full
+    public void setScheduler(IKSolveScheduler value) { scheduler = value; }
+
+    // ----- Helpers -----
+
+    // Method to run a task on our pool and wait for it, forking it from here if we're already one of the pool's workers
+    private void invoke(ForkJoinTask<?> task)
+    {
+        if (ForkJoinTask.getPool() == pool)
+        {
+            task.invoke();
+        }
+        else
+        {
+            pool.invoke(task);
+        }
+    }
+
+    // Method to look up the cache entry for every finger in a frame, returning the number of slots used (fingers of
+    // hands with fewer than MAX_FINGERS leave gaps, which are left null)
+    private int lookup(IKFrameInput input, FingerChain[] result, int[] resultGenerations)
+    {
+        fingerChainCache.beginFrame();
+
+        // Estimate the joints of every finger here, before the input is shared with the pool's threads
+        input.getJoints();
+
+        int numSlots = input.numHands * IKFrameInput.MAX_FINGERS;
+        for (int slot = 0; slot < numSlots; ++slot)
+        {
+            FingerChain fc = isUsed(input, slot) ? fingerChainCache.lookup( input.handIds[slot / IKFrameInput.MAX_FINGERS], input.fingerIds[slot] ) : null;
+            result[slot]            = fc;
+            resultGenerations[slot] = (fc == null) ? 0 : fc.generation;
+        }
+        return numSlots;
+    }
+
+    // Method to check whether a slot holds a finger
+    private static boolean isUsed(IKFrameInput input, int slot)
+    {
+        return (slot % IKFrameInput.MAX_FINGERS) < input.numFingers[slot / IKFrameInput.MAX_FINGERS];
+    }
+
+    private void solveSlots(IKFrameInput input, SolvedFrame output, FingerChain[] slotEntries, int[] slotGenerations, int from, int to, IKSolveScheduler frameScheduler)
+    {
+        for (int slot = from; slot < to; ++slot)
+        {
+            if (slotEntries[slot] != null)
+            {
+                solveSlot( input, output, slotEntries[slot], slotGenerations[slot], slot, frameScheduler );
+            }
+        }
+    }
+
+    // Method to solve one finger of one frame into its output
+    private void solveSlot(IKFrameInput input, SolvedFrame output, FingerChain fc, int generation, int slot, IKSolveScheduler frameScheduler)
+    {
+        FabrikChain3D chain = fingerChainCache.solveFinger( fc, generation, input.thumbs[slot], input.joints, slot, frameScheduler );
+        output.setChain(slot, chain);
+    }
+
+    // Task which splits a frame's finger slots in half until there's one left to solve
+    private final class SlotTask extends RecursiveAction
+    {
+        private static final long serialVersionUID = 1L;
+
+        private final IKFrameInput input;
+        private final SolvedFrame output;
+        private final FingerChain[] slotEntries;
+        private final int[] slotGenerations;
+        private final int from, to;
+        private final IKSolveScheduler frameScheduler;
+
+        SlotTask(IKFrameInput input, SolvedFrame output, FingerChain[] slotEntries, int[] slotGenerations, int from, int to, IKSolveScheduler frameScheduler)
+        {
+            this.input           = input;
+            this.output          = output;
+            this.slotEntries     = slotEntries;
+            this.slotGenerations = slotGenerations;
+            this.from            = from;
+            this.to              = to;
+            this.frameScheduler  = frameScheduler;
+        }
+
+        @Override
+        protected void compute()
+        {
+            if (to - from <= 1)
+            {
+                solveSlots(input, output, slotEntries, slotGenerations, from, to, frameScheduler);
+                return;
+            }
+
+            int middle = (from + to) >>> 1;
+            invokeAll( new SlotTask(input, output, slotEntries, slotGenerations, from, middle, frameScheduler),
+                       new SlotTask(input, output, slotEntries, slotGenerations, middle, to, frameScheduler) );
+        }
+    }
+
+    // The frames (along with the slot within each, and the entry's generation at the time) that one cache entry has to
+    // be solved for, in frame order
+    private static final class Track
+    {
+        final FingerChain entry;
+        int[] frames      = new int[64];
+        int[] slots       = new int[64];
+        int[] generations = new int[64];
+        int size;
+
+        Track(FingerChain entry)
+        {
+            this.entry = entry;
+        }
+
+        void add(int frame, int slot, int generation)
+        {
+            if (size == frames.length)
+            {
+                frames      = Arrays.copyOf(frames,      size * 2);
+                slots       = Arrays.copyOf(slots,       size * 2);
+                generations = Arrays.copyOf(generations, size * 2);
+            }
+            frames[size]      = frame;
+            slots[size]       = slot;
+            generations[size] = generation;
+            ++size;
+        }
+    }
+
+    // Task which splits the list of tracks in half until there's one left, then works through its frames in order
+    private final class TrackTask extends RecursiveAction
+    {
+        private static final long serialVersionUID = 1L;
+
+        private final IKFrameInput[] inputs;
+        private final SolvedFrame[] outputs;
+        private final List<Track> tracks;
+        private final int from, to;
+
+        TrackTask(IKFrameInput[] inputs, SolvedFrame[] outputs, List<Track> tracks, int from, int to)
+        {
+            this.inputs  = inputs;
+            this.outputs = outputs;
+            this.tracks  = tracks;
+            this.from    = from;
+            this.to      = to;
+        }
+
+        @Override
+        protected void compute()
+        {
+            if (to - from <= 1)
+            {
+                for (int t = from; t < to; ++t)
+                {
+                    Track track = tracks.get(t);
+                    for (int i = 0; i < track.size; ++i)
+                    {
+                        int frame = track.frames[i];
+                        solveSlot( inputs[frame], outputs[frame], track.entry, track.generations[i], track.slots[i], null );
+                    }
+                }
+                return;
+            }
+
+            int middle = (from + to) >>> 1;
+            invokeAll( new TrackTask(inputs, outputs, tracks, from, middle),
+                       new TrackTask(inputs, outputs, tracks, middle, to) );
+        }
+    }
+
+    // Task which splits a run of frames in half until there are few enough left, then solves them one after another
+    // with its own cache. Only used when not warm-starting, where no frame depends on the one before.
+    private final class FrameTask extends RecursiveAction
+    {
+        private static final long serialVersionUID = 1L;
+
+        private final IKFrameInput[] inputs;
+        private final SolvedFrame[] outputs;
+        private final int from, to;
+
+        FrameTask(IKFrameInput[] inputs, SolvedFrame[] outputs, int from, int to)
+        {
+            this.inputs  = inputs;
+            this.outputs = outputs;
+            this.from    = from;
+            this.to      = to;
+        }
+
+        @Override
+        protected void compute()
+        {
+            if (to - from <= FRAMES_PER_TASK)
+            {
+                ParallelIKEngine engine = new ParallelIKEngine( fingerChainCache.copySettings(), pool );
+                for (int frame = from; frame < to; ++frame)
+                {
+                    engine.solveSerial( inputs[frame], outputs[frame] );
+                }
+                fingerChainCache.addStatistics( engine.getFingerChainCache() );
+                return;
+            }
+
+            int middle = (from + to) >>> 1;
+            invokeAll( new FrameTask(inputs, outputs, from, middle),
+                       new FrameTask(inputs, outputs, middle, to) );
+        }
+    }
+}
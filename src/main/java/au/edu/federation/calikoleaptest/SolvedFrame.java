@@ -0,0 +1,165 @@
+package au.edu.federation.calikoleaptest;
+
+import au.edu.federation.caliko.FabrikBone3D;
+import au.edu.federation.caliko.FabrikChain3D;
+import au.edu.federation.utils.Vec3f;
+
+// Class holding everything the render loop needs to draw the hands in a frame - the joint locations of the Leap's own
+// finger bones and of our solved Caliko chains - along with timings so we can see how stale it is by the time it's drawn.
+//
+// These are filled in by the ParallelIKEngine (on the IKSolverThread when running live) and handed to the render loop
+// through a TripleBuffer, so they're re-used rather than created per frame and all the joint data is held in flat
+// float arrays.
+//
+// Fingers are stored in the same slots as the IKFrameInput they were solved from (MAX_FINGERS per hand, so the fingers
+// of hand h are in slots h * MAX_FINGERS onwards). Joints are stored as x/y/z triples, finger by finger, from the base
+// of the finger to the tip. Every finger gets MAX_JOINTS joints whether it uses them or not (a thumb chain only has
+// three bones, so four joints).
+public class SolvedFrame
+{
+    public static final int MAX_HANDS   = IKFrameInput.MAX_HANDS;
+    public static final int MAX_FINGERS = IKFrameInput.MAX_FINGERS;
+    public static final int MAX_SLOTS   = IKFrameInput.MAX_SLOTS;
+    public static final int MAX_JOINTS  = 5;
+
+    // Number of floats per finger in the joint arrays
+    static final int FINGER_STRIDE = MAX_JOINTS * 3;
+
+    // ----- Frame details -----
+
+    long frameId = -1L;       // The Leap frame id, or -1 if nothing has been solved into this yet
+    long leapTimestamp;       // The Leap frame timestamp in microseconds
+    int numHands;
+
+    final int[] handIds    = new int[MAX_HANDS];
+    final int[] numFingers = new int[MAX_HANDS];
+
+    // ----- Timings (all System.nanoTime) -----
+
+    long arrivalNanos;        // When the Leap frame was handed to the solver
+    long solveStartNanos;     // When the solver picked it up
+    long publishNanos;        // When the solved result was published to the render loop
+
+    // ----- Joint data -----
+
+    final int[]   fingerIds       = new int[MAX_SLOTS];
+
+    final int[]   leapJointCount  = new int[MAX_SLOTS];
+    final float[] leapJoints      = new float[MAX_SLOTS * FINGER_STRIDE];
+
+    final int[]   chainJointCount = new int[MAX_SLOTS];
+    final float[] chainJoints     = new float[MAX_SLOTS * FINGER_STRIDE];
+    final float[] solveDistance   = new float[MAX_SLOTS];
+
+    // Method to mark this frame as holding no hands
+    void clear()
+    {
+        numHands = 0;
+        for (int loop = 0; loop < MAX_HANDS; ++loop)
+        {
+            numFingers[loop] = 0;
+        }
+        for (int loop = 0; loop < MAX_SLOTS; ++loop)
+        {
+            leapJointCount[loop]  = 0;
+            chainJointCount[loop] = 0;
+            solveDistance[loop]   = 0.0f;
+        }
+    }
+
+    // Method to take the frame details, hands and fingers from the input this frame is being solved from
+    void setFrame(IKFrameInput input)
+    {
+        clear();
+        frameId       = input.frameId;
+        leapTimestamp = input.timestamp;
+        numHands      = input.numHands;
+        for (int h = 0; h < numHands; ++h)
+        {
+            handIds[h]    = input.handIds[h];
+            numFingers[h] = input.numFingers[h];
+        }
+        System.arraycopy(input.fingerIds, 0, fingerIds, 0, MAX_SLOTS);
+    }
+
+    // Method to set a joint of the Leap's own bone model for a finger
+    void setLeapJoint(int finger, int joint, float x, float y, float z)
+    {
+        int index = finger * FINGER_STRIDE + joint * 3;
+        leapJoints[index]     = x;
+        leapJoints[index + 1] = y;
+        leapJoints[index + 2] = z;
+        leapJointCount[finger] = Math.max(leapJointCount[finger], joint + 1);
+    }
+
+    // Method to copy the joint locations out of a solved chain for a finger
+    void setChain(int finger, FabrikChain3D chain)
+    {
+        int numBones = Math.min( chain.getNumBones(), MAX_JOINTS - 1 );
+        int index = finger * FINGER_STRIDE;
+        for (int bone = 0; bone < numBones; ++bone)
+        {
+            Vec3f start = chain.getBone(bone).getStartLocation();
+            chainJoints[index++] = start.x;
+            chainJoints[index++] = start.y;
+            chainJoints[index++] = start.z;
+        }
+
+        if (numBones > 0)
+        {
+            FabrikBone3D lastBone = chain.getBone(numBones - 1);
+            Vec3f end = lastBone.getEndLocation();
+            chainJoints[index++] = end.x;
+            chainJoints[index++] = end.y;
+            chainJoints[index]   = end.z;
+        }
+
+        chainJointCount[finger] = (numBones > 0) ? numBones + 1 : 0;
+        solveDistance[finger]   = chain.getCurrentSolveDistance();
+    }
+
+    // ----- Getters -----
+
+    public boolean hasFrame()           { return frameId != -1L;  }
+    public long getFrameId()            { return frameId;         }
+    public long getLeapTimestamp()      { return leapTimestamp;   }
+    public int getNumHands()            { return numHands;        }
+    public int getHandId(int hand)      { return handIds[hand];   }
+    public int getNumFingers(int hand)  { return numFingers[hand]; }
+
+    public long getArrivalNanos()       { return arrivalNanos;    }
+    public long getSolveStartNanos()    { return solveStartNanos; }
+    public long getPublishNanos()       { return publishNanos;    }
+
+    // How long the frame waited before the solver got to it, and how long solving it took
+    public long getQueueNanos()         { return solveStartNanos - arrivalNanos; }
+    public long getSolveNanos()         { return publishNanos - solveStartNanos; }
+
+    // How old the frame is at the given time, measured from when it arrived from the Leap
+    public long getAgeNanos(long nowNanos) { return nowNanos - arrivalNanos; }
+
+    // Methods taking a finger use its slot, i.e. hand * MAX_FINGERS + finger
+    public int getFingerId(int finger)        { return fingerIds[finger];       }
+    public int getLeapJointCount(int finger)  { return leapJointCount[finger];  }
+    public int getChainJointCount(int finger) { return chainJointCount[finger]; }
+    public float getSolveDistance(int finger) { return solveDistance[finger];   }
+
+    // Methods to read a joint location into a Vec3f, which is returned for convenience
+    public Vec3f getLeapJoint(int finger, int joint, Vec3f result)  { return get(leapJoints, finger, joint, result);  }
+    public Vec3f getChainJoint(int finger, int joint, Vec3f result) { return get(chainJoints, finger, joint, result); }
+
+    // Method to read a chain joint straight out of the array, as x (axis 0), y (axis 1) or z (axis 2)
+    public float getChainJoint(int finger, int joint, int axis) { return chainJoints[finger * FINGER_STRIDE + joint * 3 + axis]; }
+
+    private static Vec3f get(float[] joints, int finger, int joint, Vec3f result)
+    {
+        int index = finger * FINGER_STRIDE + joint * 3;
+        return result.set( joints[index], joints[index + 1], joints[index + 2] );
+    }
+
+    @Override
+    public String toString()
+    {
+        return "SolvedFrame [id=" + frameId + ", hands=" + numHands + ", queueMicros=" + getQueueNanos() / 1000L + ", solveMicros=" + getSolveNanos() / 1000L + "]";
+    }
+}
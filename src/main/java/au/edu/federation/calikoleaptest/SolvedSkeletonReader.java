@@ -0,0 +1,119 @@
+package au.edu.federation.calikoleaptest;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.zip.GZIPInputStream;
+
+// Class which reads back a file written by a SolvedSkeletonWriter, compressed or not, a frame at a time into a
+// SolvedFrame. Only the chain joints and solve distances are filled in - the Leap's own bones and the timings aren't
+// stored in the file.
+//
+// Example usage:
+//
+//     SolvedSkeletonReader reader = new SolvedSkeletonReader("session.skel");
+//     SolvedFrame sf = new SolvedFrame();
+//     while ( reader.read(sf) )
+//     {
+//         ...
+//     }
+//     reader.close();
+public class SolvedSkeletonReader implements Closeable
+{
+    private final DataInputStream in;
+
+    // Constructor which opens a file and checks its header
+    public SolvedSkeletonReader(String filename) throws IOException
+    {
+        InputStream stream = new BufferedInputStream( new FileInputStream(filename), 65536 );
+
+        // GZIP streams start with 0x1f 0x8b
+        stream.mark(2);
+        boolean compressed = (stream.read() == 0x1f && stream.read() == 0x8b);
+        stream.reset();
+        if (compressed)
+        {
+            stream = new BufferedInputStream( new GZIPInputStream(stream, 65536), 65536 );
+        }
+
+        in = new DataInputStream(stream);
+        try
+        {
+            int magic     = in.readInt();
+            short version = in.readShort();
+            if (magic != SolvedSkeletonWriter.MAGIC || version != SolvedSkeletonWriter.VERSION)
+            {
+                throw new IOException(filename + " is not a version " + SolvedSkeletonWriter.VERSION + " solved skeleton file");
+            }
+        }
+        catch (IOException e)
+        {
+            in.close();
+            throw e;
+        }
+    }
+
+    // Method to read the next frame into a SolvedFrame, returning false once there are no more frames
+    public boolean read(SolvedFrame sf) throws IOException
+    {
+        long frameId;
+        try
+        {
+            frameId = in.readLong();
+        }
+        catch (EOFException eof)
+        {
+            return false;
+        }
+
+        sf.clear();
+        sf.frameId       = frameId;
+        sf.leapTimestamp = in.readLong();
+        sf.numHands      = in.readUnsignedByte();
+        if (sf.numHands > SolvedFrame.MAX_HANDS)
+        {
+            throw new IOException("Frame " + frameId + " has " + sf.numHands + " hands");
+        }
+
+        for (int hand = 0; hand < sf.numHands; ++hand)
+        {
+            sf.handIds[hand]    = in.readInt();
+            sf.numFingers[hand] = in.readUnsignedByte();
+            if (sf.numFingers[hand] > SolvedFrame.MAX_FINGERS)
+            {
+                throw new IOException("Frame " + frameId + " has " + sf.numFingers[hand] + " fingers on one hand");
+            }
+
+            for (int finger = 0; finger < sf.numFingers[hand]; ++finger)
+            {
+                int slot      = hand * SolvedFrame.MAX_FINGERS + finger;
+                sf.fingerIds[slot]     = in.readInt();
+                int numJoints          = in.readUnsignedByte();
+                sf.solveDistance[slot] = in.readFloat();
+                if (numJoints > SolvedFrame.MAX_JOINTS)
+                {
+                    throw new IOException("Frame " + frameId + " has a finger with " + numJoints + " joints");
+                }
+                sf.chainJointCount[slot] = numJoints;
+
+                int index = slot * SolvedFrame.FINGER_STRIDE;
+                for (int loop = 0; loop < numJoints * 3; ++loop)
+                {
+                    sf.chainJoints[index + loop] = in.readFloat();
+                }
+            }
+        }
+
+        return true;
+    }
+
+    @Override
+    public void close() throws IOException
+    {
+        in.close();
+    }
+}
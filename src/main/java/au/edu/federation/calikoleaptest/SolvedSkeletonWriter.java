@@ -0,0 +1,98 @@
+package au.edu.federation.calikoleaptest;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.GZIPOutputStream;
+
+// Class which writes SolvedFrames to a file, one after another, as the solved joint locations of every finger chain.
+// This is the output of the BatchIKSolver, and is read back with a SolvedSkeletonReader.
+//
+// The format is a header (MAGIC then VERSION) followed by each frame as:
+//
+//     long  frame id
+//     long  Leap timestamp (microseconds)
+//     byte  number of hands, then for each hand:
+//         int   hand id
+//         byte  number of fingers, then for each finger:
+//             int   finger id
+//             byte  number of joints (5, or 4 for a thumb)
+//             float solve distance
+//             float x, y, z for each joint, from the base of the finger to the tip
+//
+// Joint locations are kept as full floats rather than quantised so that the output of two versions of the solver can
+// be compared exactly. The whole file may optionally be GZIP compressed.
+//
+// Example usage:
+//
+//     SolvedSkeletonWriter writer = new SolvedSkeletonWriter("session.skel", true);
+//     writer.write(solvedFrame);
+//     ...
+//     writer.close();
+public class SolvedSkeletonWriter implements Closeable
+{
+    // "SKEL"
+    public static final int MAGIC = 0x534B454C;
+
+    public static final short VERSION = 1;
+
+    private final DataOutputStream out;
+    private long framesWritten;
+
+    // Constructor which creates (or replaces) a file, optionally GZIP compressed
+    public SolvedSkeletonWriter(String filename, boolean compress) throws IOException
+    {
+        OutputStream stream = new FileOutputStream(filename);
+        if (compress)
+        {
+            stream = new GZIPOutputStream(stream, 65536);
+        }
+
+        out = new DataOutputStream( new BufferedOutputStream(stream, 65536) );
+        out.writeInt(MAGIC);
+        out.writeShort(VERSION);
+    }
+
+    // Method to write a solved frame
+    public void write(SolvedFrame sf) throws IOException
+    {
+        out.writeLong(sf.frameId);
+        out.writeLong(sf.leapTimestamp);
+        out.writeByte(sf.numHands);
+
+        for (int hand = 0; hand < sf.numHands; ++hand)
+        {
+            out.writeInt( sf.handIds[hand] );
+            out.writeByte( sf.numFingers[hand] );
+
+            for (int finger = 0; finger < sf.numFingers[hand]; ++finger)
+            {
+                int slot      = hand * SolvedFrame.MAX_FINGERS + finger;
+                int numJoints = sf.chainJointCount[slot];
+                out.writeInt( sf.fingerIds[slot] );
+                out.writeByte(numJoints);
+                out.writeFloat( sf.solveDistance[slot] );
+
+                int index = slot * SolvedFrame.FINGER_STRIDE;
+                for (int loop = 0; loop < numJoints * 3; ++loop)
+                {
+                    out.writeFloat( sf.chainJoints[index + loop] );
+                }
+            }
+        }
+
+        ++framesWritten;
+    }
+
+    public long getFramesWritten() { return framesWritten; }
+
+    // Method to flush everything to the file and close it
+    @Override
+    public void close() throws IOException
+    {
+        out.close();
+    }
+}
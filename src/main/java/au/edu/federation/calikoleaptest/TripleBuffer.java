@@ -0,0 +1,85 @@
+package au.edu.federation.calikoleaptest;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Lock-free triple buffer for handing the latest of something from one writer thread to one reader thread.
+//
+// There are three slots. The writer always has one to itself (the back buffer) and the reader always has one to
+// itself (the front buffer), with the third sitting in the middle. Publishing swaps the back buffer with the middle
+// one, and updating swaps the front buffer with the middle one if the writer has published since - so neither side
+// ever waits on the other, the writer never touches a slot the reader is looking at, and the reader always gets the
+// most recent complete write. Writes the reader never got around to are simply overwritten.
+//
+// Example usage:
+//
+//     // Writer thread
+//     SolvedFrame sf = buffer.getWriteBuffer();
+//     ...fill in sf...
+//     buffer.publish();
+//
+//     // Reader thread
+//     buffer.update();
+//     SolvedFrame latest = buffer.getReadBuffer();   // Ours until the next update()
+public class TripleBuffer<T>
+{
+    // The middle index is stored with this bit set when it holds a publish that the reader hasn't picked up yet
+    private static final int DIRTY_BIT  = 4;
+    private static final int INDEX_MASK = 3;
+
+    private final Object[] slots;
+
+    // Index of the middle slot, plus the dirty bit. This is the only state shared between the two threads.
+    private final AtomicInteger middle = new AtomicInteger(1);
+
+    private int back  = 0; // Only ever touched by the writer
+    private int front = 2; // Only ever touched by the reader
+
+    // Constructor - the three objects must be distinct, and should all start off in the same 'empty' state as the
+    // reader will see one of them before anything has been published
+    public TripleBuffer(T first, T second, T third)
+    {
+        if (first == second || second == third || first == third)
+        {
+            throw new IllegalArgumentException("A triple buffer needs three different objects.");
+        }
+
+        slots = new Object[] { first, second, third };
+    }
+
+    // ----- Writer side -----
+
+    // Method to get the slot to write into. This is the same slot until the next publish().
+    @SuppressWarnings("unchecked")
+    public T getWriteBuffer()
+    {
+        return (T)slots[back];
+    }
+
+    // Method to make the write buffer available to the reader and move on to a fresh one
+    public void publish()
+    {
+        back = middle.getAndSet(back | DIRTY_BIT) & INDEX_MASK;
+    }
+
+    // ----- Reader side -----
+
+    // Method to pick up the most recently published slot, if there's been a publish since the last update. Returns
+    // whether the read buffer changed.
+    public boolean update()
+    {
+        if ( (middle.get() & DIRTY_BIT) == 0 )
+        {
+            return false;
+        }
+
+        front = middle.getAndSet(front) & INDEX_MASK;
+        return true;
+    }
+
+    // Method to get the slot to read from. This is the same slot until the next update().
+    @SuppressWarnings("unchecked")
+    public T getReadBuffer()
+    {
+        return (T)slots[front];
+    }
+}
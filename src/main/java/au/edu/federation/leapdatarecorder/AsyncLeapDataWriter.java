@@ -0,0 +1,351 @@
+/***
+ *
+ * File       : AsyncLeapDataWriter.java
+ * Description: An AsyncLeapDataWriter takes disk I/O off the caller's thread by queueing WebSocketFrames in a bounded ring buffer
+ *              which a dedicated writer thread drains in batches into another FrameWriter.
+ * Author     : Al Lansley
+ * Date       : 17/10/2026
+ * Version    : 0.1
+ *
+ */
+
+package au.edu.federation.leapdatarecorder;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import au.edu.federation.leapwebsocket.WebSocketFrame;
+
+// When recording, LeapWebSocket.onMessage runs on the WebSocket client thread, so if it writes straight to a
+// LeapDataWriter then every gzip or disk stall holds up the next frame. Wrapping the writer in one of these means the
+// WebSocket thread only ever does a few reference assignments under a short lock, and all of the encoding,
+// compression and writing happens on the writer thread instead.
+//
+// The ring buffer's slots are allocated up front and never grow. What happens when it's full is decided by the
+// OverflowPolicy:
+//
+//		BLOCK       - the caller waits for space (nothing is lost, but a long disk stall will eventually stall the caller)
+//		DROP_OLDEST - the oldest queued frame is discarded to make room for the new one
+//		DROP_NEWEST - the new frame is discarded
+//
+// Example usage:
+//
+//		FrameWriter writer = new AsyncLeapDataWriter( new LeapDataWriter("leapTestData.gzip", true), 1024, OverflowPolicy.DROP_OLDEST );
+//		...
+//		writer.writeWebSocketFrame(wsf); // Returns straight away
+//		...
+//		writer.close();                  // Writes out anything still queued, then closes the wrapped writer
+//
+// If the wrapped writer can't write out the queue within the close timeout, whatever's still queued is dropped - but
+// the frame being written at the time is always finished, and the wrapped writer is only closed once the writer thread
+// has stopped, as writers aren't safe to close while another thread is writing to them. close(timeoutNanos) returns the
+// number of frames dropped this way, and getFramesDroppedOnClose() gives it afterwards, so a caller can tell that the
+// recording is missing frames.
+//
+// Frames from a WebSocketFramePool are retained while they sit in the ring and released once they've been written
+// (or dropped), so the caller can release its own reference as soon as writeWebSocketFrame returns.
+//
+public class AsyncLeapDataWriter implements FrameWriter
+{
+	// What to do when a frame arrives and the ring buffer is already full
+	public enum OverflowPolicy { BLOCK, DROP_OLDEST, DROP_NEWEST }
+
+	// The largest number of frames the writer thread takes off the ring in one go
+	public static final int DEFAULT_BATCH_SIZE = 64;
+
+	// How long close() waits for queued frames to be written before dropping them
+	public static final long DEFAULT_CLOSE_TIMEOUT_NANOS = TimeUnit.SECONDS.toNanos(30);
+
+	private final FrameWriter    writer;
+	private final OverflowPolicy overflowPolicy;
+
+	// Ring buffer state. Everything in this block is guarded by lock.
+	private final WebSocketFrame[] ring;
+	private int     head;   // Index of the oldest queued frame
+	private int     count;  // Number of queued frames
+	private boolean closed;
+
+	// Set if close() gives up waiting for the queue to be written, so the writer thread stops after its current frame
+	private volatile boolean abandoned;
+
+	private final ReentrantLock lock     = new ReentrantLock();
+	private final Condition     notEmpty = lock.newCondition();
+	private final Condition     notFull  = lock.newCondition();
+
+	// Batch of frames taken off the ring by the writer thread - only ever touched by the writer thread
+	private final WebSocketFrame[] batch;
+
+	// Counters
+	private final AtomicLong framesQueued  = new AtomicLong(); // Total frames accepted into the ring
+	private final AtomicLong framesDropped = new AtomicLong(); // Total frames discarded because the ring was full (or we were closed)
+	private final AtomicLong framesDroppedOnClose = new AtomicLong(); // Of those, the frames still queued when close() timed out
+	private final AtomicLong framesWritten = new AtomicLong(); // Total frames handed to the wrapped writer
+	private final AtomicLong batchesWritten = new AtomicLong();
+
+	private final Thread writerThread;
+
+	// Constructor
+	public AsyncLeapDataWriter(FrameWriter writer, int capacity, OverflowPolicy overflowPolicy)
+	{
+		this(writer, capacity, overflowPolicy, DEFAULT_BATCH_SIZE);
+	}
+
+	// Constructor specifying the maximum batch size
+	public AsyncLeapDataWriter(FrameWriter writer, int capacity, OverflowPolicy overflowPolicy, int batchSize)
+	{
+		if (capacity < 1 || batchSize < 1)
+		{
+			throw new IllegalArgumentException("Capacity and batch size must both be at least 1.");
+		}
+
+		this.writer         = writer;
+		this.overflowPolicy = overflowPolicy;
+
+		ring  = new WebSocketFrame[capacity];
+		batch = new WebSocketFrame[ Math.min(batchSize, capacity) ];
+
+		writerThread = new Thread(this::drainLoop, "LeapDataWriter-async");
+		writerThread.setDaemon(true);
+		writerThread.start();
+	}
+
+	// Method to queue a WebSocketFrame to be written. Unless the overflow policy is BLOCK this never waits.
+	@Override
+	public void writeWebSocketFrame(WebSocketFrame wsf)
+	{
+		lock.lock();
+		try
+		{
+			if (closed)
+			{
+				framesDropped.incrementAndGet();
+				return;
+			}
+
+			if (count == ring.length)
+			{
+				switch (overflowPolicy)
+				{
+					case BLOCK:
+						while (count == ring.length && !closed)
+						{
+							notFull.awaitUninterruptibly();
+						}
+						if (closed)
+						{
+							framesDropped.incrementAndGet();
+							return;
+						}
+						break;
+
+					case DROP_OLDEST:
+						ring[head].release();
+						ring[head] = null;
+						head = (head + 1) % ring.length;
+						--count;
+						framesDropped.incrementAndGet();
+						break;
+
+					case DROP_NEWEST:
+						framesDropped.incrementAndGet();
+						return;
+				}
+			}
+
+			wsf.retain();
+			ring[ (head + count) % ring.length ] = wsf;
+			++count;
+			framesQueued.incrementAndGet();
+
+			notEmpty.signal();
+		}
+		finally
+		{
+			lock.unlock();
+		}
+	}
+
+	// Writer thread: repeatedly take a batch of frames off the ring and write them until we're closed and empty
+	private void drainLoop()
+	{
+		while (true)
+		{
+			int batchCount = 0;
+
+			lock.lock();
+			try
+			{
+				while (count == 0 && !closed)
+				{
+					notEmpty.awaitUninterruptibly();
+				}
+
+				// Closed and nothing left to write, so we're done
+				if (count == 0)
+				{
+					return;
+				}
+
+				batchCount = Math.min(count, batch.length);
+				for (int i = 0; i < batchCount; ++i)
+				{
+					batch[i]   = ring[head];
+					ring[head] = null;
+					head = (head + 1) % ring.length;
+				}
+				count -= batchCount;
+
+				notFull.signalAll();
+			}
+			finally
+			{
+				lock.unlock();
+			}
+
+			// Do the actual (slow) work outside of the lock, dropping the rest of the batch if close() has given up on us
+			int written = 0;
+			for (int i = 0; i < batchCount; ++i)
+			{
+				if (abandoned)
+				{
+					framesDropped.incrementAndGet();
+					framesDroppedOnClose.incrementAndGet();
+				}
+				else
+				{
+					writer.writeWebSocketFrame( batch[i] );
+					++written;
+				}
+				batch[i].release();
+				batch[i] = null;
+			}
+
+			framesWritten.addAndGet(written);
+			batchesWritten.incrementAndGet();
+		}
+	}
+
+	// Method to write out any frames still queued, stop the writer thread and close the wrapped writer. Anything dropped
+	// because that took longer than DEFAULT_CLOSE_TIMEOUT_NANOS is counted in getFramesDroppedOnClose().
+	@Override
+	public void close()
+	{
+		close(DEFAULT_CLOSE_TIMEOUT_NANOS);
+	}
+
+	// Method to close, waiting at most the given time for queued frames to be written. Anything still queued after that
+	// is dropped, but this still waits for the frame being written to finish before closing the wrapped writer. A timeout
+	// of 0 waits for everything to be written, however long it takes. Returns the number of frames dropped because the
+	// timeout ran out (0 if everything queued was written).
+	public long close(long timeoutNanos)
+	{
+		lock.lock();
+		try
+		{
+			closed = true;
+			notEmpty.signalAll();
+			notFull.signalAll();
+		}
+		finally
+		{
+			lock.unlock();
+		}
+
+		boolean interrupted = joinWriterThread(timeoutNanos);
+
+		if ( writerThread.isAlive() )
+		{
+			// Drop everything still queued and tell the writer thread to stop after the frame it's on. Interrupting it
+			// could close a FileChannel under it part-way through a write, so we just wait for it.
+			lock.lock();
+			try
+			{
+				abandoned = true;
+				while (count > 0)
+				{
+					ring[head].release();
+					ring[head] = null;
+					head = (head + 1) % ring.length;
+					--count;
+					framesDropped.incrementAndGet();
+					framesDroppedOnClose.incrementAndGet();
+				}
+			}
+			finally
+			{
+				lock.unlock();
+			}
+
+			interrupted |= joinWriterThread(0L);
+		}
+
+		writer.close();
+
+		if (interrupted)
+		{
+			Thread.currentThread().interrupt();
+		}
+		return framesDroppedOnClose.get();
+	}
+
+	// Method to wait for the writer thread to finish, for at most the given time (or for as long as it takes if that's 0).
+	// Returns true if we were interrupted while waiting - we carry on waiting regardless, as the wrapped writer mustn't
+	// be closed while the writer thread could still be using it.
+	private boolean joinWriterThread(long timeoutNanos)
+	{
+		long deadline = System.nanoTime() + timeoutNanos;
+		boolean interrupted = false;
+		while ( writerThread.isAlive() )
+		{
+			long remainingMillis = TimeUnit.NANOSECONDS.toMillis( deadline - System.nanoTime() );
+			if (timeoutNanos > 0L && remainingMillis <= 0L)
+			{
+				break;
+			}
+
+			try
+			{
+				writerThread.join( (timeoutNanos > 0L) ? remainingMillis : 0L );
+			}
+			catch (InterruptedException e)
+			{
+				interrupted = true;
+			}
+		}
+		return interrupted;
+	}
+
+	// ----- Getters -----
+
+	public OverflowPolicy getOverflowPolicy() { return overflowPolicy;        }
+	public int  getCapacity()                 { return ring.length;           }
+	public long getFramesQueued()             { return framesQueued.get();    }
+	public long getFramesDropped()            { return framesDropped.get();   }
+	public long getFramesWritten()            { return framesWritten.get();   }
+	public long getBatchesWritten()           { return batchesWritten.get();  }
+	public long getFramesDroppedOnClose()     { return framesDroppedOnClose.get(); } // Included in getFramesDropped()
+
+	// Method to return the number of frames currently waiting in the ring buffer
+	public int getQueueDepth()
+	{
+		lock.lock();
+		try
+		{
+			return count;
+		}
+		finally
+		{
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public String toString()
+	{
+		return "AsyncLeapDataWriter [policy=" + overflowPolicy + ", capacity=" + ring.length + ", depth=" + getQueueDepth() +
+		       ", queued=" + getFramesQueued() + ", written=" + getFramesWritten() + ", dropped=" + getFramesDropped() +
+		       ", droppedOnClose=" + getFramesDroppedOnClose() + "]";
+	}
+}
@@ -0,0 +1,291 @@
+/***
+ *
+ * File       : BlockFile.java
+ * Description: Writes and reads the checksummed, deflate compressed blocks that segments and raw captures are made of.
+ * Author     : Al Lansley
+ * Date       : 18/10/2026
+ * Version    : 0.1
+ *
+ */
+
+package au.edu.federation.leapdatarecorder;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+// A file of blocks is a header of its own followed by a run of blocks, each compressed on its own so that a crash only
+// ever costs the block being filled. Each block is laid out as (all values big-endian):
+//
+//		int magic, int record count, int uncompressed length, int compressed length, int CRC32 of the compressed bytes,
+//		int CRC32 of the four values before it, then the compressed (deflate) bytes
+//
+// The lengths in a block's header decide how much we read and allocate, so the header has a CRC of its own which is
+// checked before either - without it a single flipped bit could have us try to allocate 2GB. They're then checked
+// against what's left of the file and MAX_BLOCK_BYTES as well. A header which is damaged means we've lost our place in
+// the file and have to give up on the rest of it, but a block whose compressed bytes are damaged is skipped on its own.
+//
+// Example usage:
+//
+//		BlockFile.Writer blockWriter = new BlockFile.Writer(Deflater.DEFAULT_COMPRESSION, 256 * 1024);
+//		int written = blockWriter.write(out, BLOCK_MAGIC, recordCount, block, blockLength);
+//		...
+//		BlockFile.Input in = new BlockFile.Input(file);
+//		BlockFile.Header header = BlockFile.readHeader(in, BLOCK_MAGIC, new BlockFile.Header());
+//
+final class BlockFile
+{
+	public static final int BLOCK_HEADER_SIZE = 6 * 4;
+
+	// The largest uncompressed block we'll write or read. Blocks are normally a few hundred KB.
+	public static final int MAX_BLOCK_BYTES = 64 * 1024 * 1024;
+
+	// The smallest a record can be - every record has at least a 4 byte length
+	private static final int MIN_RECORD_SIZE = 4;
+
+	private BlockFile() { }
+
+	// ----- Writing -----
+
+	// Compresses blocks and writes them out. Holds on to its compression state and buffer between blocks, so isn't
+	// safe to share between threads.
+	static final class Writer
+	{
+		private final Deflater deflater;
+		private final CRC32    crc = new CRC32();
+		private byte[]         compressedBuffer; // Blocks are compressed into this after space for the block header
+
+		Writer(int compressionLevel, int initialCapacity)
+		{
+			deflater         = new Deflater(compressionLevel);
+			compressedBuffer = new byte[initialCapacity];
+		}
+
+		// Method to compress a block of records and write it out. Returns the number of bytes written.
+		int write(OutputStream out, int magic, int recordCount, byte[] block, int blockLength) throws IOException
+		{
+			if (blockLength > MAX_BLOCK_BYTES)
+			{
+				throw new IOException("Block of " + blockLength + " bytes is larger than the maximum of " + MAX_BLOCK_BYTES + " - not writing it.");
+			}
+
+			// Compress the block into the buffer after the space for its header
+			deflater.reset();
+			deflater.setInput(block, 0, blockLength);
+			deflater.finish();
+			int length = BLOCK_HEADER_SIZE;
+			while ( !deflater.finished() )
+			{
+				if (length == compressedBuffer.length)
+				{
+					compressedBuffer = Arrays.copyOf(compressedBuffer, compressedBuffer.length * 2);
+				}
+				length += deflater.deflate( compressedBuffer, length, compressedBuffer.length - length );
+			}
+			int compressedLength = length - BLOCK_HEADER_SIZE;
+
+			crc.reset();
+			crc.update(compressedBuffer, BLOCK_HEADER_SIZE, compressedLength);
+
+			ByteBuffer header = ByteBuffer.wrap(compressedBuffer, 0, BLOCK_HEADER_SIZE);
+			header.putInt( magic               );
+			header.putInt( recordCount         );
+			header.putInt( blockLength         );
+			header.putInt( compressedLength    );
+			header.putInt( (int)crc.getValue() );
+
+			crc.reset();
+			crc.update(compressedBuffer, 4, 4 * 4);
+			header.putInt( (int)crc.getValue() );
+
+			// Write the whole block with a single write, so it goes to the OS in one piece
+			out.write(compressedBuffer, 0, length);
+			return length;
+		}
+
+		void end()
+		{
+			deflater.end();
+		}
+	}
+
+	// ----- Reading -----
+
+	// A block's header, once it's been checked
+	static final class Header
+	{
+		int recordCount;
+		int rawLength;
+		int compressedLength;
+		int expectedCrc;
+	}
+
+	// A stream over a file of blocks which keeps track of how much of the file is left
+	static final class Input extends DataInputStream
+	{
+		private final File file;
+
+		Input(File file) throws IOException
+		{
+			super( new CountingInputStream( new BufferedInputStream( new FileInputStream(file), 65536 ) ) );
+			this.file = file;
+		}
+
+		// Method to return the number of bytes in the file after those read so far. The file is checked each time, as
+		// it may still be being written.
+		long remaining()
+		{
+			return file.length() - ((CountingInputStream)in).count;
+		}
+	}
+
+	// Method to read and check the header of the next block. Throws an EOFException at the end of the file or if the
+	// block was cut short, or an IOException if the header is damaged - either way the rest of the file can't be read.
+	static Header readHeader(Input in, int magic, Header into) throws IOException
+	{
+		if ( in.readInt() != magic )
+		{
+			// We've lost our place in the file, so there's no way to find the next block
+			throw new IOException("Bad block marker - skipping the rest of the file.");
+		}
+
+		int recordCount      = in.readInt();
+		int rawLength        = in.readInt();
+		int compressedLength = in.readInt();
+		int expectedCrc      = in.readInt();
+		int headerCrc        = in.readInt();
+
+		CRC32 crc = new CRC32();
+		ByteBuffer header = ByteBuffer.allocate(4 * 4);
+		header.putInt(recordCount).putInt(rawLength).putInt(compressedLength).putInt(expectedCrc);
+		crc.update( header.array() );
+		if ( (int)crc.getValue() != headerCrc )
+		{
+			throw new IOException("Block header failed its checksum - skipping the rest of the file.");
+		}
+
+		if ( rawLength < 0 || rawLength > MAX_BLOCK_BYTES || compressedLength < 0 || compressedLength > maxCompressedLength(rawLength) ||
+		     recordCount < 0 || recordCount > rawLength / MIN_RECORD_SIZE )
+		{
+			throw new IOException("Block header is out of range - skipping the rest of the file.");
+		}
+
+		if ( compressedLength > in.remaining() )
+		{
+			throw new EOFException("Block cut short.");
+		}
+
+		into.recordCount      = recordCount;
+		into.rawLength        = rawLength;
+		into.compressedLength = compressedLength;
+		into.expectedCrc      = expectedCrc;
+		return into;
+	}
+
+	// Method to check a block against its CRC and inflate it into the block buffer, leaving the buffer ready to read its
+	// records. Returns null if all went well, or what was wrong with the block.
+	static String inflate(Inflater inflater, CRC32 crc, byte[] compressed, Header header, ByteBuffer blockBuffer)
+	{
+		crc.reset();
+		crc.update(compressed, 0, header.compressedLength);
+		if ( (int)crc.getValue() != header.expectedCrc )
+		{
+			return "failed its checksum";
+		}
+
+		int rawLength = header.rawLength;
+		inflater.reset();
+		inflater.setInput(compressed, 0, header.compressedLength);
+		try
+		{
+			int inflated = 0;
+			while (inflated < rawLength && !inflater.finished())
+			{
+				int n = inflater.inflate( blockBuffer.array(), inflated, rawLength - inflated );
+				if (n == 0 && (inflater.needsInput() || inflater.needsDictionary()))
+				{
+					break;
+				}
+				inflated += n;
+			}
+
+			if (inflated != rawLength)
+			{
+				return "inflated to the wrong size";
+			}
+		}
+		catch (DataFormatException e)
+		{
+			return "could not be inflated";
+		}
+
+		blockBuffer.clear();
+		blockBuffer.limit(rawLength);
+		return null;
+	}
+
+	// Method to return the most deflate can grow a block by - stored blocks cost 5 bytes each 16KB, plus the zlib wrapper
+	private static int maxCompressedLength(int rawLength)
+	{
+		return rawLength + (rawLength >> 10) + 64;
+	}
+
+	// Stream which counts the bytes read through it
+	private static final class CountingInputStream extends FilterInputStream
+	{
+		long count;
+
+		CountingInputStream(InputStream in)
+		{
+			super(in);
+		}
+
+		@Override
+		public int read() throws IOException
+		{
+			int b = in.read();
+			if (b >= 0)
+			{
+				++count;
+			}
+			return b;
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) throws IOException
+		{
+			int n = in.read(b, off, len);
+			if (n > 0)
+			{
+				count += n;
+			}
+			return n;
+		}
+
+		@Override
+		public long skip(long n) throws IOException
+		{
+			long skipped = in.skip(n);
+			count += skipped;
+			return skipped;
+		}
+
+		@Override
+		public boolean markSupported()
+		{
+			return false;
+		}
+	}
+}
@@ -0,0 +1,597 @@
+/***
+ *
+ * File       : DeltaFrameCodec.java
+ * Description: A DeltaFrameCodec converts WebSocketFrames to and from the DELTA recording format, which stores quantized values
+ *              as the difference from the previous frame rather than in full.
+ * Author     : Al Lansley
+ * Date       : 17/10/2026
+ * Version    : 0.1
+ *
+ */
+
+package au.edu.federation.leapdatarecorder;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.List;
+
+import au.edu.federation.leapwebsocket.WebSocketFrame;
+import au.edu.federation.leapwebsocket.WebSocketGesture;
+import au.edu.federation.leapwebsocket.WebSocketHand;
+import au.edu.federation.leapwebsocket.WebSocketInteractionBox;
+import au.edu.federation.leapwebsocket.WebSocketPointable;
+
+// Successive frames from the Leap are very similar - a palm moves a fraction of a millimetre between frames, directions
+// barely change and ids stay the same. The BINARY format still spends a full 4 byte float on every value though, so
+// this codec instead:
+//
+//		1.) Quantizes every float to a whole number of steps, where the step size depends on what kind of value it is
+//		    (see Quantity - e.g. 0.01mm for positions and 1e-4 for unit vectors), then
+//		2.) Predicts each quantized value from the previous two frames (the last value plus the last change, i.e. it
+//		    keeps moving the way it was moving), and writes the difference between the prediction and the actual value
+//		    as a zigzag varint - so a value moving smoothly, or jittering by a few steps, takes a single byte.
+//
+// Hands and pointables are matched to the previous frame by id, so hands appearing, disappearing or swapping order
+// doesn't break the predictions - anything we haven't seen in the previous frame is written in full. Every keyframeInterval
+// frames a keyframe is written which doesn't depend on any earlier frame. Ids, timestamps, gesture durations and
+// strings aren't quantized, so they come back exactly.
+//
+// Note: Quantization is lossy - a decoded value is within half a step of the original. The encoder deltas against the
+// quantized values (i.e. what the decoder will reconstruct) rather than the originals, so the error never accumulates
+// from frame to frame. NaN is written as zero.
+//
+// Because a record depends on the ones before it, a DeltaFrameCodec holds state and must see every record in order -
+// you need one codec for writing and a separate one for reading, and neither is thread-safe.
+//
+// Layout of a DELTA recording (all fixed-size values big-endian):
+//
+//		Header : the LeapFrameCodec header with the DELTA codec id, then byte quantity count, float step per quantity
+//		         (in Quantity order), int keyframe interval
+//		Records: int payload length, followed by that many bytes of payload - one record per WebSocketFrame
+//
+// Layout of a frame payload (v = zigzag varint, d = zigzag varint difference between the predicted and actual value,
+// t = token):
+//
+//		byte flags (bit 0 = keyframe), d id, d timestamp, d currentFrameRate, d s, d[9] r, d[3] t,
+//		d[3] interaction box center, d[3] interaction box size,
+//		v hand count,      then that many hands
+//		v pointable count, then that many pointables
+//		v gesture count,   then that many gestures
+//
+//		Hand     : v id, d[3] direction, d[3] palmNormal, d[3] palmPosition, d[3] palmVelocity, d[9] r, d[3] sphereCenter,
+//		           d sphereRadius, d[3] stabilizedPalmPosition, d timeVisible
+//		Pointable: v id, v handId, byte tool, d[3] direction, d length, d[3] stabilizedTipPosition, d timeVisible,
+//		           d[3] tipPosition, d[3] tipVelocity, d touchDistance, t touchZone
+//		Gesture  : v duration, v id, v count + v[] handIds, v count + v[] pointableIds, t state, t type
+//
+// Example usage:
+//
+//		DeltaFrameCodec codec = new DeltaFrameCodec();
+//		codec.setStep(Quantity.POSITION, 0.05f); // Only keep positions to the nearest 0.05mm
+//		LeapDataWriter writer = new LeapDataWriter("leapTestData.gzip", true, codec);
+//
+public class DeltaFrameCodec
+{
+	// The kinds of value we quantize, each with its own step size
+	public enum Quantity
+	{
+		POSITION (0.01f),   // Positions, lengths and radii in mm
+		DIRECTION(1.0e-4f), // Unit vectors
+		VELOCITY (0.01f),   // Velocities in mm/s
+		ROTATION (1.0e-4f), // Rotation matrix elements
+		SCALAR   (1.0e-4f); // Everything else - times in seconds, frame rate, scale factor, touch distance
+
+		private final float defaultStep;
+
+		Quantity(float defaultStep) { this.defaultStep = defaultStep; }
+
+		public float getDefaultStep() { return defaultStep; }
+	}
+
+	public static final int DEFAULT_KEYFRAME_INTERVAL = 120;
+
+	private static final int FLAG_KEYFRAME = 1;
+
+	// Number of quantized values per frame, hand and pointable
+	private static final int FRAME_VALUES     = 2 + 9 + 3 + 6;
+	private static final int HAND_VALUES      = (4 * 3) + 9 + 3 + 1 + 3 + 1;
+	private static final int POINTABLE_VALUES = 3 + 1 + 3 + 1 + 3 + 3 + 1;
+
+	private final float[]  steps        = new float[ Quantity.values().length ];
+	private final double[] inverseSteps = new double[ Quantity.values().length ];
+	private int keyframeInterval = DEFAULT_KEYFRAME_INTERVAL;
+
+	// State from the previous frame. The encoder and decoder update this identically, so they always agree. Each
+	// value takes two slots in a state array - the quantized value, then how much it changed from the frame before.
+	private final long[] frameState = new long[ (FRAME_VALUES + 2) * 2 ];
+	private int framesSinceKeyframe;
+
+	private EntityStates handStates          = new EntityStates(HAND_VALUES * 2);
+	private EntityStates nextHandStates      = new EntityStates(HAND_VALUES * 2);
+	private EntityStates pointableStates     = new EntityStates(POINTABLE_VALUES * 2);
+	private EntityStates nextPointableStates = new EntityStates(POINTABLE_VALUES * 2);
+
+	// Position in the state array currently being written or read - saves passing it in and out of every helper
+	private long[] state;
+	private long[] previousState;
+	private int    stateIndex;
+
+	// Constructor - uses the default step for every quantity
+	public DeltaFrameCodec()
+	{
+		for (Quantity q : Quantity.values())
+		{
+			setStep( q, q.getDefaultStep() );
+		}
+	}
+
+	// Method to set the step size for a quantity. Only has an effect before the header is written.
+	public void setStep(Quantity quantity, float step)
+	{
+		if ( !(step > 0.0f) )
+		{
+			throw new IllegalArgumentException("Quantization step must be greater than zero.");
+		}
+		steps[ quantity.ordinal() ]        = step;
+		inverseSteps[ quantity.ordinal() ] = 1.0 / step;
+	}
+
+	// Method to set how often (in frames) a keyframe is written. Only has an effect before the header is written.
+	public void setKeyframeInterval(int frames)
+	{
+		if (frames < 1)
+		{
+			throw new IllegalArgumentException("Keyframe interval must be at least 1.");
+		}
+		keyframeInterval = frames;
+	}
+
+	public float getStep(Quantity quantity) { return steps[ quantity.ordinal() ]; }
+	public int getKeyframeInterval()        { return keyframeInterval;            }
+
+	// ----- Header -----
+
+	// Method to write the codec settings which follow the LeapFrameCodec header
+	public void writeSettings(DataOutput out) throws IOException
+	{
+		out.writeByte(steps.length);
+		for (float step : steps)
+		{
+			out.writeFloat(step);
+		}
+		out.writeInt(keyframeInterval);
+	}
+
+	// Method to create a codec for reading from the settings which follow the LeapFrameCodec header
+	public static DeltaFrameCodec readSettings(DataInput in) throws IOException
+	{
+		DeltaFrameCodec codec = new DeltaFrameCodec();
+
+		int quantityCount = in.readUnsignedByte();
+		if ( quantityCount != Quantity.values().length )
+		{
+			throw new IOException("Recording has " + quantityCount + " quantization steps but we expected " + Quantity.values().length);
+		}
+
+		try
+		{
+			for (Quantity q : Quantity.values())
+			{
+				codec.setStep( q, in.readFloat() );
+			}
+			codec.setKeyframeInterval( in.readInt() );
+		}
+		catch (IllegalArgumentException e)
+		{
+			throw new IOException("Corrupt DELTA codec settings: " + e.getMessage());
+		}
+
+		return codec;
+	}
+
+	// Method to return the largest number of bytes the payload for this frame could take up. A varint is at most ten
+	// bytes and replaces a value of at least four in the BINARY format, so three times the BINARY size is plenty.
+	public static int maxEncodedSize(WebSocketFrame wsf)
+	{
+		return 1 + ( LeapFrameCodec.maxEncodedSize(wsf) * 3 );
+	}
+
+	// ----- Encoding -----
+
+	// Method to write the payload for a WebSocketFrame into the buffer at its current position. The buffer must have at
+	// least maxEncodedSize(wsf) bytes remaining.
+	public void encode(WebSocketFrame wsf, ByteBuffer buf)
+	{
+		boolean keyframe = startFrame();
+		buf.put( (byte)(keyframe ? FLAG_KEYFRAME : 0) );
+
+		begin(frameState, keyframe ? null : frameState);
+		putLong   ( buf, wsf.getId()                                         );
+		putLong   ( buf, wsf.getTimestamp()                                  );
+		putValue  ( buf, (float)wsf.getCurrentFrameRate(), Quantity.SCALAR   );
+		putValue  ( buf, wsf.getS(),                       Quantity.SCALAR   );
+		putMatrix3( buf, wsf.getR(),                       Quantity.ROTATION );
+		putVector3( buf, wsf.getT(),                       Quantity.POSITION );
+
+		WebSocketInteractionBox box = wsf.getInteractionBox();
+		putVector3( buf, box == null ? null : box.getCenter(), Quantity.POSITION );
+		putVector3( buf, box == null ? null : box.getSize(),   Quantity.POSITION );
+
+		// Hands
+		List<WebSocketHand> hands = wsf.hands();
+		putVarLong( buf, hands.size() );
+		for (int i = 0; i < hands.size(); ++i)
+		{
+			WebSocketHand wsh = hands.get(i);
+			putVarLong( buf, wsh.getId() );
+
+			beginEntity( handStates, nextHandStates, wsh.getId() );
+			putVector3( buf, wsh.getPalmDirection(),          Quantity.DIRECTION );
+			putVector3( buf, wsh.getPalmNormal(),             Quantity.DIRECTION );
+			putVector3( buf, wsh.getPalmPosition(),           Quantity.POSITION  );
+			putVector3( buf, wsh.getPalmVelocity(),           Quantity.VELOCITY  );
+			putMatrix3( buf, wsh.getR(),                      Quantity.ROTATION  );
+			putVector3( buf, wsh.getSphereCenter(),           Quantity.POSITION  );
+			putValue  ( buf, wsh.getSphereRadius(),           Quantity.POSITION  );
+			putVector3( buf, wsh.getStabilizedPalmPosition(), Quantity.POSITION  );
+			putValue  ( buf, wsh.getTimeVisible(),            Quantity.SCALAR    );
+		}
+
+		// Pointables
+		List<WebSocketPointable> pointables = wsf.pointables();
+		putVarLong( buf, pointables.size() );
+		for (int i = 0; i < pointables.size(); ++i)
+		{
+			WebSocketPointable wsp = pointables.get(i);
+			putVarLong( buf, wsp.getId()     );
+			putVarLong( buf, wsp.getHandId() );
+			buf.put( (byte)(wsp.isTool() ? 1 : 0) );
+
+			beginEntity( pointableStates, nextPointableStates, wsp.getId() );
+			putVector3( buf, wsp.getDirection(),             Quantity.DIRECTION );
+			putValue  ( buf, wsp.getLength(),                Quantity.POSITION  );
+			putVector3( buf, wsp.getStabilizedTipPosition(), Quantity.POSITION  );
+			putValue  ( buf, wsp.getTimeVisible(),           Quantity.SCALAR    );
+			putVector3( buf, wsp.getTipPosition(),           Quantity.POSITION  );
+			putVector3( buf, wsp.getTipVelocity(),           Quantity.VELOCITY  );
+			putValue  ( buf, wsp.getTouchDistance(),         Quantity.SCALAR    );
+			LeapFrameCodec.putToken( buf, wsp.getTouchZone(), LeapFrameCodec.TOUCH_ZONES );
+		}
+
+		// Gestures - these are rare and short-lived, so there's nothing to gain from delta encoding them
+		List<WebSocketGesture> gestures = wsf.gestures();
+		putVarLong( buf, gestures.size() );
+		for (int i = 0; i < gestures.size(); ++i)
+		{
+			WebSocketGesture wsg = gestures.get(i);
+			putVarLong( buf, wsg.getDuration() );
+			putVarLong( buf, wsg.getId()       );
+			putIntList( buf, wsg.getHandIds()      );
+			putIntList( buf, wsg.getPointableIds() );
+			LeapFrameCodec.putToken( buf, wsg.getState(), LeapFrameCodec.GESTURE_STATES );
+			LeapFrameCodec.putToken( buf, wsg.getType(),  LeapFrameCodec.GESTURE_TYPES  );
+		}
+
+		endFrame();
+	}
+
+	// ----- Decoding -----
+
+	// Method to read the next payload into an existing WebSocketFrame. The frame is reset first and its existing
+	// children and arrays are re-used. Payloads must be decoded in the order they were encoded.
+	public void decodeInto(ByteBuffer buf, WebSocketFrame wsf) throws IOException
+	{
+		boolean keyframe = (buf.get() & FLAG_KEYFRAME) != 0;
+		boolean expected = startFrame();
+		if (keyframe != expected)
+		{
+			throw new IOException("DELTA record out of sequence - expected " + (expected ? "a keyframe" : "a delta frame"));
+		}
+
+		wsf.reset();
+
+		begin(frameState, keyframe ? null : frameState);
+		wsf.setId              ( getLong(buf)                   );
+		wsf.setTimestamp       ( getLong(buf)                   );
+		wsf.setCurrentFrameRate( getValue(buf, Quantity.SCALAR) );
+		wsf.setS               ( getValue(buf, Quantity.SCALAR) );
+		getMatrix3( buf, wsf.getR(), Quantity.ROTATION );
+		getVector3( buf, wsf.getT(), Quantity.POSITION );
+
+		WebSocketInteractionBox box = wsf.getInteractionBox();
+		getVector3( buf, box.getCenter(), Quantity.POSITION );
+		getVector3( buf, box.getSize(),   Quantity.POSITION );
+
+		// Hands
+		int handCount = getCount(buf);
+		List<WebSocketHand> hands = wsf.hands();
+		for (int i = 0; i < handCount; ++i)
+		{
+			WebSocketHand wsh = wsf.obtainHand();
+			wsh.setId( (int)getVarLong(buf) );
+
+			beginEntity( handStates, nextHandStates, wsh.getId() );
+			getVector3            ( buf, wsh.getPalmDirection(),          Quantity.DIRECTION );
+			getVector3            ( buf, wsh.getPalmNormal(),             Quantity.DIRECTION );
+			getVector3            ( buf, wsh.getPalmPosition(),           Quantity.POSITION  );
+			getVector3            ( buf, wsh.getPalmVelocity(),           Quantity.VELOCITY  );
+			getMatrix3            ( buf, wsh.getR(),                      Quantity.ROTATION  );
+			getVector3            ( buf, wsh.getSphereCenter(),           Quantity.POSITION  );
+			wsh.setSphereRadius   ( getValue(buf, Quantity.POSITION)                         );
+			getVector3            ( buf, wsh.getStabilizedPalmPosition(), Quantity.POSITION  );
+			wsh.setTimeVisible    ( getValue(buf, Quantity.SCALAR)                           );
+			hands.add(wsh);
+		}
+
+		// Pointables
+		int pointableCount = getCount(buf);
+		List<WebSocketPointable> pointables = wsf.pointables();
+		for (int i = 0; i < pointableCount; ++i)
+		{
+			WebSocketPointable wsp = wsf.obtainPointable();
+			wsp.setId    ( (int)getVarLong(buf) );
+			wsp.setHandId( (int)getVarLong(buf) );
+			wsp.setTool  ( buf.get() != 0       );
+
+			beginEntity( pointableStates, nextPointableStates, wsp.getId() );
+			getVector3           ( buf, wsp.getDirection(),             Quantity.DIRECTION );
+			wsp.setLength        ( getValue(buf, Quantity.POSITION)                        );
+			getVector3           ( buf, wsp.getStabilizedTipPosition(), Quantity.POSITION  );
+			wsp.setTimeVisible   ( getValue(buf, Quantity.SCALAR)                          );
+			getVector3           ( buf, wsp.getTipPosition(),           Quantity.POSITION  );
+			getVector3           ( buf, wsp.getTipVelocity(),           Quantity.VELOCITY  );
+			wsp.setTouchDistance ( getValue(buf, Quantity.SCALAR)                          );
+			wsp.setTouchZone     ( LeapFrameCodec.getToken(buf, LeapFrameCodec.TOUCH_ZONES) );
+			pointables.add(wsp);
+		}
+
+		// Gestures
+		int gestureCount = getCount(buf);
+		List<WebSocketGesture> gestures = wsf.gestures();
+		for (int i = 0; i < gestureCount; ++i)
+		{
+			WebSocketGesture wsg = wsf.obtainGesture();
+			wsg.setDuration( getVarLong(buf)      );
+			wsg.setId      ( (int)getVarLong(buf) );
+			getIntList( buf, wsg.getHandIds()      );
+			getIntList( buf, wsg.getPointableIds() );
+			wsg.setState( LeapFrameCodec.getToken(buf, LeapFrameCodec.GESTURE_STATES) );
+			wsg.setType ( LeapFrameCodec.getToken(buf, LeapFrameCodec.GESTURE_TYPES)  );
+			gestures.add(wsg);
+		}
+
+		endFrame();
+	}
+
+	// Method to forget all state so the next frame written or read is a keyframe
+	public void reset()
+	{
+		framesSinceKeyframe = 0;
+		handStates.clear();
+		pointableStates.clear();
+	}
+
+	// ----- State handling -----
+
+	// Method to work out whether the frame we're about to write or read is a keyframe, and if so forget all state
+	private boolean startFrame()
+	{
+		boolean keyframe = (framesSinceKeyframe % keyframeInterval) == 0;
+		if (keyframe)
+		{
+			reset();
+		}
+		++framesSinceKeyframe;
+		return keyframe;
+	}
+
+	// Method to make this frame's hands and pointables the ones the next frame is compared against
+	private void endFrame()
+	{
+		EntityStates swap = handStates;
+		handStates        = nextHandStates;
+		nextHandStates    = swap;
+		nextHandStates.clear();
+
+		swap                = pointableStates;
+		pointableStates     = nextPointableStates;
+		nextPointableStates = swap;
+		nextPointableStates.clear();
+	}
+
+	// Method to start writing or reading values into the given state, predicted from previous (null = no prediction)
+	private void begin(long[] current, long[] previous)
+	{
+		state         = current;
+		previousState = previous;
+		stateIndex    = 0;
+	}
+
+	// Method to start writing or reading the values for a hand or pointable with the given id
+	private void beginEntity(EntityStates previous, EntityStates next, int id)
+	{
+		begin( next.add(id), previous.find(id) );
+	}
+
+	// ----- Predicted values -----
+
+	// Method to write a value (already quantized, or exact like an id) as the difference from its prediction
+	private void putLong(ByteBuffer buf, long value)
+	{
+		putVarLong( buf, value - predict() );
+		update(value);
+	}
+
+	private long getLong(ByteBuffer buf)
+	{
+		long value = getVarLong(buf) + predict();
+		update(value);
+		return value;
+	}
+
+	// Method to predict the current value - the previous value plus the previous change, or zero if there isn't one
+	private long predict()
+	{
+		return (previousState == null) ? 0L : previousState[stateIndex] + previousState[stateIndex + 1];
+	}
+
+	// Method to record a value and how much it changed, then move on to the next one
+	// Note: state and previousState may be the same array, so the previous value must be read before it's overwritten
+	private void update(long value)
+	{
+		long change = (previousState == null) ? 0L : value - previousState[stateIndex];
+		state[stateIndex]     = value;
+		state[stateIndex + 1] = change;
+		stateIndex += 2;
+	}
+
+	private void putValue(ByteBuffer buf, float value, Quantity quantity)
+	{
+		putLong( buf, Math.round( value * inverseSteps[ quantity.ordinal() ] ) );
+	}
+
+	private float getValue(ByteBuffer buf, Quantity quantity)
+	{
+		return (float)( getLong(buf) * (double)steps[ quantity.ordinal() ] );
+	}
+
+	private void putVector3(ByteBuffer buf, float[] v, Quantity quantity)
+	{
+		for (int i = 0; i < 3; ++i)
+		{
+			putValue( buf, (v != null && i < v.length) ? v[i] : 0.0f, quantity );
+		}
+	}
+
+	private void putMatrix3(ByteBuffer buf, float[][] m, Quantity quantity)
+	{
+		for (int row = 0; row < 3; ++row)
+		{
+			putVector3( buf, (m != null && row < m.length) ? m[row] : null, quantity );
+		}
+	}
+
+	// Note: The destination arrays always exist and are the right size, as decodeInto resets the frame first
+	private void getVector3(ByteBuffer buf, float[] v, Quantity quantity)
+	{
+		v[0] = getValue(buf, quantity);
+		v[1] = getValue(buf, quantity);
+		v[2] = getValue(buf, quantity);
+	}
+
+	private void getMatrix3(ByteBuffer buf, float[][] m, Quantity quantity)
+	{
+		getVector3( buf, m[0], quantity );
+		getVector3( buf, m[1], quantity );
+		getVector3( buf, m[2], quantity );
+	}
+
+	// ----- Varints -----
+
+	// Method to write a signed value as a zigzag varint - seven bits per byte, small magnitudes (of either sign) first
+	static void putVarLong(ByteBuffer buf, long value)
+	{
+		long zigzag = (value << 1) ^ (value >> 63);
+		while ( (zigzag & ~0x7FL) != 0L )
+		{
+			buf.put( (byte)((zigzag & 0x7F) | 0x80) );
+			zigzag >>>= 7;
+		}
+		buf.put( (byte)zigzag );
+	}
+
+	static long getVarLong(ByteBuffer buf)
+	{
+		long zigzag = 0L;
+		for (int shift = 0; shift < 64; shift += 7)
+		{
+			byte b = buf.get();
+			zigzag |= (long)(b & 0x7F) << shift;
+			if ( (b & 0x80) == 0 )
+			{
+				return (zigzag >>> 1) ^ -(zigzag & 1);
+			}
+		}
+		throw new IllegalStateException("Malformed varint in DELTA record.");
+	}
+
+	private static int getCount(ByteBuffer buf) throws IOException
+	{
+		long count = getVarLong(buf);
+		if (count < 0 || count > buf.remaining())
+		{
+			throw new IOException("Corrupt count in DELTA record: " + count);
+		}
+		return (int)count;
+	}
+
+	private static void putIntList(ByteBuffer buf, List<Integer> list)
+	{
+		int size = (list == null) ? 0 : list.size();
+		putVarLong( buf, size );
+		for (int i = 0; i < size; ++i)
+		{
+			putVarLong( buf, list.get(i) );
+		}
+	}
+
+	private static void getIntList(ByteBuffer buf, List<Integer> list) throws IOException
+	{
+		int size = getCount(buf);
+		for (int i = 0; i < size; ++i)
+		{
+			list.add( (int)getVarLong(buf) );
+		}
+	}
+
+	// The state of the hands or pointables in one frame, keyed by id. There are only ever a handful of
+	// these per frame so a linear search beats a map, and the arrays are kept and re-used from frame to frame.
+	private static final class EntityStates
+	{
+		private final int valuesPerEntity;
+		private int[]    ids    = new int[16];
+		private long[][] values = new long[16][];
+		private int      count;
+
+		EntityStates(int valuesPerEntity)
+		{
+			this.valuesPerEntity = valuesPerEntity;
+		}
+
+		// Method to return the state for an id, or null if it wasn't in this frame
+		long[] find(int id)
+		{
+			for (int i = 0; i < count; ++i)
+			{
+				if (ids[i] == id)
+				{
+					return values[i];
+				}
+			}
+			return null;
+		}
+
+		// Method to add an id and return the array its values should be written into
+		long[] add(int id)
+		{
+			if (count == ids.length)
+			{
+				ids    = Arrays.copyOf(ids,    count * 2);
+				values = Arrays.copyOf(values, count * 2);
+			}
+
+			if (values[count] == null)
+			{
+				values[count] = new long[valuesPerEntity];
+			}
+
+			ids[count] = id;
+			return values[count++];
+		}
+
+		void clear() { count = 0; }
+	}
+}
@@ -0,0 +1,32 @@
+/***
+ *
+ * File       : FrameReader.java
+ * Description: A FrameReader is anything that can hand back recorded WebSocketFrames one after another for replay.
+ * Author     : Al Lansley
+ * Date       : 17/10/2026
+ * Version    : 0.1
+ *
+ */
+
+package au.edu.federation.leapdatarecorder;
+
+import au.edu.federation.leapwebsocket.WebSocketFrame;
+
+// Common interface for the different ways of reading a recording back (streaming, memory-mapped etc.) so that
+// code which replays frames doesn't need to care which one it's been given.
+public interface FrameReader
+{
+	// Method to read and return the next WebSocketFrame. When the end of the recording is reached we either loop
+	// back to the start or keep returning the final frame, depending on the loop playback setting.
+	WebSocketFrame readWebSocketFrame();
+
+	// Method to read the next WebSocketFrame into an existing frame (e.g. one from a WebSocketFramePool) rather than
+	// creating a new one. Returns false, leaving the frame untouched, if the end of the recording has been reached
+	// and we're not looping.
+	boolean readWebSocketFrame(WebSocketFrame into);
+
+	void setLoopPlayback(boolean value);
+
+	// Method to release any files or streams held by the reader
+	void close();
+}
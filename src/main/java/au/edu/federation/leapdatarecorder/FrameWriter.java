@@ -0,0 +1,24 @@
+/***
+ *
+ * File       : FrameWriter.java
+ * Description: A FrameWriter is anything that WebSocketFrames can be recorded to.
+ * Author     : Al Lansley
+ * Date       : 17/10/2026
+ * Version    : 0.1
+ *
+ */
+
+package au.edu.federation.leapdatarecorder;
+
+import au.edu.federation.leapwebsocket.WebSocketFrame;
+
+// Common interface for the different ways of writing a recording so that they can be layered on top of each other
+// (for example, an AsyncLeapDataWriter hands frames off to another FrameWriter on its own thread).
+public interface FrameWriter
+{
+	// Method to record a WebSocketFrame
+	void writeWebSocketFrame(WebSocketFrame wsf);
+
+	// Method to flush and close everything the writer holds open
+	void close();
+}
@@ -1,31 +1,48 @@
 /***
  * 
  * File       : LeapDataReader.java
- * Description: A LeapDataReader reads WebSocketFrames from file so that they can be replayed. The file itself may or may not be GZIP compressed.
+ * Description: A LeapDataReader reads WebSocketFrames from file so that they can be replayed. The file itself may or may not be GZIP compressed,
+ *              and may be in either the BINARY or the older SERIALIZED format - both are detected automatically.
  * Author     : Al Lansley
- * Date       : 06/06/2014
- * Version    : 0.2
+ * Date       : 17/10/2026
+ * Version    : 0.3
  * 
  */
 
 package au.edu.federation.leapdatarecorder;
 
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
 import java.io.EOFException;
 import java.io.FileNotFoundException;
 import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.ObjectInputStream;
+import java.io.ObjectStreamConstants;
+import java.nio.ByteBuffer;
 import java.util.zip.GZIPInputStream;
 
 import au.edu.federation.leapwebsocket.WebSocketFrame;
 
 // Class to write a compressed stream of SimpleFrames to a file
-public class LeapDataReader {
+public class LeapDataReader implements FrameReader
+{
 	
 	// Input streams
 	private FileInputStream   fileInputStream;	
 	private GZIPInputStream   gzipInputStream;
-	private ObjectInputStream objectInputStream;
+	private ObjectInputStream objectInputStream; // Only used when reading the SERIALIZED format
+	private DataInputStream   dataInputStream;   // Only used when reading the BINARY and DELTA formats
+	
+	// The format of the file we're reading, as detected when it was opened
+	private RecordingFormat format;
+	
+	// Codec holding the previous frame's state when reading the DELTA format
+	private DeltaFrameCodec deltaCodec;
+	
+	// Reusable buffer each BINARY record is read into before being decoded
+	private ByteBuffer recordBuffer = ByteBuffer.allocate(8192);
 	
 	// We'll keep a copy of the current WebSocketFrame that we read from the file
 	private WebSocketFrame currentReaderWebSocketFrame;
@@ -33,6 +50,12 @@ public class LeapDataReader {
 	private String  filename;
 	private boolean loopPlayback;
 	private boolean reachedEndOfFile;
+	
+	// What stopped us reading the current file, or null if it opened and (so far) has only ever ended cleanly
+	private IOException error;
+	
+	// The most stream resets we'll skip over at the end of a SERIALIZED file when checking whether it's finished
+	private static final int MAX_TRAILING_RESETS = 4;
 
 	// Constructor
 	public LeapDataReader(String filename, boolean loopPlayback)
@@ -42,48 +65,101 @@ public class LeapDataReader {
 		readFile(filename, loopPlayback);
 	}
 	
+	// Constructor for open(), which opens the file itself
+	private LeapDataReader() { }
+	
+	// Method to open a recording, throwing if it can't be opened or isn't a recording. Unlike the constructor this never
+	// exits, so use it anywhere a missing or unreadable file shouldn't take everything else down with it (e.g. a batch job).
+	public static LeapDataReader open(String filename, boolean loopPlayback) throws IOException
+	{
+		LeapDataReader reader = new LeapDataReader();
+		reader.openFile(filename, loopPlayback);
+		return reader;
+	}
+	
 	public boolean readFile(String filename, boolean loopPlayback)
 	{
-		// Whether we managed to open the file successfully or not
-		boolean fileOpenStatus = false;
+		try
+		{
+			openFile(filename, loopPlayback);
+			return true;
+		}
+		catch (FileNotFoundException e)
+		{
+			System.out.println("File not found: " + filename);
+			System.exit(-1);
+			//e.printStackTrace();
+		}
+		catch (IOException e)
+		{
+			e.printStackTrace();
+		}
 		
+		// We couldn't open the file
+		return false;
+	}
+	
+	// Method to set up the streams for a file and work out its format. If this fails then the error is kept (see getError)
+	// and nothing more is read until another file is opened.
+	private void openFile(String filename, boolean loopPlayback) throws IOException
+	{
 		this.filename     = filename;
 		this.loopPlayback = loopPlayback;
 		
 		reachedEndOfFile = false;
+		error            = null;
+		
+		// If we're re-using this reader then let go of the previous file first
+		close();
+		fileInputStream   = null;
+		objectInputStream = null;
+		gzipInputStream   = null;
+		dataInputStream   = null;
 		
 		// Instantiate the currentSimpleFrame.
 		// Note: We use this so we can check whether we have a valid frame
 		currentReaderWebSocketFrame = new WebSocketFrame();
 		
-		// Setup the file/gzip/object streams
+		// Setup the file/gzip/data or object streams
 		try
 		{
 			// Initialise streams
-			// Note: It doesn't matter if we run an non-compressed stream through the gzipInputStream - it just passes it through untouched
 			fileInputStream = new FileInputStream(filename);
 			
-			gzipInputStream = new GZIPInputStream(fileInputStream);
-			
-			objectInputStream = new ObjectInputStream(gzipInputStream);
+			// If the stream starts with the GZIP magic number then decompress it, otherwise read it as-is
+			InputStream in = new BufferedInputStream(fileInputStream, 65536);
+			if ( startsWithGzipMagic(in) )
+			{
+				gzipInputStream = new GZIPInputStream(in, 65536);
+				in = new BufferedInputStream(gzipInputStream, 65536);
+			}
 			
-			fileOpenStatus = true;
-		}
-		catch (FileNotFoundException e)
-		{
-			System.out.println("File not found: " + filename);
-			System.exit(-1);
-			//e.printStackTrace();
+			// Files in the BINARY format start with a LeapFrameCodec header. Anything else is an older SERIALIZED file.
+			dataInputStream = new DataInputStream(in);
+			dataInputStream.mark(LeapFrameCodec.HEADER_SIZE);
+			if ( dataInputStream.readInt() == LeapFrameCodec.MAGIC )
+			{
+				format = LeapFrameCodec.readHeaderAfterMagic(dataInputStream);
+				deltaCodec = (format == RecordingFormat.DELTA) ? DeltaFrameCodec.readSettings(dataInputStream) : null;
+			}
+			else
+			{
+				dataInputStream.reset();
+				format = RecordingFormat.SERIALIZED;
+				objectInputStream = new ObjectInputStream(dataInputStream);
+			}
 		}
 		catch (IOException e)
 		{
-			e.printStackTrace();
+			close();
+			error            = e;
+			reachedEndOfFile = true;
+			throw e;
 		}
-		
-		return fileOpenStatus;		
 	}
 	
 	// Method to read and return a WebSocketFrame from the file
+	@Override
 	public WebSocketFrame readWebSocketFrame()
 	{
 		// We ALWAYS have to return a WebSocketFrame object, so we'll instantiate it in this scope
@@ -95,30 +171,29 @@ public class LeapDataReader {
 			try
 			{				
 				// Read the WebSocketFrame from the file
-				wsf = (WebSocketFrame)objectInputStream.readObject();
-			
-				// If we successfully get the object without causing an exception then we'll
-				// update the currentSimpleFrame to be the one we just got. This allows us
-				// to pass back the last valid object if something goes wrong.
-				currentReaderWebSocketFrame = wsf;
+				WebSocketFrame read = readNextFrame(wsf);
+				if (read != null)
+				{
+					// If we successfully get the object without causing an exception then we'll
+					// update the currentSimpleFrame to be the one we just got. This allows us
+					// to pass back the last valid object if something goes wrong.
+					wsf = read;
+					currentReaderWebSocketFrame = wsf;
+				}
+				else
+				{
+					endOfFile(null);
+					
+					// If we don't know that we've reached the end of the file, but in fact we have, we asign
+					// the last currentWebSocketFrame to be what we return instead of the blank wsf object.
+					wsf = currentReaderWebSocketFrame;
+				}
 			}
-			catch (EOFException eof)
+			catch (IOException | ClassNotFoundException e)
 			{
-				System.out.println("Reached end of file!");
-				reachedEndOfFile = true;
-				
-				// If we don't know that we've reached the end of the file, but in fact we have, we asign
-				// the last currentWebSocketFrame to be what we return instead of the blank wsf object.
+				endOfFile(e);
 				wsf = currentReaderWebSocketFrame;
 			}
-			catch (IOException ioe)
-			{
-				ioe.printStackTrace();
-			}
-			catch (ClassNotFoundException e)
-			{
-				e.printStackTrace();
-			}
 		}
 		else // If we've reached the end of the file... 
 		{
@@ -126,7 +201,7 @@ public class LeapDataReader {
 			if (loopPlayback)
 			{
 				// Note: This resets the reachedEndOfFile flag to false
-				readFile(filename, loopPlayback);				
+				reload();
 			}
 			else // ...and if we're not looping we'll just provide the final frame again and keep the reachedEndOfFile flag as true so we don't try to parse anything else
 			{
@@ -137,19 +212,171 @@ public class LeapDataReader {
 		return wsf;
 	}
 	
+	// Method to read the next WebSocketFrame into an existing frame. BINARY records are decoded straight into it, while
+	// SERIALIZED frames have to be deserialised and then copied across.
+	@Override
+	public boolean readWebSocketFrame(WebSocketFrame into)
+	{
+		// If we're looping then reload the file and carry on from the first frame - but only once, so a recording with
+		// no frames in it returns false rather than reloading forever
+		boolean reloaded = false;
+		while (true)
+		{
+			if (reachedEndOfFile)
+			{
+				if (!loopPlayback || reloaded)
+				{
+					return false;
+				}
+				reload();
+				reloaded = true;
+				continue;
+			}
+			
+			try
+			{
+				WebSocketFrame read = readNextFrame(into);
+				if (read != null)
+				{
+					if (read != into)
+					{
+						into.copyFrom(read);
+					}
+					return true;
+				}
+				endOfFile(null);
+			}
+			catch (IOException | ClassNotFoundException e)
+			{
+				endOfFile(e);
+			}
+		}
+	}
+	
+	// Method to read the next frame, or return null if the file ends cleanly before it. SERIALIZED frames are returned as
+	// they were deserialised, while BINARY and DELTA records are decoded into the given frame.
+	private WebSocketFrame readNextFrame(WebSocketFrame into) throws IOException, ClassNotFoundException
+	{
+		if ( atEndOfStream() )
+		{
+			return null;
+		}
+		
+		if (format == RecordingFormat.SERIALIZED)
+		{
+			return (WebSocketFrame)objectInputStream.readObject();
+		}
+		
+		if (format == RecordingFormat.DELTA) { deltaCodec.decodeInto( readRecord(), into );     }
+		else                                 { LeapFrameCodec.decodeInto( readRecord(), into ); }
+		return into;
+	}
+	
+	// Method to stop reading the file, either because it ended cleanly (problem is null) or because of the given problem.
+	// A file which ends part way through a frame was cut short, so that's a problem too.
+	private void endOfFile(Exception problem)
+	{
+		reachedEndOfFile = true;
+		
+		if (problem == null)
+		{
+			System.out.println("Reached end of file!");
+		}
+		else if (problem instanceof EOFException)
+		{
+			System.out.println("Recording cut short: " + filename);
+			error = (EOFException)problem;
+		}
+		else
+		{
+			problem.printStackTrace();
+			error = (problem instanceof IOException) ? (IOException)problem : new IOException(problem);
+		}
+	}
+	
+	// Method to open the file again from the start when looping. If it can no longer be opened then we stay at the end.
+	private void reload()
+	{
+		try
+		{
+			openFile(filename, loopPlayback);
+		}
+		catch (IOException e)
+		{
+			System.out.println("Could not reopen " + filename + ": " + e.getMessage());
+		}
+	}
+	
+	// Method to check whether there's nothing left in the file, without using anything up. A SERIALIZED file ends with the
+	// stream reset written after its last frame (see LeapDataWriter), which isn't the start of another frame.
+	private boolean atEndOfStream() throws IOException
+	{
+		dataInputStream.mark(MAX_TRAILING_RESETS + 1);
+		int next = dataInputStream.read();
+		for (int loop = 0; loop < MAX_TRAILING_RESETS && format == RecordingFormat.SERIALIZED && next == ObjectStreamConstants.TC_RESET; ++loop)
+		{
+			next = dataInputStream.read();
+		}
+		dataInputStream.reset();
+		return next < 0;
+	}
+	
+	// Method to read the next length-prefixed BINARY record into the record buffer, ready to be decoded.
+	// Note: A truncated final record (i.e. the recording was cut off mid-write) results in an EOFException.
+	private ByteBuffer readRecord() throws IOException
+	{
+		// The length decides how much we allocate, so check it's one we could have written before trusting it
+		int length = dataInputStream.readInt();
+		if (length < 0 || length > MappedRecording.MAX_RECORD_SIZE)
+		{
+			throw new IOException("Corrupt record length: " + length);
+		}
+		
+		if (recordBuffer.capacity() < length)
+		{
+			recordBuffer = ByteBuffer.allocate( Math.max(length, recordBuffer.capacity() * 2) );
+		}
+		
+		dataInputStream.readFully( recordBuffer.array(), 0, length );
+		recordBuffer.clear();
+		recordBuffer.limit(length);
+		return recordBuffer;
+	}
+	
+	// Method to check whether the stream begins with the two byte GZIP magic number without consuming anything
+	private static boolean startsWithGzipMagic(InputStream in) throws IOException
+	{
+		in.mark(2);
+		int b1 = in.read();
+		int b2 = in.read();
+		in.reset();
+		
+		return ( b1 == (GZIPInputStream.GZIP_MAGIC & 0xFF) ) && ( b2 == (GZIPInputStream.GZIP_MAGIC >> 8) );
+	}
+	
+	@Override
 	public void setLoopPlayback(boolean value)
 	{
 		loopPlayback = value;
 	}
 	
+	public RecordingFormat getFormat() { return format; }
+	
+	// Method to return what stopped us reading the current file - it couldn't be opened, it was cut short part way through
+	// a frame, or it couldn't be read or decoded - or null if it opened and we've only reached its end cleanly (if at all).
+	// Reloading the file when looping clears this.
+	public IOException getError() { return error; }
+	
 	// Method to close down all streams
+	@Override
 	public void close()
 	{
 		try
 		{
-			objectInputStream.close();			
-			gzipInputStream.close();			
-			fileInputStream.close();
+			// Closing the outermost stream closes everything it wraps
+			if (objectInputStream != null) { objectInputStream.close(); }
+			if (dataInputStream   != null) { dataInputStream.close();   }
+			if (fileInputStream   != null) { fileInputStream.close();   } // In case we never got as far as wrapping it
 		}
 		catch (IOException e)
 		{
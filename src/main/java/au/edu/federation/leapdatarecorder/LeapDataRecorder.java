@@ -12,33 +12,79 @@
 
 package au.edu.federation.leapdatarecorder;
 
+import java.net.URISyntaxException;
+
+import org.java_websocket.drafts.Draft_6455;
+
+import au.edu.federation.leapdatarecorder.AsyncLeapDataWriter.OverflowPolicy;
+import au.edu.federation.leapwebsocket.DeliveryPolicy;
+import au.edu.federation.leapwebsocket.FrameBus;
+import au.edu.federation.leapwebsocket.FrameBus.WaitStrategy;
+import au.edu.federation.leapwebsocket.LeapWebSocket;
 import au.edu.federation.leapwebsocket.WebSocketFrame;
+import au.edu.federation.leapwebsocket.WebSocketFrameEvent;
 
 
 // This class acts as a wrapper around the LeapDataReader and LeapDataWriter classes and just
 // provides a single interface to use them both. You can use the LeapDataReader/LeapDataWriter
 // classes on their own if you don't want to use this.
 //
+// Each LeapDataRecorder is a separate session with its own file, format, writer (and writer thread, if writing
+// asynchronously) and source of frames, so any number of them can record and replay at once in the same program - e.g.
+// one per sensor on a rig with several. A recording session is bound to the LeapWebSocket it records from, and a
+// replaying session hands out a LeapDataReplayer for its recording.
+//
 // Example usage:
 // 
 //		-------------- Set up leap data recorder -----------------
 //
-//		To record hand data, instantiate the LeapDataRecorder in RECORD mode:
+//		To record hand data, instantiate the LeapDataRecorder in RECORD mode. This connects to the Leap's WebSocket
+//		interface (see LeapWebSocket.getDefaultURI) and records from it:
 //			leapDataRecorder = new LeapDataRecorder(Mode.RECORD, "leapTestData.gzip");
+//
+//		To record from a LeapWebSocket of your own instead, e.g. one per sensor:
+//			leapDataRecorder = new LeapDataRecorder(sensorWebSocket, "sensor1.gzip", RecordingFormat.BINARY);
 //		
-//		When writing, optionally choose whether to compress the data stream or not (default is to compress the stream):
-//			LeapDataRecorder.setCompressData(false);
+//		Recordings are written in the compact BINARY format by default. To write the older SERIALIZED format instead:
+//			leapDataRecorder = new LeapDataRecorder(Mode.RECORD, "leapTestData.gzip", RecordingFormat.SERIALIZED);
+//
+//		For much smaller files, use the DELTA format, which quantizes values and stores the changes between frames:
+//			leapDataRecorder = new LeapDataRecorder(Mode.RECORD, "leapTestData.gzip", RecordingFormat.DELTA);
+//
+//		Recordings are GZIP compressed by default. To write them uncompressed instead, e.g. so they can be memory-mapped
+//		by a MappedLeapDataReader, say so when creating the recorder:
+//			leapDataRecorder = new LeapDataRecorder(Mode.RECORD, "leapTestData.ldr", RecordingFormat.BINARY, false);
+//
+//		Or record through any other FrameWriter, such as a RollingLeapDataWriter:
+//			leapDataRecorder = new LeapDataRecorder(sensorWebSocket, rollingWriter);
+//
+//		To capture the Leap's JSON messages as they arrive, without parsing them first (see RawCaptureWriter):
+//			leapDataRecorder = new LeapDataRecorder( sensorWebSocket, new RawCaptureWriter("sensor1.ldrj") );
+//
+//		When replaying, the format is detected from the file itself (raw captures included) so there's nothing to choose.
+//
+//		To keep disk I/O off the WebSocket's threads while recording, queue frames for a background writer thread instead
+//		of writing them directly (call this before enable()). Here up to 1024 frames can be queued, and if the writer
+//		falls that far behind the oldest queued frame is dropped:
+//			leapDataRecorder.enableAsyncWriting(1024, OverflowPolicy.DROP_OLDEST);
 //		
 //		To replay recorded data, instantiate the LeapDataRecorder in REPLAY mode:
 //			leapDataRecorder = new LeapDataRecorder(Mode.REPLAY, "leapTestData.gzip");
 //		
 // 		When replaying, optionally choose whether to loop the playback or not (default is to loop the playback). If you opt
 //		not to loop the playback, when it reaches the end of the stream it'll simply return the last valid WebSocketFrame forever:
-//			LeapDataRecorder.setLoopPlayback(false);
+//			leapDataRecorder.setLoopPlayback(false);
+//
+//		Then either read frames yourself with readWebSocketFrame(), or play them out to listeners at the recorded rate:
+//			leapDataRecorder.getReplayer().addFrameListener(listener);
+//			leapDataRecorder.getReplayer().start();
 //	
-// 		Regardless of whether we're recording or replaying, we need to enable LeapDataRecorder for it to do its thing.
+// 		Regardless of whether we're recording or replaying, we need to enable the LeapDataRecorder for it to do its thing.
 // 		This allows us to simply comment this line when developing to disable all recording and replay:
-//			LeapDataRecorder.enable();
+//			leapDataRecorder.enable();
+//
+//		When you're done, close it - this flushes and closes its file, and disconnects from the Leap if it connected:
+//			leapDataRecorder.close();
 //
 public class LeapDataRecorder 
 {
@@ -46,62 +92,245 @@ public class LeapDataRecorder
 	// A LeapDataRecorder must operate in one of two modes: It's either RECORDing hand data, or it's REPLAYing hand data.
 	public enum Mode { RECORD, REPLAY }
 
-	// Static leap data recorder and reader instances
-	private static LeapDataWriter leapDataWriter;
-	private static LeapDataReader leapDataReader;
-	
-	// Static properties and flags
-	private static Mode    mode;          // Recording hand data or replaying it?
-	private static String  filename;      // Name of file to read from or write to
-	private static boolean compressData;  // Should we compress the data into a zipped stream?
-	private static boolean loopReplay;	  // Should we loop the replay?
-	private static boolean enabled;       // Should we do anything at all? See constructor for further comments.
+	// The writer we record to, or the reader we replay from, depending on the mode
+	private FrameWriter leapDataWriter;
+	private FrameReader leapDataReader;
+	
+	// Or, if we're capturing raw messages, the writer they go to and our stage on the WebSocket's FrameBus which feeds it
+	private RawCaptureWriter rawCaptureWriter;
+	private FrameBus<WebSocketFrameEvent>.Consumer captureStage;
+	
+	// Optional writer which queues frames for leapDataWriter on a background thread - null unless enableAsyncWriting() is called
+	private AsyncLeapDataWriter asyncLeapDataWriter;
+	
+	// The WebSocket we record from, which we only close ourselves if we connected it
+	private LeapWebSocket leapWebSocket;
+	private boolean ownWebSocket;
+	
+	// Replayer for our recording - only created if asked for
+	private LeapDataReplayer leapDataReplayer;
+	
+	// Properties and flags
+	private final Mode mode;              // Recording hand data or replaying it?
+	private final String filename;        // Name of file to read from or write to (null if recording to some other FrameWriter)
+	private final boolean compressData;   // Should we compress the data into a zipped stream? Defaults to yes.
+	private boolean loopReplay = true;    // Should we loop the replay? Defaults to yes.
+	
+	// Should we do anything at all? We need to explicitly call enable() before we're going to start recording or playback.
+	// Note: This is so we can nix any playback or recording by commenting out the enable() call in out main
+	private volatile boolean enabled;
+	private boolean closed;
 
 	public LeapDataRecorder(Mode modeArg, String filenameArg)
 	{
-		mode     = modeArg;
-		filename = filenameArg;
-		
-		// We need to explicitly call enable() before we're going to start recording or playback
-		// Note: This is so we can nix any playback or recording by commenting out the enable() call in out main
-		enabled = false;
-		
-		// Defaults are to write compressed data and loop any replays
-		compressData = true;
-		loopReplay   = true;
+		this(modeArg, filenameArg, RecordingFormat.BINARY);
+	}
+	
+	// Constructor specifying the format to write when in RECORD mode (ignored in REPLAY mode). In RECORD mode this
+	// connects to the Leap's WebSocket interface to record from.
+	public LeapDataRecorder(Mode modeArg, String filenameArg, RecordingFormat format)
+	{
+		this(modeArg, filenameArg, format, true);
+	}
+	
+	// Constructor also specifying whether to GZIP compress the recording when in RECORD mode (when replaying, whether
+	// it's compressed is detected from the file itself)
+	public LeapDataRecorder(Mode modeArg, String filenameArg, RecordingFormat format, boolean compress)
+	{
+		mode         = modeArg;
+		filename     = filenameArg;
+		compressData = compress;
 		
 		// Instantiate the appropriate object depending on whether we're replaying or recording data
 		if (mode == Mode.REPLAY)
 		{
-			leapDataReader = new LeapDataReader(filename, loopReplay);
+			if ( RawCaptureReader.isRawCapture(filename) )
+			{
+				leapDataReader = new RawCaptureReader(filename, loopReplay);
+			}
+			else
+			{
+				leapDataReader = new LeapDataReader(filename, loopReplay);
+			}
 		}
 		else
 		{
-			leapDataWriter = new LeapDataWriter(filename, compressData);
+			leapDataWriter = new LeapDataWriter(filename, compressData, format, false);
+			
+			try
+			{
+				ownWebSocket = true;
+				bind( new LeapWebSocket( LeapWebSocket.getDefaultURI(), new Draft_6455() ) );
+				leapWebSocket.connect();
+			}
+			catch (URISyntaxException e)
+			{
+				e.printStackTrace();
+				System.exit(-1);
+			}
 		}
 	}
 	
-	public static void    enable()    { enabled = true; } // Method to set the flag to say we're running! Once enabled we cannot be disabled!
-	public static boolean isEnabled() { return enabled; } // Method to check if we're running or not
+	// Constructor for a session recording the frames of the given LeapWebSocket to a file in the given format
+	public LeapDataRecorder(LeapWebSocket source, String filenameArg, RecordingFormat format)
+	{
+		this(source, filenameArg, format, true);
+	}
+	
+	// Constructor for a session recording the frames of the given LeapWebSocket to a file in the given format, GZIP
+	// compressed or not
+	public LeapDataRecorder(LeapWebSocket source, String filenameArg, RecordingFormat format, boolean compress)
+	{
+		mode         = Mode.RECORD;
+		filename     = filenameArg;
+		compressData = compress;
+		leapDataWriter = new LeapDataWriter(filename, compressData, format, false);
+		bind(source);
+	}
+	
+	// Constructor for a session recording the frames of the given LeapWebSocket through any FrameWriter
+	public LeapDataRecorder(LeapWebSocket source, FrameWriter writer)
+	{
+		mode         = Mode.RECORD;
+		filename     = null;
+		compressData = false; // Up to the writer
+		leapDataWriter = writer;
+		bind(source);
+	}
+	
+	// Constructor for a session capturing the messages of the given LeapWebSocket as they arrive, without waiting for
+	// them to be parsed. The capture stage is LOSSLESS and depends on nothing else, so neither it nor the parser can
+	// hold the other up.
+	public LeapDataRecorder(LeapWebSocket source, RawCaptureWriter capture)
+	{
+		mode         = Mode.RECORD;
+		filename     = capture.getFilename();
+		compressData = true; // Raw captures are always compressed
+		rawCaptureWriter = capture;
+		bind(source);
+		captureStage = source.getFrameBus().addConsumer("capture", this::captureMessage, DeliveryPolicy.LOSSLESS, WaitStrategy.SLEEPING);
+	}
 	
-	// Method to write a WebSocketFrame to file
-	public static void writeWebSocketFrame(WebSocketFrame wsf)
+	// Method to record the frames of a LeapWebSocket
+	private void bind(LeapWebSocket source)
 	{
-		leapDataWriter.writeWebSocketFrame(wsf);
+		leapWebSocket = source;
+		source.setRecorder(this);
+	}
+	
+	public void    enable()    { enabled = true; } // Method to set the flag to say we're running! Once enabled we cannot be disabled!
+	public boolean isEnabled() { return enabled; } // Method to check if we're running or not
+	
+	// Method to queue frames for writing on a background thread rather than writing them on the caller's thread. Each
+	// session gets a writer thread of its own.
+	// Note: Only valid in RECORD mode and must be called before any frames are written.
+	public void enableAsyncWriting(int capacity, OverflowPolicy overflowPolicy)
+	{
+		if (mode != Mode.RECORD || asyncLeapDataWriter != null || leapDataWriter == null)
+		{
+			return;
+		}
+		
+		asyncLeapDataWriter = new AsyncLeapDataWriter(leapDataWriter, capacity, overflowPolicy);
+	}
+	
+	// Method to write a WebSocketFrame to file. This is called for us by the LeapWebSocket we're recording from. Frames
+	// arriving once we've been closed are ignored, as are all of them if we're capturing raw messages instead.
+	public synchronized void writeWebSocketFrame(WebSocketFrame wsf)
+	{
+		if (closed || leapDataWriter == null)
+		{
+			return;
+		}
+		
+		if (asyncLeapDataWriter != null)
+		{
+			asyncLeapDataWriter.writeWebSocketFrame(wsf);
+		}
+		else
+		{
+			leapDataWriter.writeWebSocketFrame(wsf);
+		}
+	}
+	
+	// Capture stage - appends each message to the raw capture once we're enabled (the writer ignores any arriving after
+	// it's been closed)
+	private void captureMessage(WebSocketFrameEvent event, long sequence, boolean endOfBatch)
+	{
+		if (enabled)
+		{
+			rawCaptureWriter.append(event);
+		}
 	}
 	
 	// Method to read a WebSocketFrame from file
-	public static WebSocketFrame readWebSocketFrame()
+	public WebSocketFrame readWebSocketFrame()
 	{
 		return leapDataReader.readWebSocketFrame();
-	}	
+	}
+	
+	// Method to get a replayer which plays our recording out to listeners at the rate it was recorded, creating it the
+	// first time. It reads from the same reader as readWebSocketFrame, so use one or the other. Only valid in REPLAY mode.
+	public synchronized LeapDataReplayer getReplayer()
+	{
+		if (mode != Mode.REPLAY)
+		{
+			throw new IllegalStateException("Only a LeapDataRecorder in REPLAY mode has a replayer.");
+		}
+		
+		if (leapDataReplayer == null)
+		{
+			leapDataReplayer = new LeapDataReplayer(leapDataReader);
+		}
+		return leapDataReplayer;
+	}
 	
-	// Method to close the appropriate streams based on the current operating mode
-	public static void close()
-	{		
+	// Method to close the appropriate streams based on the current operating mode. Only the first call does anything.
+	// Note: Anything the LeapWebSocket hasn't handed us yet isn't recorded - close the LeapWebSocket first to record
+	// everything it's already received (it closes its recorder for you).
+	public void close()
+	{
+		synchronized (this)
+		{
+			if (closed)
+			{
+				return;
+			}
+			closed = true;
+		}
+		
 		if (mode == Mode.RECORD)
 		{
-			leapDataWriter.close();
+			// The async writer writes out anything still queued before closing the leapDataWriter itself, and a raw
+			// capture's stage has to come off the bus before its writer can write out the last block
+			if (rawCaptureWriter != null)
+			{
+				leapWebSocket.getFrameBus().removeConsumer(captureStage);
+				rawCaptureWriter.close();
+			}
+			else if (asyncLeapDataWriter != null)
+			{
+				asyncLeapDataWriter.close();
+			}
+			else
+			{
+				leapDataWriter.close();
+			}
+			
+			// Stop recording, and if we connected to the Leap ourselves then disconnect
+			if (leapWebSocket.getRecorder() == this)
+			{
+				leapWebSocket.setRecorder(null);
+			}
+			if (ownWebSocket)
+			{
+				leapWebSocket.close();
+			}
+		}
+		else if (leapDataReplayer != null)
+		{
+			// This closes the reader too
+			leapDataReplayer.close();
 		}
 		else
 		{
@@ -110,17 +339,26 @@ public class LeapDataRecorder
 	}
 
 	// ----- Getters -----	
-	public static Mode getMode()                      { return mode;          } // You can get the current mode, but not change it!
-	public static String getFilename()                { return filename;      }
-	public static boolean getCompressData()           { return compressData;  }
-	public static boolean getLoopReplay()             { return loopReplay;    } 
+	public Mode getMode()                      { return mode;          } // You can get the current mode, but not change it!
+	public String getFilename()                { return filename;      }
+	public boolean getCompressData()           { return compressData;  }
+	public boolean getLoopReplay()             { return loopReplay;    } 
 	
-	// Setters
-	public static void setCompressData(boolean value) {	compressData = value; }
+	// Returns the WebSocket this session records from, or null if it's replaying
+	public LeapWebSocket getWebSocket()        { return leapWebSocket; }
+	
+	// Returns the async writer so its queued/dropped counters can be inspected (before or after close()), or null if async
+	// writing isn't enabled
+	public AsyncLeapDataWriter getAsyncWriter() { return asyncLeapDataWriter; }
 	
- 	public static void setLoopPlayback(boolean value)
+	// Returns the raw capture writer so its counters can be inspected (before or after close()), or null if this session
+	// isn't capturing raw messages
+	public RawCaptureWriter getRawCaptureWriter() { return rawCaptureWriter; }
+	
+	// Setters
+ 	public void setLoopPlayback(boolean value)
  	{
- 		// If we have a valid LeapDataReader object (i.e. this recorder was opened in REPLAY mode)...
+ 		// If we have a valid reader object (i.e. this recorder was opened in REPLAY mode)...
  		if ( !(leapDataReader == null) )
  		{
  			// ...then change the loopPlayback flag as directed.
@@ -129,6 +367,7 @@ public class LeapDataRecorder
  			// null so we never get here. We MUST use "==" instead of ".equals" here as you can't run a method
  			// (such as ".equals") on a null object!
  			leapDataReader.setLoopPlayback(value);
+ 			loopReplay = value;
  		}
  	}
  	
@@ -0,0 +1,457 @@
+/***
+ *
+ * File       : LeapDataReplayer.java
+ * Description: A LeapDataReplayer plays a recording back on its own thread at the rate it was recorded (or faster or slower),
+ *              handing each frame to listeners in the same way a live LeapWebSocket does.
+ * Author     : Al Lansley
+ * Date       : 17/10/2026
+ * Version    : 0.1
+ *
+ */
+
+package au.edu.federation.leapdatarecorder;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+import au.edu.federation.leapwebsocket.WebSocketFrame;
+import au.edu.federation.leapwebsocket.WebSocketFrameListener;
+import au.edu.federation.leapwebsocket.WebSocketFramePool;
+import au.edu.federation.leapwebsocket.WebSocketFramePublisher;
+
+// Calling readWebSocketFrame() on a FrameReader just gives you the next frame, so replay speed ends up tied to
+// however often you ask - e.g. once per vsync in the render loop. This class instead sends each frame out when it's
+// due according to its timestamp (in Leap microseconds), on a dedicated thread.
+//
+// Frame due times are always worked out from a fixed anchor (a wall clock time and the frame timestamp which
+// corresponds to it) rather than by sleeping for the gap since the last frame, so oversleeping on one frame is made
+// up on the next and the error never builds up. If we fall more than maxLagMillis behind (e.g. a listener took too
+// long, or the machine stalled) we re-anchor on the current frame rather than rushing out a burst of late frames.
+// We also re-anchor whenever the timestamps jump backwards (the reader looped back to the start) or forwards by more
+// than maxGapMillis (recording was paused), so neither causes a long stall.
+//
+// The speed can be anywhere from 0.1x to 100x, or AS_FAST_AS_POSSIBLE to ignore timestamps altogether and send frames
+// out as quickly as the listeners can take them. Changing speed part way through carries on from the same point in
+// the recording. While paused, step() sends out one frame at a time.
+//
+// Frames are read into a small WebSocketFramePool, so as with a LeapWebSocket listeners must retain() a frame if they
+// want to keep it after they return.
+//
+// Example usage:
+//
+//		LeapDataReplayer replayer = new LeapDataReplayer( new LeapDataReader("leapTestData.gzip", true) );
+//		replayer.addFrameListener( wsf -> System.out.println( wsf.getId() ) );
+//		replayer.setSpeed(2.0); // Play back at twice the recorded speed
+//		replayer.start();
+//		...
+//		replayer.pause();
+//		replayer.step();        // Send out just the next frame
+//		...
+//		replayer.close();       // Stops the replay thread and closes the reader
+//
+public class LeapDataReplayer
+{
+	public static final double MIN_SPEED           = 0.1;
+	public static final double MAX_SPEED           = 100.0;
+	public static final double AS_FAST_AS_POSSIBLE = Double.POSITIVE_INFINITY;
+
+	public static final long DEFAULT_MAX_LAG_MILLIS = 100L;
+	public static final long DEFAULT_MAX_GAP_MILLIS = 1000L;
+
+	// We park the thread until this close to a frame's due time, then yield until it's actually due. Parking alone
+	// can overshoot by a millisecond or more on some platforms, which is a big chunk of a 9ms frame gap.
+	private static final long SPIN_NANOS = TimeUnit.MICROSECONDS.toNanos(200);
+
+	private final FrameReader        reader;
+	private final WebSocketFramePool pool = new WebSocketFramePool(4);
+
+	private final List<WebSocketFrameListener> frameListeners = new CopyOnWriteArrayList<WebSocketFrameListener>();
+
+	// Control state - guarded by lock, and applied by the replay thread
+	private final Object lock = new Object();
+	private boolean running;
+	private boolean paused;
+	private int     stepsRequested;
+	private double  requestedSpeed = 1.0;
+	private boolean controlChanged;
+	private boolean reanchorRequested;
+
+	// Timing state - only ever touched by the replay thread
+	private double  speed = 1.0;
+	private boolean anchored;
+	private long    anchorNanos;
+	private long    anchorTimestamp;
+	private long    lastTimestamp;
+
+	// A frame that's been read but not sent yet (e.g. we were paused while waiting for it to be due). This is kept
+	// across stop() and start() so that no frames are skipped.
+	private WebSocketFrame pending;
+
+	private volatile long maxLagNanos = TimeUnit.MILLISECONDS.toNanos(DEFAULT_MAX_LAG_MILLIS);
+	private volatile long maxGapMicros = TimeUnit.MILLISECONDS.toMicros(DEFAULT_MAX_GAP_MILLIS);
+
+	// The most recently sent frame, numbered in the order frames were sent. Only ever written by the replay thread (or
+	// by close(), once that's finished).
+	private final WebSocketFramePublisher currentWebSocketFrame = new WebSocketFramePublisher();
+
+	private Thread replayThread;
+	private volatile boolean finished;
+
+	// Stats
+	private volatile long framesSent;
+	private volatile long resyncs;
+	private volatile long maxLatenessNanos;
+
+	// Constructor
+	public LeapDataReplayer(FrameReader reader)
+	{
+		this.reader = reader;
+	}
+
+	// ----- Listeners -----
+
+	public void addFrameListener(WebSocketFrameListener listener)    { frameListeners.add(listener);    }
+	public void removeFrameListener(WebSocketFrameListener listener) { frameListeners.remove(listener); }
+
+	// ----- Control -----
+
+	// Method to start the replay thread
+	public void start()
+	{
+		synchronized (lock)
+		{
+			if (running)
+			{
+				return;
+			}
+			running  = true;
+			finished = false;
+		}
+
+		replayThread = new Thread(this::replayLoop, "LeapDataReplayer");
+		replayThread.setDaemon(true);
+		replayThread.start();
+	}
+
+	// Method to stop the replay thread. The reader is left open, so the replay can be started again from where it was.
+	public void stop()
+	{
+		synchronized (lock)
+		{
+			running = false;
+			lock.notifyAll();
+		}
+
+		Thread thread = replayThread;
+		if (thread != null && thread != Thread.currentThread())
+		{
+			LockSupport.unpark(thread);
+			try
+			{
+				thread.join();
+			}
+			catch (InterruptedException e)
+			{
+				Thread.currentThread().interrupt();
+			}
+		}
+		replayThread = null;
+	}
+
+	// Method to stop the replay thread, close the reader and let go of the current frame
+	public void close()
+	{
+		stop();
+		reader.close();
+
+		// Replacing the current frame with nothing gives up our reference to it
+		currentWebSocketFrame.publish(null);
+
+		if (pending != null)
+		{
+			pending.release();
+			pending = null;
+		}
+	}
+
+	public void pause()  { setPaused(true);  }
+	public void resume() { setPaused(false); }
+
+	public void setPaused(boolean value)
+	{
+		synchronized (lock)
+		{
+			paused            = value;
+			stepsRequested    = 0;
+			controlChanged    = true;
+			reanchorRequested = true;
+			lock.notifyAll();
+		}
+		wakeReplayThread();
+	}
+
+	// Method to send out the next frame straight away. Only has an effect while paused.
+	public void step()
+	{
+		synchronized (lock)
+		{
+			if (paused)
+			{
+				++stepsRequested;
+				lock.notifyAll();
+			}
+		}
+	}
+
+	// Method to set the playback speed as a multiple of the recorded speed, from MIN_SPEED to MAX_SPEED, or
+	// AS_FAST_AS_POSSIBLE to ignore timestamps
+	public void setSpeed(double value)
+	{
+		if ( value != AS_FAST_AS_POSSIBLE && !(value >= MIN_SPEED && value <= MAX_SPEED) )
+		{
+			throw new IllegalArgumentException("Replay speed must be between " + MIN_SPEED + " and " + MAX_SPEED + ", or AS_FAST_AS_POSSIBLE.");
+		}
+
+		synchronized (lock)
+		{
+			requestedSpeed = value;
+			controlChanged = true;
+		}
+		wakeReplayThread();
+	}
+
+	// How far behind schedule we can fall before giving up on catching up and re-anchoring on the current frame
+	public void setMaxLagMillis(long millis) { maxLagNanos = TimeUnit.MILLISECONDS.toNanos(millis);  }
+
+	// The largest jump forward in timestamps which is replayed as a wait rather than skipped over
+	public void setMaxGapMillis(long millis) { maxGapMicros = TimeUnit.MILLISECONDS.toMicros(millis); }
+
+	private void wakeReplayThread()
+	{
+		Thread thread = replayThread;
+		if (thread != null)
+		{
+			LockSupport.unpark(thread);
+		}
+	}
+
+	// ----- Replay thread -----
+
+	private void replayLoop()
+	{
+		try
+		{
+			while (true)
+			{
+				// Wait while paused, unless we've been asked to step
+				boolean stepping;
+				synchronized (lock)
+				{
+					while (running && paused && stepsRequested == 0)
+					{
+						lock.wait();
+					}
+
+					if (!running)
+					{
+						break;
+					}
+
+					stepping = paused;
+					if (stepping)
+					{
+						--stepsRequested;
+					}
+				}
+
+				applyControlChanges();
+
+				// Read the next frame, unless we already have one waiting from before a pause or speed change
+				if (pending == null)
+				{
+					pending = pool.acquire();
+					if ( !reader.readWebSocketFrame(pending) )
+					{
+						pending.release();
+						pending  = null;
+						finished = true;
+						break;
+					}
+				}
+
+				if (stepping || speed == AS_FAST_AS_POSSIBLE)
+				{
+					// Timestamps don't matter, and the next timed frame starts from wherever we are then
+					anchored = false;
+				}
+				else if ( !waitUntilDue( pending.getTimestamp() ) )
+				{
+					// Paused, stopped or changed speed while waiting - go round again with the same frame
+					continue;
+				}
+
+				lastTimestamp = pending.getTimestamp();
+				publishFrame(pending);
+				pending = null;
+			}
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+		}
+		finally
+		{
+			synchronized (lock)
+			{
+				running = false;
+			}
+		}
+	}
+
+	// Method to pick up any speed or pause changes made from other threads
+	private void applyControlChanges()
+	{
+		synchronized (lock)
+		{
+			if (!controlChanged)
+			{
+				return;
+			}
+			controlChanged = false;
+
+			// Re-anchor at the point in the recording we've reached now, so the new speed carries on from here
+			if (anchored && requestedSpeed != speed)
+			{
+				long now = System.nanoTime();
+				anchorTimestamp = recordingTimeAt(now);
+				anchorNanos     = now;
+			}
+			speed = requestedSpeed;
+
+			// After a pause there's no point trying to catch up on the time we were paused for
+			if (reanchorRequested)
+			{
+				anchored          = false;
+				reanchorRequested = false;
+			}
+		}
+	}
+
+	// Method to work out which recording timestamp corresponds to a given wall clock time
+	private long recordingTimeAt(long nanos)
+	{
+		return anchorTimestamp + (long)( (nanos - anchorNanos) * speed / 1000.0 );
+	}
+
+	// Method to wait until a frame with the given timestamp is due. Returns false if something changed while waiting.
+	private boolean waitUntilDue(long timestamp)
+	{
+		long now = System.nanoTime();
+
+		// Anchor on this frame if we haven't got an anchor, or the timestamps have jumped
+		if ( !anchored || timestamp < lastTimestamp || (timestamp - lastTimestamp) > maxGapMicros )
+		{
+			anchored        = true;
+			anchorNanos     = now;
+			anchorTimestamp = timestamp;
+			return true;
+		}
+
+		long due = anchorNanos + (long)( (timestamp - anchorTimestamp) * 1000.0 / speed );
+		while (true)
+		{
+			long remaining = due - now;
+			if (remaining <= 0L)
+			{
+				break;
+			}
+
+			synchronized (lock)
+			{
+				if (controlChanged || paused || !running)
+				{
+					return false;
+				}
+			}
+
+			if (remaining > SPIN_NANOS)
+			{
+				LockSupport.parkNanos(remaining - SPIN_NANOS);
+			}
+			else
+			{
+				Thread.yield();
+			}
+			now = System.nanoTime();
+		}
+
+		// If we're too far behind then start again from here rather than rushing to catch up
+		long lateness = now - due;
+		if (lateness > maxLatenessNanos)
+		{
+			maxLatenessNanos = lateness;
+		}
+		if (lateness > maxLagNanos)
+		{
+			anchorNanos     = now;
+			anchorTimestamp = timestamp;
+			++resyncs;
+		}
+
+		return true;
+	}
+
+	// Method to make a frame the current frame, tell the listeners about it, and give up our reference to the last one
+	private void publishFrame(WebSocketFrame wsf)
+	{
+		currentWebSocketFrame.publish(wsf);
+
+		for (WebSocketFrameListener listener : frameListeners)
+		{
+			listener.onWebSocketFrame(wsf);
+		}
+		++framesSent;
+	}
+
+	// ----- Getters -----
+
+	// Note: The frame returned here may be recycled once a newer frame is sent - use acquireCurrentWebSocketFrame if you
+	// need to hold on to it.
+	public WebSocketFrame getCurrentWebSocketFrame() { return currentWebSocketFrame.latest().getValue(); }
+
+	// Method to get the most recently sent frame with a reference held on it. Call release() on it when you're done.
+	public WebSocketFrame acquireCurrentWebSocketFrame() { return currentWebSocketFrame.acquireLatest(); }
+
+	// Method to get the publisher frames go out through, e.g. to wait for a frame newer than the last one you saw with
+	// awaitNewer(). Once the replayer is closed its latest value is null.
+	public WebSocketFramePublisher getFramePublisher() { return currentWebSocketFrame; }
+
+	public double getSpeed()
+	{
+		synchronized (lock) { return requestedSpeed; }
+	}
+
+	public boolean isPaused()
+	{
+		synchronized (lock) { return paused; }
+	}
+
+	public boolean isRunning()
+	{
+		synchronized (lock) { return running; }
+	}
+
+	public boolean isFinished()        { return finished;         } // True once a non-looping reader has run out of frames
+	public long getFramesSent()        { return framesSent;       }
+	public long getResyncs()           { return resyncs;          } // Number of times we fell more than maxLagMillis behind
+	public long getMaxLatenessNanos()  { return maxLatenessNanos; } // Latest any frame has been sent, relative to when it was due
+
+	@Override
+	public String toString()
+	{
+		return "LeapDataReplayer [speed=" + getSpeed() + ", paused=" + isPaused() + ", sent=" + framesSent + ", resyncs=" + resyncs +
+		       ", maxLatenessMicros=" + TimeUnit.NANOSECONDS.toMicros(maxLatenessNanos) + "]";
+	}
+}
@@ -0,0 +1,458 @@
+/***
+ *
+ * File       : LeapDataTranscoder.java
+ * Description: A LeapDataTranscoder converts whole directories of recordings from one format to another in parallel, checking
+ *              each converted file frame-for-frame against its source.
+ * Author     : Al Lansley
+ * Date       : 17/10/2026
+ * Version    : 0.1
+ *
+ */
+
+package au.edu.federation.leapdatarecorder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.zip.CRC32;
+
+import au.edu.federation.leapwebsocket.WebSocketFrame;
+
+// Reads every recording under an input directory with a LeapDataReader (so anything it can open - SERIALIZED, BINARY
+// or DELTA, compressed or not - can be converted) and writes it with a LeapDataWriter to the same relative path under
+// an output directory. Files are shared out across cores by a fork-join pool, one file per task.
+//
+// To verify a conversion, each source frame is put through a CRC32 as it's written and each frame read back from the
+// output file goes through another, and the frame counts and checksums have to match. Frames are checksummed in their
+// BINARY encoding, so the check doesn't depend on the format of either file. As DELTA is lossy, when converting to it
+// the source frames are first run through a DeltaFrameCodec in memory, so we're checking against what DELTA should
+// give back rather than the exact originals.
+//
+// Example usage (from the command line):
+//
+//		java au.edu.federation.leapdatarecorder.LeapDataTranscoder archive/ converted/ --format DELTA --threads 8
+//
+// or, from Gradle:
+//
+//		gradle transcode -Pargs="archive/ converted/ --format DELTA"
+//
+public class LeapDataTranscoder
+{
+	private final RecordingFormat format;
+	private final boolean         compress;
+
+	private boolean verify      = true;
+	private int     parallelism = Runtime.getRuntime().availableProcessors();
+	private String  extension; // Only convert files ending with this (null for all files)
+
+	// Constructor specifying the format to convert to and whether to GZIP the output
+	public LeapDataTranscoder(RecordingFormat format, boolean compress)
+	{
+		this.format   = format;
+		this.compress = compress;
+	}
+
+	public void setVerify(boolean value)       { verify = value;                    }
+	public void setParallelism(int threads)    { parallelism = Math.max(1, threads); }
+	public void setExtension(String value)     { extension = value;                 }
+
+	// ----- Converting -----
+
+	// Method to convert every recording under the input directory, returning the result for each file
+	public List<FileResult> transcodeDirectory(File inputDirectory, File outputDirectory)
+	{
+		List<File> inputs = new ArrayList<File>();
+		findRecordings(inputDirectory, inputs);
+		Collections.sort(inputs);
+
+		List<File> outputs = new ArrayList<File>();
+		String inputRoot = inputDirectory.getAbsolutePath();
+		for (File input : inputs)
+		{
+			outputs.add( new File( outputDirectory, input.getAbsolutePath().substring( inputRoot.length() ) ) );
+		}
+
+		ForkJoinPool pool = new ForkJoinPool(parallelism);
+		try
+		{
+			return pool.invoke( new TranscodeTask(inputs, outputs, 0, inputs.size()) );
+		}
+		finally
+		{
+			pool.shutdown();
+		}
+	}
+
+	// Method to convert a single recording
+	public FileResult transcodeFile(File input, File output)
+	{
+		FileResult result = new FileResult(input, output);
+		long startTime = System.nanoTime();
+
+		File parent = output.getAbsoluteFile().getParentFile();
+		if ( parent != null && !parent.isDirectory() && !parent.mkdirs() )
+		{
+			result.error = "could not create " + parent;
+			return result;
+		}
+
+		try
+		{
+			Checksummer checksummer = new Checksummer(format);
+
+			// Convert. A source we can't read all the way to its end fails, rather than being converted as far as it goes.
+			LeapDataReader reader = LeapDataReader.open(input.getPath(), false);
+			WebSocketFrame wsf = new WebSocketFrame();
+			try
+			{
+				result.sourceFormat = reader.getFormat();
+				LeapDataWriter writer = new LeapDataWriter(output.getPath(), compress, format, false);
+				try
+				{
+					while ( reader.readWebSocketFrame(wsf) )
+					{
+						writer.writeWebSocketFrame(wsf);
+						if (verify)
+						{
+							checksummer.addExpected(wsf);
+						}
+						++result.frames;
+					}
+				}
+				finally
+				{
+					writer.close();
+				}
+			}
+			finally
+			{
+				reader.close();
+			}
+
+			if (reader.getError() != null)
+			{
+				result.error = "could not read " + input + " - " + reader.getError();
+			}
+
+			result.expectedChecksum = checksummer.getChecksum();
+
+			// Read the output back and check it matches
+			if (verify && result.error == null)
+			{
+				Checksummer readBack = new Checksummer(null);
+				LeapDataReader verifier = LeapDataReader.open(output.getPath(), false);
+				try
+				{
+					while ( verifier.readWebSocketFrame(wsf) )
+					{
+						readBack.add(wsf);
+						++result.verifiedFrames;
+					}
+				}
+				finally
+				{
+					verifier.close();
+				}
+
+				result.actualChecksum = readBack.getChecksum();
+				if (verifier.getError() != null)
+				{
+					result.error = "could not read back " + output + " - " + verifier.getError();
+				}
+				else if (result.verifiedFrames != result.frames)
+				{
+					result.error = "wrote " + result.frames + " frames but read back " + result.verifiedFrames;
+				}
+				else if (result.actualChecksum != result.expectedChecksum)
+				{
+					result.error = "checksum mismatch";
+				}
+			}
+		}
+		catch (IOException | RuntimeException e)
+		{
+			// e.g. a file in the directory which isn't a recording at all, or has been removed since we found it
+			result.error = e.toString();
+		}
+
+		result.inputBytes  = input.length();
+		result.outputBytes = output.length();
+		result.nanos       = System.nanoTime() - startTime;
+		return result;
+	}
+
+	// Method to find all of the recordings under a directory
+	private void findRecordings(File directory, List<File> recordings)
+	{
+		File[] files = directory.listFiles();
+		if (files == null)
+		{
+			return;
+		}
+
+		for (File file : files)
+		{
+			if ( file.isDirectory() )
+			{
+				findRecordings(file, recordings);
+			}
+			else if ( extension == null || file.getName().endsWith(extension) )
+			{
+				recordings.add(file);
+			}
+		}
+	}
+
+	// ----- Fork-join task -----
+
+	// Task to convert a range of files - ranges of more than one file are split in half and the halves run in parallel
+	private class TranscodeTask extends RecursiveTask<List<FileResult>>
+	{
+		private static final long serialVersionUID = 1L;
+
+		private final List<File> inputs;
+		private final List<File> outputs;
+		private final int        from;
+		private final int        to;
+
+		TranscodeTask(List<File> inputs, List<File> outputs, int from, int to)
+		{
+			this.inputs  = inputs;
+			this.outputs = outputs;
+			this.from    = from;
+			this.to      = to;
+		}
+
+		@Override
+		protected List<FileResult> compute()
+		{
+			if (to - from <= 1)
+			{
+				List<FileResult> results = new ArrayList<FileResult>();
+				if (to > from)
+				{
+					FileResult result = transcodeFile( inputs.get(from), outputs.get(from) );
+					System.out.println(result);
+					results.add(result);
+				}
+				return results;
+			}
+
+			int middle = (from + to) >>> 1;
+			TranscodeTask left  = new TranscodeTask(inputs, outputs, from, middle);
+			TranscodeTask right = new TranscodeTask(inputs, outputs, middle, to);
+			left.fork();
+
+			List<FileResult> results = right.compute();
+			results.addAll(0, left.join());
+			return results;
+		}
+	}
+
+	// ----- Checksums -----
+
+	// Running CRC32 of frames in their BINARY encoding. If given the DELTA format, expected frames are first put
+	// through a DeltaFrameCodec so they match what will be read back.
+	private static final class Checksummer
+	{
+		private final CRC32 crc = new CRC32();
+		private ByteBuffer buffer = ByteBuffer.allocate(8192);
+
+		private final DeltaFrameCodec deltaEncoder;
+		private final DeltaFrameCodec deltaDecoder;
+		private final WebSocketFrame  decoded;
+		private ByteBuffer deltaBuffer;
+
+		Checksummer(RecordingFormat outputFormat)
+		{
+			boolean lossy = (outputFormat == RecordingFormat.DELTA);
+			deltaEncoder = lossy ? new DeltaFrameCodec()       : null;
+			deltaDecoder = lossy ? new DeltaFrameCodec()       : null;
+			decoded      = lossy ? new WebSocketFrame()        : null;
+			deltaBuffer  = lossy ? ByteBuffer.allocate(16384)  : null;
+		}
+
+		// Method to add a source frame, as it will look once it's been through the output format
+		void addExpected(WebSocketFrame wsf)
+		{
+			if (deltaEncoder == null)
+			{
+				add(wsf);
+				return;
+			}
+
+			int maxSize = DeltaFrameCodec.maxEncodedSize(wsf);
+			if (deltaBuffer.capacity() < maxSize)
+			{
+				deltaBuffer = ByteBuffer.allocate( Math.max(maxSize, deltaBuffer.capacity() * 2) );
+			}
+
+			deltaBuffer.clear();
+			deltaEncoder.encode(wsf, deltaBuffer);
+			deltaBuffer.flip();
+			try
+			{
+				deltaDecoder.decodeInto(deltaBuffer, decoded);
+			}
+			catch (IOException e)
+			{
+				throw new IllegalStateException(e);
+			}
+			add(decoded);
+		}
+
+		// Method to add a frame exactly as it is
+		void add(WebSocketFrame wsf)
+		{
+			int maxSize = LeapFrameCodec.maxEncodedSize(wsf);
+			if (buffer.capacity() < maxSize)
+			{
+				buffer = ByteBuffer.allocate( Math.max(maxSize, buffer.capacity() * 2) );
+			}
+
+			buffer.clear();
+			LeapFrameCodec.encode(wsf, buffer);
+			crc.update( buffer.array(), 0, buffer.position() );
+		}
+
+		long getChecksum() { return crc.getValue(); }
+	}
+
+	// ----- Results -----
+
+	// The outcome of converting one file
+	public static class FileResult
+	{
+		public final File input;
+		public final File output;
+
+		public RecordingFormat sourceFormat;
+		public long   frames;
+		public long   verifiedFrames;
+		public long   expectedChecksum;
+		public long   actualChecksum;
+		public long   inputBytes;
+		public long   outputBytes;
+		public long   nanos;
+		public String error; // Null if the file converted (and verified, if verifying) successfully
+
+		FileResult(File input, File output)
+		{
+			this.input  = input;
+			this.output = output;
+		}
+
+		public boolean isOk() { return error == null; }
+
+		@Override
+		public String toString()
+		{
+			double seconds = nanos / 1.0e9;
+			return String.format(Locale.ROOT, "%s %s: %s -> %d frames, %.2f MB -> %.2f MB, %.0f frames/s, %.1f MB/s%s",
+			                     isOk() ? "OK  " : "FAIL", input.getPath(), sourceFormat, frames,
+			                     inputBytes / 1.0e6, outputBytes / 1.0e6, frames / seconds, (inputBytes / 1.0e6) / seconds,
+			                     isOk() ? "" : " - " + error);
+		}
+	}
+
+	// ----- Command line -----
+
+	private static void printUsage()
+	{
+		System.out.println("Usage: LeapDataTranscoder <input directory> <output directory> [options]");
+		System.out.println("  --format BINARY|DELTA|SERIALIZED   Format to convert to (default BINARY)");
+		System.out.println("  --compress true|false              Whether to GZIP the output (default true)");
+		System.out.println("  --threads N                        Number of files to convert at once (default: number of cores)");
+		System.out.println("  --extension EXT                    Only convert files ending with EXT, e.g. .gzip (default: all files)");
+		System.out.println("  --no-verify                        Don't read the output back to check it");
+	}
+
+	public static void main(String[] args)
+	{
+		if (args.length < 2)
+		{
+			printUsage();
+			System.exit(-1);
+		}
+
+		File inputDirectory  = new File(args[0]);
+		File outputDirectory = new File(args[1]);
+		if ( inputDirectory.getAbsoluteFile().equals( outputDirectory.getAbsoluteFile() ) )
+		{
+			System.out.println("The output directory must be different to the input directory.");
+			System.exit(-1);
+		}
+
+		RecordingFormat format    = RecordingFormat.BINARY;
+		boolean         compress  = true;
+		boolean         verify    = true;
+		int             threads   = Runtime.getRuntime().availableProcessors();
+		String          extension = null;
+
+		try
+		{
+			for (int i = 2; i < args.length; ++i)
+			{
+				switch (args[i])
+				{
+					case "--format":    format    = RecordingFormat.valueOf( args[++i].toUpperCase(Locale.ROOT) ); break;
+					case "--compress":  compress  = Boolean.parseBoolean( args[++i] );                        break;
+					case "--threads":   threads   = Integer.parseInt( args[++i] );                            break;
+					case "--extension": extension = args[++i];                                                break;
+					case "--no-verify": verify    = false;                                                    break;
+					default:
+						System.out.println("Unknown option: " + args[i]);
+						printUsage();
+						System.exit(-1);
+				}
+			}
+		}
+		catch (RuntimeException e)
+		{
+			printUsage();
+			System.exit(-1);
+		}
+
+		LeapDataTranscoder transcoder = new LeapDataTranscoder(format, compress);
+		transcoder.setVerify(verify);
+		transcoder.setParallelism(threads);
+		transcoder.setExtension(extension);
+
+		long startTime = System.nanoTime();
+		List<FileResult> results = transcoder.transcodeDirectory(inputDirectory, outputDirectory);
+		double seconds = (System.nanoTime() - startTime) / 1.0e9;
+
+		// Totals
+		long frames = 0L, inputBytes = 0L, outputBytes = 0L;
+		int failures = 0;
+		for (FileResult result : results)
+		{
+			frames      += result.frames;
+			inputBytes  += result.inputBytes;
+			outputBytes += result.outputBytes;
+			if ( !result.isOk() )
+			{
+				++failures;
+			}
+		}
+
+		System.out.println();
+		System.out.println( String.format(Locale.ROOT, "Converted %d files (%d failed) to %s%s using %d threads in %.2f seconds",
+		                                  results.size(), failures, format, compress ? " (compressed)" : "", threads, seconds) );
+		System.out.println( String.format(Locale.ROOT, "%d frames, %.2f MB -> %.2f MB (%.1f%%), %.0f frames/s, %.1f MB/s",
+		                                  frames, inputBytes / 1.0e6, outputBytes / 1.0e6, inputBytes == 0 ? 0.0 : 100.0 * outputBytes / inputBytes,
+		                                  frames / seconds, (inputBytes / 1.0e6) / seconds) );
+		if (verify)
+		{
+			System.out.println(failures == 0 ? "All files verified." : "Some files FAILED - see above.");
+		}
+
+		System.exit(failures == 0 ? 0 : 1);
+	}
+}
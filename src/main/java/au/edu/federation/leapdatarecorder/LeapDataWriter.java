@@ -2,20 +2,22 @@
  * 
  * File       : LeapDataWrite.java
  * Description: A LeapDataWriter reads WebSocketFrames from the Leap WebSocket interface (accessed via a LeapWebSocket object)
- *              and writes them to file in serialized form. The file may optionally also be GZIP compressed.
+ *              and writes them to file in either the compact BINARY format or serialized form. The file may optionally also be GZIP compressed.
  * Author     : Al Lansley
- * Date       : 12/02/2014
- * Version    : 0.2
+ * Date       : 17/10/2026
+ * Version    : 0.3
  * 
  */
 
 package au.edu.federation.leapdatarecorder;
 
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
 import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.ObjectOutputStream;
-import java.net.URI;
+import java.io.OutputStream;
 import java.net.URISyntaxException;
 import java.nio.ByteBuffer;
 import java.util.List;
@@ -25,6 +27,8 @@ import org.java_websocket.WebSocketImpl;
 import org.java_websocket.drafts.Draft;
 import org.java_websocket.drafts.Draft_6455;
 
+import au.edu.federation.leapwebsocket.LatencyHistogram;
+import au.edu.federation.leapwebsocket.LatencyMonitor;
 import au.edu.federation.leapwebsocket.LeapWebSocket;
 import au.edu.federation.leapwebsocket.WebSocketFrame;
 import org.java_websocket.enums.CloseHandshakeType;
@@ -35,118 +39,88 @@ import org.java_websocket.framing.Framedata;
 import org.java_websocket.handshake.*;
 
 // Class to write a compressed stream of WebSocketFrames to a file
-public class LeapDataWriter
+public class LeapDataWriter implements FrameWriter
 {
 	private String filename;
 	
 	private FileOutputStream   fileOutputStream;	
 	private GZIPOutputStream   gzipOutputStream;
-	private ObjectOutputStream objectOutputStream;
+	private ObjectOutputStream objectOutputStream; // Only used when writing the SERIALIZED format
+	private DataOutputStream   dataOutputStream;   // Only used when writing the BINARY and DELTA formats
 	
 	private boolean writeCompressedStream;
+	private RecordingFormat format;
+	
+	// Reusable buffer each frame is encoded into before being written when using the BINARY or DELTA formats
+	private ByteBuffer encodeBuffer = ByteBuffer.allocate(8192);
+	
+	// Codec holding the previous frame's state when writing the DELTA format
+	private DeltaFrameCodec deltaCodec;
 	
 	private LeapWebSocket leapWebSocket;
+	
+	// Latency stage shared by every LeapDataWriter, only recorded into when LatencyMonitor.ENABLED
+	private static final LatencyHistogram WRITE_LATENCY = LatencyMonitor.stage("recorder.write", "Time to write a frame to a recording");
 		
-	// Constructor
+	// Constructor - writes the compact BINARY format
 	public LeapDataWriter(String theFilename, boolean writeCompressedStreamValue)
 	{
-		// The data we write is captured from the WebSocket interface, so connect to it.
-		try {
-			leapWebSocket = new LeapWebSocket(new URI("ws://localhost:6437"), new Draft_6455() );
-
-			/*
-			    @Override
-				public HandshakeState acceptHandshakeAsClient(ClientHandshake request, ServerHandshake response) throws InvalidHandshakeException {
-					return null;
-				}
-
-				@Override
-				public HandshakeState acceptHandshakeAsServer(ClientHandshake handshakedata) throws InvalidHandshakeException {
-					return null;
-				}
-
-				@Override
-				public ByteBuffer createBinaryFrame(Framedata framedata) {
-					return null;
-				}
-
-				@Override
-				public List<Framedata> createFrames(ByteBuffer binary, boolean mask) {
-					return null;
-				}
-
-				@Override
-				public List<Framedata> createFrames(String text, boolean mask) {
-					return null;
-				}
-
-				@Override
-				public void processFrame(WebSocketImpl webSocketImpl, Framedata frame) throws InvalidDataException {
-
-				}
-
-				@Override
-				public void reset() {
-
-				}
-
-				@Override
-				public ClientHandshakeBuilder postProcessHandshakeRequestAsClient(ClientHandshakeBuilder request) throws InvalidHandshakeException {
-					return null;
-				}
-
-				@Override
-				public HandshakeBuilder postProcessHandshakeResponseAsServer(ClientHandshake request, ServerHandshakeBuilder response) throws InvalidHandshakeException {
-					return null;
-				}
-
-				@Override
-				public List<Framedata> translateFrame(ByteBuffer buffer) throws InvalidDataException {
-					return null;
-				}
-
-				@Override
-				public CloseHandshakeType getCloseHandshakeType() {
-					return null;
-				}
-
-				@Override
-				public Draft copyInstance() {
-					return null;
-				}
-			};
-			*/
-
-
-			leapWebSocket.connect();
-		}
-		catch (URISyntaxException e1)
-		{
-			e1.printStackTrace();
-			System.exit(-1);
-		}
-		
+		this(theFilename, writeCompressedStreamValue, RecordingFormat.BINARY);
+	}
+	
+	// Constructor writing the DELTA format with the given codec's quantization settings
+	public LeapDataWriter(String theFilename, boolean writeCompressedStreamValue, DeltaFrameCodec codec)
+	{
+		this(theFilename, writeCompressedStreamValue, RecordingFormat.DELTA, codec, true);
+	}
+	
+	// Constructor specifying the format to write
+	public LeapDataWriter(String theFilename, boolean writeCompressedStreamValue, RecordingFormat formatValue)
+	{
+		this(theFilename, writeCompressedStreamValue, formatValue, true);
+	}
+	
+	// Constructor specifying whether to connect to the Leap WebSocket interface. Pass false when the frames come from
+	// somewhere else, such as another recording being converted.
+	public LeapDataWriter(String theFilename, boolean writeCompressedStreamValue, RecordingFormat formatValue, boolean connectToLeap)
+	{
+		this(theFilename, writeCompressedStreamValue, formatValue, (formatValue == RecordingFormat.DELTA) ? new DeltaFrameCodec() : null, connectToLeap);
+	}
+	
+	private LeapDataWriter(String theFilename, boolean writeCompressedStreamValue, RecordingFormat formatValue, DeltaFrameCodec codec, boolean connectToLeap)
+	{
 		filename = theFilename;
 		
 		writeCompressedStream = writeCompressedStreamValue;
+		format                = formatValue;
+		deltaCodec            = codec;
 		
 		// Set up the streams
 		try
 		{
 			fileOutputStream = new FileOutputStream(filename);
 			
-			// If we're writing a compressed stream then...
+			// If we're writing a compressed stream then set up the gzipOutputStream and write through it,
+			// otherwise we'll just write straight to the fileOutputStream.
+			OutputStream out = fileOutputStream;
 			if (writeCompressedStream)
 			{
-				// ...set up the gzipOutputStream and...
 				gzipOutputStream = new GZIPOutputStream(fileOutputStream);
-				
-				// ...set the objectOutputStream to use it.
-				objectOutputStream = new ObjectOutputStream(gzipOutputStream);
+				out = gzipOutputStream;
 			}
-			else //Otherwise we'll just use the fileOutputStream for the objectOutputStream
+			
+			if (format == RecordingFormat.SERIALIZED)
+			{
+				objectOutputStream = new ObjectOutputStream(out);
+			}
+			else
 			{
-				objectOutputStream = new ObjectOutputStream(fileOutputStream);
+				dataOutputStream = new DataOutputStream( new BufferedOutputStream(out, 65536) );
+				LeapFrameCodec.writeHeader(dataOutputStream, format);
+				if (format == RecordingFormat.DELTA)
+				{
+					deltaCodec.writeSettings(dataOutputStream);
+				}
 			}
 		}
 		catch (FileNotFoundException e)
@@ -157,30 +131,155 @@ public class LeapDataWriter
 		{
 			e.printStackTrace();
 		}
+		
+		// The data we write is normally captured from the WebSocket interface, so connect to it. This must come last, as
+		// frames are handed to us (on the socket's own threads) as soon as we're bound to it.
+		if (connectToLeap)
+		{
+			try {
+				leapWebSocket = new LeapWebSocket(LeapWebSocket.getDefaultURI(), new Draft_6455() );
+				
+				// Record what it receives straight to us
+				new LeapDataRecorder(leapWebSocket, this).enable();
+
+				/*
+				    @Override
+					public HandshakeState acceptHandshakeAsClient(ClientHandshake request, ServerHandshake response) throws InvalidHandshakeException {
+						return null;
+					}
+
+					@Override
+					public HandshakeState acceptHandshakeAsServer(ClientHandshake handshakedata) throws InvalidHandshakeException {
+						return null;
+					}
+
+					@Override
+					public ByteBuffer createBinaryFrame(Framedata framedata) {
+						return null;
+					}
+
+					@Override
+					public List<Framedata> createFrames(ByteBuffer binary, boolean mask) {
+						return null;
+					}
+
+					@Override
+					public List<Framedata> createFrames(String text, boolean mask) {
+						return null;
+					}
+
+					@Override
+					public void processFrame(WebSocketImpl webSocketImpl, Framedata frame) throws InvalidDataException {
+
+					}
+
+					@Override
+					public void reset() {
+
+					}
+
+					@Override
+					public ClientHandshakeBuilder postProcessHandshakeRequestAsClient(ClientHandshakeBuilder request) throws InvalidHandshakeException {
+						return null;
+					}
+
+					@Override
+					public HandshakeBuilder postProcessHandshakeResponseAsServer(ClientHandshake request, ServerHandshakeBuilder response) throws InvalidHandshakeException {
+						return null;
+					}
+
+					@Override
+					public List<Framedata> translateFrame(ByteBuffer buffer) throws InvalidDataException {
+						return null;
+					}
+
+					@Override
+					public CloseHandshakeType getCloseHandshakeType() {
+						return null;
+					}
+
+					@Override
+					public Draft copyInstance() {
+						return null;
+					}
+				};
+				*/
+
+
+				leapWebSocket.connect();
+			}
+			catch (URISyntaxException e1)
+			{
+				e1.printStackTrace();
+				System.exit(-1);
+			}
+		}
 	}
 	
 	// Method to write a WebSocketFrame to file
+	@Override
 	public void writeWebSocketFrame(WebSocketFrame wsf)
 	{
+		long startNanos = LatencyMonitor.ENABLED ? System.nanoTime() : 0L;
+		
 		try
 		{
-			objectOutputStream.writeObject(wsf);
+			if (format == RecordingFormat.SERIALIZED)
+			{
+				objectOutputStream.writeObject(wsf);
+				
+				// Frames may be re-used (see WebSocketFramePool), so make sure the next one is written out in full rather
+				// than as a reference back to this one. This also stops the stream holding on to every frame written.
+				objectOutputStream.reset();
+			}
+			else
+			{
+				// Make sure the encode buffer is big enough for this frame, then encode it and write it out with its length
+				int maxSize = (format == RecordingFormat.DELTA) ? DeltaFrameCodec.maxEncodedSize(wsf) : LeapFrameCodec.maxEncodedSize(wsf);
+				if (encodeBuffer.capacity() < maxSize)
+				{
+					encodeBuffer = ByteBuffer.allocate( Math.max(maxSize, encodeBuffer.capacity() * 2) );
+				}
+				
+				encodeBuffer.clear();
+				if (format == RecordingFormat.DELTA) { deltaCodec.encode(wsf, encodeBuffer);     }
+				else                                 { LeapFrameCodec.encode(wsf, encodeBuffer); }
+				
+				dataOutputStream.writeInt( encodeBuffer.position() );
+				dataOutputStream.write( encodeBuffer.array(), 0, encodeBuffer.position() );
+			}
 		}
 		catch (IOException e)
 		{
 			e.printStackTrace();
 		}
+		
+		if (LatencyMonitor.ENABLED)
+		{
+			WRITE_LATENCY.recordSince(startNanos);
+		}
 	}
 	
+	public RecordingFormat getFormat() { return format; }
+	
 	// Method to close the output streams
+	@Override
 	public void close()
 	{
 		
 		
 		try
 		{
-			objectOutputStream.flush();
-			objectOutputStream.close();
+			if (format == RecordingFormat.SERIALIZED)
+			{
+				objectOutputStream.flush();
+				objectOutputStream.close();
+			}
+			else
+			{
+				dataOutputStream.flush();
+				dataOutputStream.close();
+			}
 			
 			// If we're writing a compressed stream then flush and close the gzipOutputStream
 			if (writeCompressedStream)
@@ -198,7 +297,10 @@ public class LeapDataWriter
 		}
 		
 		// Close our connection to the leap WebSocket interface
-				leapWebSocket.close();
+		if (leapWebSocket != null)
+		{
+			leapWebSocket.close();
+		}
 	}
 
 } // End of LeapDataRecorder class
@@ -0,0 +1,383 @@
+/***
+ *
+ * File       : LeapFrameCodec.java
+ * Description: A LeapFrameCodec converts WebSocketFrames to and from the compact BINARY recording format.
+ * Author     : Al Lansley
+ * Date       : 17/10/2026
+ * Version    : 0.1
+ *
+ */
+
+package au.edu.federation.leapdatarecorder;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import au.edu.federation.leapwebsocket.WebSocketFrame;
+import au.edu.federation.leapwebsocket.WebSocketGesture;
+import au.edu.federation.leapwebsocket.WebSocketHand;
+import au.edu.federation.leapwebsocket.WebSocketInteractionBox;
+import au.edu.federation.leapwebsocket.WebSocketPointable;
+
+// Layout of a BINARY recording (all values big-endian):
+//
+//		Header : int magic ('L','D','R','C'), short format version, byte codec id (see RecordingFormat)
+//		Records: int payload length, followed by that many bytes of payload - one record per WebSocketFrame
+//
+// Layout of a frame payload:
+//
+//		long id, long timestamp, double currentFrameRate, float s, float[9] r, float[3] t,
+//		float[3] interaction box center, float[3] interaction box size,
+//		ushort hand count,      then that many hands
+//		ushort pointable count, then that many pointables
+//		ushort gesture count,   then that many gestures
+//
+//		Hand     : int id, float[3] direction, float[3] palmNormal, float[3] palmPosition, float[3] palmVelocity,
+//		           float[9] r, float[3] sphereCenter, float sphereRadius, float[3] stabilizedPalmPosition, float timeVisible
+//		Pointable: float[3] direction, int handId, int id, float length, float[3] stabilizedTipPosition, float timeVisible,
+//		           float[3] tipPosition, float[3] tipVelocity, byte tool, float touchDistance, token touchZone
+//		Gesture  : long duration, int id, ushort count + int[] handIds, ushort count + int[] pointableIds, token state, token type
+//
+// The handful of strings in a frame (touch zones, gesture states and types) come from small fixed vocabularies, so
+// they're written as a single byte token. Anything outside the vocabulary is written as TOKEN_LITERAL followed by a
+// ushort length and the UTF-8 bytes, and null is written as TOKEN_NULL. Null vectors are written as zeros.
+//
+// Because the length of every record is written up front, a reader can skip over frames without decoding them.
+public final class LeapFrameCodec
+{
+	public static final int   MAGIC          = 0x4C445243; // "LDRC"
+	public static final short FORMAT_VERSION = 1;
+	public static final int   HEADER_SIZE    = 4 + 2 + 1;
+
+	// Fixed sizes of each section of a payload in bytes - used to work out how big a buffer we need
+	private static final int FRAME_FIXED_SIZE   = 8 + 8 + 8 + 4 + (9 * 4) + (3 * 4) + (6 * 4) + (3 * 2);
+	private static final int HAND_SIZE          = 4 + (12 * 4) + (9 * 4) + (3 * 4) + 4 + (3 * 4) + 4;
+	private static final int POINTABLE_SIZE     = (3 * 4) + 4 + 4 + 4 + (3 * 4) + 4 + (3 * 4) + (3 * 4) + 1 + 4;
+	private static final int GESTURE_FIXED_SIZE = 8 + 4 + 2 + 2;
+
+	// Token values used for strings
+	private static final byte TOKEN_NULL    = 0;
+	private static final byte TOKEN_LITERAL = (byte)0xFF;
+
+	// Vocabularies for tokenised strings. Both the WebSocket (JSON) spelling and the spelling produced by the Leap
+	// enums' toString() (used by WebSocketFrame(Frame)) are included. Never reorder these - only ever append!
+	// Note: These and the token methods below are package-private as the DeltaFrameCodec writes strings the same way.
+	static final String[] TOUCH_ZONES    = { "none", "hovering", "touching", "ZONE_NONE", "ZONE_HOVERING", "ZONE_TOUCHING" };
+	static final String[] GESTURE_STATES = { "start", "update", "stop", "STATE_START", "STATE_UPDATE", "STATE_STOP", "STATE_INVALID" };
+	static final String[] GESTURE_TYPES  = { "circle", "swipe", "screenTap", "keyTap", "TYPE_CIRCLE", "TYPE_SWIPE", "TYPE_SCREEN_TAP", "TYPE_KEY_TAP", "TYPE_INVALID" };
+
+	private LeapFrameCodec() { }
+
+	// ----- Header -----
+
+	// Method to write the file header for a given format
+	public static void writeHeader(DataOutput out, RecordingFormat format) throws IOException
+	{
+		out.writeInt(MAGIC);
+		out.writeShort(FORMAT_VERSION);
+		out.writeByte(format.getCodecId());
+	}
+
+	// Method to read the remainder of a file header once the magic number has been matched. Returns the format the
+	// records were written in, or throws an IOException if the file was written by a newer version or unknown codec.
+	public static RecordingFormat readHeaderAfterMagic(DataInput in) throws IOException
+	{
+		short version = in.readShort();
+		if (version > FORMAT_VERSION)
+		{
+			throw new IOException("Recording format version " + version + " is newer than the supported version " + FORMAT_VERSION);
+		}
+
+		byte codecId = in.readByte();
+		RecordingFormat format = RecordingFormat.fromCodecId(codecId);
+		if (format == null)
+		{
+			throw new IOException("Unknown recording codec id: " + codecId);
+		}
+		return format;
+	}
+
+	// ----- Encoding -----
+
+	// Method to return the largest number of bytes the payload for this frame could take up
+	public static int maxEncodedSize(WebSocketFrame wsf)
+	{
+		int size = FRAME_FIXED_SIZE;
+		size += wsf.hands().size() * HAND_SIZE;
+
+		for (WebSocketPointable wsp : wsf.pointables())
+		{
+			size += POINTABLE_SIZE + maxTokenSize( wsp.getTouchZone() );
+		}
+
+		for (WebSocketGesture wsg : wsf.gestures())
+		{
+			size += GESTURE_FIXED_SIZE;
+			size += sizeOf( wsg.getHandIds() ) * 4;
+			size += sizeOf( wsg.getPointableIds() ) * 4;
+			size += maxTokenSize( wsg.getState() ) + maxTokenSize( wsg.getType() );
+		}
+
+		return size;
+	}
+
+	// Method to write the payload for a WebSocketFrame into the buffer at its current position. The buffer must have
+	// at least maxEncodedSize(wsf) bytes remaining.
+	public static void encode(WebSocketFrame wsf, ByteBuffer buf)
+	{
+		buf.putLong  ( wsf.getId()               );
+		buf.putLong  ( wsf.getTimestamp()        );
+		buf.putDouble( wsf.getCurrentFrameRate() );
+		buf.putFloat ( wsf.getS()                );
+		putMatrix3   ( buf, wsf.getR()           );
+		putVector3   ( buf, wsf.getT()           );
+
+		WebSocketInteractionBox box = wsf.getInteractionBox();
+		putVector3( buf, box == null ? null : box.getCenter() );
+		putVector3( buf, box == null ? null : box.getSize()   );
+
+		// Hands
+		List<WebSocketHand> hands = wsf.hands();
+		buf.putShort( (short)hands.size() );
+		for (int i = 0; i < hands.size(); ++i)
+		{
+			WebSocketHand wsh = hands.get(i);
+			buf.putInt  ( wsh.getId()                          );
+			putVector3  ( buf, wsh.getPalmDirection()          );
+			putVector3  ( buf, wsh.getPalmNormal()             );
+			putVector3  ( buf, wsh.getPalmPosition()           );
+			putVector3  ( buf, wsh.getPalmVelocity()           );
+			putMatrix3  ( buf, wsh.getR()                      );
+			putVector3  ( buf, wsh.getSphereCenter()           );
+			buf.putFloat( wsh.getSphereRadius()                );
+			putVector3  ( buf, wsh.getStabilizedPalmPosition() );
+			buf.putFloat( wsh.getTimeVisible()                 );
+		}
+
+		// Pointables
+		List<WebSocketPointable> pointables = wsf.pointables();
+		buf.putShort( (short)pointables.size() );
+		for (int i = 0; i < pointables.size(); ++i)
+		{
+			WebSocketPointable wsp = pointables.get(i);
+			putVector3  ( buf, wsp.getDirection()             );
+			buf.putInt  ( (int)wsp.getHandId()                );
+			buf.putInt  ( wsp.getId()                         );
+			buf.putFloat( wsp.getLength()                     );
+			putVector3  ( buf, wsp.getStabilizedTipPosition() );
+			buf.putFloat( wsp.getTimeVisible()                );
+			putVector3  ( buf, wsp.getTipPosition()           );
+			putVector3  ( buf, wsp.getTipVelocity()           );
+			buf.put     ( wsp.isTool() ? (byte)1 : (byte)0    );
+			buf.putFloat( wsp.getTouchDistance()              );
+			putToken    ( buf, wsp.getTouchZone(), TOUCH_ZONES );
+		}
+
+		// Gestures
+		List<WebSocketGesture> gestures = wsf.gestures();
+		buf.putShort( (short)gestures.size() );
+		for (int i = 0; i < gestures.size(); ++i)
+		{
+			WebSocketGesture wsg = gestures.get(i);
+			buf.putLong( wsg.getDuration() );
+			buf.putInt ( wsg.getId()       );
+			putIntList ( buf, wsg.getHandIds()      );
+			putIntList ( buf, wsg.getPointableIds() );
+			putToken   ( buf, wsg.getState(), GESTURE_STATES );
+			putToken   ( buf, wsg.getType(),  GESTURE_TYPES  );
+		}
+	}
+
+	// ----- Decoding -----
+
+	// Method to read a WebSocketFrame from a payload starting at the buffer's current position. On return the
+	// buffer's position is just past the end of the payload.
+	public static WebSocketFrame decode(ByteBuffer buf)
+	{
+		WebSocketFrame wsf = new WebSocketFrame();
+		decodeInto(buf, wsf);
+		return wsf;
+	}
+
+	// Method to read a payload into an existing WebSocketFrame. The frame is reset first and its existing children and
+	// arrays are re-used, so decoding into a recycled frame (see WebSocketFramePool) allocates next to nothing.
+	public static void decodeInto(ByteBuffer buf, WebSocketFrame wsf)
+	{
+		wsf.reset();
+
+		wsf.setId              ( buf.getLong()   );
+		wsf.setTimestamp       ( buf.getLong()   );
+		wsf.setCurrentFrameRate( buf.getDouble() );
+		wsf.setS               ( buf.getFloat()  );
+		getMatrix3( buf, wsf.getR() );
+		getVector3( buf, wsf.getT() );
+
+		WebSocketInteractionBox box = wsf.getInteractionBox();
+		getVector3( buf, box.getCenter() );
+		getVector3( buf, box.getSize()   );
+
+		// Hands
+		int handCount = buf.getShort() & 0xFFFF;
+		List<WebSocketHand> hands = wsf.hands();
+		for (int i = 0; i < handCount; ++i)
+		{
+			WebSocketHand wsh = wsf.obtainHand();
+			wsh.setId                    ( buf.getInt()   );
+			getVector3                   ( buf, wsh.getPalmDirection()          );
+			getVector3                   ( buf, wsh.getPalmNormal()             );
+			getVector3                   ( buf, wsh.getPalmPosition()           );
+			getVector3                   ( buf, wsh.getPalmVelocity()           );
+			getMatrix3                   ( buf, wsh.getR()                      );
+			getVector3                   ( buf, wsh.getSphereCenter()           );
+			wsh.setSphereRadius          ( buf.getFloat() );
+			getVector3                   ( buf, wsh.getStabilizedPalmPosition() );
+			wsh.setTimeVisible           ( buf.getFloat() );
+			hands.add(wsh);
+		}
+
+		// Pointables
+		int pointableCount = buf.getShort() & 0xFFFF;
+		List<WebSocketPointable> pointables = wsf.pointables();
+		for (int i = 0; i < pointableCount; ++i)
+		{
+			WebSocketPointable wsp = wsf.obtainPointable();
+			getVector3                  ( buf, wsp.getDirection()             );
+			wsp.setHandId               ( buf.getInt()                        );
+			wsp.setId                   ( buf.getInt()                        );
+			wsp.setLength               ( buf.getFloat()                      );
+			getVector3                  ( buf, wsp.getStabilizedTipPosition() );
+			wsp.setTimeVisible          ( buf.getFloat()                      );
+			getVector3                  ( buf, wsp.getTipPosition()           );
+			getVector3                  ( buf, wsp.getTipVelocity()           );
+			wsp.setTool                 ( buf.get() != 0                      );
+			wsp.setTouchDistance        ( buf.getFloat()                      );
+			wsp.setTouchZone            ( getToken(buf, TOUCH_ZONES)          );
+			pointables.add(wsp);
+		}
+
+		// Gestures
+		int gestureCount = buf.getShort() & 0xFFFF;
+		List<WebSocketGesture> gestures = wsf.gestures();
+		for (int i = 0; i < gestureCount; ++i)
+		{
+			WebSocketGesture wsg = wsf.obtainGesture();
+			wsg.setDuration( buf.getLong() );
+			wsg.setId      ( buf.getInt()  );
+			getIntList( buf, wsg.getHandIds()      );
+			getIntList( buf, wsg.getPointableIds() );
+			wsg.setState( getToken(buf, GESTURE_STATES) );
+			wsg.setType ( getToken(buf, GESTURE_TYPES)  );
+			gestures.add(wsg);
+		}
+	}
+
+	// ----- Helper methods -----
+
+	private static void putVector3(ByteBuffer buf, float[] v)
+	{
+		for (int i = 0; i < 3; ++i)
+		{
+			buf.putFloat( (v != null && i < v.length) ? v[i] : 0.0f );
+		}
+	}
+
+	private static void putMatrix3(ByteBuffer buf, float[][] m)
+	{
+		for (int row = 0; row < 3; ++row)
+		{
+			putVector3( buf, (m != null && row < m.length) ? m[row] : null );
+		}
+	}
+
+	// Note: The destination arrays always exist and are the right size, as decodeInto resets the frame first
+	private static void getVector3(ByteBuffer buf, float[] v)
+	{
+		v[0] = buf.getFloat();
+		v[1] = buf.getFloat();
+		v[2] = buf.getFloat();
+	}
+
+	private static void getMatrix3(ByteBuffer buf, float[][] m)
+	{
+		getVector3( buf, m[0] );
+		getVector3( buf, m[1] );
+		getVector3( buf, m[2] );
+	}
+
+	private static int sizeOf(List<Integer> list) { return (list == null) ? 0 : list.size(); }
+
+	private static void putIntList(ByteBuffer buf, List<Integer> list)
+	{
+		int size = sizeOf(list);
+		buf.putShort( (short)size );
+		for (int i = 0; i < size; ++i)
+		{
+			buf.putInt( list.get(i) );
+		}
+	}
+
+	private static void getIntList(ByteBuffer buf, List<Integer> list)
+	{
+		int size = buf.getShort() & 0xFFFF;
+		for (int i = 0; i < size; ++i)
+		{
+			list.add( buf.getInt() );
+		}
+	}
+
+	// A token is one byte, unless it's a literal in which case it's also got a ushort length and up to 3 bytes per char
+	static int maxTokenSize(String s)
+	{
+		return (s == null) ? 1 : 1 + 2 + (s.length() * 3);
+	}
+
+	static void putToken(ByteBuffer buf, String s, String[] vocabulary)
+	{
+		if (s == null)
+		{
+			buf.put(TOKEN_NULL);
+			return;
+		}
+
+		for (int i = 0; i < vocabulary.length; ++i)
+		{
+			if ( vocabulary[i].equals(s) )
+			{
+				buf.put( (byte)(i + 1) );
+				return;
+			}
+		}
+
+		// Not in the vocabulary, so write it out in full
+		byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+		buf.put(TOKEN_LITERAL);
+		buf.putShort( (short)bytes.length );
+		buf.put(bytes);
+	}
+
+	static String getToken(ByteBuffer buf, String[] vocabulary)
+	{
+		byte token = buf.get();
+
+		if (token == TOKEN_NULL)
+		{
+			return null;
+		}
+		else if (token == TOKEN_LITERAL)
+		{
+			byte[] bytes = new byte[ buf.getShort() & 0xFFFF ];
+			buf.get(bytes);
+			return new String(bytes, StandardCharsets.UTF_8);
+		}
+		else
+		{
+			// Note: Tokens are stored 1-based so that zero can mean null. Returning the shared vocabulary
+			// instance means decoded frames don't each carry their own copy of the same few strings.
+			return vocabulary[ (token & 0xFF) - 1 ];
+		}
+	}
+}
@@ -0,0 +1,276 @@
+/***
+ *
+ * File       : LeapRecordingIndex.java
+ * Description: A LeapRecordingIndex maps the frame ids and timestamps in a BINARY recording to the byte offsets of their records.
+ * Author     : Al Lansley
+ * Date       : 17/10/2026
+ * Version    : 0.1
+ *
+ */
+
+package au.edu.federation.leapdatarecorder;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+// The index is built by walking the length prefixes of every record in the recording and peeking at the id and
+// timestamp at the start of each payload, so no frames need to be decoded to build it. It's saved alongside the
+// recording as a sidecar file (the recording filename plus INDEX_SUFFIX) so we only have to pay for the scan once.
+// The sidecar stores the length and modification time of the recording it was built from, and is ignored (and
+// rebuilt) if those no longer match.
+//
+// Frame ids and timestamps from the Leap only ever go up during a session, so lookups are binary searches. If a
+// recording turns out not to be in order (e.g. it spans a restart of the Leap service) we note that when building
+// the index and fall back to a linear scan for that recording instead of returning the wrong frame.
+public class LeapRecordingIndex
+{
+	public static final String INDEX_SUFFIX = ".idx";
+
+	private static final int   INDEX_MAGIC   = 0x4C445249; // "LDRI"
+	private static final short INDEX_VERSION = 1;
+
+	// Size of the sidecar's header (magic, version, source length and modification time, count) and of each entry in it
+	private static final int INDEX_HEADER_SIZE = 4 + 2 + 8 + 8 + 4;
+	private static final int INDEX_ENTRY_SIZE  = 8 + 8 + 8;
+
+	private final long[] offsets;     // Byte offset of each record's length prefix from the start of the file
+	private final long[] ids;         // Frame id of each record
+	private final long[] timestamps;  // Frame timestamp of each record
+	private final int    count;
+
+	private final boolean idsInOrder;
+	private final boolean timestampsInOrder;
+
+	private LeapRecordingIndex(long[] offsets, long[] ids, long[] timestamps, int count)
+	{
+		this.offsets    = offsets;
+		this.ids        = ids;
+		this.timestamps = timestamps;
+		this.count      = count;
+
+		idsInOrder        = isNonDecreasing(ids, count);
+		timestampsInOrder = isNonDecreasing(timestamps, count);
+	}
+
+	// Method to build an index by scanning the records of a mapped recording
+	static LeapRecordingIndex build(MappedRecording recording)
+	{
+		int capacity = 1024;
+		long[] offsets    = new long[capacity];
+		long[] ids        = new long[capacity];
+		long[] timestamps = new long[capacity];
+		int count = 0;
+
+		long offset = LeapFrameCodec.HEADER_SIZE;
+		long end    = recording.length();
+		while (offset + 4 <= end)
+		{
+			int length = recording.getInt(offset);
+
+			// Stop at a truncated final record, e.g. where the writer was killed part-way through writing it
+			if (length < 16 || length > MappedRecording.MAX_RECORD_SIZE || offset + 4 + length > end)
+			{
+				System.out.println("Ignoring truncated or corrupt record at end of recording (offset " + offset + ")");
+				break;
+			}
+
+			if (count == capacity)
+			{
+				capacity  *= 2;
+				offsets    = Arrays.copyOf(offsets,    capacity);
+				ids        = Arrays.copyOf(ids,        capacity);
+				timestamps = Arrays.copyOf(timestamps, capacity);
+			}
+
+			// The frame id and timestamp are the first two longs in every payload
+			offsets[count]    = offset;
+			ids[count]        = recording.getLong(offset + 4);
+			timestamps[count] = recording.getLong(offset + 12);
+			++count;
+
+			offset += 4 + length;
+		}
+
+		return new LeapRecordingIndex(offsets, ids, timestamps, count);
+	}
+
+	// Method to load the sidecar index for a recording if there's a valid one, or build (and save) it if there isn't
+	static LeapRecordingIndex loadOrBuild(String filename, MappedRecording recording)
+	{
+		File recordingFile = new File(filename);
+		File indexFile     = new File(filename + INDEX_SUFFIX);
+
+		if ( indexFile.exists() )
+		{
+			try
+			{
+				LeapRecordingIndex index = load(indexFile, recordingFile);
+				if (index != null)
+				{
+					return index;
+				}
+			}
+			catch (IOException e)
+			{
+				System.out.println("Could not read index file " + indexFile + " - rebuilding it.");
+			}
+		}
+
+		LeapRecordingIndex index = build(recording);
+
+		// Failing to save the index isn't fatal - it just means we have to build it again next time
+		try
+		{
+			index.save(indexFile, recordingFile);
+		}
+		catch (IOException e)
+		{
+			System.out.println("Could not save index file " + indexFile + ": " + e.getMessage());
+		}
+
+		return index;
+	}
+
+	// Method to read an index from file. Returns null if the index is stale (the recording has changed since) or doesn't
+	// hold together, e.g. it was only partly written.
+	private static LeapRecordingIndex load(File indexFile, File recordingFile) throws IOException
+	{
+		try ( DataInputStream in = new DataInputStream( new BufferedInputStream( new FileInputStream(indexFile), 65536 ) ) )
+		{
+			if ( in.readInt() != INDEX_MAGIC || in.readShort() != INDEX_VERSION )
+			{
+				return null;
+			}
+
+			long sourceLength       = in.readLong();
+			long sourceLastModified = in.readLong();
+			if ( sourceLength != recordingFile.length() || sourceLastModified != recordingFile.lastModified() )
+			{
+				return null;
+			}
+
+			// Make sure the count is what the index file actually holds before allocating anything for it
+			int count = in.readInt();
+			if ( count < 0 || indexFile.length() != INDEX_HEADER_SIZE + (long)count * INDEX_ENTRY_SIZE )
+			{
+				return null;
+			}
+
+			long[] offsets    = new long[count];
+			long[] ids        = new long[count];
+			long[] timestamps = new long[count];
+			for (int i = 0; i < count; ++i)
+			{
+				offsets[i]    = in.readLong();
+				ids[i]        = in.readLong();
+				timestamps[i] = in.readLong();
+
+				// Every record must start within the recording, or reading it would run off the end
+				if ( offsets[i] < LeapFrameCodec.HEADER_SIZE || offsets[i] + 4L > sourceLength )
+				{
+					return null;
+				}
+			}
+
+			return new LeapRecordingIndex(offsets, ids, timestamps, count);
+		}
+	}
+
+	// Method to write this index to file
+	private void save(File indexFile, File recordingFile) throws IOException
+	{
+		try ( DataOutputStream out = new DataOutputStream( new BufferedOutputStream( new FileOutputStream(indexFile), 65536 ) ) )
+		{
+			out.writeInt(INDEX_MAGIC);
+			out.writeShort(INDEX_VERSION);
+			out.writeLong( recordingFile.length()       );
+			out.writeLong( recordingFile.lastModified() );
+
+			out.writeInt(count);
+			for (int i = 0; i < count; ++i)
+			{
+				out.writeLong( offsets[i]    );
+				out.writeLong( ids[i]        );
+				out.writeLong( timestamps[i] );
+			}
+		}
+	}
+
+	// ----- Lookups -----
+
+	// Method to return the position of the last frame whose timestamp is at or before the given timestamp. If the
+	// timestamp is before the start of the recording then the first frame (position 0) is returned.
+	public int findByTimestamp(long timestamp)
+	{
+		return timestampsInOrder ? floorSearch(timestamps, count, timestamp) : linearFloorSearch(timestamps, count, timestamp);
+	}
+
+	// Method to return the position of the last frame whose id is at or before the given frame id. If the id is
+	// before the start of the recording then the first frame (position 0) is returned.
+	public int findByFrameId(long frameId)
+	{
+		return idsInOrder ? floorSearch(ids, count, frameId) : linearFloorSearch(ids, count, frameId);
+	}
+
+	// ----- Getters -----
+
+	public int  getFrameCount()            { return count;                 }
+	public long getOffset(int position)    { return offsets[position];     }
+	public long getFrameId(int position)   { return ids[position];         }
+	public long getTimestamp(int position) { return timestamps[position];  }
+
+	// ----- Helper methods -----
+
+	private static boolean isNonDecreasing(long[] values, int count)
+	{
+		for (int i = 1; i < count; ++i)
+		{
+			if (values[i] < values[i - 1])
+			{
+				return false;
+			}
+		}
+		return true;
+	}
+
+	// Binary search for the last element <= key
+	private static int floorSearch(long[] values, int count, long key)
+	{
+		int low  = 0;
+		int high = count - 1;
+		while (low <= high)
+		{
+			int mid = (low + high) >>> 1;
+			if (values[mid] <= key)
+			{
+				low = mid + 1;
+			}
+			else
+			{
+				high = mid - 1;
+			}
+		}
+		return Math.max(high, 0);
+	}
+
+	// Linear search for the element <= key that is closest to it, for recordings that aren't in order
+	private static int linearFloorSearch(long[] values, int count, long key)
+	{
+		int best = 0;
+		for (int i = 0; i < count; ++i)
+		{
+			if ( values[i] <= key && ( values[best] > key || values[i] >= values[best] ) )
+			{
+				best = i;
+			}
+		}
+		return best;
+	}
+}
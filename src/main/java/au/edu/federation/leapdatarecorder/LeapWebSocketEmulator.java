@@ -0,0 +1,521 @@
+/***
+ *
+ * File       : LeapWebSocketEmulator.java
+ * Description: A LeapWebSocketEmulator stands in for the Leap daemon's WebSocket server, sending recorded or synthetic frames
+ *              to any number of clients so the ingest path can be load tested without a Leap sensor.
+ * Author     : Al Lansley
+ * Date       : 17/10/2026
+ * Version    : 0.1
+ *
+ */
+
+package au.edu.federation.leapdatarecorder;
+
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+import org.java_websocket.WebSocket;
+import org.java_websocket.drafts.Draft_6455;
+import org.java_websocket.framing.CloseFrame;
+import org.java_websocket.handshake.ClientHandshake;
+import org.java_websocket.server.WebSocketServer;
+
+import com.google.gson.Gson;
+
+import au.edu.federation.leapwebsocket.LatencyMonitor;
+import au.edu.federation.leapwebsocket.LeapWebSocket;
+import au.edu.federation.leapwebsocket.SyntheticFrameGenerator;
+import au.edu.federation.leapwebsocket.WebSocketFrame;
+
+// Serves frames as the same JSON the Leap daemon sends over its WebSocket, so a LeapWebSocket (or anything else that
+// speaks the Leap's protocol) can connect to it unchanged - point it at the emulator with the leap.websocket.uri system
+// property, e.g. -Dleap.websocket.uri=ws://localhost:6437.
+//
+// Frames come from a recording (looped) or a SyntheticFrameGenerator, and go out on their own thread at a fixed rate,
+// which can be far beyond the Leap's 110fps. As with the LeapDataReplayer, each frame's due time is worked out from a
+// fixed anchor so oversleeping on one frame is made up on the next. Each frame is given a new id and a timestamp from
+// the emulator's own clock, as a live Leap would, so a looped recording still looks like one continuous session.
+// Every client gets every frame - the JSON is encoded once per frame and broadcast.
+//
+// To test how clients cope with a less well behaved server, the emulator can also:
+//
+//		- add jitter - each frame is sent up to jitterMillis after it's due, picked at random per frame, and
+//		- drop clients - every so often (at random, disconnectMillis apart on average) one client's connection is cut
+//		  without a close handshake, as if the network went away.
+//
+// Throughput (frames and bytes sent, clients connected) and timing (how late frames went out, and how long each
+// broadcast took) are reported every reportMillis. With a probe attached - a LeapWebSocket in the same process,
+// connected like any other client - the report also includes the latency from each frame being sent to the probe's
+// listeners being handed the parsed frame. Run with -Dleap.latency=true to also have the LatencyMonitor report the probe's
+// websocket.* stages every reportMillis.
+//
+// Example usage:
+//
+//		LeapWebSocketEmulator emulator = new LeapWebSocketEmulator( 6437, new SyntheticFrameGenerator(42L, 2) );
+//		emulator.setFrameRate(1000.0);
+//		emulator.setJitterMillis(2.0);
+//		emulator.start();
+//		emulator.startProbe();
+//		...
+//		System.out.println(emulator);
+//		emulator.close();
+//
+// or, from the command line:
+//
+//		java au.edu.federation.leapdatarecorder.LeapWebSocketEmulator leapTestData.gzip --rate 500 --jitter 2 --probe
+//
+public class LeapWebSocketEmulator extends WebSocketServer
+{
+	public static final int    DEFAULT_PORT          = 6437;
+	public static final double DEFAULT_FRAME_RATE    = 110.0;
+	public static final long   DEFAULT_REPORT_MILLIS = 5000L;
+
+	// As for the LeapDataReplayer - we park until this close to a frame's due time, then yield until it's actually due
+	private static final long SPIN_NANOS = TimeUnit.MICROSECONDS.toNanos(200);
+
+	// If we fall this far behind (e.g. the machine stalled) we re-anchor rather than sending a burst of late frames
+	private static final long MAX_LAG_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+
+	// Number of recent send times kept for the probe to measure latency against, by frame id
+	private static final int SENT_HISTORY = 4096;
+
+	// How long startProbe() waits for the server to start listening
+	private static final long START_TIMEOUT_MILLIS = 5000L;
+
+	private final FrameReader reader;
+	private final WebSocketFrame frame = new WebSocketFrame();
+	private final Gson gson = new Gson();
+	private final Random random = new Random();
+
+	private volatile double frameRate        = DEFAULT_FRAME_RATE;
+	private volatile long   jitterNanos;
+	private volatile long   disconnectNanos;
+	private volatile long   reportNanos      = TimeUnit.MILLISECONDS.toNanos(DEFAULT_REPORT_MILLIS);
+
+	private Thread sendThread;
+	private volatile boolean running;
+
+	// Counted down once the server is listening, so the probe isn't connected before then
+	private final CountDownLatch started = new CountDownLatch(1);
+
+	// When each recently sent frame went out (System.nanoTime), indexed by frame id
+	private final AtomicLongArray sentNanos = new AtomicLongArray(SENT_HISTORY);
+
+	private LeapWebSocket probe;
+
+	// Connected clients. The server's own collection can't be safely iterated while clients come and go, so we broadcast
+	// to this instead.
+	private final List<WebSocket> clients = new CopyOnWriteArrayList<WebSocket>();
+
+	// The clients each frame is sent to - only used by the send thread
+	private final List<WebSocket> recipients = new ArrayList<WebSocket>();
+
+	// Stats - only written by the send thread
+	private volatile long framesSent, bytesSent, disconnects, resyncs;
+	private volatile long totalLatenessNanos, maxLatenessNanos;
+	private volatile long totalBroadcastNanos, maxBroadcastNanos;
+
+	// Probe stats - only written by the probe's frame stage
+	private volatile long framesReceived, totalLatencyNanos, maxLatencyNanos;
+
+	// Constructor serving the frames of a recording, which is looped
+	public LeapWebSocketEmulator(int port, FrameReader reader)
+	{
+		super( new InetSocketAddress(port) );
+		this.reader = reader;
+		reader.setLoopPlayback(true);
+		setReuseAddr(true);
+	}
+
+	// Constructor serving synthetic frames
+	public LeapWebSocketEmulator(int port, SyntheticFrameGenerator generator)
+	{
+		this( port, new SyntheticFrameReader(generator) );
+	}
+
+	// ----- Settings -----
+
+	// Frames per second to send (at least 1)
+	public void setFrameRate(double fps)          { frameRate = Math.max(fps, 1.0);                                           }
+	// The most a frame is sent after it's due, picked at random per frame (0 for none)
+	public void setJitterMillis(double millis)     { jitterNanos = (long)(Math.max(millis, 0.0) * 1000000.0);                 }
+	// The mean time between dropping a client (0 to never drop them)
+	public void setDisconnectMillis(long millis)   { disconnectNanos = TimeUnit.MILLISECONDS.toNanos( Math.max(millis, 0L) ); }
+	// How often to print a report (0 for never)
+	public void setReportMillis(long millis)       { reportNanos = TimeUnit.MILLISECONDS.toNanos( Math.max(millis, 0L) );     }
+	// Seed for the jitter and disconnects, so a run can be repeated
+	public void setSeed(long seed)                 { random.setSeed(seed);                                                    }
+
+	// ----- Control -----
+
+	// Method to connect a LeapWebSocket in this process to the emulator, to measure the latency of sending frames to it.
+	// Call this after start() - it waits for the server to start listening first.
+	public void startProbe() throws InterruptedException
+	{
+		if ( !started.await(START_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS) )
+		{
+			throw new IllegalStateException( "LeapWebSocketEmulator isn't listening on port " + getPort() + " after " + START_TIMEOUT_MILLIS + "ms." );
+		}
+
+		probe = new LeapWebSocket( URI.create( "ws://localhost:" + getPort() ), new Draft_6455() );
+		probe.addFrameListener( wsf ->
+		{
+			long sent = sentNanos.get( (int)wsf.getId() & (SENT_HISTORY - 1) );
+			if (sent != 0L)
+			{
+				long latency = System.nanoTime() - sent;
+				totalLatencyNanos += latency;
+				if (latency > maxLatencyNanos) { maxLatencyNanos = latency; }
+				++framesReceived;
+			}
+		});
+		probe.connect();
+	}
+
+	// Method to stop sending, disconnect every client (and the probe) and close the reader
+	public void close() throws InterruptedException
+	{
+		running = false;
+		if (sendThread != null)
+		{
+			sendThread.join();
+			sendThread = null;
+		}
+
+		if (probe != null)
+		{
+			probe.closeBlocking();
+			probe = null;
+		}
+
+		stop(1000);
+		reader.close();
+	}
+
+	// ----- WebSocketServer -----
+
+	@Override
+	public void onStart()
+	{
+		System.out.println( "LeapWebSocketEmulator listening on port " + getPort() + " at " + frameRate + "fps" );
+
+		running = true;
+		sendThread = new Thread(this::sendLoop, "LeapWebSocketEmulator");
+		sendThread.setDaemon(true);
+		sendThread.start();
+		started.countDown();
+	}
+
+	@Override
+	public void onOpen(WebSocket conn, ClientHandshake handshake)
+	{
+		clients.add(conn);
+		System.out.println( "Client connected from " + conn.getRemoteSocketAddress() );
+	}
+
+	@Override
+	public void onClose(WebSocket conn, int code, String reason, boolean remote)
+	{
+		clients.remove(conn);
+		System.out.println( "Client " + conn.getRemoteSocketAddress() + " disconnected (" + code + (reason.isEmpty() ? "" : ", " + reason) + ")" );
+	}
+
+	// Clients of the real Leap server can send it settings such as {"enableGestures": true} - we accept and ignore them
+	@Override
+	public void onMessage(WebSocket conn, String message) { }
+
+	@Override
+	public void onError(WebSocket conn, Exception ex)
+	{
+		ex.printStackTrace();
+	}
+
+	// ----- Getters -----
+
+	public double getFrameRate()      { return frameRate;                 }
+	public long getFramesSent()       { return framesSent;                }
+	public long getBytesSent()        { return bytesSent;                 } // UTF-8, summed over every client
+	public long getDisconnects()      { return disconnects;               }
+	public long getFramesReceived()   { return framesReceived;            } // By the probe
+	public int getClientCount()       { return clients.size();            }
+
+	public long getMeanLatenessNanos()  { long n = framesSent;     return (n == 0L) ? 0L : totalLatenessNanos  / n; }
+	public long getMeanBroadcastNanos() { long n = framesSent;     return (n == 0L) ? 0L : totalBroadcastNanos / n; }
+	public long getMeanLatencyNanos()   { long n = framesReceived; return (n == 0L) ? 0L : totalLatencyNanos   / n; }
+
+	@Override
+	public String toString()
+	{
+		return String.format( Locale.ROOT, "LeapWebSocketEmulator [clients=%d, sent=%d, bytes=%d, disconnects=%d, resyncs=%d, meanLateMicros=%d, maxLateMicros=%d, " +
+		                      "meanBroadcastMicros=%d, maxBroadcastMicros=%d%s]", getClientCount(), framesSent, bytesSent, disconnects, resyncs,
+		                      getMeanLatenessNanos() / 1000L, maxLatenessNanos / 1000L, getMeanBroadcastNanos() / 1000L, maxBroadcastNanos / 1000L,
+		                      (probe == null) ? "" : String.format( Locale.ROOT, ", probeReceived=%d, meanLatencyMicros=%d, maxLatencyMicros=%d",
+		                                                            framesReceived, getMeanLatencyNanos() / 1000L, maxLatencyNanos / 1000L ) );
+	}
+
+	// ----- Send thread -----
+
+	private void sendLoop()
+	{
+		long startNanos  = System.nanoTime();
+		long anchorNanos = startNanos;
+		long frameNumber = 0L;
+		long nextDisconnectNanos = scheduleDisconnect(startNanos);
+		long nextReportNanos     = startNanos + reportNanos;
+
+		// Stats since the last report, for the rates
+		long reportFrames = 0L, reportBytes = 0L, reportStartNanos = startNanos;
+
+		while (running)
+		{
+			// Work out when this frame is due, and wait for it
+			long periodNanos = (long)(1.0e9 / frameRate);
+			long dueNanos    = anchorNanos + frameNumber * periodNanos;
+			long jitter      = jitterNanos;
+			if (jitter > 0L)
+			{
+				dueNanos += (long)(random.nextDouble() * jitter);
+			}
+			waitUntil(dueNanos);
+
+			long now = System.nanoTime();
+			long lateness = now - dueNanos;
+			if (lateness > MAX_LAG_NANOS)
+			{
+				anchorNanos = now;
+				frameNumber = 0L;
+				++resyncs;
+			}
+
+			// Dress the next frame up as a live one...
+			if ( !reader.readWebSocketFrame(frame) )
+			{
+				break;
+			}
+			long id = framesSent;
+			frame.setId(id);
+			frame.setTimestamp( TimeUnit.NANOSECONDS.toMicros(now - startNanos) );
+			frame.setCurrentFrameRate(frameRate);
+			String json = gson.toJson(frame);
+
+			// ...and send it to every client. We broadcast to a snapshot of the open clients so we know how many it went to.
+			recipients.clear();
+			for (WebSocket client : clients)
+			{
+				if ( client.isOpen() ) { recipients.add(client); }
+			}
+			long broadcastStart = System.nanoTime();
+			sentNanos.set( (int)id & (SENT_HISTORY - 1), broadcastStart );
+			broadcast(json, recipients);
+			long broadcastNanos = System.nanoTime() - broadcastStart;
+			long frameBytes = (long)utf8Length(json) * recipients.size();
+
+			++frameNumber;
+			framesSent = id + 1L;
+			bytesSent += frameBytes;
+			totalLatenessNanos  += Math.max(lateness, 0L);
+			totalBroadcastNanos += broadcastNanos;
+			if (lateness > maxLatenessNanos)       { maxLatenessNanos  = lateness;       }
+			if (broadcastNanos > maxBroadcastNanos) { maxBroadcastNanos = broadcastNanos; }
+			++reportFrames;
+			reportBytes += frameBytes;
+
+			now = System.nanoTime();
+			if (disconnectNanos > 0L && now >= nextDisconnectNanos)
+			{
+				dropRandomClient();
+				nextDisconnectNanos = scheduleDisconnect(now);
+			}
+
+			if (reportNanos > 0L && now >= nextReportNanos)
+			{
+				double seconds = (now - reportStartNanos) / 1.0e9;
+				System.out.println( String.format( Locale.ROOT, "%.0f frames/s, %.1f KB/s | ", reportFrames / seconds, reportBytes / seconds / 1024.0 ) + this );
+				reportFrames = reportBytes = 0L;
+				reportStartNanos = now;
+				nextReportNanos  = now + reportNanos;
+			}
+		}
+	}
+
+	// Method to wait until the given System.nanoTime() - parks for most of the wait, then yields for the rest
+	private void waitUntil(long dueNanos)
+	{
+		long remaining;
+		while ( running && (remaining = dueNanos - System.nanoTime()) > 0L )
+		{
+			if (remaining > SPIN_NANOS)
+			{
+				LockSupport.parkNanos(remaining - SPIN_NANOS);
+			}
+			else
+			{
+				Thread.yield();
+			}
+		}
+	}
+
+	// The time of the next disconnect - exponentially distributed, so disconnects are random but average disconnectNanos apart
+	private long scheduleDisconnect(long now)
+	{
+		return now + (long)( -Math.log( 1.0 - random.nextDouble() ) * disconnectNanos );
+	}
+
+	// Method to cut one client off at random, without a close handshake. The probe is left connected.
+	private void dropRandomClient()
+	{
+		List<WebSocket> candidates = new ArrayList<WebSocket>(clients);
+		if (probe != null)
+		{
+			candidates.removeIf( conn -> conn.getRemoteSocketAddress() != null && conn.getRemoteSocketAddress().equals( probe.getLocalSocketAddress() ) );
+		}
+		if (!candidates.isEmpty())
+		{
+			candidates.get( random.nextInt( candidates.size() ) ).closeConnection(CloseFrame.ABNORMAL_CLOSE, "Emulated disconnect");
+			++disconnects;
+		}
+	}
+
+	// Method to get the number of bytes a string takes up as UTF-8 (as it goes out in a text frame), without encoding it
+	private static int utf8Length(String s)
+	{
+		int length = s.length();
+		for (int i = 0; i < s.length(); ++i)
+		{
+			char c = s.charAt(i);
+			if (c >= 0x800)
+			{
+				// Three bytes, or four for a surrogate pair - which is two chars, so two each
+				length += Character.isSurrogate(c) ? 1 : 2;
+			}
+			else if (c >= 0x80)
+			{
+				++length;
+			}
+		}
+		return length;
+	}
+
+	// Adapter letting the emulator read synthetic frames as if they were a recording which never ends
+	private static final class SyntheticFrameReader implements FrameReader
+	{
+		private final SyntheticFrameGenerator generator;
+
+		SyntheticFrameReader(SyntheticFrameGenerator generator) { this.generator = generator; }
+
+		@Override
+		public WebSocketFrame readWebSocketFrame()
+		{
+			return generator.next();
+		}
+
+		@Override
+		public boolean readWebSocketFrame(WebSocketFrame into)
+		{
+			generator.nextInto(into);
+			return true;
+		}
+
+		@Override
+		public void setLoopPlayback(boolean value) { }
+
+		@Override
+		public void close() { }
+	}
+
+	// ----- Command line -----
+
+	private static void printUsage()
+	{
+		System.out.println("Usage: LeapWebSocketEmulator [recording] [options]");
+		System.out.println("  (synthetic frames are sent if no recording is given)");
+		System.out.println("  --port <port>            Port to listen on (default " + DEFAULT_PORT + ")");
+		System.out.println("  --rate <fps>             Frames per second to send (default " + DEFAULT_FRAME_RATE + ")");
+		System.out.println("  --hands <n>              Number of synthetic hands (default 2)");
+		System.out.println("  --seed <n>               Seed for synthetic frames, jitter and disconnects");
+		System.out.println("  --jitter <ms>            Send each frame up to this long after it's due");
+		System.out.println("  --disconnect-every <ms>  Drop a random client this often on average");
+		System.out.println("  --report-every <ms>      How often to report throughput and latency (default " + DEFAULT_REPORT_MILLIS + ")");
+		System.out.println("  --duration <s>           Stop after this long (default: run until killed)");
+		System.out.println("  --probe                  Connect a LeapWebSocket to measure the latency to a client");
+	}
+
+	public static void main(String[] args) throws InterruptedException
+	{
+		String recording = null;
+		int port = DEFAULT_PORT, hands = 2;
+		long seed = 42L, disconnectMillis = 0L, reportMillis = DEFAULT_REPORT_MILLIS, durationSeconds = 0L;
+		double rate = DEFAULT_FRAME_RATE, jitterMillis = 0.0;
+		boolean probe = false;
+
+		try
+		{
+			for (int i = 0; i < args.length; ++i)
+			{
+				switch (args[i])
+				{
+					case "--port":             port             = Integer.parseInt( args[++i] );   break;
+					case "--rate":             rate             = Double.parseDouble( args[++i] ); break;
+					case "--hands":            hands            = Integer.parseInt( args[++i] );   break;
+					case "--seed":             seed             = Long.parseLong( args[++i] );     break;
+					case "--jitter":           jitterMillis     = Double.parseDouble( args[++i] ); break;
+					case "--disconnect-every": disconnectMillis = Long.parseLong( args[++i] );     break;
+					case "--report-every":     reportMillis     = Long.parseLong( args[++i] );     break;
+					case "--duration":         durationSeconds  = Long.parseLong( args[++i] );     break;
+					case "--probe":            probe            = true;                            break;
+					default:
+						if (args[i].startsWith("--") || recording != null)
+						{
+							System.out.println("Unknown option: " + args[i]);
+							printUsage();
+							System.exit(-1);
+						}
+						recording = args[i];
+				}
+			}
+		}
+		catch (RuntimeException e)
+		{
+			printUsage();
+			System.exit(-1);
+		}
+
+		LeapWebSocketEmulator emulator = (recording != null) ? new LeapWebSocketEmulator( port, new LeapDataReader(recording, true) )
+		                                                     : new LeapWebSocketEmulator( port, new SyntheticFrameGenerator(seed, hands, rate) );
+		emulator.setFrameRate(rate);
+		emulator.setSeed(seed);
+		emulator.setJitterMillis(jitterMillis);
+		emulator.setDisconnectMillis(disconnectMillis);
+		emulator.setReportMillis(reportMillis);
+		emulator.start();
+
+		if (probe)
+		{
+			emulator.startProbe();
+			if (reportMillis > 0L)
+			{
+				LatencyMonitor.startReporting( TimeUnit.MILLISECONDS.toNanos(reportMillis) );
+			}
+		}
+
+		if (durationSeconds > 0L)
+		{
+			Thread.sleep( TimeUnit.SECONDS.toMillis(durationSeconds) );
+			System.out.println(emulator);
+			emulator.close();
+		}
+		else
+		{
+			Thread.currentThread().join();
+		}
+	}
+}
@@ -0,0 +1,185 @@
+/***
+ *
+ * File       : MappedLeapDataReader.java
+ * Description: A MappedLeapDataReader replays an uncompressed BINARY recording through a memory map, and can seek to any
+ *              frame by timestamp or frame id without decoding the frames in between.
+ * Author     : Al Lansley
+ * Date       : 17/10/2026
+ * Version    : 0.1
+ *
+ */
+
+package au.edu.federation.leapdatarecorder;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import au.edu.federation.leapwebsocket.WebSocketFrame;
+
+// Unlike a LeapDataReader, which can only stream forwards through the file, this reader looks frames up through a
+// LeapRecordingIndex (loaded from, or built and saved to, a sidecar file next to the recording) so seeking anywhere
+// in a recording is a binary search plus a single record decode, and looping back to the start doesn't involve
+// reopening anything.
+//
+// GZIP compressed recordings can't be read at random, so they can't be used here - write the recording uncompressed
+// (i.e. new LeapDataRecorder(Mode.RECORD, filename, RecordingFormat.BINARY, false), or new LeapDataWriter(filename, false))
+// if you want to scrub through it.
+//
+// Example usage:
+//
+//		MappedLeapDataReader reader = new MappedLeapDataReader("leapTestData.ldr", true);
+//		reader.seekToTimestamp( reader.getFirstTimestamp() + 40L * 60L * 1000000L ); // Jump to minute 40
+//		WebSocketFrame wsf = reader.readWebSocketFrame();
+//
+public class MappedLeapDataReader implements FrameReader
+{
+	private final String             filename;
+	private final MappedRecording    recording;
+	private final LeapRecordingIndex index;
+
+	private boolean loopPlayback;
+
+	// Position (within the index) of the next frame to read
+	private int position;
+
+	// We'll keep a copy of the last WebSocketFrame we read so we can keep returning it at the end of a non-looping replay
+	private WebSocketFrame currentReaderWebSocketFrame;
+
+	// Constructor
+	public MappedLeapDataReader(String filename, boolean loopPlayback) throws IOException
+	{
+		this.filename     = filename;
+		this.loopPlayback = loopPlayback;
+
+		recording = new MappedRecording(filename);
+
+		// Check we've been given something we can actually map
+		if ( recording.length() < LeapFrameCodec.HEADER_SIZE || recording.getInt(0) != LeapFrameCodec.MAGIC )
+		{
+			recording.close();
+			throw new IOException(filename + " is not an uncompressed BINARY recording so cannot be memory-mapped.");
+		}
+
+		// The format version and codec id follow the magic number
+		ByteBuffer header = recording.view(4, LeapFrameCodec.HEADER_SIZE - 4);
+		short version = header.getShort();
+		byte  codecId = header.get();
+		if ( version > LeapFrameCodec.FORMAT_VERSION || RecordingFormat.fromCodecId(codecId) != RecordingFormat.BINARY )
+		{
+			recording.close();
+			throw new IOException(filename + " uses an unsupported format version or codec (version " + version + ", codec " + codecId + ").");
+		}
+
+		index = LeapRecordingIndex.loadOrBuild(filename, recording);
+
+		position = 0;
+		currentReaderWebSocketFrame = new WebSocketFrame();
+	}
+
+	// Method to read and return the next WebSocketFrame
+	@Override
+	public WebSocketFrame readWebSocketFrame()
+	{
+		if ( position >= index.getFrameCount() )
+		{
+			// If we're looping then jump straight back to the start, otherwise keep providing the final frame
+			if ( loopPlayback && index.getFrameCount() > 0 )
+			{
+				position = 0;
+			}
+			else
+			{
+				return currentReaderWebSocketFrame;
+			}
+		}
+
+		currentReaderWebSocketFrame = readFrameAt(position);
+		++position;
+
+		return currentReaderWebSocketFrame;
+	}
+
+	// Method to read the next WebSocketFrame into an existing frame
+	@Override
+	public boolean readWebSocketFrame(WebSocketFrame into)
+	{
+		if ( position >= index.getFrameCount() )
+		{
+			if ( loopPlayback && index.getFrameCount() > 0 )
+			{
+				position = 0;
+			}
+			else
+			{
+				return false;
+			}
+		}
+
+		readFrameAt(position, into);
+		++position;
+
+		return true;
+	}
+
+	// Method to decode the frame at a given position in the index without moving the read position
+	public WebSocketFrame readFrameAt(int framePosition)
+	{
+		WebSocketFrame wsf = new WebSocketFrame();
+		readFrameAt(framePosition, wsf);
+		return wsf;
+	}
+
+	// Method to decode the frame at a given position into an existing frame without moving the read position
+	public void readFrameAt(int framePosition, WebSocketFrame into)
+	{
+		long offset = index.getOffset(framePosition);
+		int  length = recording.getInt(offset);
+
+		LeapFrameCodec.decodeInto( recording.view(offset + 4, length), into );
+	}
+
+	// ----- Seeking -----
+	// Note: After seeking, the next call to readWebSocketFrame returns the frame that was sought.
+
+	// Method to move to the last frame at or before the given timestamp (in Leap microseconds)
+	public void seekToTimestamp(long timestamp) { seekToPosition( index.findByTimestamp(timestamp) ); }
+
+	// Method to move to the last frame at or before the given frame id
+	public void seekToFrameId(long frameId)     { seekToPosition( index.findByFrameId(frameId) );     }
+
+	// Method to move to a given position (0 .. getFrameCount() - 1) in the recording
+	public void seekToPosition(int framePosition)
+	{
+		position = Math.max( 0, Math.min(framePosition, index.getFrameCount()) );
+	}
+
+	// ----- Getters -----
+
+	public String getFilename()          { return filename;                 }
+	public int    getFrameCount()        { return index.getFrameCount();    }
+	public int    getPosition()          { return position;                 }
+	public LeapRecordingIndex getIndex() { return index;                    }
+
+	public long getFirstTimestamp() { return index.getFrameCount() == 0 ? 0L : index.getTimestamp(0);                          }
+	public long getLastTimestamp()  { return index.getFrameCount() == 0 ? 0L : index.getTimestamp(index.getFrameCount() - 1); }
+
+	@Override
+	public void setLoopPlayback(boolean value)
+	{
+		loopPlayback = value;
+	}
+
+	// Method to unmap and close the recording
+	@Override
+	public void close()
+	{
+		try
+		{
+			recording.close();
+		}
+		catch (IOException e)
+		{
+			e.printStackTrace();
+		}
+	}
+}
@@ -0,0 +1,72 @@
+/***
+ *
+ * File       : MappedRecording.java
+ * Description: A MappedRecording memory-maps an uncompressed BINARY recording so that any record can be read directly by its offset.
+ * Author     : Al Lansley
+ * Date       : 17/10/2026
+ * Version    : 0.1
+ *
+ */
+
+package au.edu.federation.leapdatarecorder;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+// A single MappedByteBuffer can only cover 2GB, and a few hours of recording at 110fps can be bigger than that, so we
+// map the file as a series of chunks. Each chunk overlaps the next by MAX_RECORD_SIZE bytes so that any record which
+// *starts* inside a chunk is guaranteed to be entirely inside that chunk, which means records never have to be
+// stitched back together from two buffers.
+class MappedRecording
+{
+	static final int MAX_RECORD_SIZE = 16 * 1024 * 1024;
+
+	private static final long CHUNK_SIZE = 1L << 30;
+
+	private final RandomAccessFile file;
+	private final FileChannel      channel;
+	private final long             length;
+	private final MappedByteBuffer[] chunks;
+
+	MappedRecording(String filename) throws IOException
+	{
+		file    = new RandomAccessFile(filename, "r");
+		channel = file.getChannel();
+		length  = channel.size();
+
+		int chunkCount = (int)( (length + CHUNK_SIZE - 1) / CHUNK_SIZE );
+		chunks = new MappedByteBuffer[ Math.max(chunkCount, 1) ];
+		for (int i = 0; i < chunks.length; ++i)
+		{
+			long start = i * CHUNK_SIZE;
+			long size  = Math.min( CHUNK_SIZE + MAX_RECORD_SIZE, length - start );
+			chunks[i]  = channel.map( FileChannel.MapMode.READ_ONLY, start, Math.max(size, 0) );
+		}
+	}
+
+	long length() { return length; }
+
+	int getInt(long offset)   { return chunks[ (int)(offset / CHUNK_SIZE) ].getInt(  (int)(offset % CHUNK_SIZE) ); }
+	long getLong(long offset) { return chunks[ (int)(offset / CHUNK_SIZE) ].getLong( (int)(offset % CHUNK_SIZE) ); }
+
+	// Method to return a buffer positioned at the given offset and limited to the given length. The buffer is a
+	// view onto the mapped file so nothing is copied.
+	ByteBuffer view(long offset, int viewLength)
+	{
+		ByteBuffer buf = chunks[ (int)(offset / CHUNK_SIZE) ].duplicate();
+		int position = (int)(offset % CHUNK_SIZE);
+		buf.limit(position + viewLength);
+		buf.position(position);
+		return buf;
+	}
+
+	void close() throws IOException
+	{
+		// Note: The mapped buffers themselves are released when they're garbage collected
+		channel.close();
+		file.close();
+	}
+}
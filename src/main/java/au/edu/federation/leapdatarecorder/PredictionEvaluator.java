@@ -0,0 +1,364 @@
+/***
+ *
+ * File       : PredictionEvaluator.java
+ * Description: A PredictionEvaluator measures how much a FramePredictor cuts the perceived lag of the hands, using a
+ *              recording as the ground truth.
+ * Author     : Al Lansley
+ * Date       : 17/10/2026
+ * Version    : 0.1
+ *
+ */
+
+package au.edu.federation.leapdatarecorder;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import au.edu.federation.leapwebsocket.FramePredictor;
+import au.edu.federation.leapwebsocket.OneEuroPredictor;
+import au.edu.federation.leapwebsocket.WebSocketFrame;
+import au.edu.federation.leapwebsocket.WebSocketHand;
+import au.edu.federation.leapwebsocket.WebSocketPointable;
+
+// Plays a recording through a FramePredictor as if each frame were going to take a given time (the latency) to reach
+// the screen, and compares what would be drawn against where the hand really was by then.
+//
+// Each fingertip and palm is followed through the recording by id, keeping both its recorded position and the position
+// predicted for it in each frame. The recording itself is the ground truth: the true position of a point at any time is
+// found by interpolating between the frames either side. For each frame we then measure:
+//
+// - the display error - how far the drawn position (recorded or predicted) is from the true position at the time it's
+//   displayed, which is the frame's timestamp plus the latency, and
+// - the perceived lag - the delay which, taken off the display time, best lines the drawn positions up with the truth
+//   (i.e. how far behind the real hand the drawn hand appears to be). Drawing the recorded positions this comes out at
+//   about the latency; a perfect predictor would bring it down to zero.
+//
+// As the predictor's positions are only ever compared against frames further on in the recording, it never sees the
+// data it's being scored against.
+//
+// Example usage (from the command line):
+//
+//		java au.edu.federation.leapdatarecorder.PredictionEvaluator leapTestData.gzip --latency 30
+//
+// or, from Gradle:
+//
+//		gradle evaluatePrediction -Pargs="leapTestData.gzip --latency 30"
+//
+public class PredictionEvaluator
+{
+	public static final float DEFAULT_LATENCY_MILLIS = 30.0f;
+
+	// We don't interpolate the ground truth across gaps longer than this, as the point may have been lost in between
+	private static final double MAX_GAP_SECONDS = OneEuroPredictor.RESET_AFTER_SECONDS;
+
+	// Step between the lags we try when looking for the perceived lag
+	private static final double LAG_STEP_SECONDS = 0.0005;
+
+	private final float latencySeconds;
+
+	private float minCutoff        = OneEuroPredictor.DEFAULT_MIN_CUTOFF;
+	private float beta             = OneEuroPredictor.DEFAULT_BETA;
+	private float derivativeCutoff = OneEuroPredictor.DEFAULT_DERIVATIVE_CUTOFF;
+
+	// Constructor specifying the time from a frame being captured to it being on screen, in milliseconds
+	public PredictionEvaluator(float latencyMillis)
+	{
+		this.latencySeconds = latencyMillis / 1000.0f;
+	}
+
+	public void setMinCutoff(float value)        { minCutoff = value;        }
+	public void setBeta(float value)             { beta = value;             }
+	public void setDerivativeCutoff(float value) { derivativeCutoff = value; }
+
+	// ----- Evaluating -----
+
+	// Method to run every frame of a recording through a new FramePredictor and score the results. The reader is read to
+	// the end (with looping turned off) but not closed.
+	public Result evaluate(FrameReader reader)
+	{
+		FramePredictor predictor = new FramePredictor( new OneEuroPredictor(4, minCutoff, beta, derivativeCutoff),
+		                                               new OneEuroPredictor(16, minCutoff, beta, derivativeCutoff) );
+		Result result = new Result(latencySeconds);
+
+		// Palms and tips have separate ids, so they're kept apart by the top bit of the key
+		Map<Long, Track> tracks = new HashMap<Long, Track>();
+		List<Track> frameTracks = new ArrayList<Track>();
+
+		WebSocketFrame wsf = new WebSocketFrame();
+		reader.setLoopPlayback(false);
+		while ( reader.readWebSocketFrame(wsf) )
+		{
+			double time = wsf.getTimestamp() / 1.0e6;
+			++result.frames;
+
+			// Keep the recorded positions...
+			frameTracks.clear();
+			List<WebSocketHand> hands = wsf.hands();
+			for (int i = 0; i < hands.size(); ++i)
+			{
+				Track track = track( tracks, Long.MIN_VALUE | hands.get(i).getId() );
+				track.add( time, hands.get(i).getPalmPosition() );
+				frameTracks.add(track);
+			}
+			List<WebSocketPointable> pointables = wsf.pointables();
+			for (int i = 0; i < pointables.size(); ++i)
+			{
+				Track track = track( tracks, pointables.get(i).getId() );
+				track.add( time, pointables.get(i).getTipPosition() );
+				frameTracks.add(track);
+			}
+
+			// ...then predict the frame and keep the predicted ones alongside them
+			long startNanos = System.nanoTime();
+			predictor.predict(wsf, latencySeconds);
+			result.predictNanos += System.nanoTime() - startNanos;
+
+			int t = 0;
+			for (int i = 0; i < hands.size(); ++i)
+			{
+				frameTracks.get(t++).setPredicted( hands.get(i).getPalmPosition() );
+			}
+			for (int i = 0; i < pointables.size(); ++i)
+			{
+				frameTracks.get(t++).setPredicted( pointables.get(i).getTipPosition() );
+			}
+		}
+
+		Track[] all = tracks.values().toArray( new Track[tracks.size()] );
+		result.tracks = all.length;
+
+		// The display error, with no lag taken off
+		double[] error = meanErrors(all, latencySeconds, result);
+		result.rawError       = error[0];
+		result.predictedError = error[1];
+
+		// The perceived lag - the lag with the least error, searching from as far ahead of the truth as the latency to
+		// twice as far behind it
+		double bestRaw = Double.MAX_VALUE, bestPredicted = Double.MAX_VALUE;
+		for (double lag = -latencySeconds; lag <= 2.0 * latencySeconds; lag += LAG_STEP_SECONDS)
+		{
+			error = meanErrors(all, latencySeconds - lag, null);
+			if (error[0] < bestRaw)       { bestRaw       = error[0]; result.rawLagSeconds       = lag; }
+			if (error[1] < bestPredicted) { bestPredicted = error[1]; result.predictedLagSeconds = lag; }
+		}
+
+		return result;
+	}
+
+	// Method to get the mean distance of the recorded and predicted positions of every point from where the point really
+	// was offsetSeconds after each frame. Only frames which have a ground truth that far on are counted. If a result is
+	// given the number of samples and the largest errors are also put into it.
+	private static double[] meanErrors(Track[] tracks, double offsetSeconds, Result result)
+	{
+		double rawTotal = 0.0, predictedTotal = 0.0;
+		long samples = 0L;
+
+		float[] truth = new float[3];
+		for (Track track : tracks)
+		{
+			int bracket = 0;
+			for (int i = 0; i < track.count; ++i)
+			{
+				double time = track.times[i] + offsetSeconds;
+
+				// The times only go up, so carry on from where we found the last pair of frames either side
+				while (bracket < track.count - 2 && track.times[bracket + 1] < time)
+				{
+					++bracket;
+				}
+				if ( !track.interpolate(bracket, time, truth) )
+				{
+					continue;
+				}
+
+				float rawError       = distance(track.raw,       i, truth);
+				float predictedError = distance(track.predicted, i, truth);
+				rawTotal       += rawError;
+				predictedTotal += predictedError;
+				++samples;
+
+				if (result != null)
+				{
+					result.maxRawError       = Math.max(result.maxRawError,       rawError);
+					result.maxPredictedError = Math.max(result.maxPredictedError, predictedError);
+				}
+			}
+		}
+
+		if (result != null)
+		{
+			result.samples = samples;
+		}
+		return (samples == 0L) ? new double[] { 0.0, 0.0 } : new double[] { rawTotal / samples, predictedTotal / samples };
+	}
+
+	private static float distance(float[] positions, int index, float[] truth)
+	{
+		float dx = positions[index * 3]     - truth[0];
+		float dy = positions[index * 3 + 1] - truth[1];
+		float dz = positions[index * 3 + 2] - truth[2];
+		return (float)Math.sqrt(dx * dx + dy * dy + dz * dz);
+	}
+
+	private static Track track(Map<Long, Track> tracks, long key)
+	{
+		Track track = tracks.get(key);
+		if (track == null)
+		{
+			track = new Track();
+			tracks.put(key, track);
+		}
+		return track;
+	}
+
+	// The recorded and predicted positions of one palm or fingertip, frame by frame
+	private static final class Track
+	{
+		double[] times     = new double[256];
+		float[]  raw       = new float[256 * 3];
+		float[]  predicted = new float[256 * 3];
+		int      count;
+
+		void add(double time, float[] position)
+		{
+			if (count == times.length)
+			{
+				times     = Arrays.copyOf(times,     count * 2);
+				raw       = Arrays.copyOf(raw,       count * 6);
+				predicted = Arrays.copyOf(predicted, count * 6);
+			}
+			times[count] = time;
+			System.arraycopy(position, 0, raw, count * 3, 3);
+			++count;
+		}
+
+		void setPredicted(float[] position)
+		{
+			System.arraycopy(position, 0, predicted, (count - 1) * 3, 3);
+		}
+
+		// Method to put the recorded position at the given time, between the frames at index and index + 1, into
+		// result. Returns false if the time isn't between them or they're too far apart to trust.
+		boolean interpolate(int index, double time, float[] result)
+		{
+			if (index + 1 >= count || time < times[index] || time > times[index + 1] || times[index + 1] - times[index] > MAX_GAP_SECONDS)
+			{
+				return false;
+			}
+
+			double span = times[index + 1] - times[index];
+			float  t    = (span <= 0.0) ? 0.0f : (float)( (time - times[index]) / span );
+			for (int c = 0; c < 3; ++c)
+			{
+				float a = raw[index * 3 + c];
+				result[c] = a + (raw[(index + 1) * 3 + c] - a) * t;
+			}
+			return true;
+		}
+	}
+
+	// ----- Results -----
+
+	public static class Result
+	{
+		public final double latencySeconds;
+
+		public long   frames;
+		public int    tracks;              // Number of palms and fingertips followed
+		public long   samples;             // Number of positions scored
+		public long   predictNanos;        // Total time spent predicting
+		public double rawError;            // Mean display error of the recorded positions, in mm
+		public double predictedError;      // Mean display error of the predicted positions, in mm
+		public float  maxRawError;
+		public float  maxPredictedError;
+		public double rawLagSeconds;       // Perceived lag drawing the recorded positions
+		public double predictedLagSeconds; // Perceived lag drawing the predicted positions
+
+		Result(double latencySeconds)
+		{
+			this.latencySeconds = latencySeconds;
+		}
+
+		// How much prediction cuts the perceived lag by, in seconds
+		public double getLagReductionSeconds() { return rawLagSeconds - predictedLagSeconds; }
+
+		@Override
+		public String toString()
+		{
+			return String.format(Locale.ROOT,
+			                     "%d frames, %d points, %d samples at %.1f ms latency, predicting in %.2f us/frame%n" +
+			                     "  Recorded : mean error %6.2f mm, max %6.2f mm, perceived lag %5.1f ms%n" +
+			                     "  Predicted: mean error %6.2f mm, max %6.2f mm, perceived lag %5.1f ms%n" +
+			                     "  Perceived lag cut by %.1f ms (%.0f%%)",
+			                     frames, tracks, samples, latencySeconds * 1000.0, (frames == 0L) ? 0.0 : predictNanos / 1000.0 / frames,
+			                     rawError, maxRawError, rawLagSeconds * 1000.0,
+			                     predictedError, maxPredictedError, predictedLagSeconds * 1000.0,
+			                     getLagReductionSeconds() * 1000.0, (rawLagSeconds == 0.0) ? 0.0 : 100.0 * getLagReductionSeconds() / rawLagSeconds);
+		}
+	}
+
+	// ----- Command line -----
+
+	private static void printUsage()
+	{
+		System.out.println("Usage: PredictionEvaluator <recording> [options]");
+		System.out.println("  --latency <ms>           Time from a frame being captured to it being on screen (default " + DEFAULT_LATENCY_MILLIS + ")");
+		System.out.println("  --min-cutoff <Hz>        One-Euro minimum cutoff (default " + OneEuroPredictor.DEFAULT_MIN_CUTOFF + ")");
+		System.out.println("  --beta <Hz per mm/s>     One-Euro speed coefficient (default " + OneEuroPredictor.DEFAULT_BETA + ")");
+		System.out.println("  --derivative-cutoff <Hz> Cutoff of the velocity filter (default " + OneEuroPredictor.DEFAULT_DERIVATIVE_CUTOFF + ")");
+	}
+
+	public static void main(String[] args)
+	{
+		if (args.length < 1)
+		{
+			printUsage();
+			System.exit(-1);
+		}
+
+		float latencyMillis = DEFAULT_LATENCY_MILLIS;
+		float minCutoff = OneEuroPredictor.DEFAULT_MIN_CUTOFF, beta = OneEuroPredictor.DEFAULT_BETA, derivativeCutoff = OneEuroPredictor.DEFAULT_DERIVATIVE_CUTOFF;
+
+		try
+		{
+			for (int i = 1; i < args.length; ++i)
+			{
+				switch (args[i])
+				{
+					case "--latency":           latencyMillis    = Float.parseFloat( args[++i] ); break;
+					case "--min-cutoff":        minCutoff        = Float.parseFloat( args[++i] ); break;
+					case "--beta":              beta             = Float.parseFloat( args[++i] ); break;
+					case "--derivative-cutoff": derivativeCutoff = Float.parseFloat( args[++i] ); break;
+					default:
+						System.out.println("Unknown option: " + args[i]);
+						printUsage();
+						System.exit(-1);
+				}
+			}
+		}
+		catch (RuntimeException e)
+		{
+			printUsage();
+			System.exit(-1);
+		}
+
+		PredictionEvaluator evaluator = new PredictionEvaluator(latencyMillis);
+		evaluator.setMinCutoff(minCutoff);
+		evaluator.setBeta(beta);
+		evaluator.setDerivativeCutoff(derivativeCutoff);
+
+		LeapDataReader reader = new LeapDataReader(args[0], false);
+		try
+		{
+			System.out.println( args[0] + ": " + evaluator.evaluate(reader) );
+		}
+		finally
+		{
+			reader.close();
+		}
+	}
+}
@@ -0,0 +1,436 @@
+/***
+ *
+ * File       : RawCaptureReader.java
+ * Description: A RawCaptureReader reads back a capture written by a RawCaptureWriter, parsing each message into a
+ *              WebSocketFrame only as it's read - or all of them at once, a block per core.
+ * Author     : Al Lansley
+ * Date       : 17/10/2026
+ * Version    : 0.1
+ *
+ */
+
+package au.edu.federation.leapdatarecorder;
+
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.zip.CRC32;
+import java.util.zip.Inflater;
+
+import au.edu.federation.leapwebsocket.LeapJsonParser;
+import au.edu.federation.leapwebsocket.WebSocketFrame;
+
+// Read one frame at a time, this works like any other FrameReader (so it can be replayed with a LeapDataReplayer): blocks
+// are checked against their CRC and inflated as they're reached, and each message is parsed with a LeapJsonParser as its
+// frame is asked for. The time each message was received is kept alongside, see getReceiveTimeNanos().
+//
+// As every block stands on its own, a whole capture can instead be decoded with decodeAll(), which reads the compressed
+// blocks in and then inflates and parses them in parallel on a fork-join pool, giving back the frames in the order they
+// were captured.
+//
+// Blocks which are cut short (e.g. the writer was killed part way through one) or which fail their checksum are skipped
+// with a message, as are messages which won't parse - the rest of their block is still read.
+//
+// See RawCaptureWriter for the layout of a capture.
+//
+// Example usage:
+//
+//		FrameReader reader = new RawCaptureReader("session.ldrj", false);
+//		WebSocketFrame wsf = reader.readWebSocketFrame();
+//
+// or, to decode it all at once on every core:
+//
+//		List<WebSocketFrame> frames = RawCaptureReader.decodeAll("session.ldrj");
+//
+public class RawCaptureReader implements FrameReader
+{
+	private final String filename;
+	private boolean loopPlayback;
+
+	private BlockFile.Input captureInputStream;
+
+	// Current block, inflated, and a view of the record in it being parsed
+	private final Inflater         inflater    = new Inflater();
+	private final CRC32            crc         = new CRC32();
+	private final BlockFile.Header blockHeader = new BlockFile.Header();
+	private byte[]                 compressedBuffer = new byte[RawCaptureWriter.DEFAULT_BLOCK_BYTES];
+	private ByteBuffer             blockBuffer      = ByteBuffer.allocate(RawCaptureWriter.DEFAULT_BLOCK_BYTES + 8192);
+	private ByteBuffer             recordView       = blockBuffer.duplicate();
+	private int                    blockMessagesLeft;
+
+	private final LeapJsonParser parser = new LeapJsonParser();
+
+	private boolean reachedEndOfCapture;
+
+	// The most recently read frame, returned again once the end of the capture is reached (as LeapDataReader does), and
+	// when its message was received
+	private WebSocketFrame currentReaderWebSocketFrame = new WebSocketFrame();
+	private long           receiveTimeNanos;
+
+	// Counters
+	private long framesRead;
+	private long blocksSkipped;
+	private long messagesSkipped;
+
+	// Constructor
+	public RawCaptureReader(String filename, boolean loopPlayback)
+	{
+		this.filename     = filename;
+		this.loopPlayback = loopPlayback;
+		openCapture();
+	}
+
+	// ----- Reading -----
+
+	// Method to read and return the next WebSocketFrame. At the end of the capture we either loop back to the start or
+	// keep returning the final frame, depending on the loop playback setting.
+	@Override
+	public WebSocketFrame readWebSocketFrame()
+	{
+		WebSocketFrame wsf = new WebSocketFrame();
+		if ( readWebSocketFrame(wsf) )
+		{
+			currentReaderWebSocketFrame = wsf;
+		}
+		return currentReaderWebSocketFrame;
+	}
+
+	// Method to parse the next message into an existing frame
+	@Override
+	public boolean readWebSocketFrame(WebSocketFrame into)
+	{
+		// Allow for going round the capture once more when looping, so a capture with nothing readable in it can't spin
+		// forever
+		boolean looped = false;
+		while (true)
+		{
+			while (blockMessagesLeft > 0)
+			{
+				--blockMessagesLeft;
+				if ( parseNextRecord(parser, blockBuffer, recordView, into) )
+				{
+					receiveTimeNanos = blockBuffer.getLong( recordView.position() - RawCaptureWriter.RECORD_HEADER_SIZE );
+					++framesRead;
+					return true;
+				}
+				++messagesSkipped;
+			}
+
+			if ( !reachedEndOfCapture && readNextBlock() )
+			{
+				continue;
+			}
+
+			// If we get here we're out of blocks - loop back around or stop
+			if (loopPlayback && !looped)
+			{
+				looped = true;
+				closeCapture();
+				openCapture();
+			}
+			else
+			{
+				reachedEndOfCapture = true;
+				return false;
+			}
+		}
+	}
+
+	// Method to load the next good block. Returns false at the end of the capture.
+	private boolean readNextBlock()
+	{
+		while (captureInputStream != null)
+		{
+			try
+			{
+				// The header is checked before we allocate anything for the block
+				BlockFile.Header header = BlockFile.readHeader(captureInputStream, RawCaptureWriter.BLOCK_MAGIC, blockHeader);
+
+				if (compressedBuffer.length < header.compressedLength)
+				{
+					compressedBuffer = new byte[header.compressedLength];
+				}
+				captureInputStream.readFully(compressedBuffer, 0, header.compressedLength);
+
+				if (blockBuffer.capacity() < header.rawLength)
+				{
+					blockBuffer = ByteBuffer.allocate(header.rawLength);
+					recordView  = blockBuffer.duplicate();
+				}
+
+				String problem = BlockFile.inflate(inflater, crc, compressedBuffer, header, blockBuffer);
+				if (problem != null)
+				{
+					System.out.println("RawCaptureReader: block " + problem + " in " + filename + " - skipping it.");
+					++blocksSkipped;
+					continue;
+				}
+
+				blockMessagesLeft = header.recordCount;
+				return true;
+			}
+			catch (EOFException eof)
+			{
+				// Either the end of the capture or a block cut short by a crash - either way we're done
+				closeCapture();
+			}
+			catch (IOException e)
+			{
+				System.out.println("RawCaptureReader: error reading " + filename + " - " + e.getMessage());
+				closeCapture();
+			}
+		}
+
+		return false;
+	}
+
+	// Method to open the capture and read its header
+	private void openCapture()
+	{
+		reachedEndOfCapture = false;
+		try
+		{
+			captureInputStream = new BlockFile.Input( new File(filename) );
+			readHeader(captureInputStream);
+		}
+		catch (IOException e)
+		{
+			System.out.println("RawCaptureReader: could not open " + filename + " - " + e.getMessage());
+			closeCapture();
+		}
+	}
+
+	private void closeCapture()
+	{
+		blockMessagesLeft = 0;
+
+		if (captureInputStream != null)
+		{
+			try
+			{
+				captureInputStream.close();
+			}
+			catch (IOException e)
+			{
+				e.printStackTrace();
+			}
+			captureInputStream = null;
+		}
+	}
+
+	@Override
+	public void setLoopPlayback(boolean value)
+	{
+		loopPlayback = value;
+	}
+
+	// Method to close the capture
+	@Override
+	public void close()
+	{
+		closeCapture();
+		inflater.end();
+	}
+
+	// ----- Getters -----
+
+	public String getFilename()       { return filename;         }
+	public long getReceiveTimeNanos() { return receiveTimeNanos; } // When the last frame read was received, in nanoseconds since the epoch
+	public long getFramesRead()       { return framesRead;       }
+	public long getBlocksSkipped()    { return blocksSkipped;    }
+	public long getMessagesSkipped()  { return messagesSkipped;  } // Number of messages which wouldn't parse
+
+	// ----- Bulk decoding -----
+
+	// Method to decode a whole capture on the common fork-join pool
+	public static List<WebSocketFrame> decodeAll(String filename) throws IOException
+	{
+		return decodeAll( filename, ForkJoinPool.commonPool() );
+	}
+
+	// Method to decode a whole capture, inflating and parsing its blocks in parallel on the given pool. The frames come
+	// back in the order they were captured. Bad blocks and messages are skipped as they are when reading frame by frame.
+	public static List<WebSocketFrame> decodeAll(String filename, ForkJoinPool pool) throws IOException
+	{
+		// Reading the blocks in is sequential, but it's only a copy of the compressed file
+		List<CompressedBlock> blocks = new ArrayList<CompressedBlock>();
+		try ( BlockFile.Input in = new BlockFile.Input( new File(filename) ) )
+		{
+			readHeader(in);
+			while (true)
+			{
+				CompressedBlock block = new CompressedBlock();
+				try
+				{
+					// The header is checked before we allocate anything for the block
+					BlockFile.readHeader(in, RawCaptureWriter.BLOCK_MAGIC, block.header);
+					block.compressed = new byte[block.header.compressedLength];
+					in.readFully(block.compressed);
+				}
+				catch (EOFException eof)
+				{
+					break;
+				}
+				catch (IOException e)
+				{
+					System.out.println("RawCaptureReader: error reading " + filename + " - " + e.getMessage());
+					break;
+				}
+				blocks.add(block);
+			}
+		}
+
+		return pool.invoke( new DecodeTask(filename, blocks, 0, blocks.size()) );
+	}
+
+	// Task to decode a range of blocks - ranges of more than one block are split in half and the halves run in parallel
+	private static class DecodeTask extends RecursiveTask<List<WebSocketFrame>>
+	{
+		private static final long serialVersionUID = 1L;
+
+		private final String                filename;
+		private final List<CompressedBlock> blocks;
+		private final int                   from;
+		private final int                   to;
+
+		DecodeTask(String filename, List<CompressedBlock> blocks, int from, int to)
+		{
+			this.filename = filename;
+			this.blocks   = blocks;
+			this.from     = from;
+			this.to       = to;
+		}
+
+		@Override
+		protected List<WebSocketFrame> compute()
+		{
+			if (to - from <= 1)
+			{
+				return (to > from) ? decode( blocks.get(from) ) : new ArrayList<WebSocketFrame>();
+			}
+
+			int middle = (from + to) >>> 1;
+			DecodeTask left  = new DecodeTask(filename, blocks, from, middle);
+			DecodeTask right = new DecodeTask(filename, blocks, middle, to);
+			left.fork();
+
+			List<WebSocketFrame> frames = right.compute();
+			frames.addAll(0, left.join());
+			return frames;
+		}
+
+		// Method to inflate a block and parse every message in it. Each block gets its own inflater and parser, as neither
+		// can be shared between threads.
+		private List<WebSocketFrame> decode(CompressedBlock block)
+		{
+			List<WebSocketFrame> frames = new ArrayList<WebSocketFrame>(block.header.recordCount);
+
+			ByteBuffer blockBuffer = ByteBuffer.allocate(block.header.rawLength);
+			Inflater   inflater    = new Inflater();
+			try
+			{
+				String problem = BlockFile.inflate(inflater, new CRC32(), block.compressed, block.header, blockBuffer);
+				if (problem != null)
+				{
+					System.out.println("RawCaptureReader: block " + problem + " in " + filename + " - skipping it.");
+					return frames;
+				}
+			}
+			finally
+			{
+				inflater.end();
+			}
+
+			LeapJsonParser parser     = new LeapJsonParser();
+			ByteBuffer     recordView = blockBuffer.duplicate();
+			for (int loop = 0; loop < block.header.recordCount; ++loop)
+			{
+				WebSocketFrame wsf = new WebSocketFrame();
+				if ( parseNextRecord(parser, blockBuffer, recordView, wsf) )
+				{
+					frames.add(wsf);
+				}
+			}
+			return frames;
+		}
+	}
+
+	// A block as read from the file, before it's been inflated
+	private static final class CompressedBlock
+	{
+		final BlockFile.Header header = new BlockFile.Header();
+		byte[] compressed;
+	}
+
+	// ----- Capture layout -----
+
+	// Method to check that a stream starts with a capture header we can read
+	private static void readHeader(DataInputStream in) throws IOException
+	{
+		if ( in.readInt() != RawCaptureWriter.CAPTURE_MAGIC )
+		{
+			throw new IOException("not a raw capture.");
+		}
+
+		short version = in.readShort();
+		if (version != RawCaptureWriter.FORMAT_VERSION)
+		{
+			throw new IOException("capture format version " + version + " is not supported - only version " + RawCaptureWriter.FORMAT_VERSION + " can be read.");
+		}
+	}
+
+	// Method to parse the next record of an inflated block into a frame, moving the block buffer on past it. The record
+	// view (a duplicate of the block buffer) is left around the record's message. Returns false if the message won't parse.
+	private static boolean parseNextRecord(LeapJsonParser parser, ByteBuffer blockBuffer, ByteBuffer recordView, WebSocketFrame into)
+	{
+		// Should never happen as the block passed its checksum, but if a record runs off the end then drop the rest
+		if (blockBuffer.remaining() < RawCaptureWriter.RECORD_HEADER_SIZE)
+		{
+			return false;
+		}
+
+		blockBuffer.getLong(); // Receive time
+		int length = blockBuffer.getInt();
+		int start  = blockBuffer.position();
+		if ( length < 0 || length > blockBuffer.remaining() )
+		{
+			blockBuffer.position( blockBuffer.limit() );
+			return false;
+		}
+		blockBuffer.position(start + length);
+
+		recordView.clear();
+		recordView.position(start);
+		recordView.limit(start + length);
+		try
+		{
+			parser.parseInto(recordView, into);
+			return true;
+		}
+		catch (RuntimeException e)
+		{
+			System.out.println("RawCaptureReader: could not parse message - " + e.getMessage());
+			return false;
+		}
+	}
+
+	// Method to check whether a file is a raw capture (rather than some other kind of recording)
+	public static boolean isRawCapture(String filename)
+	{
+		try ( DataInputStream in = new DataInputStream( new FileInputStream(filename) ) )
+		{
+			return in.readInt() == RawCaptureWriter.CAPTURE_MAGIC;
+		}
+		catch (IOException e)
+		{
+			return false;
+		}
+	}
+}
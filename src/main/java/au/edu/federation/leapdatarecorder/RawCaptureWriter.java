@@ -0,0 +1,323 @@
+/***
+ *
+ * File       : RawCaptureWriter.java
+ * Description: A RawCaptureWriter appends the JSON messages from the Leap's WebSocket, exactly as they arrived and along with
+ *              when they arrived, to a block-compressed capture file - leaving parsing them until they're read back.
+ * Author     : Al Lansley
+ * Date       : 17/10/2026
+ * Version    : 0.1
+ *
+ */
+
+package au.edu.federation.leapdatarecorder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.Deflater;
+
+import au.edu.federation.leapwebsocket.WebSocketFrameEvent;
+
+// Every other recording format needs each message parsed into a WebSocketFrame before it can be written, and then
+// encoded again. A raw capture skips both - each message is stored as the bytes we were sent, so capturing costs no
+// more than a copy and (every block or so) a deflate, and the capture holds everything the Leap sent even if our parser
+// or WebSocketFrame don't know about some of it yet. The parsing is done later when the capture is read back with a
+// RawCaptureReader, either one frame at a time or in bulk across all cores.
+//
+// Messages are grouped into blocks which are compressed on their own and appended as soon as they're full (by size or
+// age), just like the blocks of a RollingLeapDataWriter segment - so a crash loses at most the block being filled, and
+// as no block needs anything from the ones before it they can be inflated and parsed in parallel.
+//
+// Layout of a capture (all values big-endian):
+//
+//		Header: int magic ('L','D','R','J'), short format version
+//		Blocks: int magic ('L','D','J','B'), int message count, int uncompressed length, int compressed length,
+//		        int CRC32 of the compressed bytes, int CRC32 of the header, then the compressed (deflate) bytes
+//
+// Once decompressed, a block is a run of records, each a long receive time (nanoseconds since the epoch), an int
+// length, and then that many bytes of the message as UTF-8 encoded JSON. The blocks are written and read with the same
+// BlockFile code as segments are.
+//
+// To capture from a LeapWebSocket, give the writer to a LeapDataRecorder - it's then fed from the socket's FrameBus by
+// a stage of its own which doesn't wait for the parser, so the socket's thread does no more than it always does.
+//
+// Example usage:
+//
+//		LeapDataRecorder recorder = new LeapDataRecorder( leapWebSocket, new RawCaptureWriter("session.ldrj") );
+//		recorder.enable();
+//		...
+//		recorder.close();
+//
+public class RawCaptureWriter
+{
+	public static final int    CAPTURE_MAGIC      = 0x4C44524A; // "LDRJ"
+	public static final short  FORMAT_VERSION     = 1;
+	public static final int    HEADER_SIZE        = 4 + 2;
+	public static final int    BLOCK_MAGIC        = 0x4C444A42; // "LDJB"
+	public static final int    BLOCK_HEADER_SIZE  = BlockFile.BLOCK_HEADER_SIZE;
+	public static final int    RECORD_HEADER_SIZE = 8 + 4;
+	public static final String CAPTURE_EXTENSION  = ".ldrj";
+
+	// Defaults
+	public static final int  DEFAULT_BLOCK_BYTES      = 256 * 1024;
+	public static final long DEFAULT_MAX_BLOCK_MILLIS = 1000L;
+
+	private final String filename;
+	private FileOutputStream fileOutputStream;
+
+	// Block settings
+	private int  blockBytes     = DEFAULT_BLOCK_BYTES;
+	private long maxBlockMillis = DEFAULT_MAX_BLOCK_MILLIS;
+
+	// Current block
+	private ByteBuffer blockBuffer = ByteBuffer.allocate(DEFAULT_BLOCK_BYTES + 8192);
+	private int        blockMessageCount;
+	private long       blockStartedMillis;
+
+	// Encoder for the rare message which isn't plain ASCII
+	private final CharsetEncoder utf8Encoder = StandardCharsets.UTF_8.newEncoder()
+	                                                   .onMalformedInput(CodingErrorAction.REPLACE)
+	                                                   .onUnmappableCharacter(CodingErrorAction.REPLACE);
+
+	// Reusable compression state
+	private final BlockFile.Writer blockWriter;
+
+	// Messages arrive stamped with System.nanoTime(), so this is what to add to get nanoseconds since the epoch
+	private final long epochOffsetNanos = System.currentTimeMillis() * 1000000L - System.nanoTime();
+
+	private boolean closed;
+
+	// Counters
+	private long messagesWritten;
+	private long blocksWritten;
+	private long bytesCaptured; // Uncompressed
+	private long bytesWritten;  // Compressed, including the headers
+
+	// Constructor - compresses blocks for speed rather than size, as they're written while capturing
+	public RawCaptureWriter(String filename)
+	{
+		this(filename, Deflater.BEST_SPEED);
+	}
+
+	// Constructor specifying the deflate compression level (0-9)
+	public RawCaptureWriter(String filename, int compressionLevel)
+	{
+		this.filename = filename;
+		blockWriter = new BlockFile.Writer(compressionLevel, DEFAULT_BLOCK_BYTES);
+
+		try
+		{
+			ByteArrayOutputStream headerBytes = new ByteArrayOutputStream();
+			DataOutputStream header = new DataOutputStream(headerBytes);
+			header.writeInt(CAPTURE_MAGIC);
+			header.writeShort(FORMAT_VERSION);
+			header.flush();
+
+			fileOutputStream = new FileOutputStream(filename);
+			fileOutputStream.write( headerBytes.toByteArray() );
+			bytesWritten = headerBytes.size();
+		}
+		catch (IOException e)
+		{
+			e.printStackTrace();
+		}
+	}
+
+	// ----- Settings -----
+
+	// Write out the current block once it holds this many uncompressed bytes...
+	public synchronized void setBlockBytes(int bytes)
+	{
+		// A block can end up a message bigger than this, and still has to be small enough to read back
+		if ( bytes > BlockFile.MAX_BLOCK_BYTES - MappedRecording.MAX_RECORD_SIZE )
+		{
+			throw new IllegalArgumentException("Block size must be at most " + (BlockFile.MAX_BLOCK_BYTES - MappedRecording.MAX_RECORD_SIZE) + " bytes.");
+		}
+		blockBytes = bytes;
+	}
+
+	// ...or once its first message is this old (checked as each message arrives). This is the most a crash can lose.
+	public synchronized void setMaxBlockMillis(long millis) { maxBlockMillis = millis; }
+
+	// ----- Writing -----
+
+	// Method to capture the message held by an event from a LeapWebSocket's FrameBus
+	public void append(WebSocketFrameEvent event)
+	{
+		if ( event.isBinary() )
+		{
+			append( event.getArrivalNanos(), event.getJsonBytes() );
+		}
+		else
+		{
+			append( event.getArrivalNanos(), event.getJsonString() );
+		}
+	}
+
+	// Method to capture a text message which arrived at the given System.nanoTime(). Messages arriving once we've been
+	// closed are ignored.
+	public synchronized void append(long arrivalNanos, CharSequence json)
+	{
+		if (closed)
+		{
+			return;
+		}
+
+		// A char never takes more than three bytes in UTF-8 (those outside the BMP take four, but they're two chars)
+		int lengthPosition = startRecord( arrivalNanos, json.length() * 3 );
+
+		// Leap JSON is plain ASCII, so copy it straight across a char at a time and only bring in the encoder (from
+		// wherever it's needed onwards) if we find anything which isn't
+		byte[] block    = blockBuffer.array();
+		int    position = blockBuffer.position();
+		int    length   = json.length();
+		int    loop     = 0;
+		for (; loop < length; ++loop)
+		{
+			char c = json.charAt(loop);
+			if (c >= 0x80)
+			{
+				break;
+			}
+			block[position++] = (byte)c;
+		}
+		blockBuffer.position(position);
+
+		if (loop < length)
+		{
+			utf8Encoder.reset();
+			utf8Encoder.encode( CharBuffer.wrap(json, loop, length), blockBuffer, true );
+			utf8Encoder.flush(blockBuffer);
+		}
+
+		endRecord(lengthPosition);
+	}
+
+	// Method to capture a binary message (UTF-8 encoded JSON between the buffer's position and limit) which arrived at the
+	// given System.nanoTime(). The buffer's position is not changed.
+	public synchronized void append(long arrivalNanos, ByteBuffer json)
+	{
+		if (closed)
+		{
+			return;
+		}
+
+		int lengthPosition = startRecord( arrivalNanos, json.remaining() );
+		blockBuffer.put( json.duplicate() );
+		endRecord(lengthPosition);
+	}
+
+	// Method to make sure the block has room for a record of up to the given length and write the record's receive time,
+	// leaving space for its length. Returns where the length goes.
+	private int startRecord(long arrivalNanos, int maxLength)
+	{
+		if (blockMessageCount == 0)
+		{
+			blockStartedMillis = System.currentTimeMillis();
+		}
+
+		if (blockBuffer.remaining() < RECORD_HEADER_SIZE + maxLength)
+		{
+			ByteBuffer larger = ByteBuffer.allocate( Math.max(blockBuffer.capacity() * 2, blockBuffer.position() + RECORD_HEADER_SIZE + maxLength) );
+			blockBuffer.flip();
+			larger.put(blockBuffer);
+			blockBuffer = larger;
+		}
+
+		blockBuffer.putLong(arrivalNanos + epochOffsetNanos);
+		int lengthPosition = blockBuffer.position();
+		blockBuffer.position(lengthPosition + 4);
+		return lengthPosition;
+	}
+
+	// Method to fill in the length of the record just written, writing the block out if it's full or old enough
+	private void endRecord(int lengthPosition)
+	{
+		int length = blockBuffer.position() - lengthPosition - 4;
+		blockBuffer.putInt(lengthPosition, length);
+
+		++blockMessageCount;
+		++messagesWritten;
+		bytesCaptured += length;
+
+		if ( blockBuffer.position() >= blockBytes || (System.currentTimeMillis() - blockStartedMillis) >= maxBlockMillis )
+		{
+			writeBlock();
+		}
+	}
+
+	// Method to compress the current block and append it to the file
+	private void writeBlock()
+	{
+		if (blockMessageCount == 0 || fileOutputStream == null)
+		{
+			return;
+		}
+
+		try
+		{
+			bytesWritten += blockWriter.write( fileOutputStream, BLOCK_MAGIC, blockMessageCount, blockBuffer.array(), blockBuffer.position() );
+			++blocksWritten;
+		}
+		catch (IOException e)
+		{
+			e.printStackTrace();
+		}
+
+		blockBuffer.clear();
+		blockMessageCount = 0;
+	}
+
+	// Method to write out whatever is in the current block now rather than waiting for it to fill up
+	public synchronized void flush()
+	{
+		writeBlock();
+	}
+
+	// Method to write out the last block and close the file. Only the first call does anything.
+	public synchronized void close()
+	{
+		if (closed)
+		{
+			return;
+		}
+
+		writeBlock();
+		closed = true;
+
+		try
+		{
+			if (fileOutputStream != null)
+			{
+				fileOutputStream.close();
+			}
+		}
+		catch (IOException e)
+		{
+			e.printStackTrace();
+		}
+
+		blockWriter.end();
+	}
+
+	// ----- Getters -----
+
+	public String getFilename()                   { return filename;        }
+	public synchronized long getMessagesWritten() { return messagesWritten; }
+	public synchronized long getBlocksWritten()   { return blocksWritten;   }
+	public synchronized long getBytesCaptured()   { return bytesCaptured;   } // The messages' total size before compression
+	public synchronized long getBytesWritten()    { return bytesWritten;    } // The size of the file so far
+
+	@Override
+	public synchronized String toString()
+	{
+		return "RawCaptureWriter [filename=" + filename + ", messages=" + messagesWritten + ", blocks=" + blocksWritten +
+		       ", bytesCaptured=" + bytesCaptured + ", bytesWritten=" + bytesWritten + "]";
+	}
+}
@@ -0,0 +1,51 @@
+/***
+ *
+ * File       : RecordingFormat.java
+ * Description: The on-disk formats a LeapDataWriter can produce and a LeapDataReader can consume.
+ * Author     : Al Lansley
+ * Date       : 17/10/2026
+ * Version    : 0.1
+ *
+ */
+
+package au.edu.federation.leapdatarecorder;
+
+// SERIALIZED is the original format where each WebSocketFrame is pushed through an ObjectOutputStream. It carries
+// no header of its own, so it's detected by the absence of the LeapFrameCodec magic number and is kept only so
+// that older recordings can still be opened (and written, if you really want to).
+//
+// BINARY is the compact, schema-defined format described in LeapFrameCodec - a short versioned header followed by
+// length-prefixed records with fixed-width fields for the frame, hands, pointables, gestures and interaction box.
+//
+// DELTA uses the same header and record framing as BINARY, but each record holds quantized values written as the
+// difference from the previous frame (see DeltaFrameCodec). It's several times smaller again, but it's lossy and
+// records can only be decoded in order starting from a keyframe.
+public enum RecordingFormat
+{
+	SERIALIZED((byte)-1),
+	BINARY    ((byte) 0),
+	DELTA     ((byte) 1);
+
+	// The id written into the file header to say which codec the records were written with
+	private final byte codecId;
+
+	RecordingFormat(byte codecId)
+	{
+		this.codecId = codecId;
+	}
+
+	public byte getCodecId() { return codecId; }
+
+	// Method to find the format for a codec id read from a file header, or null if we don't know it
+	public static RecordingFormat fromCodecId(byte codecId)
+	{
+		for (RecordingFormat format : values())
+		{
+			if (format.codecId == codecId && format != SERIALIZED)
+			{
+				return format;
+			}
+		}
+		return null;
+	}
+}
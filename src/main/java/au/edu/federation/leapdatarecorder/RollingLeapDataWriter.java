@@ -0,0 +1,348 @@
+/***
+ *
+ * File       : RollingLeapDataWriter.java
+ * Description: A RollingLeapDataWriter writes a recording as a series of segment files made up of independently decodable,
+ *              checksummed blocks, so that a crash loses at most the block being filled and no single file grows without bound.
+ * Author     : Al Lansley
+ * Date       : 17/10/2026
+ * Version    : 0.1
+ *
+ */
+
+package au.edu.federation.leapdatarecorder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.zip.Deflater;
+
+import au.edu.federation.leapwebsocket.WebSocketFrame;
+
+// A LeapDataWriter only writes the gzip trailer when it's closed, so if the program dies part way through a session
+// the whole recording is unreadable. This writer instead groups frames into blocks, and each block is compressed on
+// its own, given a CRC32 and appended to the current segment file as soon as it's full (by size or age). Anything
+// already written stays readable whatever happens afterwards - a hard kill loses at most the block being filled.
+//
+// When a segment gets too big or too old a new one is started. Segments are named <prefix>-<number>.ldrs in the
+// given directory, numbered from one higher than any segment already there, and a SegmentedLeapDataReader reads a
+// directory of them back as one continuous recording.
+//
+// Layout of a segment (all values big-endian):
+//
+//		Header: int magic ('L','D','R','S'), short format version, byte codec id (BINARY or DELTA),
+//		        then the DeltaFrameCodec settings if the codec is DELTA
+//		Blocks: int magic ('L','D','B','K'), int frame count, int uncompressed length, int compressed length,
+//		        int CRC32 of the compressed bytes, int CRC32 of the header, then the compressed (deflate) bytes
+//
+// See BlockFile for how blocks are checked as they're read back.
+//
+// Once decompressed, a block is a run of length-prefixed records exactly like those in a BINARY or DELTA recording.
+// The DELTA codec is reset at the start of every block, so each block begins with a keyframe and needs nothing from
+// the blocks before it.
+//
+// Example usage:
+//
+//		RollingLeapDataWriter writer = new RollingLeapDataWriter("recordings", "session", RecordingFormat.DELTA);
+//		writer.setMaxSegmentMillis( TimeUnit.MINUTES.toMillis(10) ); // Start a new file every ten minutes
+//		...
+//		writer.writeWebSocketFrame(wsf);
+//		...
+//		writer.close();
+//
+public class RollingLeapDataWriter implements FrameWriter
+{
+	public static final int    SEGMENT_MAGIC     = 0x4C445253; // "LDRS"
+	public static final int    BLOCK_MAGIC       = 0x4C44424B; // "LDBK"
+	public static final int    BLOCK_HEADER_SIZE = BlockFile.BLOCK_HEADER_SIZE;
+	public static final String SEGMENT_EXTENSION = ".ldrs";
+
+	// Defaults
+	public static final long DEFAULT_MAX_SEGMENT_BYTES  = 64L * 1024L * 1024L;
+	public static final long DEFAULT_MAX_SEGMENT_MILLIS = 15L * 60L * 1000L;
+	public static final int  DEFAULT_BLOCK_BYTES        = 256 * 1024;
+	public static final long DEFAULT_MAX_BLOCK_MILLIS   = 1000L;
+
+	private final File            directory;
+	private final String          prefix;
+	private final RecordingFormat format;
+	private final DeltaFrameCodec deltaCodec; // Only used when writing the DELTA format
+
+	// Rotation and block settings
+	private long    maxSegmentBytes  = DEFAULT_MAX_SEGMENT_BYTES;
+	private long    maxSegmentMillis = DEFAULT_MAX_SEGMENT_MILLIS;
+	private int     blockBytes       = DEFAULT_BLOCK_BYTES;
+	private long    maxBlockMillis   = DEFAULT_MAX_BLOCK_MILLIS;
+	private boolean syncEachBlock;
+
+	// Current segment - opened when the first frame arrives
+	private FileOutputStream segmentOutputStream;
+	private File             segmentFile;
+	private int              segmentNumber;
+	private long             segmentBytes;
+	private long             segmentOpenedMillis;
+
+	// Current block
+	private ByteBuffer blockBuffer = ByteBuffer.allocate(DEFAULT_BLOCK_BYTES + 8192);
+	private int        blockFrameCount;
+	private long       blockStartedMillis;
+
+	// Reusable compression state
+	private final BlockFile.Writer blockWriter = new BlockFile.Writer(Deflater.DEFAULT_COMPRESSION, DEFAULT_BLOCK_BYTES);
+
+	// Counters
+	private long framesWritten;
+	private long blocksWritten;
+	private int  segmentsWritten;
+	private long blocksDropped; // Blocks which couldn't be written, and the frames in them
+	private long framesDropped;
+
+	// Constructor - writes the compact BINARY format
+	public RollingLeapDataWriter(String directoryName, String prefix)
+	{
+		this(directoryName, prefix, RecordingFormat.BINARY);
+	}
+
+	// Constructor specifying the format (BINARY or DELTA) to write
+	public RollingLeapDataWriter(String directoryName, String prefix, RecordingFormat format)
+	{
+		this(directoryName, prefix, format, (format == RecordingFormat.DELTA) ? new DeltaFrameCodec() : null);
+	}
+
+	// Constructor writing the DELTA format with the given codec's quantization settings
+	public RollingLeapDataWriter(String directoryName, String prefix, DeltaFrameCodec codec)
+	{
+		this(directoryName, prefix, RecordingFormat.DELTA, codec);
+	}
+
+	private RollingLeapDataWriter(String directoryName, String prefix, RecordingFormat format, DeltaFrameCodec codec)
+	{
+		if (format == RecordingFormat.SERIALIZED)
+		{
+			throw new IllegalArgumentException("Rolling recordings can only be written in the BINARY or DELTA formats.");
+		}
+
+		this.directory  = new File(directoryName);
+		this.prefix     = prefix;
+		this.format     = format;
+		this.deltaCodec = codec;
+
+		if ( !directory.isDirectory() && !directory.mkdirs() )
+		{
+			System.out.println("RollingLeapDataWriter: could not create directory " + directory);
+		}
+
+		// Carry on numbering from any segments already in the directory rather than overwriting them
+		segmentNumber = SegmentedLeapDataReader.lastSegmentNumber(directory, prefix);
+	}
+
+	// ----- Settings -----
+
+	// Start a new segment once the current one reaches this many bytes
+	public void setMaxSegmentBytes(long bytes)   { maxSegmentBytes = bytes;   }
+
+	// Start a new segment once the current one has been open for this long
+	public void setMaxSegmentMillis(long millis) { maxSegmentMillis = millis; }
+
+	// Write out the current block once it holds this many uncompressed bytes...
+	public void setBlockBytes(int bytes)
+	{
+		// A block can end up a frame bigger than this, and still has to be small enough to read back
+		if ( bytes > BlockFile.MAX_BLOCK_BYTES - MappedRecording.MAX_RECORD_SIZE )
+		{
+			throw new IllegalArgumentException("Block size must be at most " + (BlockFile.MAX_BLOCK_BYTES - MappedRecording.MAX_RECORD_SIZE) + " bytes.");
+		}
+		blockBytes = bytes;
+	}
+
+	// ...or once its first frame is this old (checked as each frame arrives). This is the most a crash can lose.
+	public void setMaxBlockMillis(long millis)   { maxBlockMillis = millis;   }
+
+	// Whether to force each block to disk as it's written. Without this a block survives the program being killed,
+	// but maybe not the machine losing power. Syncing is slow, so it's off by default.
+	public void setSyncEachBlock(boolean value)  { syncEachBlock = value;     }
+
+	// ----- Writing -----
+
+	// Method to add a WebSocketFrame to the current block, writing the block out if it's full or old enough
+	@Override
+	public void writeWebSocketFrame(WebSocketFrame wsf)
+	{
+		long now = System.currentTimeMillis();
+
+		if (blockFrameCount == 0)
+		{
+			blockStartedMillis = now;
+
+			// Every block must decode on its own, so start each one with a keyframe
+			if (deltaCodec != null)
+			{
+				deltaCodec.reset();
+			}
+		}
+
+		// Make sure the block buffer has room for this frame's record
+		int maxSize = (format == RecordingFormat.DELTA) ? DeltaFrameCodec.maxEncodedSize(wsf) : LeapFrameCodec.maxEncodedSize(wsf);
+		if (blockBuffer.remaining() < 4 + maxSize)
+		{
+			ByteBuffer larger = ByteBuffer.allocate( Math.max(blockBuffer.capacity() * 2, blockBuffer.position() + 4 + maxSize) );
+			blockBuffer.flip();
+			larger.put(blockBuffer);
+			blockBuffer = larger;
+		}
+
+		// Leave space for the length, encode the frame, then go back and fill the length in
+		int lengthPosition = blockBuffer.position();
+		blockBuffer.position(lengthPosition + 4);
+		if (format == RecordingFormat.DELTA) { deltaCodec.encode(wsf, blockBuffer);     }
+		else                                 { LeapFrameCodec.encode(wsf, blockBuffer); }
+		blockBuffer.putInt( lengthPosition, blockBuffer.position() - lengthPosition - 4 );
+
+		++blockFrameCount;
+		++framesWritten;
+
+		if ( blockBuffer.position() >= blockBytes || (now - blockStartedMillis) >= maxBlockMillis )
+		{
+			writeBlock(now);
+		}
+	}
+
+	// Method to compress the current block and append it to the segment, rotating the segment afterwards if need be
+	private void writeBlock(long now)
+	{
+		if (blockFrameCount == 0)
+		{
+			return;
+		}
+
+		try
+		{
+			if (segmentOutputStream == null)
+			{
+				openSegment(now);
+			}
+
+			int blockLength = blockWriter.write( segmentOutputStream, BLOCK_MAGIC, blockFrameCount, blockBuffer.array(), blockBuffer.position() );
+
+			if (syncEachBlock)
+			{
+				segmentOutputStream.getFD().sync();
+			}
+
+			segmentBytes += blockLength;
+			++blocksWritten;
+
+			if ( segmentBytes >= maxSegmentBytes || (now - segmentOpenedMillis) >= maxSegmentMillis )
+			{
+				closeSegment();
+			}
+		}
+		catch (IOException e)
+		{
+			// Part of the block may have made it into the segment, and a reader can't find its way past a torn block to the
+			// ones after it - so drop this block and start the next one in a new segment
+			System.out.println("RollingLeapDataWriter: could not write a block of " + blockFrameCount + " frames to " + segmentFile + " - " + e.getMessage() +
+			                   ". Dropping it and starting a new segment.");
+			++blocksDropped;
+			framesDropped += blockFrameCount;
+			try
+			{
+				closeSegment();
+			}
+			catch (IOException closeFailed)
+			{
+				// The segment's already been let go of, which is all we need
+			}
+		}
+
+		blockBuffer.clear();
+		blockFrameCount = 0;
+	}
+
+	// Method to start the next segment file and write its header
+	private void openSegment(long now) throws IOException
+	{
+		++segmentNumber;
+		segmentFile = new File( directory, SegmentedLeapDataReader.segmentName(prefix, segmentNumber) );
+
+		ByteArrayOutputStream headerBytes = new ByteArrayOutputStream();
+		DataOutputStream header = new DataOutputStream(headerBytes);
+		header.writeInt(SEGMENT_MAGIC);
+		header.writeShort(LeapFrameCodec.FORMAT_VERSION);
+		header.writeByte( format.getCodecId() );
+		if (deltaCodec != null)
+		{
+			deltaCodec.writeSettings(header);
+		}
+		header.flush();
+
+		segmentOutputStream = new FileOutputStream(segmentFile);
+		segmentOutputStream.write( headerBytes.toByteArray() );
+
+		segmentBytes        = headerBytes.size();
+		segmentOpenedMillis = now;
+		++segmentsWritten;
+	}
+
+	// Method to close the current segment so the next block starts a new one - even if syncing or closing it fails
+	private void closeSegment() throws IOException
+	{
+		if (segmentOutputStream != null)
+		{
+			FileOutputStream out = segmentOutputStream;
+			segmentOutputStream = null;
+			try
+			{
+				out.getFD().sync();
+			}
+			finally
+			{
+				out.close();
+			}
+		}
+	}
+
+	// Method to write out whatever is in the current block now rather than waiting for it to fill up
+	public void flush()
+	{
+		writeBlock( System.currentTimeMillis() );
+	}
+
+	// Method to write out the last block and close the current segment
+	@Override
+	public void close()
+	{
+		flush();
+
+		try
+		{
+			closeSegment();
+		}
+		catch (IOException e)
+		{
+			e.printStackTrace();
+		}
+
+		blockWriter.end();
+	}
+
+	// ----- Getters -----
+
+	public RecordingFormat getFormat()   { return format;          }
+	public File getDirectory()           { return directory;       }
+	public File getCurrentSegmentFile()  { return segmentFile;     }
+	public long getFramesWritten()       { return framesWritten;   }
+	public long getBlocksWritten()       { return blocksWritten;   }
+	public int  getSegmentsWritten()     { return segmentsWritten; }
+	public long getBlocksDropped()       { return blocksDropped;   }
+	public long getFramesDropped()       { return framesDropped;   }
+
+	@Override
+	public String toString()
+	{
+		return "RollingLeapDataWriter [directory=" + directory + ", prefix=" + prefix + ", format=" + format + ", frames=" + framesWritten +
+		       ", blocks=" + blocksWritten + ", segments=" + segmentsWritten + ", blocksDropped=" + blocksDropped + "]";
+	}
+}
@@ -0,0 +1,386 @@
+/***
+ *
+ * File       : SegmentedLeapDataReader.java
+ * Description: A SegmentedLeapDataReader replays a directory of segment files written by a RollingLeapDataWriter as one
+ *              continuous recording, skipping any block which is incomplete or fails its checksum.
+ * Author     : Al Lansley
+ * Date       : 17/10/2026
+ * Version    : 0.1
+ *
+ */
+
+package au.edu.federation.leapdatarecorder;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.zip.CRC32;
+import java.util.zip.Inflater;
+
+import au.edu.federation.leapwebsocket.WebSocketFrame;
+
+// Segments are read in order of their number, and the blocks in each are read one at a time - a block is checked
+// against its CRC, inflated, and then its frames are handed out one by one. If the writer was killed part way
+// through a block then the final block of that segment is cut short, and if a block has been damaged on disk its
+// checksum won't match. Either way the block is skipped with a message and we carry on from the next good one, so a
+// crash only ever costs the block that was being written. If a block's header is damaged we can't find the block after
+// it, so the rest of that segment is skipped instead.
+//
+// See RollingLeapDataWriter for the layout of a segment.
+//
+// Example usage:
+//
+//		FrameReader reader = new SegmentedLeapDataReader("recordings", "session", false);
+//		WebSocketFrame wsf = reader.readWebSocketFrame();
+//
+public class SegmentedLeapDataReader implements FrameReader
+{
+	private final File[] segments;
+	private boolean loopPlayback;
+
+	// Current segment
+	private int             segmentIndex = -1;
+	private BlockFile.Input segmentInputStream;
+	private RecordingFormat format;
+	private DeltaFrameCodec deltaCodec; // Only used when the segment is in the DELTA format
+
+	// Current block, inflated
+	private final Inflater         inflater    = new Inflater();
+	private final CRC32            crc         = new CRC32();
+	private final BlockFile.Header blockHeader = new BlockFile.Header();
+	private byte[]                 compressedBuffer = new byte[RollingLeapDataWriter.DEFAULT_BLOCK_BYTES];
+	private ByteBuffer             blockBuffer      = ByteBuffer.allocate(RollingLeapDataWriter.DEFAULT_BLOCK_BYTES + 8192);
+	private int                    blockFramesLeft;
+
+	private boolean reachedEndOfRecording;
+
+	// The most recently read frame, returned again once the end of the recording is reached (as LeapDataReader does)
+	private WebSocketFrame currentReaderWebSocketFrame = new WebSocketFrame();
+
+	// Counters
+	private long framesRead;
+	private long blocksSkipped;
+
+	// Constructor to read every segment in a directory
+	public SegmentedLeapDataReader(String directoryName, boolean loopPlayback)
+	{
+		this(directoryName, null, loopPlayback);
+	}
+
+	// Constructor to read only the segments with the given prefix
+	public SegmentedLeapDataReader(String directoryName, String prefix, boolean loopPlayback)
+	{
+		this.segments     = listSegments( new File(directoryName), prefix );
+		this.loopPlayback = loopPlayback;
+
+		if (segments.length == 0)
+		{
+			System.out.println("SegmentedLeapDataReader: no segments found in " + directoryName);
+		}
+	}
+
+	// ----- Reading -----
+
+	// Method to read and return the next WebSocketFrame. At the end of the recording we either loop back to the
+	// first segment or keep returning the final frame, depending on the loop playback setting.
+	@Override
+	public WebSocketFrame readWebSocketFrame()
+	{
+		WebSocketFrame wsf = new WebSocketFrame();
+		if ( readWebSocketFrame(wsf) )
+		{
+			currentReaderWebSocketFrame = wsf;
+		}
+		return currentReaderWebSocketFrame;
+	}
+
+	// Method to read the next WebSocketFrame into an existing frame
+	@Override
+	public boolean readWebSocketFrame(WebSocketFrame into)
+	{
+		// Go through at most every segment twice looking for a frame, so an empty or entirely corrupt set of segments
+		// can't spin forever when looping
+		for (int attempts = 0; attempts <= segments.length * 2; ++attempts)
+		{
+			if (blockFramesLeft > 0)
+			{
+				try
+				{
+					decodeNextRecord(into);
+					--blockFramesLeft;
+					++framesRead;
+					return true;
+				}
+				catch (IOException | RuntimeException e)
+				{
+					// Should never happen as the block passed its checksum, but if it does just drop the rest of it
+					System.out.println("SegmentedLeapDataReader: could not decode frame in " + segments[segmentIndex] + " - " + e);
+					blockFramesLeft = 0;
+					++blocksSkipped;
+				}
+			}
+
+			if ( !reachedEndOfRecording && readNextBlock() )
+			{
+				continue;
+			}
+
+			// If we get here we're out of blocks - loop back around or stop
+			if (loopPlayback && segments.length > 0)
+			{
+				closeSegment();
+				segmentIndex          = -1;
+				reachedEndOfRecording = false;
+			}
+			else
+			{
+				reachedEndOfRecording = true;
+				return false;
+			}
+		}
+
+		return false;
+	}
+
+	// Method to decode the next record in the current block into a frame
+	private void decodeNextRecord(WebSocketFrame into) throws IOException
+	{
+		int length = blockBuffer.getInt();
+		int end    = blockBuffer.position() + length;
+
+		ByteBuffer record = blockBuffer.duplicate();
+		record.limit(end);
+
+		if (format == RecordingFormat.DELTA) { deltaCodec.decodeInto(record, into);     }
+		else                                 { LeapFrameCodec.decodeInto(record, into); }
+
+		blockBuffer.position(end);
+	}
+
+	// Method to load the next good block, moving on through the segments as needed. Returns false at the end of the
+	// last segment.
+	private boolean readNextBlock()
+	{
+		while (true)
+		{
+			if (segmentInputStream == null && !openNextSegment())
+			{
+				return false;
+			}
+
+			try
+			{
+				if ( readBlock() )
+				{
+					return true;
+				}
+			}
+			catch (EOFException eof)
+			{
+				// Either the end of the segment or a block cut short by a crash - either way this segment is done
+				closeSegment();
+			}
+			catch (IOException e)
+			{
+				System.out.println("SegmentedLeapDataReader: error reading " + segments[segmentIndex] + " - " + e.getMessage());
+				closeSegment();
+			}
+		}
+	}
+
+	// Method to read the next block of the current segment. Returns false if the block was bad and has been skipped.
+	private boolean readBlock() throws IOException
+	{
+		// The header is checked before we allocate anything for the block
+		BlockFile.Header header = BlockFile.readHeader(segmentInputStream, RollingLeapDataWriter.BLOCK_MAGIC, blockHeader);
+
+		if (compressedBuffer.length < header.compressedLength)
+		{
+			compressedBuffer = new byte[header.compressedLength];
+		}
+		segmentInputStream.readFully(compressedBuffer, 0, header.compressedLength);
+
+		if (blockBuffer.capacity() < header.rawLength)
+		{
+			blockBuffer = ByteBuffer.allocate(header.rawLength);
+		}
+
+		String problem = BlockFile.inflate(inflater, crc, compressedBuffer, header, blockBuffer);
+		if (problem != null)
+		{
+			System.out.println("SegmentedLeapDataReader: block " + problem + " in " + segments[segmentIndex] + " - skipping it.");
+			++blocksSkipped;
+			return false;
+		}
+
+		blockFramesLeft = header.recordCount;
+
+		// Every block starts with a keyframe
+		if (deltaCodec != null)
+		{
+			deltaCodec.reset();
+		}
+
+		return true;
+	}
+
+	// Method to open the next segment and read its header. Returns false if there are no more segments.
+	private boolean openNextSegment()
+	{
+		while (++segmentIndex < segments.length)
+		{
+			File segment = segments[segmentIndex];
+			try
+			{
+				segmentInputStream = new BlockFile.Input(segment);
+
+				if ( segmentInputStream.readInt() != RollingLeapDataWriter.SEGMENT_MAGIC )
+				{
+					throw new IOException("not a segment file.");
+				}
+
+				format = LeapFrameCodec.readHeaderAfterMagic(segmentInputStream);
+				if (format == RecordingFormat.DELTA)
+				{
+					deltaCodec = DeltaFrameCodec.readSettings(segmentInputStream);
+				}
+				else
+				{
+					deltaCodec = null;
+				}
+
+				return true;
+			}
+			catch (IOException e)
+			{
+				// Includes a segment created just before a crash which never got its header written
+				System.out.println("SegmentedLeapDataReader: skipping " + segment + " - " + e.getMessage());
+				closeSegment();
+			}
+		}
+
+		return false;
+	}
+
+	private void closeSegment()
+	{
+		blockFramesLeft = 0;
+
+		if (segmentInputStream != null)
+		{
+			try
+			{
+				segmentInputStream.close();
+			}
+			catch (IOException e)
+			{
+				e.printStackTrace();
+			}
+			segmentInputStream = null;
+		}
+	}
+
+	@Override
+	public void setLoopPlayback(boolean value)
+	{
+		loopPlayback = value;
+	}
+
+	// Method to close the current segment
+	@Override
+	public void close()
+	{
+		closeSegment();
+		inflater.end();
+	}
+
+	// ----- Getters -----
+
+	public File[] getSegments()            { return segments.clone(); }
+	public RecordingFormat getFormat()     { return format;           }
+	public long getFramesRead()            { return framesRead;       }
+	public long getBlocksSkipped()         { return blocksSkipped;    }
+
+	// ----- Segment naming -----
+
+	// Method to get the file name of a numbered segment
+	static String segmentName(String prefix, int number)
+	{
+		return String.format(Locale.ROOT, "%s-%06d%s", prefix, number, RollingLeapDataWriter.SEGMENT_EXTENSION);
+	}
+
+	// Method to find the segments in a directory, in order. If prefix is null then all segments are included.
+	public static File[] listSegments(File directory, String prefix)
+	{
+		File[] files = directory.listFiles();
+		if (files == null)
+		{
+			return new File[0];
+		}
+
+		List<File> segments = new ArrayList<File>();
+		for (File file : files)
+		{
+			if ( file.isFile() && segmentNumber(file.getName(), prefix) >= 0 )
+			{
+				segments.add(file);
+			}
+		}
+
+		// Order by prefix and then by number, so segment 1000000 still comes after segment 999999
+		File[] sorted = segments.toArray( new File[segments.size()] );
+		Arrays.sort(sorted, (a, b) ->
+		{
+			String prefixA = segmentPrefix( a.getName() );
+			String prefixB = segmentPrefix( b.getName() );
+			int byPrefix = prefixA.compareTo(prefixB);
+			return (byPrefix != 0) ? byPrefix : Integer.compare( segmentNumber(a.getName(), null), segmentNumber(b.getName(), null) );
+		});
+		return sorted;
+	}
+
+	// Method to find the highest segment number in use for a prefix, or 0 if there are none
+	static int lastSegmentNumber(File directory, String prefix)
+	{
+		int last = 0;
+		for (File segment : listSegments(directory, prefix))
+		{
+			last = Math.max( last, segmentNumber(segment.getName(), prefix) );
+		}
+		return last;
+	}
+
+	// Method to get the number from a segment file name, or -1 if the name isn't a segment (with this prefix, if given)
+	private static int segmentNumber(String name, String prefix)
+	{
+		if ( !name.endsWith(RollingLeapDataWriter.SEGMENT_EXTENSION) )
+		{
+			return -1;
+		}
+
+		int dash = name.lastIndexOf('-');
+		if ( dash < 0 || (prefix != null && !name.substring(0, dash).equals(prefix)) )
+		{
+			return -1;
+		}
+
+		try
+		{
+			return Integer.parseInt( name.substring(dash + 1, name.length() - RollingLeapDataWriter.SEGMENT_EXTENSION.length()) );
+		}
+		catch (NumberFormatException e)
+		{
+			return -1;
+		}
+	}
+
+	private static String segmentPrefix(String name)
+	{
+		return name.substring( 0, name.lastIndexOf('-') );
+	}
+}
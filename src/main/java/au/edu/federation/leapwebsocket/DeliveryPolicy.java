@@ -0,0 +1,71 @@
+/***
+ *
+ * File       : DeliveryPolicy.java
+ * Description: A DeliveryPolicy says which events a FrameBus consumer is given, and what happens when it can't keep up.
+ * Author     : Al Lansley
+ * Date       : 17/10/2026
+ * Version    : 0.1
+ *
+ */
+
+package au.edu.federation.leapwebsocket;
+
+// The Leap sends 110 frames a second or more, and not every consumer wants (or can keep up with) all of them:
+//
+//		LOSSLESS   - every event, in order. If the consumer falls a whole ring behind then the producer waits for it, so
+//		             this is for consumers which must see everything (e.g. a recorder) and keep up on average - the ring
+//		             is the queue, so memory use stays bounded either way.
+//		LATEST     - only the newest event available each time the consumer is ready for one, skipping any that turned up
+//		             while it was busy (e.g. rendering or solving, where only the current frame matters). The producer
+//		             never waits for it, unless it laps the one event being handled.
+//		sampled(n) - every nth event (those whose sequence number is a multiple of n), in order, e.g. for analytics. If the
+//		             consumer falls a whole ring behind, the events it missed are skipped rather than held up for it, so
+//		             the producer only waits as it would for LATEST.
+//
+// Whatever the policy, a consumer's backlog (published events it hasn't finished with) and the number of events it had
+// to skip are kept, so a consumer which can't keep up shows up in its statistics rather than in everyone else's latency.
+//
+// Example usage:
+//
+//		bus.addConsumer("render",    renderHandler,    DeliveryPolicy.LATEST,       WaitStrategy.BLOCKING, parser);
+//		bus.addConsumer("analytics", analyticsHandler, DeliveryPolicy.sampled(10),  WaitStrategy.SLEEPING, parser);
+public final class DeliveryPolicy
+{
+	public enum Type { LOSSLESS, LATEST, SAMPLED }
+
+	public static final DeliveryPolicy LOSSLESS = new DeliveryPolicy(Type.LOSSLESS, 1);
+	public static final DeliveryPolicy LATEST   = new DeliveryPolicy(Type.LATEST,   1);
+
+	private final Type type;
+	private final int  every;
+
+	private DeliveryPolicy(Type type, int every)
+	{
+		this.type  = type;
+		this.every = every;
+	}
+
+	// Method to get a policy delivering every nth event
+	public static DeliveryPolicy sampled(int every)
+	{
+		if (every < 1)
+		{
+			throw new IllegalArgumentException("Can't sample every " + every + " events - must be at least 1.");
+		}
+		return new DeliveryPolicy(Type.SAMPLED, every);
+	}
+
+	// ----- Getters -----
+
+	public Type getType() { return type;  }
+	public int getEvery() { return every; } // Deliver every nth event (only meaningful when SAMPLED)
+
+	// Whether the producer waits for this consumer when it falls behind
+	public boolean isLossless() { return type == Type.LOSSLESS; }
+
+	@Override
+	public String toString()
+	{
+		return (type == Type.SAMPLED) ? "SAMPLED(" + every + ")" : type.toString();
+	}
+}
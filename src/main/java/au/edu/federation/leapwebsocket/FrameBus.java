@@ -0,0 +1,709 @@
+/***
+ *
+ * File       : FrameBus.java
+ * Description: A FrameBus fans frames out from the thread they arrive on to any number of consumers, each on its own
+ *              thread, through a preallocated ring buffer.
+ * Author     : Al Lansley
+ * Date       : 17/10/2026
+ * Version    : 0.1
+ *
+ */
+
+package au.edu.federation.leapwebsocket;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+// A ring buffer event bus in the style of the LMAX Disruptor, so the thread frames arrive on (the WebSocket or Leap
+// listener thread) only has to drop each one into the next slot, and everything that wants them - parsing, recording,
+// solving, metrics and so on - runs on threads of its own.
+//
+// The ring's events are created up front by a factory and re-used every time round, so publishing allocates nothing.
+// Every event gets a sequence number, and the slot it goes in is its sequence number modulo the ring size. The producer:
+//
+//     long sequence = bus.next();            // Claim the next slot - waits if the slowest consumer is a lap behind
+//     bus.get(sequence).set(...);            // Fill in the event in place
+//     bus.publish(sequence);                 // Make it visible to the consumers
+//
+// Each consumer has its own thread and its own cursor - the sequence number of the last event it's finished with - so
+// consumers run independently of one another and a slow one only holds up the others if it falls a whole ring behind.
+// A consumer waits for events according to its WaitStrategy, and takes every event that's available in one batch.
+//
+// A consumer can also depend on other consumers, in which case it only sees an event once all of them have finished
+// with it. So a recorder which depends on a parser can rely on each event having been parsed, e.g.
+//
+//     FrameBus<WebSocketFrameEvent>.Consumer parser = bus.addConsumer("parser", parseHandler, WaitStrategy.BLOCKING);
+//     bus.addConsumer("recorder", recordHandler, WaitStrategy.SLEEPING, parser);
+//
+// A consumer can't be removed while others depend on it. If one stops by itself instead (e.g. its thread is interrupted)
+// then it's taken off the bus along with everything depending on it, so the producer never waits on a consumer which
+// will never move on.
+//
+// Each consumer also has a DeliveryPolicy, which says which events it's given and what happens when it falls behind. By
+// default consumers are LOSSLESS - the producer never overwrites an event until they've finished with it, so they see
+// everything, and if the ring fills up the producer waits. LATEST and sampled consumers are only given some of the
+// events, and skip any they can't keep up with rather than holding up the producer (and so everyone else), e.g.
+//
+//     bus.addConsumer("render", renderHandler, DeliveryPolicy.LATEST, WaitStrategy.BLOCKING, parser);
+//
+// Those consumers only hold up the producer while they're handling an event which it's about to overwrite - i.e. when
+// a single event takes them longer than it takes to publish a whole ring's worth.
+//
+// Note: There must only be one producer thread.
+public class FrameBus<E>
+{
+	// How a consumer waits for events which haven't been published (or finished with by the consumers it depends on):
+	//
+	//		BUSY_SPIN - spins, for the lowest latency at the cost of keeping a core busy all the time
+	//		YIELDING  - spins for a little while, then yields the core to other threads between checks
+	//		SLEEPING  - spins, then yields, then sleeps between checks - low CPU use, with up to SLEEP_NANOS added latency
+	//		BLOCKING  - blocks until woken by the producer (or a consumer it depends on) - lowest CPU use, at the cost of
+	//		            a wake-up per batch
+	public enum WaitStrategy { BUSY_SPIN, YIELDING, SLEEPING, BLOCKING }
+
+	// Code run by a consumer for each event, in sequence order. endOfBatch is true for the last event currently available,
+	// which is a good time to flush anything batched up.
+	public interface EventHandler<E>
+	{
+		void onEvent(E event, long sequence, boolean endOfBatch) throws Exception;
+	}
+
+	public static final int DEFAULT_SIZE = 256;
+
+	private static final int  SPIN_TRIES  = 100;
+	private static final int  YIELD_TRIES = 100;
+	private static final long SLEEP_NANOS = TimeUnit.MICROSECONDS.toNanos(100);
+
+	// The longest a BLOCKING consumer waits before checking again by itself. Publishing and finishing events can't slip
+	// past a consumer which is about to block (see signalBlockingWaiters), so this is only a backstop.
+	private static final long MAX_BLOCK_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+
+	private final Object[] events;
+	private final int      mask;
+
+	// The sequence number of the last event published
+	final Sequence cursor = new Sequence(-1L);
+
+	// Every consumer, which the producer must not lap. Replaced as a whole when consumers are added or removed.
+	private volatile Consumer[] consumers = newConsumerArray(0);
+
+	// Whether any consumers aren't LOSSLESS, in which case the producer can't rely on its cached minimum sequence, as
+	// they can start holding an event again at any time
+	private volatile boolean lossyConsumers;
+
+	// The sequence number of the last slot the producer claimed. Consumers which aren't LOSSLESS check this after saying
+	// which event they're about to handle, to see whether the producer has already started overwriting it.
+	private final Sequence claimed = new Sequence(-1L);
+
+	// Only touched by the producer thread
+	private long nextSequence = -1L;
+	private long cachedMinimumSequence = -1L;
+	private long producerWaits;
+
+	// Consumers using the BLOCKING wait strategy wait on this lock until something moves on
+	private final ReentrantLock blockingLock = new ReentrantLock();
+	private final Condition     progressed   = blockingLock.newCondition();
+	private volatile int blockingWaiters;
+
+	// Constructor creating a ring of the given size (which must be a power of two) filled in by the given factory
+	public FrameBus(int size, Supplier<E> eventFactory)
+	{
+		if (size < 1 || Integer.bitCount(size) != 1)
+		{
+			throw new IllegalArgumentException("FrameBus size must be a power of two: " + size);
+		}
+
+		events = new Object[size];
+		mask   = size - 1;
+		for (int loop = 0; loop < size; ++loop)
+		{
+			events[loop] = eventFactory.get();
+		}
+	}
+
+	// ----- Producer -----
+
+	// Method to claim the next slot, returning its sequence number. If every slot is still in use (i.e. the slowest
+	// consumer is a whole ring behind) this waits until one is free. Must only be called from the one producer thread.
+	public long next()
+	{
+		long sequence  = nextSequence + 1L;
+		long wrapPoint = sequence - events.length;
+
+		// Say which slot we're claiming before checking who's using it - a consumer holding an event does it the other way
+		// round, so either it sees our claim and leaves the event, or we see it holding the event and wait
+		claimed.setVolatile(sequence);
+
+		if (wrapPoint > cachedMinimumSequence || lossyConsumers)
+		{
+			long minimum;
+			while ( wrapPoint > (minimum = getMinimumSequence(nextSequence)) )
+			{
+				++producerWaits;
+				LockSupport.parkNanos(1L);
+			}
+			cachedMinimumSequence = minimum;
+		}
+
+		nextSequence = sequence;
+		return sequence;
+	}
+
+	// Method to get the event for a sequence number, to fill in after claiming it with next() or to read in a consumer
+	@SuppressWarnings("unchecked")
+	public E get(long sequence)
+	{
+		return (E)events[(int)sequence & mask];
+	}
+
+	// Method to make a claimed event visible to the consumers. Must only be called from the one producer thread.
+	public void publish(long sequence)
+	{
+		// A full volatile write, so it can't be reordered after the check for blocked consumers
+		cursor.setVolatile(sequence);
+		signalBlockingWaiters();
+	}
+
+	// ----- Consumers -----
+
+	// Method to add a LOSSLESS consumer, which starts on its own thread straight away with the next event to be published.
+	// If it depends on any other consumers (of this bus) then it only sees each event once they've all finished with it.
+	@SafeVarargs
+	public final Consumer addConsumer(String name, EventHandler<? super E> handler, WaitStrategy waitStrategy, Consumer... dependsOn)
+	{
+		return addConsumer(name, handler, DeliveryPolicy.LOSSLESS, waitStrategy, dependsOn);
+	}
+
+	// Method to add a consumer with the given delivery policy. If it depends on a consumer which isn't LOSSLESS, note that
+	// it's still given the events that consumer skipped.
+	@SafeVarargs
+	public final Consumer addConsumer(String name, EventHandler<? super E> handler, DeliveryPolicy policy, WaitStrategy waitStrategy, Consumer... dependsOn)
+	{
+		// Keep our own copy of the dependencies, as the caller could change the array they passed us
+		Consumer[] dependencies = newConsumerArray(dependsOn.length);
+		for (int loop = 0; loop < dependsOn.length; ++loop)
+		{
+			if (dependsOn[loop].getBus() != this)
+			{
+				throw new IllegalArgumentException("Consumer " + name + " can't depend on " + dependsOn[loop].name + " as it's on another bus.");
+			}
+			dependencies[loop] = dependsOn[loop];
+		}
+
+		Consumer consumer = new Consumer(name, handler, policy, waitStrategy, dependencies);
+		synchronized (this)
+		{
+			// Start from the latest event, and then again once the producer can see us in case it's published since
+			consumer.sequence.set( cursor.get() );
+			Consumer[] updated = Arrays.copyOf(consumers, consumers.length + 1);
+			updated[consumers.length] = consumer;
+			setConsumers(updated);
+			consumer.sequence.set( cursor.get() );
+		}
+
+		consumer.start();
+		return consumer;
+	}
+
+	// Method to stop a consumer and take it off the bus, leaving any events it hadn't got to. Consumers which depend on it
+	// would never see another event (and would hold up the producer), so they must be removed first.
+	public void removeConsumer(Consumer consumer)
+	{
+		synchronized (this)
+		{
+			for (Consumer other : consumers)
+			{
+				if ( other.dependsOn(consumer) )
+				{
+					throw new IllegalStateException("Consumer " + consumer.name + " can't be removed while " + other.name + " depends on it.");
+				}
+			}
+		}
+
+		// Its thread takes it off the bus as it stops
+		consumer.halt();
+	}
+
+	// Method to wait for every consumer to finish with everything published so far (or until the timeout passes), and
+	// then stop them all and take them off the bus. Returns true if they all caught up in time.
+	public boolean shutdown(long timeoutNanos)
+	{
+		long deadline = System.nanoTime() + timeoutNanos;
+		long last     = cursor.get();
+		boolean drained = true;
+		for (Consumer consumer : consumers)
+		{
+			while (consumer.sequence.get() < last && consumer.running)
+			{
+				if (System.nanoTime() > deadline)
+				{
+					drained = false;
+					break;
+				}
+				LockSupport.parkNanos(SLEEP_NANOS);
+			}
+		}
+
+		// Take them all off the bus too, so anything published afterwards doesn't wait for them
+		Consumer[] stopped;
+		synchronized (this)
+		{
+			stopped = consumers;
+			setConsumers( newConsumerArray(0) );
+		}
+		for (Consumer consumer : stopped)
+		{
+			consumer.halt();
+		}
+		return drained;
+	}
+
+	// ----- Getters -----
+
+	public int getSize()                { return events.length;        }
+	public long getCursor()             { return cursor.get();         }
+	public long getProducerWaits()      { return producerWaits;        } // Number of times the producer found the ring full
+	public Consumer[] getConsumers()    { return consumers.clone();    }
+
+	@Override
+	public String toString()
+	{
+		StringBuilder sb = new StringBuilder("FrameBus [size=" + events.length + ", published=" + (cursor.get() + 1L) + ", producerWaits=" + producerWaits + "]");
+		for (Consumer consumer : consumers)
+		{
+			sb.append(" ").append(consumer);
+		}
+		return sb.toString();
+	}
+
+	// ----- Helpers -----
+
+	// The first multiple of n at or after the given sequence number
+	private static long roundUp(long sequence, int n)
+	{
+		return ( (sequence + n - 1L) / n ) * n;
+	}
+
+	// Method to create an array of consumers - Consumer is generic (through this bus), so the array can only be created
+	// raw and cast
+	@SuppressWarnings("unchecked")
+	private Consumer[] newConsumerArray(int length)
+	{
+		return (Consumer[])new FrameBus<?>.Consumer[length];
+	}
+
+	// Method to replace the consumers - only called while synchronized on this bus
+	private void setConsumers(Consumer[] updated)
+	{
+		boolean lossy = false;
+		for (Consumer consumer : updated)
+		{
+			lossy |= !consumer.policy.isLossless();
+		}
+
+		// Set this first, so the producer never sees a consumer which isn't LOSSLESS without also knowing not to cache
+		lossyConsumers = lossy || lossyConsumers;
+		consumers      = updated;
+		lossyConsumers = lossy;
+	}
+
+	// The sequence number of the last event every consumer has finished with (or the given default if there are none)
+	private long getMinimumSequence(long defaultSequence)
+	{
+		long minimum = defaultSequence;
+		for (Consumer consumer : consumers)
+		{
+			minimum = Math.min( minimum, consumer.gating.get() );
+		}
+		return minimum;
+	}
+
+	// Method to take a consumer whose thread has stopped off the bus, along with every consumer depending on it (directly
+	// or not) - they'd otherwise wait for it forever, and the producer for them. Returns the dependents taken off, which
+	// are still running. Does nothing if the consumer has already been taken off, e.g. by shutdown().
+	private synchronized List<Consumer> removeStopped(Consumer stopped)
+	{
+		List<Consumer> remaining = new ArrayList<Consumer>( Arrays.asList(consumers) );
+		List<Consumer> dependents = new ArrayList<Consumer>();
+		if ( !remaining.remove(stopped) )
+		{
+			return dependents;
+		}
+
+		// Keep going round until nothing left depends on anything we've taken off
+		boolean removedAny = true;
+		while (removedAny)
+		{
+			removedAny = false;
+			for (Iterator<Consumer> it = remaining.iterator(); it.hasNext(); )
+			{
+				Consumer consumer = it.next();
+				boolean orphaned = consumer.dependsOn(stopped);
+				for (Consumer dependent : dependents)
+				{
+					orphaned |= consumer.dependsOn(dependent);
+				}
+
+				if (orphaned)
+				{
+					it.remove();
+					dependents.add(consumer);
+					removedAny = true;
+				}
+			}
+		}
+
+		setConsumers( remaining.toArray( newConsumerArray(remaining.size()) ) );
+		return dependents;
+	}
+
+	// Method to wake any consumers blocked waiting for something to move on. Only takes the lock if there are any.
+	//
+	// Whatever moved on must have been written with a full volatile write first. A consumer about to block counts itself
+	// in blockingWaiters and then checks again, and we write and then check blockingWaiters - so with both of those in
+	// order, either it sees what moved on or we see it waiting. An ordered write could still be sitting in a store buffer
+	// when we read blockingWaiters, and then neither would see the other.
+	private void signalBlockingWaiters()
+	{
+		if (blockingWaiters > 0)
+		{
+			blockingLock.lock();
+			try
+			{
+				progressed.signalAll();
+			}
+			finally
+			{
+				blockingLock.unlock();
+			}
+		}
+	}
+
+	// A consumer, with its own thread and cursor
+	public final class Consumer
+	{
+		private final String name;
+		private final EventHandler<? super E> handler;
+		private final DeliveryPolicy policy;
+		private final WaitStrategy waitStrategy;
+		private final Consumer[] dependsOn;
+
+		// The sequence number of the last event this consumer has finished with (or skipped)
+		final Sequence sequence = new Sequence(-1L);
+
+		// The sequence number the producer mustn't lap. For a LOSSLESS consumer this is just its sequence - for any other
+		// it's one before the event it's handling, or Long.MAX_VALUE between events so the producer never waits for it.
+		final Sequence gating;
+
+		private final Thread thread;
+		private volatile boolean running = true;
+
+		// Statistics - only written by the consumer's thread
+		private volatile long eventsHandled;
+		private volatile long batchesHandled;
+		private volatile long exceptions;
+		private volatile long eventsSkipped;
+		private volatile long maxBacklog;
+
+		Consumer(String name, EventHandler<? super E> handler, DeliveryPolicy policy, WaitStrategy waitStrategy, Consumer[] dependsOn)
+		{
+			this.name         = name;
+			this.handler      = handler;
+			this.policy       = policy;
+			this.waitStrategy = waitStrategy;
+			this.dependsOn    = dependsOn;
+
+			gating = policy.isLossless() ? sequence : new Sequence(Long.MAX_VALUE);
+
+			thread = new Thread(this::run, "FrameBus-" + name);
+			thread.setDaemon(true);
+		}
+
+		void start() { thread.start(); }
+
+		// Method to stop this consumer and wait for its thread to finish. Events it hasn't got to yet are left.
+		public void halt()
+		{
+			running = false;
+			blockingLock.lock();
+			try
+			{
+				progressed.signalAll();
+			}
+			finally
+			{
+				blockingLock.unlock();
+			}
+
+			if (Thread.currentThread() != thread)
+			{
+				try
+				{
+					thread.join();
+				}
+				catch (InterruptedException ie)
+				{
+					Thread.currentThread().interrupt();
+				}
+			}
+		}
+
+		// ----- Getters -----
+
+		public String getName()               { return name;           }
+		public DeliveryPolicy getPolicy()     { return policy;         }
+		public WaitStrategy getWaitStrategy() { return waitStrategy;   }
+		public long getSequence()             { return sequence.get(); }
+		public long getEventsHandled()        { return eventsHandled;  }
+		public long getBatchesHandled()       { return batchesHandled; }
+		public long getExceptions()           { return exceptions;     } // Number of events whose handler threw
+		public long getEventsSkipped()        { return eventsSkipped;  } // Number of events due to us that we couldn't keep up with
+		public long getMaxBacklog()           { return maxBacklog;     } // The furthest behind we've been when starting a batch
+		public boolean isRunning()            { return running;        }
+
+		// How many published events this consumer has yet to finish with
+		public long getBacklog()              { return cursor.get() - sequence.get(); }
+
+		FrameBus<E> getBus()                  { return FrameBus.this;  }
+
+		// Whether this consumer waits for the given one to finish with each event
+		boolean dependsOn(Consumer other)
+		{
+			for (Consumer dependency : dependsOn)
+			{
+				if (dependency == other)
+				{
+					return true;
+				}
+			}
+			return false;
+		}
+
+		@Override
+		public String toString()
+		{
+			return name + " [handled=" + eventsHandled + ", skipped=" + eventsSkipped + ", batches=" + batchesHandled + ", backlog=" + getBacklog() +
+			       ", maxBacklog=" + maxBacklog + ", exceptions=" + exceptions + ", policy=" + policy + ", wait=" + waitStrategy + "]";
+		}
+
+		// ----- Consumer thread -----
+
+		private void run()
+		{
+			try
+			{
+				handleEvents();
+			}
+			finally
+			{
+				// However we stopped - halted, interrupted, or something thrown which isn't an Exception - the producer
+				// mustn't go on waiting for us, and nor must anything depending on us
+				running = false;
+				for (Consumer dependent : removeStopped(this))
+				{
+					System.out.println("FrameBus: stopping consumer " + dependent.name + " as " + name + ", which it depends on, has stopped.");
+					dependent.halt();
+				}
+			}
+		}
+
+		private void handleEvents()
+		{
+			long next = sequence.get() + 1L;
+			while (running)
+			{
+				long available = waitFor(next);
+				if (available < next)
+				{
+					break;
+				}
+
+				long backlog = available - sequence.get();
+				if (backlog > maxBacklog) { maxBacklog = backlog; }
+
+				switch ( policy.getType() )
+				{
+					case LOSSLESS:
+						for (long s = next; s <= available; ++s)
+						{
+							handle(s, s == available);
+						}
+						break;
+
+					case LATEST:
+						// Skip straight to the newest event
+						eventsSkipped += available - next;
+						if ( !holdAndHandle(available, true) )
+						{
+							++eventsSkipped;
+						}
+						break;
+
+					case SAMPLED:
+						handleSampled(next, available);
+						break;
+				}
+
+				++batchesHandled;
+				next = available + 1L;
+
+				// Let the producer (and anything depending on us) know we're done with the batch - a full volatile write, as
+				// for publish()
+				sequence.setVolatile(available);
+				signalBlockingWaiters();
+			}
+		}
+
+		// Method to handle every nth event from first to last, skipping any the producer has already started overwriting
+		private void handleSampled(long first, long last)
+		{
+			int every = policy.getEvery();
+			for (long s = roundUp(first, every); s <= last; s += every)
+			{
+				if ( !holdAndHandle(s, s + every > last) )
+				{
+					// We've been lapped, so carry on from the oldest sampled event that's still in the ring
+					long resume = roundUp(claimed.get() - events.length + 1L, every);
+					eventsSkipped += (Math.min(resume, last + 1L) - s + every - 1L) / every;
+					s = resume - every;
+				}
+			}
+		}
+
+		// Method to handle an event for a consumer which isn't LOSSLESS, first making sure the producer won't overwrite it
+		// while we do. Returns false (without handling it) if the producer has already claimed its slot again.
+		private boolean holdAndHandle(long s, boolean endOfBatch)
+		{
+			// Say we're holding the event before checking the producer hasn't claimed it - see next()
+			gating.setVolatile(s - 1L);
+			boolean lapped = claimed.get() >= s + events.length;
+			if (!lapped)
+			{
+				handle(s, endOfBatch);
+			}
+			gating.set(Long.MAX_VALUE);
+			return !lapped;
+		}
+
+		private void handle(long s, boolean endOfBatch)
+		{
+			try
+			{
+				handler.onEvent( get(s), s, endOfBatch );
+			}
+			catch (Exception e)
+			{
+				// Don't let one bad event take the consumer down with it
+				++exceptions;
+				e.printStackTrace();
+			}
+			++eventsHandled;
+		}
+
+		// The sequence number of the last event we're allowed to handle - the last one published, or the last one every
+		// consumer we depend on has finished with
+		private long getAvailableSequence()
+		{
+			long available = cursor.get();
+			for (Consumer dependency : dependsOn)
+			{
+				available = Math.min( available, dependency.sequence.get() );
+			}
+			return available;
+		}
+
+		// Method to wait until the given event is available, returning the last available event (which may be further
+		// on), or anything less than the given sequence if we've been halted
+		private long waitFor(long wanted)
+		{
+			int tries = 0;
+			long available;
+			while ( (available = getAvailableSequence()) < wanted )
+			{
+				if (!running)
+				{
+					return available;
+				}
+
+				switch (waitStrategy)
+				{
+					case BUSY_SPIN:
+						break;
+
+					case YIELDING:
+						if (++tries > SPIN_TRIES)
+						{
+							Thread.yield();
+						}
+						break;
+
+					case SLEEPING:
+						++tries;
+						if (tries > SPIN_TRIES + YIELD_TRIES)
+						{
+							LockSupport.parkNanos(SLEEP_NANOS);
+						}
+						else if (tries > SPIN_TRIES)
+						{
+							Thread.yield();
+						}
+						break;
+
+					case BLOCKING:
+						blockingLock.lock();
+						try
+						{
+							// Register before checking again, so whoever moves things on next sees us waiting
+							++blockingWaiters;
+							while (running && getAvailableSequence() < wanted)
+							{
+								progressed.awaitNanos(MAX_BLOCK_NANOS);
+							}
+						}
+						catch (InterruptedException ie)
+						{
+							System.out.println("FrameBus: consumer " + name + " was interrupted - stopping it.");
+							running = false;
+						}
+						finally
+						{
+							--blockingWaiters;
+							blockingLock.unlock();
+						}
+						break;
+				}
+			}
+			return available;
+		}
+	}
+
+	// A sequence number padded out to its own cache line, so the producer and consumers updating theirs don't keep
+	// invalidating each other's caches
+	static final class Sequence
+	{
+		private static final AtomicLongFieldUpdater<Sequence> VALUE = AtomicLongFieldUpdater.newUpdater(Sequence.class, "value");
+
+		long p1, p2, p3, p4, p5, p6, p7;
+		private volatile long value;
+		long p9, p10, p11, p12, p13, p14, p15;
+
+		Sequence(long initial) { value = initial; }
+
+		long get() { return value; }
+
+		// A full volatile write, for when the write must be visible before we read anything else
+		void setVolatile(long newValue) { value = newValue; }
+
+		// Only ever written by one thread, so an ordered write is all we need - the value is still seen in order with
+		// everything written before it, it just doesn't wait for the write to be visible
+		void set(long newValue) { VALUE.lazySet(this, newValue); }
+	}
+}
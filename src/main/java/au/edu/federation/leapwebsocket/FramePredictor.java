@@ -0,0 +1,81 @@
+/***
+ *
+ * File       : FramePredictor.java
+ * Description: Moves the fingertips and palms of each WebSocketFrame to where they're predicted to be a short time ahead.
+ * Author     : Al Lansley
+ * Date       : 17/10/2026
+ * Version    : 0.1
+ *
+ */
+
+package au.edu.federation.leapwebsocket;
+
+import java.util.List;
+
+// Class which runs every pointable's tip and every hand's palm in a frame through a OneEuroPredictor (one for the
+// pointables and one for the hands, as their ids are separate), replacing each position with the predicted one. The
+// velocities are left as the Leap gave them.
+//
+// The frame is changed in place and nothing is allocated, so this can be run on every frame as it arrives. Frames must
+// be given to it in order, as the predictors remember each point from one frame to the next.
+//
+// Example usage:
+//
+//     FramePredictor predictor = new FramePredictor();
+//     ...
+//     predictor.predict(wsf, 0.030f);      // Every frame, as it arrives - e.g. 30ms until it'll be on screen
+public class FramePredictor
+{
+	private final OneEuroPredictor palmPredictor;
+	private final OneEuroPredictor tipPredictor;
+
+	// Default constructor, using the default filter settings for both tips and palms
+	public FramePredictor()
+	{
+		this( new OneEuroPredictor(), new OneEuroPredictor() );
+	}
+
+	// Constructor taking the predictors to use for the palms and the tips
+	public FramePredictor(OneEuroPredictor palmPredictor, OneEuroPredictor tipPredictor)
+	{
+		this.palmPredictor = palmPredictor;
+		this.tipPredictor  = tipPredictor;
+	}
+
+	// Method to replace every palm and tip position in a frame with where we predict it'll be leadSeconds after the
+	// frame was captured
+	public void predict(WebSocketFrame wsf, float leadSeconds)
+	{
+		long timestamp = wsf.getTimestamp();
+
+		palmPredictor.beginFrame();
+		List<WebSocketHand> hands = wsf.hands();
+		for (int i = 0; i < hands.size(); ++i)
+		{
+			WebSocketHand wsh = hands.get(i);
+			float[] palm = wsh.getPalmPosition();
+			palmPredictor.filter( wsh.getId(), timestamp, palm, 0, wsh.getPalmVelocity(), 0, leadSeconds, palm, 0 );
+		}
+
+		tipPredictor.beginFrame();
+		List<WebSocketPointable> pointables = wsf.pointables();
+		for (int i = 0; i < pointables.size(); ++i)
+		{
+			WebSocketPointable wsp = pointables.get(i);
+			float[] tip = wsp.getTipPosition();
+			tipPredictor.filter( wsp.getId(), timestamp, tip, 0, wsp.getTipVelocity(), 0, leadSeconds, tip, 0 );
+		}
+	}
+
+	// Method to forget every tracked palm and tip, e.g. when jumping to another point in a recording
+	public void clear()
+	{
+		palmPredictor.clear();
+		tipPredictor.clear();
+	}
+
+	// ----- Getters -----
+
+	public OneEuroPredictor getPalmPredictor() { return palmPredictor; }
+	public OneEuroPredictor getTipPredictor()  { return tipPredictor;  }
+}
@@ -0,0 +1,242 @@
+/***
+ *
+ * File       : JointEstimator.java
+ * Description: Estimates the joint locations of any number of fingers at once from their tip, direction and length,
+ *              using the golden-ratio anatomical finger model.
+ * Author     : Al Lansley
+ * Date       : 17/10/2026
+ * Version    : 0.1
+ *
+ */
+
+package au.edu.federation.leapwebsocket;
+
+import java.util.List;
+
+import au.edu.federation.utils.Vec3f;
+
+// The Leap only gives us the tip, direction and length of each finger, so we estimate where its joints are. Working
+// back from the tip along the finger, each bone is longer than the one before by the golden ratio (phi), with the
+// distal, intermediate and proximal phalanges together making up the finger's length (so HAND_RATIO is 1 + phi + phi^2):
+//
+//     tip -> distal joint                                   : DISTAL_RATIO              * length, along the finger
+//     distal joint -> proximal joint                        : PROXIMAL_RATIO            * length, along the finger
+//     proximal joint -> metacarpophalangeal joint (knuckle) : METACARPOPHALANGEAL_RATIO * length, along the finger
+//     knuckle -> carpometacarpal joint (wrist)              : CARPOMETACARPEL_RATIO     * length, along the arm
+//
+// WebSocketPointable.getJointLocations has always measured every joint straight back from the tip instead, with
+// slightly rounder ratios, which puts the proximal joint and knuckle closer to the tip. estimateFromTip() gives exactly
+// those joints (and the wrist stepped back from the knuckle as usual), so both can share the same estimator.
+//
+// All of the inputs and results are held in flat float arrays, one per axis (so x, y and z of every finger are each
+// contiguous), and estimate() works through them one joint at a time with a simple loop over every finger. Those loops
+// have no branches, calls or allocation in them, so HotSpot can unroll and vectorise them. An estimator is sized for a
+// number of fingers up front and then re-used, e.g. one per thread, or one per frame being solved.
+//
+// Example usage:
+//
+//     JointEstimator estimator = new JointEstimator(10);
+//     int count = estimator.set(webSocketFrame);     // or setFinger(...) for each finger, then...
+//     estimator.estimate(count);
+//     estimator.getJoint(finger, JointEstimator.KNUCKLE, result);
+//
+// or estimator.estimateFromTip(count) for getJointLocations' joints.
+public class JointEstimator
+{
+	public static final float GOLDEN_RATIO              = 1.6181033f;
+	public static final float HAND_RATIO                = 5.23606797f;
+	public static final float DISTAL_RATIO              = 1.0f / HAND_RATIO;
+	public static final float PROXIMAL_RATIO            = GOLDEN_RATIO / HAND_RATIO;
+	public static final float METACARPOPHALANGEAL_RATIO = (GOLDEN_RATIO * GOLDEN_RATIO) / HAND_RATIO;
+	public static final float CARPOMETACARPEL_RATIO     = (GOLDEN_RATIO * GOLDEN_RATIO * GOLDEN_RATIO) / HAND_RATIO;
+
+	// Distance of each joint from the tip as used by estimateFromTip(), in finger lengths
+	public static final float TIP_TO_DISTAL_RATIO       = 1.0f   / 5.23f;
+	public static final float TIP_TO_PROXIMAL_RATIO     = 1.618f / 5.23f;
+	public static final float TIP_TO_KNUCKLE_RATIO      = 2.617f / 5.23f;
+
+	// Joint indices, from the tip back to the wrist
+	public static final int TIP        = 0;
+	public static final int DISTAL     = 1;
+	public static final int PROXIMAL   = 2;
+	public static final int KNUCKLE    = 3; // The metacarpophalangeal joint
+	public static final int WRIST      = 4; // The carpometacarpal joint
+	public static final int NUM_JOINTS = 5;
+
+	private final int capacity;
+
+	// Inputs, per finger. The direction points from the base of the finger towards the tip, and the arm direction from
+	// the elbow towards the wrist. The tip locations are joint TIP of the results.
+	final float[] dirX,   dirY,   dirZ;
+	final float[] armX,   armY,   armZ;
+	final float[] length;
+
+	// Results, per joint and then per finger
+	final float[][] jointX, jointY, jointZ;
+
+	// Constructor for an estimator which can hold up to the given number of fingers
+	public JointEstimator(int capacity)
+	{
+		this.capacity = capacity;
+
+		dirX   = new float[capacity]; dirY = new float[capacity]; dirZ = new float[capacity];
+		armX   = new float[capacity]; armY = new float[capacity]; armZ = new float[capacity];
+		length = new float[capacity];
+
+		jointX = new float[NUM_JOINTS][capacity];
+		jointY = new float[NUM_JOINTS][capacity];
+		jointZ = new float[NUM_JOINTS][capacity];
+	}
+
+	// Method to set the inputs for a finger
+	public void setFinger(int finger, float tipX, float tipY, float tipZ, float dirX, float dirY, float dirZ, float length, float armX, float armY, float armZ)
+	{
+		jointX[TIP][finger] = tipX;
+		jointY[TIP][finger] = tipY;
+		jointZ[TIP][finger] = tipZ;
+		this.dirX[finger]   = dirX;
+		this.dirY[finger]   = dirY;
+		this.dirZ[finger]   = dirZ;
+		this.length[finger] = length;
+		this.armX[finger]   = armX;
+		this.armY[finger]   = armY;
+		this.armZ[finger]   = armZ;
+	}
+
+	// Method to move a finger's tip, leaving the rest of its inputs as they were
+	public void setTip(int finger, float tipX, float tipY, float tipZ)
+	{
+		jointX[TIP][finger] = tipX;
+		jointY[TIP][finger] = tipY;
+		jointZ[TIP][finger] = tipZ;
+	}
+
+	// Method to set the inputs for a pointable, given the direction of the arm it's on
+	public void setFinger(int finger, WebSocketPointable wsp, float armX, float armY, float armZ)
+	{
+		float[] tip = wsp.getTipPosition();
+		float[] dir = wsp.getDirection();
+		setFinger(finger, tip[0], tip[1], tip[2], dir[0], dir[1], dir[2], wsp.getLength(), armX, armY, armZ);
+	}
+
+	// Method to set the inputs from every pointable in a frame (up to our capacity), in the order the frame lists them,
+	// returning how many were set. The WebSocket data doesn't include the arm, so the palm direction of each finger's
+	// hand stands in for it - and tools, which aren't on a hand, use their own direction.
+	public int set(WebSocketFrame wsf)
+	{
+		List<WebSocketHand> hands           = wsf.hands();
+		List<WebSocketPointable> pointables = wsf.pointables();
+
+		int count = Math.min( pointables.size(), capacity );
+		for (int finger = 0; finger < count; ++finger)
+		{
+			WebSocketPointable wsp = pointables.get(finger);
+			float[] arm = wsp.getDirection();
+			for (int h = 0; h < hands.size(); ++h)
+			{
+				if ( hands.get(h).getId() == wsp.getHandId() )
+				{
+					arm = hands.get(h).getPalmDirection();
+					break;
+				}
+			}
+			setFinger( finger, wsp, arm[0], arm[1], arm[2] );
+		}
+		return count;
+	}
+
+	// Method to estimate the joint locations of the first count fingers
+	public void estimate(int count)
+	{
+		step( jointX[TIP],      jointX[DISTAL],   dirX, length, DISTAL_RATIO,              count );
+		step( jointY[TIP],      jointY[DISTAL],   dirY, length, DISTAL_RATIO,              count );
+		step( jointZ[TIP],      jointZ[DISTAL],   dirZ, length, DISTAL_RATIO,              count );
+
+		step( jointX[DISTAL],   jointX[PROXIMAL], dirX, length, PROXIMAL_RATIO,            count );
+		step( jointY[DISTAL],   jointY[PROXIMAL], dirY, length, PROXIMAL_RATIO,            count );
+		step( jointZ[DISTAL],   jointZ[PROXIMAL], dirZ, length, PROXIMAL_RATIO,            count );
+
+		step( jointX[PROXIMAL], jointX[KNUCKLE],  dirX, length, METACARPOPHALANGEAL_RATIO, count );
+		step( jointY[PROXIMAL], jointY[KNUCKLE],  dirY, length, METACARPOPHALANGEAL_RATIO, count );
+		step( jointZ[PROXIMAL], jointZ[KNUCKLE],  dirZ, length, METACARPOPHALANGEAL_RATIO, count );
+
+		step( jointX[KNUCKLE],  jointX[WRIST],    armX, length, CARPOMETACARPEL_RATIO,     count );
+		step( jointY[KNUCKLE],  jointY[WRIST],    armY, length, CARPOMETACARPEL_RATIO,     count );
+		step( jointZ[KNUCKLE],  jointZ[WRIST],    armZ, length, CARPOMETACARPEL_RATIO,     count );
+	}
+
+	// Method to estimate the joint locations of the first count fingers with the distal, proximal and knuckle joints each
+	// measured straight back from the tip, as WebSocketPointable.getJointLocations does
+	public void estimateFromTip(int count)
+	{
+		stepFromTip( jointX[TIP],     jointX[DISTAL],   dirX, length, TIP_TO_DISTAL_RATIO,   count );
+		stepFromTip( jointY[TIP],     jointY[DISTAL],   dirY, length, TIP_TO_DISTAL_RATIO,   count );
+		stepFromTip( jointZ[TIP],     jointZ[DISTAL],   dirZ, length, TIP_TO_DISTAL_RATIO,   count );
+
+		stepFromTip( jointX[TIP],     jointX[PROXIMAL], dirX, length, TIP_TO_PROXIMAL_RATIO, count );
+		stepFromTip( jointY[TIP],     jointY[PROXIMAL], dirY, length, TIP_TO_PROXIMAL_RATIO, count );
+		stepFromTip( jointZ[TIP],     jointZ[PROXIMAL], dirZ, length, TIP_TO_PROXIMAL_RATIO, count );
+
+		stepFromTip( jointX[TIP],     jointX[KNUCKLE],  dirX, length, TIP_TO_KNUCKLE_RATIO,  count );
+		stepFromTip( jointY[TIP],     jointY[KNUCKLE],  dirY, length, TIP_TO_KNUCKLE_RATIO,  count );
+		stepFromTip( jointZ[TIP],     jointZ[KNUCKLE],  dirZ, length, TIP_TO_KNUCKLE_RATIO,  count );
+
+		step( jointX[KNUCKLE], jointX[WRIST],    armX, length, CARPOMETACARPEL_RATIO, count );
+		step( jointY[KNUCKLE], jointY[WRIST],    armY, length, CARPOMETACARPEL_RATIO, count );
+		step( jointZ[KNUCKLE], jointZ[WRIST],    armZ, length, CARPOMETACARPEL_RATIO, count );
+	}
+
+	// Method to step one axis of every finger back along a direction by ratio finger lengths. This is the whole kernel -
+	// keep it a plain counted loop over arrays so it stays vectorisable.
+	private static void step(float[] from, float[] to, float[] dir, float[] len, float ratio, int count)
+	{
+		for (int i = 0; i < count; ++i)
+		{
+			to[i] = from[i] - dir[i] * (ratio * len[i]);
+		}
+	}
+
+	// As step(), but multiplying through in the order getJointLocations always has so its results don't change
+	private static void stepFromTip(float[] tip, float[] to, float[] dir, float[] len, float ratio, int count)
+	{
+		for (int i = 0; i < count; ++i)
+		{
+			to[i] = tip[i] - dir[i] * ratio * len[i];
+		}
+	}
+
+	// Method to copy the inputs (and results) for some fingers from another estimator
+	public void copyFrom(JointEstimator other, int count)
+	{
+		System.arraycopy(other.dirX,   0, dirX,   0, count);
+		System.arraycopy(other.dirY,   0, dirY,   0, count);
+		System.arraycopy(other.dirZ,   0, dirZ,   0, count);
+		System.arraycopy(other.armX,   0, armX,   0, count);
+		System.arraycopy(other.armY,   0, armY,   0, count);
+		System.arraycopy(other.armZ,   0, armZ,   0, count);
+		System.arraycopy(other.length, 0, length, 0, count);
+		for (int joint = 0; joint < NUM_JOINTS; ++joint)
+		{
+			System.arraycopy(other.jointX[joint], 0, jointX[joint], 0, count);
+			System.arraycopy(other.jointY[joint], 0, jointY[joint], 0, count);
+			System.arraycopy(other.jointZ[joint], 0, jointZ[joint], 0, count);
+		}
+	}
+
+	// ----- Getters -----
+
+	public int getCapacity()                      { return capacity;              }
+	public float getLength(int finger)            { return length[finger];        }
+	public float getDirectionX(int finger)        { return dirX[finger];          }
+	public float getDirectionY(int finger)        { return dirY[finger];          }
+	public float getDirectionZ(int finger)        { return dirZ[finger];          }
+	public float getJointX(int finger, int joint) { return jointX[joint][finger]; }
+	public float getJointY(int finger, int joint) { return jointY[joint][finger]; }
+	public float getJointZ(int finger, int joint) { return jointZ[joint][finger]; }
+
+	// Method to read a joint location into a Vec3f, which is returned for convenience
+	public Vec3f getJoint(int finger, int joint, Vec3f result)
+	{
+		return result.set( jointX[joint][finger], jointY[joint][finger], jointZ[joint][finger] );
+	}
+}
@@ -0,0 +1,243 @@
+/***
+ *
+ * File       : LatencyHistogram.java
+ * Description: A LatencyHistogram counts latencies from a nanosecond up to a minute or so into buckets which stay within
+ *              1/64th of the value, so percentiles can be read off it at any scale without keeping the samples.
+ * Author     : Al Lansley
+ * Date       : 17/10/2026
+ * Version    : 0.1
+ *
+ */
+
+package au.edu.federation.leapwebsocket;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+// Values below 128ns each get a bucket of their own. Above that, every power of two is split into 64 equal buckets - so
+// 128-255ns go in buckets 2ns wide, 256-511ns in buckets 4ns wide and so on - and the error in any percentile is at most
+// one bucket width, or 1/64th of the value. Values of MAX_TRACKABLE_NANOS or more all share the last bucket (the max is
+// still exact), which takes 1984 buckets in all.
+//
+// Recording is a few atomic adds and doesn't allocate, and any number of threads can record at once. Snapshots can be
+// taken at the same time, at the cost of a snapshot's mean maybe being a few samples out of step with its buckets.
+//
+// A histogram can be reset from anywhere (including over JMX), so each reset bumps an epoch which snapshots carry with
+// them - that way since() can tell when an earlier snapshot is from before a reset, whoever did it.
+//
+// Example usage:
+//
+//		LatencyHistogram parseLatency = new LatencyHistogram("parse", "Message received to frame parsed");
+//		...
+//		parseLatency.record( System.nanoTime() - arrivalNanos );
+//		...
+//		System.out.println( parseLatency.snapshot().getPercentileNanos(99.9) );
+public class LatencyHistogram implements LatencyHistogramMBean
+{
+	// Bucket layout
+	private static final int SUB_BUCKET_BITS  = 7;
+	private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+	private static final int SUB_BUCKET_HALF  = SUB_BUCKET_COUNT / 2;
+
+	public static final long MAX_TRACKABLE_NANOS = (1L << 36) - 1L; // About 68.7 seconds
+	public static final int  BUCKET_COUNT        = bucketIndex(MAX_TRACKABLE_NANOS) + 1;
+
+	private final String name;
+	private final String description;
+
+	private final AtomicLongArray counts = new AtomicLongArray(BUCKET_COUNT);
+	private final AtomicLong totalCount  = new AtomicLong();
+	private final AtomicLong totalNanos  = new AtomicLong();
+	private final AtomicLong maxNanos    = new AtomicLong();
+	private volatile long resetNanos = System.nanoTime();
+	private final AtomicInteger epoch = new AtomicInteger(); // Bumped by every reset
+
+	// Constructor
+	public LatencyHistogram(String name, String description)
+	{
+		this.name        = name;
+		this.description = description;
+	}
+
+	// ----- Recording -----
+
+	// Method to record a latency. Negative latencies (e.g. from an estimate which has just been corrected) count as zero.
+	public void record(long nanos)
+	{
+		if (nanos < 0L)
+		{
+			nanos = 0L;
+		}
+
+		counts.incrementAndGet( bucketIndex( Math.min(nanos, MAX_TRACKABLE_NANOS) ) );
+		totalCount.incrementAndGet();
+		totalNanos.addAndGet(nanos);
+		if ( nanos > maxNanos.get() )
+		{
+			maxNanos.accumulateAndGet(nanos, Math::max);
+		}
+	}
+
+	// Method to record the time since the given System.nanoTime()
+	public void recordSince(long startNanos)
+	{
+		record( System.nanoTime() - startNanos );
+	}
+
+	// Method to empty the histogram
+	@Override
+	public void reset()
+	{
+		for (int loop = 0; loop < BUCKET_COUNT; ++loop)
+		{
+			counts.set(loop, 0L);
+		}
+		totalCount.set(0L);
+		totalNanos.set(0L);
+		maxNanos.set(0L);
+		resetNanos = System.nanoTime();
+		epoch.incrementAndGet();
+	}
+
+	// Method to copy out the histogram as it stands
+	public Snapshot snapshot()
+	{
+		// Read the epoch first, so a snapshot taken part way through a reset looks like it's from before it
+		int snapshotEpoch = epoch.get();
+		long[] copy = new long[BUCKET_COUNT];
+		long count = 0L;
+		for (int loop = 0; loop < BUCKET_COUNT; ++loop)
+		{
+			copy[loop] = counts.get(loop);
+			count += copy[loop];
+		}
+		return new Snapshot( copy, count, totalNanos.get(), maxNanos.get(), System.nanoTime() - resetNanos, snapshotEpoch );
+	}
+
+	// ----- Buckets -----
+
+	// Method to find the bucket a value goes in
+	static int bucketIndex(long nanos)
+	{
+		int shift = Math.max(0, 64 - Long.numberOfLeadingZeros(nanos) - SUB_BUCKET_BITS);
+		return shift * SUB_BUCKET_HALF + (int)(nanos >>> shift);
+	}
+
+	// Method to find the highest value which goes in a bucket
+	static long bucketHighestValue(int index)
+	{
+		int shift = Math.max(0, index / SUB_BUCKET_HALF - 1);
+		long subBucket = index - shift * SUB_BUCKET_HALF;
+		return ( (subBucket + 1L) << shift ) - 1L;
+	}
+
+	// ----- MBean -----
+
+	@Override public String getName()                { return name;                                         }
+	@Override public String getDescription()         { return description;                                  }
+	@Override public long getCount()                 { return totalCount.get();                             }
+	@Override public double getThroughputPerSecond() { return snapshot().getThroughputPerSecond();          }
+	@Override public double getMeanMicros()          { return snapshot().getMeanNanos() / 1000.0;           }
+	@Override public double getP50Micros()           { return snapshot().getPercentileNanos(50.0) / 1000.0; }
+	@Override public double getP99Micros()           { return snapshot().getPercentileNanos(99.0) / 1000.0; }
+	@Override public double getP999Micros()          { return snapshot().getPercentileNanos(99.9) / 1000.0; }
+	@Override public double getMaxMicros()           { return maxNanos.get() / 1000.0;                      }
+
+	@Override
+	public String toString()
+	{
+		return name + " " + snapshot();
+	}
+
+	// ----- Snapshots -----
+
+	// A copy of a histogram at one moment, or (from since()) of what it recorded between two moments
+	public static final class Snapshot
+	{
+		private final long[] counts;
+		private final long   count;
+		private final long   totalNanos;
+		private final long   maxNanos;
+		private final long   durationNanos;
+		private final int    epoch;
+
+		Snapshot(long[] counts, long count, long totalNanos, long maxNanos, long durationNanos, int epoch)
+		{
+			this.counts        = counts;
+			this.count         = count;
+			this.totalNanos    = totalNanos;
+			this.maxNanos      = maxNanos;
+			this.durationNanos = durationNanos;
+			this.epoch         = epoch;
+		}
+
+		// Method to get what was recorded between an earlier snapshot of the same histogram and this one. The max is then
+		// only known to within a bucket, so it's the top of the highest bucket used. If the histogram has been reset in
+		// between then everything in this snapshot came after the earlier one, so this snapshot is returned as it is.
+		public Snapshot since(Snapshot earlier)
+		{
+			if (earlier.epoch != epoch)
+			{
+				return this;
+			}
+
+			long[] difference = new long[BUCKET_COUNT];
+			long   max        = 0L;
+			for (int loop = 0; loop < BUCKET_COUNT; ++loop)
+			{
+				difference[loop] = Math.max(0L, counts[loop] - earlier.counts[loop]);
+				if (difference[loop] > 0L)
+				{
+					max = Math.min( bucketHighestValue(loop), maxNanos );
+				}
+			}
+			return new Snapshot( difference, Math.max(0L, count - earlier.count), totalNanos - earlier.totalNanos, max, durationNanos - earlier.durationNanos, epoch );
+		}
+
+		// Method to get the latency which the given percentage (0-100) of samples were at or below, to within 1/64th. The
+		// result is never more than the max.
+		public long getPercentileNanos(double percentile)
+		{
+			if (count == 0L)
+			{
+				return 0L;
+			}
+
+			long target = Math.max( 1L, (long)Math.ceil(count * percentile / 100.0) );
+			long seen   = 0L;
+			for (int loop = 0; loop < BUCKET_COUNT; ++loop)
+			{
+				seen += counts[loop];
+				if (seen >= target)
+				{
+					return Math.min( bucketHighestValue(loop), maxNanos );
+				}
+			}
+			return maxNanos;
+		}
+
+		// ----- Getters -----
+
+		public long getCount()         { return count;         }
+		public long getMaxNanos()      { return maxNanos;      }
+		public long getDurationNanos() { return durationNanos; } // How long the samples were recorded over
+
+		public long getMeanNanos()
+		{
+			return (count == 0L) ? 0L : totalNanos / count;
+		}
+
+		public double getThroughputPerSecond()
+		{
+			return (durationNanos <= 0L) ? 0.0 : count * 1.0e9 / durationNanos;
+		}
+
+		@Override
+		public String toString()
+		{
+			return "[count=" + count + ", p50=" + getPercentileNanos(50.0) / 1000L + "us, p99=" + getPercentileNanos(99.0) / 1000L +
+			       "us, p99.9=" + getPercentileNanos(99.9) / 1000L + "us, max=" + maxNanos / 1000L + "us]";
+		}
+	}
+}
@@ -0,0 +1,30 @@
+/***
+ *
+ * File       : LatencyHistogramMBean.java
+ * Description: The JMX view of a LatencyHistogram.
+ * Author     : Al Lansley
+ * Date       : 17/10/2026
+ * Version    : 0.1
+ *
+ */
+
+package au.edu.federation.leapwebsocket;
+
+// Everything here covers the time since the histogram was created or last reset. Latencies are in microseconds, and
+// percentiles are accurate to within 1/64th of the value.
+public interface LatencyHistogramMBean
+{
+	String getName();
+	String getDescription();
+
+	long getCount();
+	double getThroughputPerSecond();
+
+	double getMeanMicros();
+	double getP50Micros();
+	double getP99Micros();
+	double getP999Micros();
+	double getMaxMicros();
+
+	void reset();
+}
@@ -0,0 +1,167 @@
+/***
+ *
+ * File       : LatencyMonitor.java
+ * Description: The LatencyMonitor keeps a LatencyHistogram for each stage a Leap frame goes through on its way to the
+ *              screen, publishes them as JMX MBeans and can print a summary of them every so often.
+ * Author     : Al Lansley
+ * Date       : 17/10/2026
+ * Version    : 0.1
+ *
+ */
+
+package au.edu.federation.leapwebsocket;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+// Monitoring is off unless the program is run with -Dleap.latency=true. ENABLED is a static final, so when it's off the
+// JIT drops the code guarded by it altogether, and the instrumented stages cost nothing at all:
+//
+//		if (LatencyMonitor.ENABLED)
+//		{
+//			PARSE_LATENCY.recordSince(arrivalNanos);
+//		}
+//
+// The stages are created when the classes using them are loaded, and given the same name they're shared - so e.g. every
+// LeapWebSocket records into the one websocket.parse histogram. When monitoring is on, each one is registered with the
+// platform MBean server as au.edu.federation.leap:type=Latency,name=<stage>, where JConsole, VisualVM etc. can see it.
+//
+// Example usage:
+//
+//		private static final LatencyHistogram PARSE_LATENCY = LatencyMonitor.stage("websocket.parse", "Message received to frame parsed");
+//		...
+//		LatencyMonitor.startReporting( TimeUnit.SECONDS.toNanos(5) ); // Print what each stage recorded every five seconds
+public final class LatencyMonitor
+{
+	public static final String ENABLED_PROPERTY = "leap.latency";
+	public static final boolean ENABLED = Boolean.getBoolean(ENABLED_PROPERTY);
+
+	// The domain of the stages' MBean names
+	public static final String JMX_DOMAIN = "au.edu.federation.leap";
+
+	// Every stage by name, in the order they were created
+	private static final Map<String, LatencyHistogram> stages = new LinkedHashMap<String, LatencyHistogram>();
+
+	// The report thread, if we're reporting, and the snapshots it took last time round
+	private static Thread reportThread;
+	private static final Map<String, LatencyHistogram.Snapshot> lastSnapshots = new LinkedHashMap<String, LatencyHistogram.Snapshot>();
+
+	private LatencyMonitor() { }
+
+	// Method to get the histogram for a stage, creating it (and registering it with JMX when monitoring is on) the first time
+	public static synchronized LatencyHistogram stage(String name, String description)
+	{
+		LatencyHistogram histogram = stages.get(name);
+		if (histogram == null)
+		{
+			histogram = new LatencyHistogram(name, description);
+			stages.put(name, histogram);
+
+			if (ENABLED)
+			{
+				register(histogram);
+			}
+		}
+		return histogram;
+	}
+
+	// Method to get every stage, in the order they were created
+	public static synchronized List<LatencyHistogram> getStages()
+	{
+		return new ArrayList<LatencyHistogram>( stages.values() );
+	}
+
+	// Method to empty every stage's histogram. Stages can also be reset one at a time over JMX - either way, report() notices.
+	public static synchronized void resetAll()
+	{
+		for (LatencyHistogram histogram : stages.values())
+		{
+			histogram.reset();
+		}
+	}
+
+	private static void register(LatencyHistogram histogram)
+	{
+		try
+		{
+			MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+			ObjectName objectName = new ObjectName(JMX_DOMAIN + ":type=Latency,name=" + ObjectName.quote( histogram.getName() ));
+			if ( !server.isRegistered(objectName) )
+			{
+				server.registerMBean(histogram, objectName);
+			}
+		}
+		catch (JMException e)
+		{
+			System.out.println("LatencyMonitor: could not register " + histogram.getName() + " with JMX - " + e.getMessage());
+		}
+	}
+
+	// ----- Reporting -----
+
+	// Method to get a table of what each stage has recorded since the last time this was called (or since it was created
+	// or reset, the first time). Latencies are in microseconds.
+	public static synchronized String report()
+	{
+		StringBuilder sb = new StringBuilder();
+		sb.append( String.format(Locale.ROOT, "%-20s %9s %9s %10s %10s %10s %10s  %s%n", "Latency (us)", "count", "per sec", "p50", "p99", "p99.9", "max", "measures") );
+		for (LatencyHistogram histogram : stages.values())
+		{
+			LatencyHistogram.Snapshot now      = histogram.snapshot();
+			LatencyHistogram.Snapshot previous = lastSnapshots.put( histogram.getName(), now );
+			LatencyHistogram.Snapshot interval = (previous == null) ? now : now.since(previous); // All of now if it's been reset since
+
+			sb.append( String.format(Locale.ROOT, "%-20s %9d %9.1f %10.1f %10.1f %10.1f %10.1f  %s%n", histogram.getName(), interval.getCount(),
+			                         interval.getThroughputPerSecond(), interval.getPercentileNanos(50.0) / 1000.0, interval.getPercentileNanos(99.0) / 1000.0,
+			                         interval.getPercentileNanos(99.9) / 1000.0, interval.getMaxNanos() / 1000.0, histogram.getDescription()) );
+		}
+		return sb.toString();
+	}
+
+	// Method to print report() every so often on a thread of its own. Does nothing if we're already reporting, or if
+	// monitoring is off.
+	public static synchronized void startReporting(long intervalNanos)
+	{
+		if (!ENABLED || reportThread != null)
+		{
+			return;
+		}
+
+		long intervalMillis = Math.max(1L, intervalNanos / 1000000L);
+		reportThread = new Thread(() ->
+		{
+			try
+			{
+				while (true)
+				{
+					Thread.sleep(intervalMillis);
+					System.out.print( report() );
+				}
+			}
+			catch (InterruptedException ie)
+			{
+				// We've been stopped
+			}
+		}, "LatencyMonitor");
+		reportThread.setDaemon(true);
+		reportThread.start();
+	}
+
+	// Method to stop printing reports
+	public static synchronized void stopReporting()
+	{
+		if (reportThread != null)
+		{
+			reportThread.interrupt();
+			reportThread = null;
+		}
+	}
+}
@@ -0,0 +1,918 @@
+/***
+ *
+ * File       : LeapJsonParser.java
+ * Description: A LeapJsonParser is a streaming parser for the JSON frames sent by the Leap WebSocket interface which fills in a
+ *              WebSocketFrame directly, without going through Gson's reflection-driven object mapping.
+ * Author     : Al Lansley
+ * Date       : 17/10/2026
+ * Version    : 0.1
+ *
+ */
+
+package au.edu.federation.leapwebsocket;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import com.google.gson.JsonSyntaxException;
+
+// The parser only knows about the fields a WebSocketFrame (and its hands, pointables, gestures and interaction box)
+// actually stores - everything else the Leap sends (armBasis, bases, devices etc.) is skipped without being looked at.
+// Keys are matched in place against the known field names and numbers are parsed straight out of the input, so the
+// only things allocated are the frame and its children. Touch zones and gesture states/types are matched against the
+// known vocabulary so the shared String constants can be used rather than new Strings.
+//
+// The results are intended to be identical to Gson's, so where the two could differ we follow Gson's rules:
+//
+//		- float fields are parsed as a double and then narrowed, which is what Gson does,
+//		- a JSON null for an object, array or String field sets it to null, but is ignored for a primitive field,
+//		- arrays are sized to however many elements were actually in the JSON,
+//		- unknown fields are skipped, and if a field appears twice the last value wins,
+//		- numbers may be quoted (e.g. "timestamp":"123"), in which case the quoted text is parsed the way Gson parses it
+//		  (Long.parseLong, falling back to Double.parseDouble) - this is the slow path, but the Leap never quotes numbers.
+//
+// Input can either be a CharSequence (i.e. the String that WebSocketClient.onMessage hands us) or a ByteBuffer of UTF-8
+// encoded JSON, such as the raw payload of a WebSocket message. A single parser is not thread-safe, so each thread that
+// parses frames should have its own.
+//
+// Example usage:
+//
+//		LeapJsonParser parser = new LeapJsonParser();
+//		WebSocketFrame wsf = parser.parse(jsonString);
+//
+public class LeapJsonParser
+{
+	// Known vocabularies for the few String fields in a frame
+	private static final String[] TOUCH_ZONES    = { "none", "hovering", "touching" };
+	private static final String[] GESTURE_STATES = { "start", "update", "stop" };
+	private static final String[] GESTURE_TYPES  = { "circle", "swipe", "screenTap", "keyTap" };
+	private static final String[] NO_VOCABULARY  = {};
+
+	// Exact powers of ten which can be represented as doubles, used by the fast path in readDouble
+	private static final double[] POWERS_OF_TEN = new double[23];
+	static
+	{
+		POWERS_OF_TEN[0] = 1.0;
+		for (int i = 1; i < POWERS_OF_TEN.length; ++i)
+		{
+			POWERS_OF_TEN[i] = POWERS_OF_TEN[i - 1] * 10.0;
+		}
+	}
+
+	// The input - exactly one of these is non-null while parsing
+	private CharSequence chars;
+	private ByteBuffer   bytes;
+
+	private int pos;  // Current read position
+	private int end;  // One past the last readable position
+
+	// Scratch space for the elements of a numeric array before we know how long it is
+	private float[] scratch = new float[16];
+
+	// The last key read if it contained escapes, in which case readKeyEnd returns ESCAPED_KEY as its length
+	private static final int ESCAPED_KEY = -1;
+	private String escapedKey;
+
+	// ----- Public interface -----
+
+	// Method to parse a JSON string into a new WebSocketFrame
+	public WebSocketFrame parse(CharSequence json)
+	{
+		WebSocketFrame wsf = new WebSocketFrame();
+		parseInto(json, wsf);
+		return wsf;
+	}
+
+	// Method to parse UTF-8 encoded JSON between the buffer's position and limit into a new WebSocketFrame.
+	// Note: The buffer's position is not changed.
+	public WebSocketFrame parse(ByteBuffer json)
+	{
+		WebSocketFrame wsf = new WebSocketFrame();
+		parseInto(json, wsf);
+		return wsf;
+	}
+
+	// Method to parse a JSON string into the given WebSocketFrame. The frame is reset first, and its existing hands,
+	// pointables, gestures and arrays are re-used where possible - so parsing into a recycled frame (see
+	// WebSocketFramePool) allocates next to nothing.
+	public void parseInto(CharSequence json, WebSocketFrame wsf)
+	{
+		chars = json;
+		bytes = null;
+		pos   = 0;
+		end   = json.length();
+		parseDocument(wsf);
+	}
+
+	// Method to parse UTF-8 encoded JSON between the buffer's position and limit into the given WebSocketFrame
+	public void parseInto(ByteBuffer json, WebSocketFrame wsf)
+	{
+		chars = null;
+		bytes = json;
+		pos   = json.position();
+		end   = json.limit();
+		parseDocument(wsf);
+	}
+
+	// ----- Document structure -----
+
+	private void parseDocument(WebSocketFrame wsf)
+	{
+		wsf.reset();
+
+		try
+		{
+			skipWhitespace();
+			if ( pos < end && peek() == 'n' )
+			{
+				// Gson hands back null for a "null" document, and there's nothing for us to fill in
+				expectLiteral("null");
+				return;
+			}
+			parseFrame(wsf);
+		}
+		finally
+		{
+			// Don't hang on to the input between parses
+			chars = null;
+			bytes = null;
+		}
+	}
+
+	private void parseFrame(WebSocketFrame wsf)
+	{
+		expect('{');
+		if ( consumeIf('}') ) { return; }
+
+		do
+		{
+			int keyStart  = readKeyStart();
+			int keyLength = readKeyEnd(keyStart);
+			expect(':');
+			skipWhitespace();
+
+			if      ( keyEquals(keyStart, keyLength, "currentFrameRate") ) { if ( !skipNull() ) { wsf.setCurrentFrameRate( readDouble() ); } }
+			else if ( keyEquals(keyStart, keyLength, "id")               ) { if ( !skipNull() ) { wsf.setId( readLong() );                 } }
+			else if ( keyEquals(keyStart, keyLength, "timestamp")        ) { if ( !skipNull() ) { wsf.setTimestamp( readLong() );          } }
+			else if ( keyEquals(keyStart, keyLength, "s")                ) { if ( !skipNull() ) { wsf.setS( readFloat() );                 } }
+			else if ( keyEquals(keyStart, keyLength, "r")                ) { wsf.setR( readMatrix( wsf.getR() ) );                           }
+			else if ( keyEquals(keyStart, keyLength, "t")                ) { wsf.setT( readVector( wsf.getT() ) );                           }
+			else if ( keyEquals(keyStart, keyLength, "interactionBox")   ) { wsf.setInteractionBox( readInteractionBox( wsf.getInteractionBox() ) );                  }
+			else if ( keyEquals(keyStart, keyLength, "hands")            ) { readHands(wsf);                                                 }
+			else if ( keyEquals(keyStart, keyLength, "pointables")       ) { readPointables(wsf);                                            }
+			else if ( keyEquals(keyStart, keyLength, "gestures")         ) { readGestures(wsf);                                              }
+			else                                                          { skipValue();                                                      }
+		}
+		while ( nextMember() );
+	}
+
+	private void readHands(WebSocketFrame wsf)
+	{
+		if ( skipNull() ) { wsf.setHands(null); return; }
+
+		List<WebSocketHand> hands = wsf.hands();
+		if (hands == null)
+		{
+			hands = new ArrayList<WebSocketHand>();
+			wsf.setHands(hands);
+		}
+		hands.clear();
+
+		expect('[');
+		if ( consumeIf(']') ) { return; }
+		do
+		{
+			skipWhitespace();
+			hands.add( skipNull() ? null : readHand( wsf.obtainHand() ) );
+		}
+		while ( nextElement() );
+	}
+
+	private WebSocketHand readHand(WebSocketHand wsh)
+	{
+		expect('{');
+		if ( consumeIf('}') ) { return wsh; }
+
+		do
+		{
+			int keyStart  = readKeyStart();
+			int keyLength = readKeyEnd(keyStart);
+			expect(':');
+			skipWhitespace();
+
+			if      ( keyEquals(keyStart, keyLength, "id")                     ) { if ( !skipNull() ) { wsh.setId( readInt() );            } }
+			else if ( keyEquals(keyStart, keyLength, "direction")              ) { wsh.setDirection( readVector( wsh.getPalmDirection() ) );          }
+			else if ( keyEquals(keyStart, keyLength, "palmNormal")             ) { wsh.setPalmNormal( readVector( wsh.getPalmNormal() ) );            }
+			else if ( keyEquals(keyStart, keyLength, "palmPosition")           ) { wsh.setPalmPosition( readVector( wsh.getPalmPosition() ) );        }
+			else if ( keyEquals(keyStart, keyLength, "palmVelocity")           ) { wsh.setPalmVelocity( readVector( wsh.getPalmVelocity() ) );        }
+			else if ( keyEquals(keyStart, keyLength, "r")                      ) { wsh.setR( readMatrix( wsh.getR() ) );                              }
+			else if ( keyEquals(keyStart, keyLength, "sphereCenter")           ) { wsh.setSphereCenter( readVector( wsh.getSphereCenter() ) );        }
+			else if ( keyEquals(keyStart, keyLength, "sphereRadius")           ) { if ( !skipNull() ) { wsh.setSphereRadius( readFloat() ); } }
+			else if ( keyEquals(keyStart, keyLength, "stabilizedPalmPosition") ) { wsh.setStabilizedPalmPosition( readVector( wsh.getStabilizedPalmPosition() ) ); }
+			else if ( keyEquals(keyStart, keyLength, "timeVisible")            ) { if ( !skipNull() ) { wsh.setTimeVisible( readFloat() );  } }
+			else                                                                  { skipValue();                                                    }
+		}
+		while ( nextMember() );
+
+		return wsh;
+	}
+
+	private void readPointables(WebSocketFrame wsf)
+	{
+		if ( skipNull() ) { wsf.setPointables(null); return; }
+
+		List<WebSocketPointable> pointables = wsf.pointables();
+		if (pointables == null)
+		{
+			pointables = new ArrayList<WebSocketPointable>();
+			wsf.setPointables(pointables);
+		}
+		pointables.clear();
+
+		expect('[');
+		if ( consumeIf(']') ) { return; }
+		do
+		{
+			skipWhitespace();
+			pointables.add( skipNull() ? null : readPointable( wsf.obtainPointable() ) );
+		}
+		while ( nextElement() );
+	}
+
+	private WebSocketPointable readPointable(WebSocketPointable wsp)
+	{
+		expect('{');
+		if ( consumeIf('}') ) { return wsp; }
+
+		do
+		{
+			int keyStart  = readKeyStart();
+			int keyLength = readKeyEnd(keyStart);
+			expect(':');
+			skipWhitespace();
+
+			if      ( keyEquals(keyStart, keyLength, "direction")             ) { wsp.setDirection( readVector( wsp.getDirection() ) );                         }
+			else if ( keyEquals(keyStart, keyLength, "handId")                ) { if ( !skipNull() ) { wsp.setHandId( readInt() );          } }
+			else if ( keyEquals(keyStart, keyLength, "id")                    ) { if ( !skipNull() ) { wsp.setId( readInt() );              } }
+			else if ( keyEquals(keyStart, keyLength, "length")                ) { if ( !skipNull() ) { wsp.setLength( readFloat() );        } }
+			else if ( keyEquals(keyStart, keyLength, "stabilizedTipPosition") ) { wsp.setStabilizedTipPosition( readVector( wsp.getStabilizedTipPosition() ) ); }
+			else if ( keyEquals(keyStart, keyLength, "timeVisible")           ) { if ( !skipNull() ) { wsp.setTimeVisible( readFloat() );   } }
+			else if ( keyEquals(keyStart, keyLength, "tipPosition")           ) { wsp.setTipPosition( readVector( wsp.getTipPosition() ) );                     }
+			else if ( keyEquals(keyStart, keyLength, "tipVelocity")           ) { wsp.setTipVelocity( readVector( wsp.getTipVelocity() ) );                     }
+			else if ( keyEquals(keyStart, keyLength, "tool")                  ) { if ( !skipNull() ) { wsp.setTool( readBoolean() );        } }
+			else if ( keyEquals(keyStart, keyLength, "touchDistance")         ) { if ( !skipNull() ) { wsp.setTouchDistance( readFloat() ); } }
+			else if ( keyEquals(keyStart, keyLength, "touchZone")             ) { wsp.setTouchZone( readString(TOUCH_ZONES) );                                  }
+			else                                                                 { skipValue();                                                                  }
+		}
+		while ( nextMember() );
+
+		return wsp;
+	}
+
+	private void readGestures(WebSocketFrame wsf)
+	{
+		if ( skipNull() ) { wsf.setGestures(null); return; }
+
+		List<WebSocketGesture> gestures = wsf.gestures();
+		if (gestures == null)
+		{
+			gestures = new ArrayList<WebSocketGesture>();
+			wsf.setGestures(gestures);
+		}
+		gestures.clear();
+
+		expect('[');
+		if ( consumeIf(']') ) { return; }
+		do
+		{
+			skipWhitespace();
+			gestures.add( skipNull() ? null : readGesture( wsf.obtainGesture() ) );
+		}
+		while ( nextElement() );
+	}
+
+	private WebSocketGesture readGesture(WebSocketGesture wsg)
+	{
+		expect('{');
+		if ( consumeIf('}') ) { return wsg; }
+
+		do
+		{
+			int keyStart  = readKeyStart();
+			int keyLength = readKeyEnd(keyStart);
+			expect(':');
+			skipWhitespace();
+
+			if      ( keyEquals(keyStart, keyLength, "duration")     ) { if ( !skipNull() ) { wsg.setDuration( readLong() ); } }
+			else if ( keyEquals(keyStart, keyLength, "id")           ) { if ( !skipNull() ) { wsg.setId( readInt() );        } }
+			else if ( keyEquals(keyStart, keyLength, "handIds")      ) { wsg.setHandIds( readIntList( wsg.getHandIds() ) );           }
+			else if ( keyEquals(keyStart, keyLength, "pointableIds") ) { wsg.setPointableIds( readIntList( wsg.getPointableIds() ) ); }
+			else if ( keyEquals(keyStart, keyLength, "state")        ) { wsg.setState( readString(GESTURE_STATES) );                  }
+			else if ( keyEquals(keyStart, keyLength, "type")         ) { wsg.setType( readString(GESTURE_TYPES) );                    }
+			else                                                        { skipValue();                                                 }
+		}
+		while ( nextMember() );
+
+		return wsg;
+	}
+
+	private WebSocketInteractionBox readInteractionBox(WebSocketInteractionBox existing)
+	{
+		if ( skipNull() ) { return null; }
+
+		WebSocketInteractionBox box = existing;
+		if (box == null) { box = new WebSocketInteractionBox(); }
+		else             { box.reset();                         }
+
+		expect('{');
+		if ( consumeIf('}') ) { return box; }
+
+		do
+		{
+			int keyStart  = readKeyStart();
+			int keyLength = readKeyEnd(keyStart);
+			expect(':');
+			skipWhitespace();
+
+			if      ( keyEquals(keyStart, keyLength, "center") ) { box.setCenter( readVector( box.getCenter() ) ); }
+			else if ( keyEquals(keyStart, keyLength, "size")   ) { box.setSize( readVector( box.getSize() ) );     }
+			else                                                  { skipValue();                                    }
+		}
+		while ( nextMember() );
+
+		return box;
+	}
+
+	// ----- Arrays -----
+
+	// Method to read an array of numbers. If the existing array is the right length it's filled in and returned,
+	// otherwise a new array is created. A JSON null returns null.
+	private float[] readVector(float[] existing)
+	{
+		if ( skipNull() ) { return null; }
+
+		expect('[');
+		int count = 0;
+		if ( !consumeIf(']') )
+		{
+			do
+			{
+				skipWhitespace();
+				if (count == scratch.length)
+				{
+					scratch = Arrays.copyOf(scratch, count * 2);
+				}
+				scratch[count++] = readFloat();
+			}
+			while ( nextElement() );
+		}
+
+		float[] result = (existing != null && existing.length == count) ? existing : new float[count];
+		System.arraycopy(scratch, 0, result, 0, count);
+		return result;
+	}
+
+	// Method to read an array of arrays of numbers (i.e. a rotation matrix), re-using the existing rows where possible
+	private float[][] readMatrix(float[][] existing)
+	{
+		if ( skipNull() ) { return null; }
+
+		expect('[');
+		if ( consumeIf(']') ) { return new float[0][]; }
+
+		// Matrices from the Leap are always 3x3, so read straight into the existing rows and only fall back to
+		// building a new outer array if there turn out to be a different number of rows.
+		float[][] rows = (existing != null) ? existing : new float[3][];
+		int count = 0;
+		do
+		{
+			skipWhitespace();
+			if (count == rows.length)
+			{
+				rows = Arrays.copyOf(rows, count * 2);
+			}
+			rows[count] = readVector( rows[count] );
+			++count;
+		}
+		while ( nextElement() );
+
+		return (count == rows.length) ? rows : Arrays.copyOf(rows, count);
+	}
+
+	private List<Integer> readIntList(List<Integer> existing)
+	{
+		if ( skipNull() ) { return null; }
+
+		List<Integer> list = (existing != null) ? existing : new ArrayList<Integer>();
+		list.clear();
+		expect('[');
+		if ( consumeIf(']') ) { return list; }
+		do
+		{
+			skipWhitespace();
+			list.add( skipNull() ? null : Integer.valueOf( readInt() ) );
+		}
+		while ( nextElement() );
+
+		return list;
+	}
+
+	// ----- Scalars -----
+
+	private float readFloat() { return (float)readDouble(); }
+
+	// Method to read a number as a double with the same result as Double.parseDouble, which is what Gson uses.
+	// Numbers with at most 15 significant digits and a small exponent can be computed exactly with a single multiply
+	// or divide by an exact power of ten (so the result is correctly rounded) - anything else is handed off to
+	// Double.parseDouble.
+	private double readDouble()
+	{
+		skipWhitespace();
+		if ( pos < end && peek() == '"' )
+		{
+			return parseQuotedDouble( readString(NO_VOCABULARY) );
+		}
+
+		int start = pos;
+
+		boolean negative = consumeIf('-');
+		long mantissa    = 0;
+		int  digits      = 0;  // Significant digits in the mantissa
+		int  exponent    = 0;
+
+		// Integer part
+		int c = peekOrEnd();
+		if ( !isDigit(c) ) { throw syntaxError("Expected a number"); }
+		while ( isDigit(c) )
+		{
+			if (mantissa != 0 || c != '0') { ++digits; }
+			mantissa = mantissa * 10 + (c - '0');
+			++pos;
+			c = peekOrEnd();
+			if (digits > 18) { return slowDouble(start); }
+		}
+
+		// Fractional part
+		if (c == '.')
+		{
+			++pos;
+			c = peekOrEnd();
+			if ( !isDigit(c) ) { throw syntaxError("Expected a digit after the decimal point"); }
+			while ( isDigit(c) )
+			{
+				if (mantissa != 0 || c != '0') { ++digits; }
+				mantissa = mantissa * 10 + (c - '0');
+				--exponent;
+				++pos;
+				c = peekOrEnd();
+				if (digits > 18) { return slowDouble(start); }
+			}
+		}
+
+		// Exponent
+		if (c == 'e' || c == 'E')
+		{
+			++pos;
+			boolean negativeExponent = false;
+			c = peekOrEnd();
+			if (c == '+' || c == '-')
+			{
+				negativeExponent = (c == '-');
+				++pos;
+				c = peekOrEnd();
+			}
+			if ( !isDigit(c) ) { throw syntaxError("Expected a digit in the exponent"); }
+
+			int explicitExponent = 0;
+			while ( isDigit(c) )
+			{
+				if (explicitExponent < 10000) { explicitExponent = explicitExponent * 10 + (c - '0'); }
+				++pos;
+				c = peekOrEnd();
+			}
+			exponent += negativeExponent ? -explicitExponent : explicitExponent;
+		}
+
+		if ( digits > 15 || exponent < -22 || exponent > 22 )
+		{
+			return slowDouble(start);
+		}
+
+		double value = (double)mantissa;
+		value = (exponent < 0) ? value / POWERS_OF_TEN[-exponent] : value * POWERS_OF_TEN[exponent];
+		return negative ? -value : value;
+	}
+
+	private double slowDouble(int start)
+	{
+		pos = start;
+		consumeIf('-');
+		while ( pos < end && isNumberChar( peek() ) ) { ++pos; }
+		return Double.parseDouble( substring(start, pos) );
+	}
+
+	// Method to read a whole number. Like Gson, a number with a fractional part or exponent is accepted as long as
+	// its value is a whole number.
+	private long readLong()
+	{
+		skipWhitespace();
+		if ( pos < end && peek() == '"' )
+		{
+			return parseQuotedLong( readString(NO_VOCABULARY) );
+		}
+
+		int start = pos;
+
+		boolean negative = consumeIf('-');
+		long value = 0;
+		int c = peekOrEnd();
+		if ( !isDigit(c) ) { throw syntaxError("Expected a number"); }
+
+		int digits = 0;
+		while ( isDigit(c) )
+		{
+			value = value * 10 + (c - '0');
+			++digits;
+			++pos;
+			c = peekOrEnd();
+		}
+
+		// A plain integer with too many digits to be sure it fits in a long
+		if (digits > 18 && c != '.' && c != 'e' && c != 'E')
+		{
+			try
+			{
+				return Long.parseLong( substring(start, pos) );
+			}
+			catch (NumberFormatException e)
+			{
+				// Fall through to being parsed as a double below, which is what Gson does
+			}
+		}
+
+		// Anything other than a plain integer which definitely fits in a long goes through the same path as Gson
+		if (c == '.' || c == 'e' || c == 'E' || digits > 18)
+		{
+			pos = start;
+			double asDouble = slowDouble(start);
+			long result = (long)asDouble;
+			if (result != asDouble)
+			{
+				throw new JsonSyntaxException( new NumberFormatException("Expected a long but was " + substring(start, pos)) );
+			}
+			return result;
+		}
+
+		return negative ? -value : value;
+	}
+
+	private int readInt()
+	{
+		skipWhitespace();
+		int start = pos;
+		long value = readLong();
+		if ( (int)value != value )
+		{
+			throw new JsonSyntaxException( new NumberFormatException("Expected an int but was " + substring(start, pos)) );
+		}
+		return (int)value;
+	}
+
+	// Methods to parse a quoted number the way Gson's JsonReader does
+	private static double parseQuotedDouble(String text)
+	{
+		try
+		{
+			return Double.parseDouble(text);
+		}
+		catch (NumberFormatException e)
+		{
+			throw new JsonSyntaxException(e);
+		}
+	}
+
+	private static long parseQuotedLong(String text)
+	{
+		try
+		{
+			return Long.parseLong(text);
+		}
+		catch (NumberFormatException e)
+		{
+			// Fall through to being parsed as a double, which is what Gson does
+		}
+
+		double asDouble = parseQuotedDouble(text);
+		long result = (long)asDouble;
+		if (result != asDouble)
+		{
+			throw new JsonSyntaxException( new NumberFormatException("Expected a long but was " + text) );
+		}
+		return result;
+	}
+
+	private boolean readBoolean()
+	{
+		if ( peek() == 't' ) { expectLiteral("true");  return true;  }
+		else                 { expectLiteral("false"); return false; }
+	}
+
+	// Method to read a String, returning the matching constant from the vocabulary if there is one
+	private String readString(String[] vocabulary)
+	{
+		if ( skipNull() ) { return null; }
+
+		expect('"');
+		int start = pos;
+		boolean escaped = false;
+		while (true)
+		{
+			if (pos >= end) { throw syntaxError("Unterminated string"); }
+			char c = peek();
+			if (c == '"') { break; }
+			if (c == '\\') { escaped = true; ++pos; }
+			++pos;
+		}
+		int length = pos - start;
+		++pos; // Skip the closing quote
+
+		if (!escaped)
+		{
+			for (String candidate : vocabulary)
+			{
+				if ( keyEquals(start, length, candidate) )
+				{
+					return candidate;
+				}
+			}
+			return substring(start, start + length);
+		}
+
+		return unescape(start, start + length);
+	}
+
+	// ----- Skipping -----
+
+	// Method to skip over any JSON value - used for all the fields we don't store
+	private void skipValue()
+	{
+		skipWhitespace();
+		char c = peek();
+		switch (c)
+		{
+			case '{':
+				++pos;
+				if ( consumeIf('}') ) { return; }
+				do
+				{
+					readKeyEnd( readKeyStart() );
+					expect(':');
+					skipValue();
+				}
+				while ( nextMember() );
+				break;
+
+			case '[':
+				++pos;
+				if ( consumeIf(']') ) { return; }
+				do
+				{
+					skipValue();
+				}
+				while ( nextElement() );
+				break;
+
+			case '"':
+				++pos;
+				while (true)
+				{
+					if (pos >= end) { throw syntaxError("Unterminated string"); }
+					char s = peek();
+					if (s == '"')  { ++pos; break; }
+					if (s == '\\') { ++pos; }
+					++pos;
+				}
+				break;
+
+			case 't': expectLiteral("true");  break;
+			case 'f': expectLiteral("false"); break;
+			case 'n': expectLiteral("null");  break;
+
+			default:
+				if ( !isNumberChar(c) ) { throw syntaxError("Unexpected character '" + c + "'"); }
+				while ( pos < end && isNumberChar( peek() ) ) { ++pos; }
+				break;
+		}
+	}
+
+	// Method to consume a JSON null if there is one at the current position
+	private boolean skipNull()
+	{
+		if ( pos < end && peek() == 'n' )
+		{
+			expectLiteral("null");
+			return true;
+		}
+		return false;
+	}
+
+	// ----- Tokenising helpers -----
+
+	// Method to read up to the opening quote of an object key and return the position of its first character
+	private int readKeyStart()
+	{
+		expect('"');
+		return pos;
+	}
+
+	// Method to read to the closing quote of an object key and return the key's length. The Leap never escapes keys, but
+	// Gson would still match one that was, so an escaped key is decoded into escapedKey and ESCAPED_KEY returned instead.
+	private int readKeyEnd(int keyStart)
+	{
+		boolean escaped = false;
+		while (true)
+		{
+			if (pos >= end) { throw syntaxError("Unterminated key"); }
+			char c = peek();
+			if (c == '"')  { break; }
+			if (c == '\\') { escaped = true; ++pos; }
+			++pos;
+		}
+		int length = pos - keyStart;
+		++pos;
+
+		if (escaped)
+		{
+			escapedKey = unescape(keyStart, keyStart + length);
+			return ESCAPED_KEY;
+		}
+		return length;
+	}
+
+	// Method to compare the input at a position against a known (ASCII) name without creating a String
+	private boolean keyEquals(int start, int length, String name)
+	{
+		if ( length == ESCAPED_KEY )    { return name.equals(escapedKey); }
+		if ( length != name.length() ) { return false; }
+		for (int i = 0; i < length; ++i)
+		{
+			if ( charAt(start + i) != name.charAt(i) ) { return false; }
+		}
+		return true;
+	}
+
+	// After an object member: returns true if there's another member to read, false at the end of the object
+	private boolean nextMember()
+	{
+		skipWhitespace();
+		char c = next();
+		if (c == ',') { skipWhitespace(); return true;  }
+		if (c == '}') { return false; }
+		throw syntaxError("Expected ',' or '}'");
+	}
+
+	// After an array element: returns true if there's another element to read, false at the end of the array
+	private boolean nextElement()
+	{
+		skipWhitespace();
+		char c = next();
+		if (c == ',') { return true;  }
+		if (c == ']') { return false; }
+		throw syntaxError("Expected ',' or ']'");
+	}
+
+	private void expect(char expected)
+	{
+		skipWhitespace();
+		if ( pos >= end || peek() != expected )
+		{
+			throw syntaxError("Expected '" + expected + "'");
+		}
+		++pos;
+	}
+
+	private boolean consumeIf(char c)
+	{
+		skipWhitespace();
+		if ( pos < end && peek() == c )
+		{
+			++pos;
+			return true;
+		}
+		return false;
+	}
+
+	private void expectLiteral(String literal)
+	{
+		if ( pos + literal.length() > end || !keyEquals(pos, literal.length(), literal) )
+		{
+			throw syntaxError("Expected " + literal);
+		}
+		pos += literal.length();
+	}
+
+	private void skipWhitespace()
+	{
+		while (pos < end)
+		{
+			char c = peek();
+			if (c != ' ' && c != '\n' && c != '\r' && c != '\t') { return; }
+			++pos;
+		}
+	}
+
+	// ----- Input access -----
+
+	private char charAt(int index)
+	{
+		// Note: Bytes are widened as Latin-1 here. Everything structural in JSON is ASCII, and the only places a
+		// multi-byte UTF-8 sequence could appear are inside strings, which are decoded properly by substring().
+		return (bytes != null) ? (char)( bytes.get(index) & 0xFF ) : chars.charAt(index);
+	}
+
+	private char peek()      { return charAt(pos);   }
+	private char next()      { if (pos >= end) { throw syntaxError("Unexpected end of input"); } return charAt(pos++); }
+	private int  peekOrEnd() { return (pos < end) ? charAt(pos) : -1; }
+
+	private String substring(int start, int stop)
+	{
+		if (bytes != null)
+		{
+			byte[] raw = new byte[stop - start];
+			for (int i = 0; i < raw.length; ++i)
+			{
+				raw[i] = bytes.get(start + i);
+			}
+			return new String(raw, StandardCharsets.UTF_8);
+		}
+		return chars.subSequence(start, stop).toString();
+	}
+
+	// Method to decode a string containing escape sequences
+	private String unescape(int start, int stop)
+	{
+		String raw = substring(start, stop);
+		StringBuilder sb = new StringBuilder( raw.length() );
+		for (int i = 0; i < raw.length(); ++i)
+		{
+			char c = raw.charAt(i);
+			if (c != '\\')
+			{
+				sb.append(c);
+				continue;
+			}
+
+			if (i + 1 == raw.length())
+			{
+				throw syntaxError("Unterminated escape sequence");
+			}
+
+			char e = raw.charAt(++i);
+			switch (e)
+			{
+				case 'b': sb.append('\b'); break;
+				case 'f': sb.append('\f'); break;
+				case 'n': sb.append('\n'); break;
+				case 'r': sb.append('\r'); break;
+				case 't': sb.append('\t'); break;
+				case 'u': sb.append( unicodeEscape(raw, i + 1) ); i += 4; break;
+				default:  sb.append(e);    break;
+			}
+		}
+		return sb.toString();
+	}
+
+	// Method to decode the four hex digits of a unicode escape starting at the given index, rejecting anything else (even
+	// digits from other scripts) as Gson does
+	private char unicodeEscape(String raw, int start)
+	{
+		if (start + 4 > raw.length())
+		{
+			throw syntaxError("Unterminated escape sequence");
+		}
+
+		int value = 0;
+		for (int i = start; i < start + 4; ++i)
+		{
+			char h = raw.charAt(i);
+			int digit = (h >= '0' && h <= '9') ? h - '0' : (h >= 'a' && h <= 'f') ? h - 'a' + 10 : (h >= 'A' && h <= 'F') ? h - 'A' + 10 : -1;
+			if (digit < 0)
+			{
+				throw new JsonSyntaxException( new NumberFormatException("\\u" + raw.substring(start, start + 4)) );
+			}
+			value = (value << 4) | digit;
+		}
+		return (char)value;
+	}
+
+	private static boolean isDigit(int c)       { return c >= '0' && c <= '9'; }
+	private static boolean isNumberChar(char c) { return isDigit(c) || c == '-' || c == '+' || c == '.' || c == 'e' || c == 'E'; }
+
+	private JsonSyntaxException syntaxError(String message)
+	{
+		return new JsonSyntaxException(message + " at position " + pos);
+	}
+}
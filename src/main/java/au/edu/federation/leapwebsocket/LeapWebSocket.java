@@ -12,11 +12,16 @@
 package au.edu.federation.leapwebsocket;
 
 import au.edu.federation.leapdatarecorder.LeapDataRecorder;
-import au.edu.federation.leapdatarecorder.LeapDataRecorder.Mode;
+import au.edu.federation.leapwebsocket.FrameBus.WaitStrategy;
 
 import com.google.gson.Gson;
 
 import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
 
 import org.java_websocket.client.WebSocketClient;
 import org.java_websocket.drafts.Draft;
@@ -24,28 +29,133 @@ import org.java_websocket.framing.Framedata;
 import org.java_websocket.handshake.ServerHandshake;
 
 // Class to connect to the Leap daemon via a WebSocket and retrieve frame data. The JSON string from the WebSocket is
-// used to inflate a WebSocketFrame object which may be written to file via the LeapDataRecorder class. There is also
-// a getter for the currentWebSocketFrame object so it can be used in other parts of your program, if desired.
+// used to inflate a WebSocketFrame object which may be written to file via a LeapDataRecorder bound to this socket. The
+// current frame is published through a WebSocketFramePublisher, so it can be safely read (or waited for) from other
+// parts of your program, if desired. Each LeapWebSocket has its own current frame and recorder, so several can run at
+// once (e.g. one per sensor).
+//
+// The socket's thread does nothing but drop each message into a FrameBus. Everything else happens in stages on the
+// bus's consumer threads: the parser stage parses the message into a WebSocketFrame, and after that (and independently
+// of each other) the frame stage publishes it as the current frame and tells the listeners, and the recorder stage
+// writes it to file if we're recording. More stages can be added with getFrameBus().addConsumer(), e.g. to
+// re-broadcast frames once they've been parsed:
+//
+//     leapWebSocket.getFrameBus().addConsumer("rebroadcast", handler, DeliveryPolicy.LATEST, WaitStrategy.SLEEPING, leapWebSocket.getParserStage());
+//
+// When the LatencyMonitor is enabled, the time each frame spends getting to us, being handed over by the socket's thread
+// and being parsed is recorded in its websocket.* stages.
 public class LeapWebSocket extends WebSocketClient
 {
+	// Where the Leap daemon's WebSocket server is, unless the URI_PROPERTY system property says otherwise - e.g. to connect
+	// to a LeapWebSocketEmulator with -Dleap.websocket.uri=ws://localhost:6500
+	public static final String DEFAULT_URI  = "ws://localhost:6437";
+	public static final String URI_PROPERTY = "leap.websocket.uri";
+	
+	// How long to wait when closing for the stages to finish with the frames which have already arrived
+	private static final long CLOSE_DRAIN_NANOS = TimeUnit.SECONDS.toNanos(2);
+	
 	// Our LeapWebSocket has a single static instance of Gson object used to parse the json string
+	// Note: This is only used if useGsonParser is set - by default frames are parsed with the LeapJsonParser below.
 	private static Gson gson = new Gson();
 	
-	private static WebSocketFrame currentWebSocketFrame;
+	// Whether to parse frames with Gson rather than our own LeapJsonParser. Both produce identical WebSocketFrames, but
+	// the LeapJsonParser is a good deal faster and allocates far less, so Gson is only really useful for comparison.
+	private static boolean useGsonParser = false;
+	
+	// Each LeapWebSocket gets its own parser, as they're not thread-safe and only our parser stage uses it
+	private final LeapJsonParser parser = new LeapJsonParser();
+	
+	// The current frame, numbered in the order frames arrived. Only ever written by the frame stage.
+	private final WebSocketFramePublisher currentWebSocketFrame = new WebSocketFramePublisher();
+	
+	// The recorder session writing our frames to file, if any
+	private volatile LeapDataRecorder recorder;
+	
+	// The bus messages go out on from the socket's thread, and our stage which parses them
+	private final FrameBus<WebSocketFrameEvent> frameBus = new FrameBus<WebSocketFrameEvent>(FrameBus.DEFAULT_SIZE, WebSocketFrameEvent::new);
+	private FrameBus<WebSocketFrameEvent>.Consumer parserStage;
+	
+	// Optional pool to parse frames into. If this is null then every frame is a brand new WebSocketFrame.
+	private WebSocketFramePool framePool;
+	
+	// Listeners told about each new frame
+	private final List<WebSocketFrameListener> frameListeners = new CopyOnWriteArrayList<WebSocketFrameListener>();
+	
+	// Latency stages shared by every LeapWebSocket, only recorded into when LatencyMonitor.ENABLED
+	private static final LatencyHistogram ON_MESSAGE_LATENCY = LatencyMonitor.stage("websocket.onMessage", "WebSocket message received to handed to the parser");
+	private static final LatencyHistogram RECEIVE_LATENCY    = LatencyMonitor.stage("websocket.receive",   "Leap timestamp to WebSocket message received");
+	private static final LatencyHistogram PARSE_LATENCY      = LatencyMonitor.stage("websocket.parse",     "WebSocket message received to frame parsed");
+	
+	// Relates the timestamps of our frames to our clock. Only observed by the parser stage.
+	private final SensorClock sensorClock = new SensorClock();
 	
 	// Single parameter constructor
 	public LeapWebSocket(URI serverURI)
 	{
 		super(serverURI);
+		addStages();
 	}
 	
 	// Two parameter constructor specifying a specific draft of the WebSocket protocol
 	public LeapWebSocket(URI serverUri , Draft draft)
 	{
 		super(serverUri, draft);
+		addStages();
+	}
+	
+	// Method to start our stages on the bus - the frame and recorder stages both need the parser stage to have been first.
+	// They're all LOSSLESS, as listeners and recordings expect every frame - consumers which only want some of them (e.g.
+	// for rendering or analytics) should be added with a LATEST or sampled DeliveryPolicy, so they can't hold these up.
+	private void addStages()
+	{
+		parserStage = frameBus.addConsumer("parser", this::parseFrame, DeliveryPolicy.LOSSLESS, WaitStrategy.BLOCKING);
+		frameBus.addConsumer("frame",    this::publishFrame, DeliveryPolicy.LOSSLESS, WaitStrategy.BLOCKING, parserStage);
+		frameBus.addConsumer("recorder", this::recordFrame,  DeliveryPolicy.LOSSLESS, WaitStrategy.SLEEPING, parserStage);
 	}
 	
-	public WebSocketFrame getCurrentWebSocketFrame() { return currentWebSocketFrame; }
+	// Note: If a frame pool is in use then the frame returned here may be recycled once a newer frame arrives - use
+	// acquireCurrentWebSocketFrame instead if you need to hold on to it.
+	public WebSocketFrame getCurrentWebSocketFrame() { return currentWebSocketFrame.latest().getValue(); }
+	
+	// Method to get the current frame with a reference held on it, so it can't be recycled while you're using it.
+	// Call release() on the frame when you're done with it (this does nothing if the frame isn't from a pool).
+	public WebSocketFrame acquireCurrentWebSocketFrame() { return currentWebSocketFrame.acquireLatest(); }
+	
+	// Method to get the publisher the current frame goes out through, e.g. to wait for a frame newer than the last one
+	// you saw with awaitNewer()
+	public WebSocketFramePublisher getFramePublisher() { return currentWebSocketFrame; }
+	
+	// Methods to get the bus messages go out on, and the stage which parses them, so more stages can be added. Stages
+	// which use the frame must depend on the parser stage.
+	public FrameBus<WebSocketFrameEvent> getFrameBus()             { return frameBus;    }
+	public FrameBus<WebSocketFrameEvent>.Consumer getParserStage() { return parserStage; }
+	
+	// Method to set a pool to parse frames into rather than creating a new WebSocketFrame per message (null to disable)
+	// Note: Pooled frames are only used with the LeapJsonParser - Gson always creates a new frame.
+	public void setFramePool(WebSocketFramePool pool) { framePool = pool;  }
+	public WebSocketFramePool getFramePool()          { return framePool;  }
+	
+	// Methods to set the recorder session our frames are written to (null for none). This is done for you by creating a
+	// LeapDataRecorder for this socket.
+	public void setRecorder(LeapDataRecorder value) { recorder = value;  }
+	public LeapDataRecorder getRecorder()           { return recorder;   }
+	
+	// Method to get the clock relating our frames' timestamps to System.nanoTime(). It only follows them while the
+	// LatencyMonitor is enabled.
+	public SensorClock getSensorClock() { return sensorClock; }
+	
+	// Methods to add and remove listeners which are called with each new frame
+	public void addFrameListener(WebSocketFrameListener listener)    { frameListeners.add(listener);    }
+	public void removeFrameListener(WebSocketFrameListener listener) { frameListeners.remove(listener); }
+	
+	// Method to get the URI to connect to - the URI_PROPERTY system property if it's set, or DEFAULT_URI if not
+	public static URI getDefaultURI() throws URISyntaxException
+	{
+		return new URI( System.getProperty(URI_PROPERTY, DEFAULT_URI) );
+	}
+	
+	public static void setUseGsonParser(boolean value) { useGsonParser = value; }
+	public static boolean getUseGsonParser()           { return useGsonParser;  }
 
 	@Override
 	public void onOpen(ServerHandshake handshakeData)
@@ -60,14 +170,112 @@ public class LeapWebSocket extends WebSocketClient
 	{
 		//System.out.println( "Received JSON string: " + jsonString );
 		
-		// Get the current WebSocketFrame inflated from the JSON string
-		currentWebSocketFrame = gson.fromJson(jsonString, WebSocketFrame.class);
-	    
+		// Just hand the message to the parser stage, so we're ready for the next one straight away
+		long arrivalNanos = System.nanoTime();
+		long sequence = frameBus.next();
+		frameBus.get(sequence).setMessage(jsonString, arrivalNanos);
+		frameBus.publish(sequence);
+		
+		if (LatencyMonitor.ENABLED)
+		{
+			ON_MESSAGE_LATENCY.recordSince(arrivalNanos);
+		}
+	}
+	
+	// The Leap sends frames as text, but if we ever get one as a binary message we can parse it straight from the bytes
+	@Override
+	public void onMessage(ByteBuffer jsonBytes)
+	{
+		long arrivalNanos = System.nanoTime();
+		long sequence = frameBus.next();
+		frameBus.get(sequence).setMessage(jsonBytes, arrivalNanos);
+		frameBus.publish(sequence);
+		
+		if (LatencyMonitor.ENABLED)
+		{
+			ON_MESSAGE_LATENCY.recordSince(arrivalNanos);
+		}
+	}
+	
+	// ----- Stages -----
+	
+	// Parser stage - inflates the WebSocketFrame for each message
+	private void parseFrame(WebSocketFrameEvent event, long sequence, boolean endOfBatch)
+	{
+		if (event.isBinary())
+		{
+			if (framePool != null)
+			{
+				WebSocketFrame wsf = framePool.acquire();
+				parser.parseInto(event.getJsonBytes(), wsf);
+				event.setFrame(wsf);
+			}
+			else
+			{
+				event.setFrame( parser.parse( event.getJsonBytes() ) );
+			}
+		}
+		else if (useGsonParser)
+		{
+			event.setFrame( gson.fromJson(event.getJsonString(), WebSocketFrame.class) );
+		}
+		else if (framePool != null)
+		{
+			WebSocketFrame wsf = framePool.acquire();
+			parser.parseInto(event.getJsonString(), wsf);
+			event.setFrame(wsf);
+		}
+		else
+		{
+			event.setFrame( parser.parse( event.getJsonString() ) );
+		}
+		
+		if (LatencyMonitor.ENABLED)
+		{
+			recordLatency(event);
+		}
+	}
+	
+	// Method to record how long ago the frame just parsed was captured when its message arrived, and how long it's taken to
+	// parse since then. Messages which aren't frames (e.g. the version message the Leap sends first) have no timestamp.
+	private void recordLatency(WebSocketFrameEvent event)
+	{
+		long arrivalNanos = event.getArrivalNanos();
+		PARSE_LATENCY.recordSince(arrivalNanos);
+		
+		WebSocketFrame wsf = event.getFrame();
+		if ( wsf != null && wsf.getTimestamp() > 0L )
+		{
+			sensorClock.observe( wsf.getTimestamp(), arrivalNanos );
+			RECEIVE_LATENCY.record( sensorClock.ageNanos( wsf.getTimestamp(), arrivalNanos ) );
+		}
+	}
+	
+	// Frame stage - makes each newly parsed frame the current frame (which gives up the reference to the frame it
+	// replaced) and tells any listeners about it
+	private void publishFrame(WebSocketFrameEvent event, long sequence, boolean endOfBatch)
+	{
+		WebSocketFrame wsf = event.getFrame();
+		
+		// The event keeps its own reference, so the current frame needs another
+		wsf.retain();
+		currentWebSocketFrame.publish(wsf);
+		
+		for (WebSocketFrameListener listener : frameListeners)
+		{
+			listener.onWebSocketFrame(wsf);
+		}
+	}
+	
+	// Recorder stage - writes each frame to file if we're recording
+	private void recordFrame(WebSocketFrameEvent event, long sequence, boolean endOfBatch)
+	{
 	    // If we're recording and the recorder is enabled...
-	    if ( (LeapDataRecorder.getMode() == Mode.RECORD) && ( LeapDataRecorder.isEnabled() ) )
+	    LeapDataRecorder r = recorder;
+	    if ( (r != null) && ( r.isEnabled() ) )
 	    {
 	    	// ...then write it to the file
-	    	LeapDataRecorder.writeWebSocketFrame(currentWebSocketFrame);
+	    	r.writeWebSocketFrame( event.getFrame() );
 	    }
 	}
 
@@ -83,10 +291,14 @@ public class LeapWebSocket extends WebSocketClient
 		// The codes are documented in class org.java_websocket.framing.CloseFrame
 		System.out.println( "Connection closed by " + ( remote ? "remote peer" : "us" ) );
 		
-		// Close the leapDataRecorder - this flushes and closes all streams
-		if ( LeapDataRecorder.isEnabled() )
+		// Let the stages finish with the frames we've already got, so the recorder has written them all...
+		frameBus.shutdown(CLOSE_DRAIN_NANOS);
+		
+		// ...and close the leapDataRecorder - this flushes and closes all streams
+		LeapDataRecorder r = recorder;
+		if ( (r != null) && ( r.isEnabled() ) )
 		{
-			LeapDataRecorder.close();
+			r.close();
 		}
 	}
 
@@ -0,0 +1,205 @@
+/***
+ *
+ * File       : OneEuroPredictor.java
+ * Description: Smooths the positions of tracked points (fingertips, palms) with a One-Euro filter and predicts where
+ *              they'll be a short time ahead.
+ * Author     : Al Lansley
+ * Date       : 17/10/2026
+ * Version    : 0.1
+ *
+ */
+
+package au.edu.federation.leapwebsocket;
+
+// By the time a frame has been solved and drawn the hand has moved on, so whatever we draw lags behind the real hand by
+// the whole sensor-to-display delay. This class takes each point's position and velocity as the Leap reports them and:
+//
+// - smooths the velocity with a low-pass filter at a fixed cutoff (derivativeCutoff),
+// - smooths the position with a low-pass filter whose cutoff rises with speed (minCutoff + beta * speed) - this is the
+//   One-Euro filter, which removes jitter when the hand is still but barely lags when it's moving quickly, and
+// - predicts the position lead seconds ahead assuming constant velocity. The position filter itself lags a point moving
+//   at constant velocity by its time constant, so we predict that much further ahead as well to make up for it.
+//
+// Points are tracked by id (e.g. pointable ids, or hand ids - use a separate predictor for each kind). All state is
+// held in flat arrays with one entry per tracked point, found by a linear search of the ids, and nothing is allocated
+// per update. A point that goes unseen for EVICT_AFTER_FRAMES frames gives up its slot, and a point whose updates are
+// more than RESET_AFTER_SECONDS apart starts again from scratch.
+//
+// Example usage (once per frame):
+//
+//     predictor.beginFrame();
+//     for (WebSocketPointable wsp : wsf.pointables())
+//     {
+//         predictor.filter( wsp.getId(), wsf.getTimestamp(), wsp.getTipPosition(), 0, wsp.getTipVelocity(), 0, leadSeconds, predictedTip, 0 );
+//     }
+public class OneEuroPredictor
+{
+	// Defaults for positions in mm and velocities in mm/s
+	public static final float DEFAULT_MIN_CUTOFF        = 1.0f;  // Hz
+	public static final float DEFAULT_BETA              = 0.1f;  // Hz per mm/s
+	public static final float DEFAULT_DERIVATIVE_CUTOFF = 5.0f;  // Hz
+
+	// Points we haven't seen for this many frames are dropped
+	public static final int EVICT_AFTER_FRAMES = 60;
+
+	// A gap of more than this between updates for a point means it was lost and found again, so we start it afresh
+	public static final float RESET_AFTER_SECONDS = 0.25f;
+
+	private static final float TWO_PI = (float)(2.0 * Math.PI);
+
+	private final float minCutoff;
+	private final float beta;
+	private final float derivativeCutoff;
+
+	// ----- Per tracked point -----
+
+	private final int    capacity;
+	private final int[]  ids;
+	private final long[] lastUsedFrame;
+	private final long[] lastTimestamp;   // Microseconds, or -1 if the slot is free
+	private final float[] posX, posY, posZ;
+	private final float[] velX, velY, velZ;
+
+	private long frameNumber;
+
+	// Default constructor, with room for two hands' worth of pointables and the default settings
+	public OneEuroPredictor()
+	{
+		this(16, DEFAULT_MIN_CUTOFF, DEFAULT_BETA, DEFAULT_DERIVATIVE_CUTOFF);
+	}
+
+	// Constructor specifying how many points can be tracked at once, and the filter settings
+	public OneEuroPredictor(int capacity, float minCutoff, float beta, float derivativeCutoff)
+	{
+		this.capacity         = capacity;
+		this.minCutoff        = minCutoff;
+		this.beta             = beta;
+		this.derivativeCutoff = derivativeCutoff;
+
+		ids           = new int[capacity];
+		lastUsedFrame = new long[capacity];
+		lastTimestamp = new long[capacity];
+		posX = new float[capacity]; posY = new float[capacity]; posZ = new float[capacity];
+		velX = new float[capacity]; velY = new float[capacity]; velZ = new float[capacity];
+
+		clear();
+	}
+
+	// Method to call once at the start of each frame, before filtering any points. Drops any points which haven't been
+	// seen for EVICT_AFTER_FRAMES frames.
+	public void beginFrame()
+	{
+		++frameNumber;
+
+		for (int slot = 0; slot < capacity; ++slot)
+		{
+			if (lastTimestamp[slot] != -1L && frameNumber - lastUsedFrame[slot] > EVICT_AFTER_FRAMES)
+			{
+				lastTimestamp[slot] = -1L;
+			}
+		}
+	}
+
+	// Method to filter a new sample of a point and write where we predict it will be leadSeconds after the sample into
+	// result[resultOffset .. resultOffset + 2]. The position and velocity are x/y/z triples starting at the given
+	// offsets, and the timestamp is in microseconds (as the Leap gives it). The result may be the position array itself.
+	public void filter(int id, long timestampMicros, float[] position, int positionOffset, float[] velocity, int velocityOffset,
+	                   float leadSeconds, float[] result, int resultOffset)
+	{
+		float x  = position[positionOffset], y  = position[positionOffset + 1], z  = position[positionOffset + 2];
+		float vx = velocity[velocityOffset], vy = velocity[velocityOffset + 1], vz = velocity[velocityOffset + 2];
+
+		int slot = findSlot(id);
+		float dt = (lastTimestamp[slot] == -1L) ? 0.0f : (timestampMicros - lastTimestamp[slot]) * 1.0e-6f;
+		lastTimestamp[slot] = timestampMicros;
+
+		float tau;
+		if (dt <= 0.0f || dt > RESET_AFTER_SECONDS)
+		{
+			// New (or lost and found) point, or a repeated timestamp - nothing to filter against, so take it as it is
+			posX[slot] = x;  posY[slot] = y;  posZ[slot] = z;
+			velX[slot] = vx; velY[slot] = vy; velZ[slot] = vz;
+			tau = 0.0f;
+		}
+		else
+		{
+			// Smooth the velocity...
+			float a = alpha(derivativeCutoff, dt);
+			velX[slot] += a * (vx - velX[slot]);
+			velY[slot] += a * (vy - velY[slot]);
+			velZ[slot] += a * (vz - velZ[slot]);
+
+			// ...and then the position, with a cutoff that rises with speed
+			float speed  = (float)Math.sqrt( velX[slot] * velX[slot] + velY[slot] * velY[slot] + velZ[slot] * velZ[slot] );
+			float cutoff = minCutoff + beta * speed;
+			a = alpha(cutoff, dt);
+			posX[slot] += a * (x - posX[slot]);
+			posY[slot] += a * (y - posY[slot]);
+			posZ[slot] += a * (z - posZ[slot]);
+			tau = 1.0f / (TWO_PI * cutoff);
+		}
+
+		// Predict ahead, making up for the position filter's own lag as well
+		float ahead = leadSeconds + tau;
+		result[resultOffset]     = posX[slot] + velX[slot] * ahead;
+		result[resultOffset + 1] = posY[slot] + velY[slot] * ahead;
+		result[resultOffset + 2] = posZ[slot] + velZ[slot] * ahead;
+	}
+
+	// Method to forget every tracked point
+	public void clear()
+	{
+		for (int slot = 0; slot < capacity; ++slot)
+		{
+			lastTimestamp[slot] = -1L;
+			lastUsedFrame[slot] = 0L;
+		}
+	}
+
+	// ----- Getters -----
+
+	public int getCapacity()           { return capacity;         }
+	public float getMinCutoff()        { return minCutoff;        }
+	public float getBeta()             { return beta;             }
+	public float getDerivativeCutoff() { return derivativeCutoff; }
+
+	// ----- Helpers -----
+
+	// Smoothing factor of a first order low-pass filter with the given cutoff frequency, for samples dt seconds apart
+	private static float alpha(float cutoff, float dt)
+	{
+		float tau = 1.0f / (TWO_PI * cutoff);
+		return 1.0f / (1.0f + tau / dt);
+	}
+
+	// Method to find the slot for a point, taking over a free slot (or the least recently used one) if it's new
+	private int findSlot(int id)
+	{
+		int freeSlot = -1;
+		int oldest   = 0;
+		for (int slot = 0; slot < capacity; ++slot)
+		{
+			if (lastTimestamp[slot] == -1L)
+			{
+				if (freeSlot == -1) { freeSlot = slot; }
+			}
+			else if (ids[slot] == id)
+			{
+				lastUsedFrame[slot] = frameNumber;
+				return slot;
+			}
+			else if (lastUsedFrame[slot] < lastUsedFrame[oldest])
+			{
+				oldest = slot;
+			}
+		}
+
+		// Any free slot beats one in use, and otherwise take the one that's gone unused longest
+		int victim = (freeSlot != -1) ? freeSlot : oldest;
+
+		ids[victim]           = id;
+		lastUsedFrame[victim] = frameNumber;
+		lastTimestamp[victim] = -1L;
+		return victim;
+	}
+}
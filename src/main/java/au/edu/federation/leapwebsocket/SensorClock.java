@@ -0,0 +1,75 @@
+/***
+ *
+ * File       : SensorClock.java
+ * Description: A SensorClock relates the Leap's frame timestamps to System.nanoTime(), so we can tell how long ago (by our
+ *              clock) the Leap captured a frame.
+ * Author     : Al Lansley
+ * Date       : 17/10/2026
+ * Version    : 0.1
+ *
+ */
+
+package au.edu.federation.leapwebsocket;
+
+import java.util.concurrent.TimeUnit;
+
+// The Leap stamps each frame with the time it was captured, in microseconds by its own clock - which has nothing to do
+// with ours. What we can see is the difference between a frame's timestamp and when it arrived, which is the (fixed)
+// difference between the clocks plus however long that frame took to get to us. The smallest difference seen is taken
+// to be the clocks' difference plus the quickest trip, and every frame's age is measured from there - so ages don't
+// include the quickest trip's transport delay (which there's no way to see without a shared clock), but do show up
+// everything which made a frame take longer than that: queueing in the Leap service, the socket, our own threads etc.
+//
+// The clocks drift apart over time, so rather than keep the smallest difference ever seen we only keep it over the last
+// WINDOW_NANOS or two.
+//
+// Only the thread which receives the frames should call observe(), but ageNanos() can be called from anywhere.
+//
+// Example usage:
+//
+//		sensorClock.observe( wsf.getTimestamp(), arrivalNanos );             // For every frame as it arrives
+//		...
+//		long age = sensorClock.ageNanos( wsf.getTimestamp(), System.nanoTime() ); // Time since it was captured
+public class SensorClock
+{
+	// How long each smallest difference is kept for
+	public static final long WINDOW_NANOS = TimeUnit.SECONDS.toNanos(10);
+
+	// Smallest differences (in nanoseconds) between arrival time and timestamp in this window and the one before
+	private long windowStartNanos;
+	private long windowMinimum   = Long.MAX_VALUE;
+	private long previousMinimum = Long.MAX_VALUE;
+
+	// What to add to a timestamp (in nanoseconds) to get the System.nanoTime() the frame would have arrived at on its
+	// quickest trip - Long.MIN_VALUE until we've seen a frame
+	private volatile long offsetNanos = Long.MIN_VALUE;
+
+	// Method to take account of a frame with the given timestamp (in microseconds) which arrived at the given System.nanoTime()
+	public void observe(long timestampMicros, long arrivalNanos)
+	{
+		long difference = arrivalNanos - timestampMicros * 1000L;
+
+		if (arrivalNanos - windowStartNanos >= WINDOW_NANOS || offsetNanos == Long.MIN_VALUE)
+		{
+			previousMinimum  = windowMinimum;
+			windowMinimum    = Long.MAX_VALUE;
+			windowStartNanos = arrivalNanos;
+		}
+		if (difference < windowMinimum)
+		{
+			windowMinimum = difference;
+		}
+
+		offsetNanos = Math.min(windowMinimum, previousMinimum);
+	}
+
+	// Method to get how long before the given System.nanoTime() a frame with the given timestamp (in microseconds) was
+	// captured, over and above the quickest trip. Returns -1 if we haven't seen a frame yet.
+	public long ageNanos(long timestampMicros, long nowNanos)
+	{
+		long offset = offsetNanos;
+		return (offset == Long.MIN_VALUE) ? -1L : nowNanos - timestampMicros * 1000L - offset;
+	}
+
+	public boolean hasObserved() { return offsetNanos != Long.MIN_VALUE; }
+}
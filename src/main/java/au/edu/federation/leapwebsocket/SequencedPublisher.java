@@ -0,0 +1,167 @@
+/***
+ *
+ * File       : SequencedPublisher.java
+ * Description: A SequencedPublisher hands the latest of something (e.g. a frame) from one writer thread to any number of
+ *              reader threads, numbering each one so readers can tell whether it's new to them.
+ * Author     : Al Lansley
+ * Date       : 17/10/2026
+ * Version    : 0.1
+ *
+ */
+
+package au.edu.federation.leapwebsocket;
+
+import java.util.concurrent.TimeUnit;
+
+// A field written on one thread (e.g. the WebSocket or Leap listener thread) and read on others has no guarantee that
+// the readers ever see the write, or see everything the writer did before it. This class publishes each value through
+// a single volatile reference to an immutable Sequenced pair of the value and its sequence number, so:
+//
+// - a reader always sees a value along with the sequence number it was published with, and everything the writer did
+//   to the value before publishing it,
+// - getting the latest value is a single read - wait-free, and never held up by the writer, and
+// - sequence numbers start at 1 and go up by one per publish, so a reader can tell whether there's anything newer than
+//   what it last saw (and how many values it missed) without comparing the values themselves.
+//
+// Readers wanting the next newer value can either check with pollNewer(), or wait for one with awaitNewer(), which spins
+// for a short while and then blocks until the writer publishes. The writer only ever takes a lock when a reader is
+// actually blocked waiting, so publishing never waits on readers.
+//
+// Only the latest value is kept - a reader which is slower than the writer skips the values published in between.
+// Published values must not be changed afterwards (or must be safe to read while they are).
+//
+// Note: There must only be one writer thread. Any number of threads can read.
+//
+// Example usage:
+//
+//     SequencedPublisher<Frame> frames = new SequencedPublisher<Frame>();
+//     frames.publish(frame);                                          // Writer thread
+//     ...
+//     Frame latest = frames.latest().getValue();                      // Any thread - null until something's published
+//     ...
+//     long seen = 0L;
+//     while (running)
+//     {
+//         Sequenced<Frame> next = frames.awaitNewer(seen, 5000000L);  // Wait up to 5ms for something newer
+//         if (next != null) { seen = next.getSequence(); ...use next.getValue()... }
+//     }
+public class SequencedPublisher<T>
+{
+	// How long awaitNewer spins before blocking. Frames arrive every 9ms or so, so a short spin only saves the cost of
+	// waking up when the next one is just about to turn up.
+	public static final long DEFAULT_SPIN_NANOS = TimeUnit.MICROSECONDS.toNanos(50);
+
+	private volatile Sequenced<T> latest = new Sequenced<T>(null, 0L);
+
+	// Readers blocked in awaitNewer wait on this lock. The writer only takes it to wake them, if there are any.
+	private final Object waitLock = new Object();
+	private volatile int waiters;
+
+	private final long spinNanos;
+
+	// Default constructor
+	public SequencedPublisher()
+	{
+		this(DEFAULT_SPIN_NANOS);
+	}
+
+	// Constructor specifying how long awaitNewer spins for before blocking (0 to block straight away)
+	public SequencedPublisher(long spinNanos)
+	{
+		this.spinNanos = spinNanos;
+	}
+
+	// ----- Writer -----
+
+	// Method to publish a new value, returning its sequence number. Must only be called from the one writer thread.
+	public long publish(T value)
+	{
+		long sequence = latest.sequence + 1L;
+		latest = new Sequenced<T>(value, sequence);
+
+		// The read of waiters comes after the write of latest, and a waiting reader writes waiters before reading latest,
+		// so either it sees our value or we see it waiting
+		if (waiters > 0)
+		{
+			synchronized (waitLock)
+			{
+				waitLock.notifyAll();
+			}
+		}
+		return sequence;
+	}
+
+	// ----- Readers -----
+
+	// Method to get the latest value and its sequence number. Before anything has been published this is a null value
+	// with a sequence number of 0.
+	public Sequenced<T> latest() { return latest; }
+
+	// Method to get the sequence number of the latest value (0 if nothing's been published)
+	public long getSequence() { return latest.sequence; }
+
+	// Method to get the latest value if it's newer than the given sequence number, or null if it isn't
+	public Sequenced<T> pollNewer(long sequence)
+	{
+		Sequenced<T> current = latest;
+		return (current.sequence > sequence) ? current : null;
+	}
+
+	// Method to wait for a value newer than the given sequence number, returning the latest one (which may be several
+	// on from the one asked for) or null if nothing newer turns up within the timeout
+	public Sequenced<T> awaitNewer(long sequence, long timeoutNanos) throws InterruptedException
+	{
+		long start = System.nanoTime();
+
+		// Spin for a little while first...
+		Sequenced<T> current = latest;
+		long spinUntil = Math.min(spinNanos, timeoutNanos);
+		while (current.sequence <= sequence && System.nanoTime() - start < spinUntil)
+		{
+			current = latest;
+		}
+		if (current.sequence > sequence)
+		{
+			return current;
+		}
+
+		// ...and then block until the writer wakes us
+		synchronized (waitLock)
+		{
+			++waiters;
+			try
+			{
+				while ( (current = latest).sequence <= sequence )
+				{
+					long remaining = timeoutNanos - (System.nanoTime() - start);
+					if (remaining <= 0L)
+					{
+						return null;
+					}
+					TimeUnit.NANOSECONDS.timedWait(waitLock, remaining);
+				}
+				return current;
+			}
+			finally
+			{
+				--waiters;
+			}
+		}
+	}
+
+	// A published value along with its sequence number
+	public static final class Sequenced<T>
+	{
+		final T    value;
+		final long sequence;
+
+		Sequenced(T value, long sequence)
+		{
+			this.value    = value;
+			this.sequence = sequence;
+		}
+
+		public T getValue()       { return value;    }
+		public long getSequence() { return sequence; }
+	}
+}
@@ -0,0 +1,216 @@
+/***
+ *
+ * File       : SyntheticFrameGenerator.java
+ * Description: Generates plausible, repeatable WebSocketFrames without needing a Leap sensor.
+ * Author     : Al Lansley
+ * Date       : 17/10/2026
+ * Version    : 0.1
+ *
+ */
+
+package au.edu.federation.leapwebsocket;
+
+import com.google.gson.Gson;
+
+import java.util.List;
+import java.util.Random;
+
+// Class used to make up a stream of WebSocketFrames that look like the real thing - one or two hands drifting around
+// above the sensor with their fingers slowly curling and uncurling. The motion is driven by a seeded random number
+// generator so two generators with the same seed produce exactly the same frames, which is what we want for
+// benchmarks and for testing the recorder / replayer when there's no sensor plugged in.
+//
+// Example usage:
+//
+//     SyntheticFrameGenerator generator = new SyntheticFrameGenerator(42L, 2);
+//     WebSocketFrame wsf = generator.next();         // A brand new frame each call, or...
+//     generator.nextInto(pooledFrame);               // ...fill in an existing one, re-using its hands and pointables
+//     String json = generator.toJson(wsf);           // The same frame as the Leap would have sent it
+public class SyntheticFrameGenerator
+{
+	// The frame rate we pretend to be running at, which sets the timestamp gap between frames
+	public static final double DEFAULT_FRAME_RATE = 110.0;
+
+	// Finger lengths in mm, thumb first, roughly those of an adult hand
+	private static final float[] FINGER_LENGTHS = { 48.0f, 55.0f, 62.0f, 58.0f, 45.0f };
+
+	// Sideways offset of each finger base from the palm centre in mm
+	private static final float[] FINGER_OFFSETS = { -42.0f, -22.0f, -2.0f, 17.0f, 34.0f };
+
+	private final Random random;
+	private final int numHands;
+	private final double frameRate;
+
+	// Per-hand motion parameters, picked once so that each hand follows its own path
+	private final float[] phase;
+	private final float[] speed;
+	private final float[] curlSpeed;
+
+	private final Gson gson = new Gson();
+
+	private long frameId;
+	private long timestamp;
+
+	// Constructor for a generator running at the default frame rate
+	public SyntheticFrameGenerator(long seed, int numHands)
+	{
+		this(seed, numHands, DEFAULT_FRAME_RATE);
+	}
+
+	// Constructor
+	public SyntheticFrameGenerator(long seed, int numHands, double frameRate)
+	{
+		if (numHands < 0 || numHands > 2)
+		{
+			throw new IllegalArgumentException("The Leap tracks at most two hands - cannot generate " + numHands);
+		}
+		if ( !(frameRate > 0.0) )
+		{
+			throw new IllegalArgumentException("Frame rate must be positive: " + frameRate);
+		}
+
+		this.random    = new Random(seed);
+		this.numHands  = numHands;
+		this.frameRate = frameRate;
+
+		phase     = new float[numHands];
+		speed     = new float[numHands];
+		curlSpeed = new float[numHands];
+		for (int h = 0; h < numHands; ++h)
+		{
+			phase[h]     = random.nextFloat() * 6.2831855f;
+			speed[h]     = 0.5f + random.nextFloat();
+			curlSpeed[h] = 1.0f + random.nextFloat() * 2.0f;
+		}
+
+		frameId   = 1000L;
+		timestamp = 10000000L;
+	}
+
+	// Method to generate and return a brand new frame
+	public WebSocketFrame next()
+	{
+		WebSocketFrame wsf = new WebSocketFrame();
+		nextInto(wsf);
+		return wsf;
+	}
+
+	// Method to fill in an existing frame with the next generated frame. Any hands and pointables already on the frame
+	// are reset and re-used, so filling a pooled frame allocates nothing after the first few frames.
+	public void nextInto(WebSocketFrame wsf)
+	{
+		wsf.reset();
+
+		// Time in seconds since the generator started
+		float time = (float)( (timestamp - 10000000L) / 1000000.0 );
+
+		wsf.setId(frameId);
+		wsf.setTimestamp(timestamp);
+		wsf.setCurrentFrameRate( frameRate + random.nextGaussian() * 0.5 );
+		wsf.setS( 1.0f );
+
+		float[][] r = wsf.getR();
+		r[0][0] = 1.0f; r[1][1] = 1.0f; r[2][2] = 1.0f;
+
+		WebSocketInteractionBox box = wsf.getInteractionBox();
+		set(box.getCenter(), 0.0f, 200.0f, 0.0f);
+		set(box.getSize(), 235.0f, 235.0f, 147.0f);
+
+		List<WebSocketHand> hands           = wsf.hands();
+		List<WebSocketPointable> pointables = wsf.pointables();
+		for (int h = 0; h < numHands; ++h)
+		{
+			// Hands sit either side of the sensor and trace out a slow figure-of-eight
+			float t    = time * speed[h] + phase[h];
+			float side = (h == 0) ? -1.0f : 1.0f;
+			float palmX = side * 60.0f + 40.0f * (float)Math.sin(t);
+			float palmY = 180.0f + 30.0f * (float)Math.sin(2.0f * t);
+			float palmZ = 20.0f * (float)Math.cos(t);
+
+			float velX = 40.0f * speed[h] * (float)Math.cos(t);
+			float velY = 60.0f * speed[h] * (float)Math.cos(2.0f * t);
+			float velZ = -20.0f * speed[h] * (float)Math.sin(t);
+
+			// How far the fingers are curled, from 0 (flat) to 1 (a loose fist)
+			float curl = 0.5f + 0.5f * (float)Math.sin(time * curlSpeed[h] + phase[h]);
+
+			WebSocketHand wsh = wsf.obtainHand();
+			int handId = 10 + h;
+			wsh.setId(handId);
+			set( wsh.getPalmDirection(), 0.0f, 0.0f, -1.0f );
+			set( wsh.getPalmNormal(), 0.0f, -1.0f, 0.0f );
+			set( wsh.getPalmPosition(), palmX, palmY, palmZ );
+			set( wsh.getPalmVelocity(), velX, velY, velZ );
+			set( wsh.getSphereCenter(), palmX, palmY - 40.0f, palmZ - 30.0f );
+			set( wsh.getStabilizedPalmPosition(), palmX + jitter(), palmY + jitter(), palmZ + jitter() );
+			wsh.setSphereRadius( 120.0f - 60.0f * curl );
+			wsh.setTimeVisible( time );
+			float[][] hr = wsh.getR();
+			hr[0][0] = 1.0f; hr[1][1] = 1.0f; hr[2][2] = 1.0f;
+			hands.add(wsh);
+
+			for (int f = 0; f < 5; ++f)
+			{
+				// Fingers point forwards and bend downwards as they curl - the thumb points inwards a little
+				float dirX = (f == 0) ? side * -0.5f : 0.0f;
+				float dirY = -curl * 0.8f;
+				float dirZ = -1.0f;
+				float inverseLength = 1.0f / (float)Math.sqrt(dirX * dirX + dirY * dirY + dirZ * dirZ);
+				dirX *= inverseLength;
+				dirY *= inverseLength;
+				dirZ *= inverseLength;
+
+				float length = FINGER_LENGTHS[f];
+				float baseX  = palmX + side * -FINGER_OFFSETS[f];
+				float baseZ  = palmZ - ( (f == 0) ? 20.0f : 45.0f );
+
+				WebSocketPointable wsp = wsf.obtainPointable();
+				wsp.setId(handId * 10 + f);
+				wsp.setHandId(handId);
+				wsp.setLength(length);
+				wsp.setTimeVisible(time);
+				wsp.setTool(false);
+				wsp.setTouchDistance( 0.3f + 0.4f * curl );
+				wsp.setTouchZone("none");
+				set( wsp.getDirection(), dirX, dirY, dirZ );
+				set( wsp.getTipPosition(), baseX + dirX * length, palmY + dirY * length, baseZ + dirZ * length );
+				set( wsp.getStabilizedTipPosition(), baseX + dirX * length + jitter(), palmY + dirY * length + jitter(), baseZ + dirZ * length + jitter() );
+				set( wsp.getTipVelocity(), velX, velY, velZ );
+				pointables.add(wsp);
+			}
+		}
+
+		++frameId;
+		timestamp += (long)(1000000.0 / frameRate) + random.nextInt(200) - 100;
+	}
+
+	// Method to return a frame as JSON, laid out the same way as the Leap's WebSocket server sends it
+	public String toJson(WebSocketFrame wsf)
+	{
+		return gson.toJson(wsf);
+	}
+
+	// Method to return the JSON for the next generated frame
+	public String nextJson()
+	{
+		return toJson( next() );
+	}
+
+	// ----- Getters -----
+
+	public int getNumHands()        { return numHands;  }
+	public double getFrameRate()    { return frameRate; }
+	public long getNextTimestamp()  { return timestamp; }
+
+	// ----- Helpers -----
+
+	// A little sensor noise (up to a quarter of a millimetre either way)
+	private float jitter() { return (random.nextFloat() - 0.5f) * 0.5f; }
+
+	private static void set(float[] array, float x, float y, float z)
+	{
+		array[0] = x;
+		array[1] = y;
+		array[2] = z;
+	}
+}
@@ -18,6 +18,7 @@ import com.leapmotion.leap.Vector;
 
 import java.io.Serializable;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 // Class used to store Leap frame data as gathered from the web socket stream
@@ -41,6 +42,18 @@ public class WebSocketFrame implements Serializable
 	private float[] t;                               // Translation coordinates
 	private long timestamp;                          // The frame capture time in microseconds elapsed since the Leap started
 	
+	// ----- Pooling support -----
+	// Note: These are all transient so they're neither serialized nor picked up by Gson.
+	
+	transient WebSocketFramePool pool;               // The pool this frame came from, or null if it was created directly
+	transient volatile int refCount;                 // Number of outstanding references to a pooled frame
+	transient boolean released;                      // Only ever set when the pool is in debug mode - see checkNotReleased()
+	
+	// Children which have been reset and are waiting to be re-used the next time this frame is filled in
+	private transient List<WebSocketHand>      spareHands;
+	private transient List<WebSocketPointable> sparePointables;
+	private transient List<WebSocketGesture>   spareGestures;
+	
 	// Standard constructor for a WebSocketFrame that gets populated from the inflated JSON string
 	public WebSocketFrame()
 	{
@@ -200,9 +213,9 @@ public class WebSocketFrame implements Serializable
 	public double getCurrentFrameRate()                { return currentFrameRate;               }
 	public WebSocketInteractionBox getInteractionBox() { return interactionBox;                 }
 	
-	public List<WebSocketHand> hands()                 { return hands;                          }
-	public List<WebSocketPointable> pointables()       { return pointables;                     }
-	public List<WebSocketGesture> gestures()           { return gestures;                       }	
+	public List<WebSocketHand> hands()                 { checkNotReleased(); return hands;      }
+	public List<WebSocketPointable> pointables()       { checkNotReleased(); return pointables; }
+	public List<WebSocketGesture> gestures()           { checkNotReleased(); return gestures;   }	
 		
 	// TODO: r is a 3x3 matrix containing some overall rotation settings (of the frame?) - investigate more.
 	public float[][] getR()                            { return r;                              }
@@ -215,6 +228,193 @@ public class WebSocketFrame implements Serializable
 	public Vector getTVector()                         { return new Vector( t[0], t[1], t[2] ); }
 	
 	public long getTimestamp()                         { return timestamp;                      }
+
+	// ----- Setters -----
+	// Note: These are used when rebuilding a WebSocketFrame from a recording rather than inflating it from JSON.
+
+	public void setId(long id)                                          { this.id = id;                             }
+	public void setHands(List<WebSocketHand> hands)                     { this.hands = hands;                       }
+	public void setPointables(List<WebSocketPointable> pointables)      { this.pointables = pointables;             }
+	public void setGestures(List<WebSocketGesture> gestures)            { this.gestures = gestures;                 }
+	public void setCurrentFrameRate(double currentFrameRate)            { this.currentFrameRate = currentFrameRate; }
+	public void setInteractionBox(WebSocketInteractionBox interactionBox) { this.interactionBox = interactionBox;    }
+	public void setR(float[][] r)                                       { this.r = r;                               }
+	public void setS(float s)                                           { this.s = s;                               }
+	public void setT(float[] t)                                         { this.t = t;                               }
+	public void setTimestamp(long timestamp)                            { this.timestamp = timestamp;               }
+
+	// ----- Re-use -----
+	
+	// Method to put this frame back into the state it's in straight after the WebSocketFrame() constructor, so that it
+	// can be filled in again. Hands, pointables and gestures are reset and kept aside to be handed back out by
+	// obtainHand() etc. and any existing arrays are zeroed rather than replaced, so re-filling a frame with a similar
+	// number of hands and fingers allocates nothing.
+	public void reset()
+	{
+		id               = -1;
+		currentFrameRate = 0.0;
+		s                = 0.0f;
+		timestamp        = 0L;
+		r                = zeroed(r);
+		t                = zeroed(t, 3);
+		
+		if (interactionBox == null) { interactionBox = new WebSocketInteractionBox(); }
+		else                        { interactionBox.reset();                         }
+		
+		if (spareHands == null)
+		{
+			spareHands      = new ArrayList<WebSocketHand>();
+			sparePointables = new ArrayList<WebSocketPointable>();
+			spareGestures   = new ArrayList<WebSocketGesture>();
+		}
+		
+		if (hands == null) { hands = new ArrayList<WebSocketHand>(); }
+		for (int i = 0; i < hands.size(); ++i)
+		{
+			WebSocketHand wsh = hands.get(i);
+			if (wsh != null) { wsh.reset(); spareHands.add(wsh); }
+		}
+		hands.clear();
+		
+		if (pointables == null) { pointables = new ArrayList<WebSocketPointable>(); }
+		for (int i = 0; i < pointables.size(); ++i)
+		{
+			WebSocketPointable wsp = pointables.get(i);
+			if (wsp != null) { wsp.reset(); sparePointables.add(wsp); }
+		}
+		pointables.clear();
+		
+		if (gestures == null) { gestures = new ArrayList<WebSocketGesture>(); }
+		for (int i = 0; i < gestures.size(); ++i)
+		{
+			WebSocketGesture wsg = gestures.get(i);
+			if (wsg != null) { wsg.reset(); spareGestures.add(wsg); }
+		}
+		gestures.clear();
+	}
+	
+	// Methods to get a reset child to fill in, re-using one from a previous fill of this frame if we have one.
+	// Note: The child is NOT added to the frame - that's up to the caller.
+	public WebSocketHand obtainHand()           { return (spareHands      == null || spareHands.isEmpty())      ? new WebSocketHand()      : spareHands.remove( spareHands.size() - 1 );           }
+	public WebSocketPointable obtainPointable() { return (sparePointables == null || sparePointables.isEmpty()) ? new WebSocketPointable() : sparePointables.remove( sparePointables.size() - 1 ); }
+	public WebSocketGesture obtainGesture()     { return (spareGestures   == null || spareGestures.isEmpty())   ? new WebSocketGesture()   : spareGestures.remove( spareGestures.size() - 1 );     }
+	
+	// Method to make this frame a deep copy of another one, re-using this frame's existing children and arrays
+	public void copyFrom(WebSocketFrame other)
+	{
+		reset();
+		
+		id               = other.id;
+		currentFrameRate = other.currentFrameRate;
+		s                = other.s;
+		timestamp        = other.timestamp;
+		r                = copy(other.r, r);
+		t                = copy(other.t, t);
+		
+		if (other.interactionBox == null) { interactionBox = null;                         }
+		else                              { interactionBox.copyFrom(other.interactionBox); }
+		
+		if (other.hands == null) { hands = null; }
+		else
+		{
+			for (WebSocketHand wsh : other.hands)
+			{
+				hands.add( wsh == null ? null : obtainHand().copyFrom(wsh) );
+			}
+		}
+		
+		if (other.pointables == null) { pointables = null; }
+		else
+		{
+			for (WebSocketPointable wsp : other.pointables)
+			{
+				pointables.add( wsp == null ? null : obtainPointable().copyFrom(wsp) );
+			}
+		}
+		
+		if (other.gestures == null) { gestures = null; }
+		else
+		{
+			for (WebSocketGesture wsg : other.gestures)
+			{
+				gestures.add( wsg == null ? null : obtainGesture().copyFrom(wsg) );
+			}
+		}
+	}
+	
+	// Methods to hold and give up a reference to a pooled frame. These do nothing for frames that aren't from a
+	// WebSocketFramePool, so code which might be handed either kind can always call them.
+	public void retain()  { if (pool != null) { pool.retain(this);  } }
+	public void release() { if (pool != null) { pool.release(this); } }
+	
+	// Method to take a reference to a pooled frame only if it hasn't been released back to its pool - see
+	// WebSocketFramePool.tryRetain. Always succeeds for frames that aren't from a pool.
+	public boolean tryRetain() { return (pool == null) || pool.tryRetain(this); }
+	
+	// Method to catch use of a frame after it's been released back to its pool (only active in pool debug mode)
+	void checkNotReleased()
+	{
+		if (released)
+		{
+			throw new IllegalStateException("WebSocketFrame used after being released back to its pool.");
+		}
+	}
+	
+	// Method used by the pool in debug mode to check nothing has touched a released frame
+	boolean isPristine()
+	{
+		if (s != 0.0f || timestamp != 0L || currentFrameRate != 0.0 || !isZero(t)) { return false; }
+		if (r != null) { for (float[] row : r) { if ( !isZero(row) ) { return false; } } }
+		
+		return (hands == null || hands.isEmpty()) && (pointables == null || pointables.isEmpty()) && (gestures == null || gestures.isEmpty());
+	}
+	
+	private static boolean isZero(float[] v)
+	{
+		if (v != null) { for (float f : v) { if (f != 0.0f) { return false; } } }
+		return true;
+	}
+	
+	// ----- Array helpers for re-use -----
+	
+	// Method to return the given array zeroed if it's the expected size, or a new zeroed array if it isn't
+	static float[] zeroed(float[] v, int size)
+	{
+		if (v == null || v.length != size) { return new float[size]; }
+		Arrays.fill(v, 0.0f);
+		return v;
+	}
+	
+	// Method to return the given matrix zeroed if it's 3x3, or a new zeroed 3x3 matrix if it isn't
+	static float[][] zeroed(float[][] m)
+	{
+		if (m == null || m.length != 3) { return new float[3][3]; }
+		for (int row = 0; row < 3; ++row)
+		{
+			m[row] = zeroed(m[row], 3);
+		}
+		return m;
+	}
+	
+	// Method to copy the source array into the destination if it's the same size, or into a new array if not
+	static float[] copy(float[] src, float[] dst)
+	{
+		if (src == null) { return null; }
+		if (dst == null || dst.length != src.length) { dst = new float[src.length]; }
+		System.arraycopy(src, 0, dst, 0, src.length);
+		return dst;
+	}
+	
+	static float[][] copy(float[][] src, float[][] dst)
+	{
+		if (src == null) { return null; }
+		if (dst == null || dst.length != src.length) { dst = new float[src.length][]; }
+		for (int row = 0; row < src.length; ++row)
+		{
+			dst[row] = copy(src[row], dst[row]);
+		}
+		return dst;
+	}
 	
 	// ----- Utility methods -----
 	
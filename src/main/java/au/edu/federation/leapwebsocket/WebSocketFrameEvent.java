@@ -0,0 +1,79 @@
+/***
+ *
+ * File       : WebSocketFrameEvent.java
+ * Description: A WebSocketFrameEvent is one slot of a LeapWebSocket's FrameBus - a message from the Leap's WebSocket, and the
+ *              WebSocketFrame it was parsed into.
+ * Author     : Al Lansley
+ * Date       : 17/10/2026
+ * Version    : 0.1
+ *
+ */
+
+package au.edu.federation.leapwebsocket;
+
+import java.nio.ByteBuffer;
+
+// The socket thread only stores the message it received (either the JSON string, or a copy of the bytes of a binary
+// message) along with when it arrived, and the LeapWebSocket's parser stage fills in the frame. Consumers which depend
+// on the parser stage can use the frame for as long as they're handling the event - to keep it any longer, call retain()
+// on it (and release() when done), as the event gives up its reference when its slot is next re-used.
+public class WebSocketFrameEvent
+{
+	private String jsonString;
+	private ByteBuffer jsonBytes;
+	private boolean binary;
+	private long arrivalNanos;
+
+	// The parsed frame, which this event holds a reference to
+	private WebSocketFrame frame;
+
+	// Method to store a text message, giving up the frame parsed from the last message in this slot
+	void setMessage(String jsonString, long arrivalNanos)
+	{
+		setFrame(null);
+		this.jsonString   = jsonString;
+		this.binary       = false;
+		this.arrivalNanos = arrivalNanos;
+	}
+
+	// Method to store a copy of a binary message, as the socket re-uses its buffer once we return. Our buffer is kept and
+	// only grows when a message doesn't fit.
+	void setMessage(ByteBuffer source, long arrivalNanos)
+	{
+		setFrame(null);
+		if (jsonBytes == null || jsonBytes.capacity() < source.remaining())
+		{
+			jsonBytes = ByteBuffer.allocate( Math.max(source.remaining(), 4096) );
+		}
+		jsonBytes.clear();
+		jsonBytes.put( source.duplicate() );
+		jsonBytes.flip();
+
+		this.jsonString   = null;
+		this.binary       = true;
+		this.arrivalNanos = arrivalNanos;
+	}
+
+	// Method to set the parsed frame, taking over the caller's reference to it and releasing the one we had
+	void setFrame(WebSocketFrame wsf)
+	{
+		if (frame != null)
+		{
+			frame.release();
+		}
+		frame = wsf;
+	}
+
+	// ----- Getters -----
+
+	public boolean isBinary()        { return binary;       }
+	public String getJsonString()    { return jsonString;   } // Null for binary messages
+	public long getArrivalNanos()    { return arrivalNanos; } // System.nanoTime() when the message arrived
+	public WebSocketFrame getFrame() { return frame;        } // Null until the parser stage has been
+
+	// The bytes of a binary message (null for text messages), positioned at the start of the message each time
+	public ByteBuffer getJsonBytes()
+	{
+		return binary ? jsonBytes.duplicate() : null;
+	}
+}
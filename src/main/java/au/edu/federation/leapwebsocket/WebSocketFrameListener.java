@@ -0,0 +1,20 @@
+/***
+ *
+ * File       : WebSocketFrameListener.java
+ * Description: A WebSocketFrameListener is told about each new WebSocketFrame as it arrives, whether from a live LeapWebSocket
+ *              or from a recording being replayed.
+ * Author     : Al Lansley
+ * Date       : 17/10/2026
+ * Version    : 0.1
+ *
+ */
+
+package au.edu.federation.leapwebsocket;
+
+// Listeners are called on the thread which produced the frame (the frame stage of a LeapWebSocket's FrameBus, or the
+// replay thread for a LeapDataReplayer), so they should return quickly. The frame may come from a WebSocketFramePool and
+// be recycled once a newer frame arrives - call retain() on it if you need to hold on to it, and release() when done.
+public interface WebSocketFrameListener
+{
+	void onWebSocketFrame(WebSocketFrame wsf);
+}
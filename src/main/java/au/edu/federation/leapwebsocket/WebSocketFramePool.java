@@ -0,0 +1,186 @@
+/***
+ *
+ * File       : WebSocketFramePool.java
+ * Description: A WebSocketFramePool hands out recycled WebSocketFrames so that live parsing and replay don't have to create a new
+ *              frame (plus all of its hands, pointables, gestures and arrays) for every single frame.
+ * Author     : Al Lansley
+ * Date       : 17/10/2026
+ * Version    : 0.1
+ *
+ */
+
+package au.edu.federation.leapwebsocket;
+
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Frames are reference counted. acquire() hands out a reset frame with a count of one, anything else which wants to
+// hold on to it calls retain(), and everybody calls release() when they're done. When the count drops to zero the
+// frame is reset and put back in the pool (as long as the pool isn't already full - extra frames are just left for
+// the garbage collector). Frames remember which pool they came from, so WebSocketFrame.retain()/release() can be used
+// without needing a reference to the pool.
+//
+// Because a released frame is refilled with different data the next time it's acquired, holding on to a frame after
+// releasing it is a bug which is very hard to spot - the data just silently changes underneath you. In debug mode
+// the pool tries to catch these:
+//
+//		- releasing a frame more times than it was acquired/retained throws an IllegalStateException,
+//		- calling hands(), pointables() or gestures() on a released frame throws an IllegalStateException, and
+//		- a released frame is poisoned, and if the poison has been disturbed when it's next acquired (i.e. something
+//		  wrote to it after it was released) then acquire() throws an IllegalStateException.
+//
+// Example usage:
+//
+//		WebSocketFramePool pool = new WebSocketFramePool(16);
+//		WebSocketFrame wsf = pool.acquire();
+//		parser.parseInto(jsonString, wsf);
+//		...
+//		wsf.release(); // or pool.release(wsf)
+//
+public class WebSocketFramePool
+{
+	// The id a released frame is given in debug mode so we can tell if it's been written to since
+	private static final long POISON_ID = Long.MIN_VALUE + 0x1EAF;
+
+	private static final AtomicIntegerFieldUpdater<WebSocketFrame> REF_COUNT = AtomicIntegerFieldUpdater.newUpdater(WebSocketFrame.class, "refCount");
+
+	// Free frames - guarded by synchronizing on this pool
+	private final WebSocketFrame[] free;
+	private int freeCount;
+
+	private final boolean debug;
+
+	// Counters
+	private final AtomicLong framesCreated  = new AtomicLong();
+	private final AtomicLong framesAcquired = new AtomicLong();
+	private final AtomicLong framesRecycled = new AtomicLong();
+
+	// Constructor - maxPooled is the largest number of free frames the pool will hold on to
+	public WebSocketFramePool(int maxPooled)
+	{
+		this(maxPooled, false);
+	}
+
+	// Constructor specifying whether to run in debug mode, which detects use of frames after they've been released
+	public WebSocketFramePool(int maxPooled, boolean debug)
+	{
+		free       = new WebSocketFrame[maxPooled];
+		this.debug = debug;
+	}
+
+	// Method to get a reset frame with a reference count of one
+	public WebSocketFrame acquire()
+	{
+		WebSocketFrame wsf = null;
+		synchronized (this)
+		{
+			if (freeCount > 0)
+			{
+				wsf = free[--freeCount];
+				free[freeCount] = null;
+			}
+		}
+
+		if (wsf == null)
+		{
+			wsf = new WebSocketFrame();
+			wsf.pool = this;
+			framesCreated.incrementAndGet();
+		}
+		else if (debug)
+		{
+			// Check nobody has written to this frame since it was released
+			if ( wsf.getId() != POISON_ID || !wsf.isPristine() )
+			{
+				throw new IllegalStateException("WebSocketFrame was modified after being released back to its pool.");
+			}
+			wsf.released = false;
+			wsf.setId(-1);
+		}
+
+		wsf.refCount = 1;
+		framesAcquired.incrementAndGet();
+		return wsf;
+	}
+
+	// Method to take an extra reference to a frame that's already been acquired
+	public void retain(WebSocketFrame wsf)
+	{
+		int previous = REF_COUNT.getAndIncrement(wsf);
+		if (debug && previous <= 0)
+		{
+			REF_COUNT.getAndDecrement(wsf);
+			throw new IllegalStateException("Attempted to retain a WebSocketFrame which has already been released.");
+		}
+	}
+
+	// Method to take an extra reference to a frame only if it hasn't already gone back to the pool, returning whether
+	// we got one. Unlike retain() this is safe to call on a frame another thread may be releasing at the same time.
+	// Note: The frame may since have been acquired again and refilled, so check it's still the one you wanted.
+	public boolean tryRetain(WebSocketFrame wsf)
+	{
+		int count;
+		do
+		{
+			count = wsf.refCount;
+			if (count <= 0)
+			{
+				return false;
+			}
+		}
+		while ( !REF_COUNT.compareAndSet(wsf, count, count + 1) );
+		return true;
+	}
+
+	// Method to give up a reference to a frame. When the last reference is given up the frame goes back to the pool.
+	public void release(WebSocketFrame wsf)
+	{
+		int remaining = REF_COUNT.decrementAndGet(wsf);
+		if (remaining > 0)
+		{
+			return;
+		}
+
+		if (remaining < 0)
+		{
+			REF_COUNT.incrementAndGet(wsf);
+			if (debug)
+			{
+				throw new IllegalStateException("WebSocketFrame released more times than it was acquired or retained.");
+			}
+			return;
+		}
+
+		wsf.reset();
+		if (debug)
+		{
+			wsf.setId(POISON_ID);
+			wsf.released = true;
+		}
+
+		synchronized (this)
+		{
+			if (freeCount < free.length)
+			{
+				free[freeCount++] = wsf;
+			}
+		}
+		framesRecycled.incrementAndGet();
+	}
+
+	// ----- Getters -----
+
+	public boolean isDebug()         { return debug;                }
+	public long getFramesCreated()   { return framesCreated.get();  }
+	public long getFramesAcquired()  { return framesAcquired.get(); }
+	public long getFramesRecycled()  { return framesRecycled.get(); }
+
+	public synchronized int getFreeCount() { return freeCount; }
+
+	@Override
+	public String toString()
+	{
+		return "WebSocketFramePool [created=" + getFramesCreated() + ", acquired=" + getFramesAcquired() +
+		       ", recycled=" + getFramesRecycled() + ", free=" + getFreeCount() + ", debug=" + debug + "]";
+	}
+}
@@ -0,0 +1,93 @@
+/***
+ *
+ * File       : WebSocketFramePublisher.java
+ * Description: A SequencedPublisher of WebSocketFrames which looks after the references held on pooled frames.
+ * Author     : Al Lansley
+ * Date       : 17/10/2026
+ * Version    : 0.1
+ *
+ */
+
+package au.edu.federation.leapwebsocket;
+
+// Publishes WebSocketFrames the same way as a SequencedPublisher, but as frames may come from a WebSocketFramePool and
+// be recycled once nothing holds a reference to them:
+//
+// - publish() takes over the caller's reference to the new frame, and gives up its reference to the frame it replaces,
+//   and
+// - acquireLatest() hands out the latest frame with a reference held on it, so it can't be recycled while the reader
+//   is using it - without taking a lock. It takes a reference if the frame hasn't already gone back to its pool, then
+//   checks the frame is still the latest one. If it is, the publisher can't have released it yet; if it isn't, it lets
+//   go and tries again with the newer frame.
+//
+// The frame returned by latest() (and the other SequencedPublisher methods) has no reference held on it, so a pooled
+// frame may be recycled under the reader as soon as a newer one is published - use acquire() or acquireLatest() when
+// the reader needs to hold on to the frame.
+//
+// Example usage:
+//
+//     WebSocketFramePublisher frames = new WebSocketFramePublisher();
+//     frames.publish( pool.acquire() );                     // Writer thread, after filling the frame in
+//     ...
+//     WebSocketFrame wsf = frames.acquireLatest();          // Any thread
+//     if (wsf != null)
+//     {
+//         ...
+//         wsf.release();
+//     }
+public class WebSocketFramePublisher extends SequencedPublisher<WebSocketFrame>
+{
+	// Method to publish a new frame, taking over the caller's reference to it and releasing the frame it replaces.
+	// Must only be called from the one writer thread.
+	@Override
+	public long publish(WebSocketFrame wsf)
+	{
+		WebSocketFrame previous = latest().getValue();
+		long sequence = super.publish(wsf);
+		if (previous != null)
+		{
+			previous.release();
+		}
+		return sequence;
+	}
+
+	// Method to get the latest frame with a reference held on it, or null if nothing has been published yet. Call
+	// release() on the frame when you're done with it.
+	public WebSocketFrame acquireLatest()
+	{
+		while (true)
+		{
+			Sequenced<WebSocketFrame> current = latest();
+			if (current.getValue() == null)
+			{
+				return null;
+			}
+
+			WebSocketFrame wsf = acquire(current);
+			if (wsf != null)
+			{
+				return wsf;
+			}
+		}
+	}
+
+	// Method to take a reference to a published frame (e.g. one returned by awaitNewer), returning the frame, or null if
+	// a newer frame has been published since and this one may already have been released. Call release() on the frame
+	// when you're done with it.
+	public WebSocketFrame acquire(Sequenced<WebSocketFrame> published)
+	{
+		WebSocketFrame wsf = published.getValue();
+		if ( wsf == null || !wsf.tryRetain() )
+		{
+			return null;
+		}
+
+		// We only release a frame after it's been replaced, so if it's still the latest we've got a real reference to it
+		if (getSequence() == published.getSequence())
+		{
+			return wsf;
+		}
+		wsf.release();
+		return null;
+	}
+}
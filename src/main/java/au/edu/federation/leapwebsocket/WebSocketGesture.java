@@ -57,6 +57,45 @@ public class WebSocketGesture implements Serializable
 	public void setState(String state)                      { this.state = state;               }
 	public void setType(String type)                        { this.type = type;                 }
 
+	// ----- Re-use -----
+	
+	// Method to put this gesture back into the state it's in straight after the constructor
+	public void reset()
+	{
+		id       = -1;
+		duration = 0L;
+		state    = "";
+		type     = "";
+		
+		if (handIds == null) { handIds = new ArrayList<Integer>(); } else { handIds.clear(); }
+		if (pointableIds == null) { pointableIds = new ArrayList<Integer>(); } else { pointableIds.clear(); }
+	}
+	
+	// Method to make this gesture a copy of another, re-using this gesture's lists
+	public WebSocketGesture copyFrom(WebSocketGesture other)
+	{
+		id       = other.id;
+		duration = other.duration;
+		state    = other.state;
+		type     = other.type;
+		
+		if (other.handIds == null) { handIds = null; }
+		else
+		{
+			if (handIds == null) { handIds = new ArrayList<Integer>(); } else { handIds.clear(); }
+			handIds.addAll(other.handIds);
+		}
+		
+		if (other.pointableIds == null) { pointableIds = null; }
+		else
+		{
+			if (pointableIds == null) { pointableIds = new ArrayList<Integer>(); } else { pointableIds.clear(); }
+			pointableIds.addAll(other.pointableIds);
+		}
+		
+		return this;
+	}
+	
 	// ----- Utility methods -----
 	
 	@Override
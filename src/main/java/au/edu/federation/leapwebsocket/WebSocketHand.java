@@ -88,6 +88,42 @@ public class WebSocketHand implements Serializable
 	public void setStabilizedPalmPosition(float[] stabilizedPalmPosition) {	this.stabilizedPalmPosition = stabilizedPalmPosition; }
 	public void setTimeVisible(float timeVisible)                         { this.timeVisible = timeVisible;                       }
 	
+	// ----- Re-use -----
+	
+	// Method to put this hand back into the state it's in straight after the constructor, zeroing existing arrays in place
+	public void reset()
+	{
+		id           = -1;
+		sphereRadius = 0.0f;
+		timeVisible  = 0.0f;
+		
+		direction              = WebSocketFrame.zeroed(direction, 3);
+		palmNormal             = WebSocketFrame.zeroed(palmNormal, 3);
+		palmPosition           = WebSocketFrame.zeroed(palmPosition, 3);
+		palmVelocity           = WebSocketFrame.zeroed(palmVelocity, 3);
+		r                      = WebSocketFrame.zeroed(r);
+		sphereCenter           = WebSocketFrame.zeroed(sphereCenter, 3);
+		stabilizedPalmPosition = WebSocketFrame.zeroed(stabilizedPalmPosition, 3);
+	}
+	
+	// Method to make this hand a deep copy of another, re-using this hand's arrays where possible
+	public WebSocketHand copyFrom(WebSocketHand other)
+	{
+		id           = other.id;
+		sphereRadius = other.sphereRadius;
+		timeVisible  = other.timeVisible;
+		
+		direction              = WebSocketFrame.copy(other.direction, direction);
+		palmNormal             = WebSocketFrame.copy(other.palmNormal, palmNormal);
+		palmPosition           = WebSocketFrame.copy(other.palmPosition, palmPosition);
+		palmVelocity           = WebSocketFrame.copy(other.palmVelocity, palmVelocity);
+		r                      = WebSocketFrame.copy(other.r, r);
+		sphereCenter           = WebSocketFrame.copy(other.sphereCenter, sphereCenter);
+		stabilizedPalmPosition = WebSocketFrame.copy(other.stabilizedPalmPosition, stabilizedPalmPosition);
+		
+		return this;
+	}
+	
 	// ----- Utility methods -----
 
 	public Vector getPitchVectorRads() { return new Vector( r[0][0], r[0][1], r[0][2] ); }	
@@ -39,6 +39,20 @@ public class WebSocketInteractionBox implements Serializable
 		this.size = size;
 	}
 
+	// Method to put this interaction box back into the state it's in straight after the constructor
+	public void reset()
+	{
+		center = WebSocketFrame.zeroed(center, 3);
+		size   = WebSocketFrame.zeroed(size, 3);
+	}
+	
+	// Method to make this interaction box a copy of another, re-using this box's arrays where possible
+	public void copyFrom(WebSocketInteractionBox other)
+	{
+		center = WebSocketFrame.copy(other.center, center);
+		size   = WebSocketFrame.copy(other.size, size);
+	}
+
 	public float[] getCenter()      { return center;                                       }
 	public Vector getCenterVector() { return new Vector( center[0], center[1], center[2]); }
 	
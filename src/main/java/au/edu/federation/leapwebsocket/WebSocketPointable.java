@@ -39,6 +39,9 @@ public class WebSocketPointable implements Serializable
 	
 	public static final float RADS_TO_DEGS = 3.14159f / 180.0f;
 	
+	// Estimator used by getJointLocations, one per thread
+	private static final ThreadLocal<JointEstimator> JOINT_ESTIMATOR = ThreadLocal.withInitial( () -> new JointEstimator(1) );
+	
 	// Constructor
 	public WebSocketPointable()
 	{
@@ -99,47 +102,78 @@ public class WebSocketPointable implements Serializable
 	public void setTouchDistance(float touchDistance)                   { this.touchDistance = touchDistance;                 }
 	public void setTouchZone(String touchZone)                          { this.touchZone = touchZone;                         }
 	
+	// ----- Re-use -----
+	
+	// Method to put this pointable back into the state it's in straight after the constructor, zeroing existing arrays in place
+	public void reset()
+	{
+		handId        = 0;
+		id            = 0;
+		length        = 0.0f;
+		timeVisible   = 0.0f;
+		tool          = false;
+		touchDistance = 0.0f;
+		touchZone     = null;
+		
+		direction             = WebSocketFrame.zeroed(direction, 3);
+		stabilizedTipPosition = WebSocketFrame.zeroed(stabilizedTipPosition, 3);
+		tipPosition           = WebSocketFrame.zeroed(tipPosition, 3);
+		tipVelocity           = WebSocketFrame.zeroed(tipVelocity, 3);
+	}
+	
+	// Method to make this pointable a deep copy of another, re-using this pointable's arrays where possible
+	public WebSocketPointable copyFrom(WebSocketPointable other)
+	{
+		handId        = other.handId;
+		id            = other.id;
+		length        = other.length;
+		timeVisible   = other.timeVisible;
+		tool          = other.tool;
+		touchDistance = other.touchDistance;
+		touchZone     = other.touchZone;
+		
+		direction             = WebSocketFrame.copy(other.direction, direction);
+		stabilizedTipPosition = WebSocketFrame.copy(other.stabilizedTipPosition, stabilizedTipPosition);
+		tipPosition           = WebSocketFrame.copy(other.tipPosition, tipPosition);
+		tipVelocity           = WebSocketFrame.copy(other.tipVelocity, tipVelocity);
+		
+		return this;
+	}
+	
 	// ----- Utility methods -----
 	
 	
-	// Method to work out and return the joint locations on the finger
+	// Method to work out and return the joint locations on the finger.
 	// Note: The method returns an array of 4 Vec3f's in the following order:
 	// - the tip location (index 0),
 	// - the distal joint location (index 1),
 	// - the proximal joint location (index 2), and
 	// - the metacarpal joint location (index 3).
+	// Each joint is measured straight back along the finger from the tip (see JointEstimator.estimateFromTip). The
+	// array returned is new each time - to re-use one instead, use getJointLocations(Vec3f[]).
 	public Vec3f[] getJointLocations()
 	{
+		return getJointLocations( new Vec3f[4] );
+	}
+	
+	// Method to work out the joint locations on the finger into the first 4 elements of an array, in the same order as
+	// above, which is returned for convenience. Elements which already hold a Vec3f are set rather than replaced, so
+	// re-using an array allocates nothing.
+	public Vec3f[] getJointLocations(Vec3f[] jointLocations)
+	{
+		// The wrist joint isn't returned, so the arm direction doesn't matter
+		JointEstimator estimator = JOINT_ESTIMATOR.get();
+		estimator.setFinger(0, this, direction[0], direction[1], direction[2]);
+		estimator.estimateFromTip(1);
 		
-		
-		// Locations for the finger tip, distal joint, proximal joint and metacarpal joint
-		Vec3f[] jointLocations = new Vec3f[4];
-		
-		// Get the finger direction as a vector (from base to tip)
-		//Vector fingerDirection = new Vector(-direction[0], -direction[1], -direction[2]);
-		
-		// Tip
-		jointLocations[0] = new Vec3f(tipPosition[0], tipPosition[1], tipPosition[2]);
-		
-		// Distal Joint		
-		float distalX = tipPosition[0] - (direction[0] * (1.0f / 5.23f) * length); 
-		float distalY = tipPosition[1] - (direction[1] * (1.0f / 5.23f) * length);
-		float distalZ = tipPosition[2] - (direction[2] * (1.0f / 5.23f) * length);
-		jointLocations[1] = new Vec3f(distalX, distalY, distalZ);
-		
-		// Proximal Joint		
-		float proximalX = tipPosition[0] - (direction[0] * (1.618f / 5.23f) * length); 
-		float proximalY = tipPosition[1] - (direction[1] * (1.618f / 5.23f) * length);
-		float proximalZ = tipPosition[2] - (direction[2] * (1.618f / 5.23f) * length);
-		jointLocations[2] = new Vec3f(proximalX, proximalY, proximalZ);
-		
-		// Metacarpal Joint		
-		float metacarpalX = tipPosition[0] - (direction[0] * (2.617f / 5.23f) * length); 
-		float metacarpalY = tipPosition[1] - (direction[1] * (2.617f / 5.23f) * length);
-		float metacarpalZ = tipPosition[2] - (direction[2] * (2.617f / 5.23f) * length);
-		jointLocations[3] = new Vec3f(metacarpalX, metacarpalY, metacarpalZ);
-		
-		
+		for (int joint = 0; joint < 4; ++joint)
+		{
+			if (jointLocations[joint] == null)
+			{
+				jointLocations[joint] = new Vec3f();
+			}
+			estimator.getJoint( 0, joint, jointLocations[joint] );
+		}
 		return jointLocations;
 	}
 	
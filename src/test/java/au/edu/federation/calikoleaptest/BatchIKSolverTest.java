@@ -0,0 +1,97 @@
+package au.edu.federation.calikoleaptest;
+
+import au.edu.federation.leapdatarecorder.LeapDataWriter;
+import au.edu.federation.leapdatarecorder.RecordingFormat;
+import au.edu.federation.leapwebsocket.SyntheticFrameGenerator;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+// Tests that the BatchIKSolver solves every frame of a good recording, and fails any recording it can't read all the
+// way through rather than reporting it as solved.
+public class BatchIKSolverTest
+{
+    private static final int FRAMES = 50;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void solvesEveryFrame() throws IOException
+    {
+        File input = record("good.ldr");
+
+        BatchIKSolver solver = new BatchIKSolver();
+        solver.setFramesPerBatch(16);
+        List<BatchIKSolver.FileResult> results = solver.solveFiles( Arrays.asList(input), Arrays.asList( output("good") ) );
+
+        assertTrue( results.get(0).toString(), results.get(0).isOk() );
+        assertEquals( FRAMES, results.get(0).frames );
+    }
+
+    @Test
+    public void failsRecordingsWhichCannotBeRead() throws IOException
+    {
+        File truncated = record("truncated.ldr");
+        try ( RandomAccessFile raf = new RandomAccessFile(truncated, "rw") )
+        {
+            raf.setLength( raf.length() / 2 );
+        }
+
+        File garbage = folder.newFile("garbage.ldr");
+        Files.write( garbage.toPath(), "Not a recording at all".getBytes(StandardCharsets.US_ASCII) );
+
+        // A recording which has gone by the time it's solved fails on its own, rather than ending the whole run
+        File missing = new File( folder.getRoot(), "missing.ldr" );
+
+        List<BatchIKSolver.FileResult> results = new BatchIKSolver().solveFiles( Arrays.asList(truncated, garbage, missing),
+                                                                                 Arrays.asList( output("truncated"), output("garbage"), output("missing") ) );
+        for (BatchIKSolver.FileResult result : results)
+        {
+            assertFalse( result.toString(), result.isOk() );
+        }
+    }
+
+    @Test
+    public void failsWhenOutputCannotBeWritten() throws IOException
+    {
+        // The output is a directory, so the writer can't be opened
+        File output = folder.newFolder("output.skel");
+
+        List<BatchIKSolver.FileResult> results = new BatchIKSolver().solveFiles( Arrays.asList( record("good.ldr") ), Arrays.asList(output) );
+        assertFalse( results.get(0).toString(), results.get(0).isOk() );
+    }
+
+    // ----- Helpers -----
+
+    private File record(String name) throws IOException
+    {
+        File file = folder.newFile(name);
+        SyntheticFrameGenerator generator = new SyntheticFrameGenerator(5L, 2);
+        LeapDataWriter writer = new LeapDataWriter( file.getPath(), true, RecordingFormat.BINARY, false );
+        for (int frame = 0; frame < FRAMES; ++frame)
+        {
+            writer.writeWebSocketFrame( generator.next() );
+        }
+        writer.close();
+        return file;
+    }
+
+    private File output(String name)
+    {
+        return new File( folder.getRoot(), name + BatchIKSolver.OUTPUT_EXTENSION );
+    }
+}
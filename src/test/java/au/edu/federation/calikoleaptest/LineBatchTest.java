@@ -0,0 +1,150 @@
+package au.edu.federation.calikoleaptest;
+
+import au.edu.federation.utils.Colour4f;
+import au.edu.federation.utils.Vec3f;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+// Tests that a LineBatch packs its lines' vertices in the layout the LineBatchRenderer expects, groups them into runs
+// by width, and keeps them intact as it grows.
+public class LineBatchTest
+{
+    @Test
+    public void packsEachVertexAsPositionThenColour()
+    {
+        LineBatch batch = new LineBatch();
+        batch.addLine( new Vec3f(1.0f, 2.0f, 3.0f), new Vec3f(4.0f, 5.0f, 6.0f), new Colour4f(0.1f, 0.2f, 0.3f, 0.4f), 2.0f );
+        batch.addLine( -1.0f, -2.0f, -3.0f, -4.0f, -5.0f, -6.0f, 0.5f, 0.6f, 0.7f, 0.8f, 2.0f );
+
+        assertEquals( 2, batch.getLineCount()   );
+        assertEquals( 4, batch.getVertexCount() );
+        assertEquals( 4 * LineBatch.FLOATS_PER_VERTEX, batch.getFloatCount() );
+
+        float[] expected = {  1.0f,  2.0f,  3.0f, 0.1f, 0.2f, 0.3f, 0.4f,
+                              4.0f,  5.0f,  6.0f, 0.1f, 0.2f, 0.3f, 0.4f,
+                             -1.0f, -2.0f, -3.0f, 0.5f, 0.6f, 0.7f, 0.8f,
+                             -4.0f, -5.0f, -6.0f, 0.5f, 0.6f, 0.7f, 0.8f };
+        assertPacked( expected, batch );
+    }
+
+    @Test
+    public void startsANewRunWhenTheWidthChanges()
+    {
+        LineBatch batch = new LineBatch();
+        addLines(batch, 3, 5.0f);
+        addLines(batch, 2, 1.0f);
+        addLines(batch, 1, 5.0f);
+
+        assertEquals( 3, batch.getDrawCallCount() );
+        assertRun( batch, 0, 5.0f, 0, 6 );
+        assertRun( batch, 1, 1.0f, 6, 4 );
+        assertRun( batch, 2, 5.0f, 10, 2 );
+    }
+
+    // More runs than there's room for to begin with
+    @Test
+    public void growsItsRuns()
+    {
+        LineBatch batch = new LineBatch();
+        for (int run = 0; run < 20; ++run)
+        {
+            addLines( batch, run % 3 + 1, run + 1.0f );
+        }
+
+        assertEquals( 20, batch.getDrawCallCount() );
+        int firstVertex = 0;
+        for (int run = 0; run < 20; ++run)
+        {
+            int vertices = (run % 3 + 1) * LineBatch.VERTICES_PER_LINE;
+            assertRun( batch, run, run + 1.0f, firstVertex, vertices );
+            firstVertex += vertices;
+        }
+        assertEquals( firstVertex, batch.getVertexCount() );
+    }
+
+    // Growing the vertex data keeps every line already added
+    @Test
+    public void growsItsVertexData()
+    {
+        LineBatch batch = new LineBatch(1);
+        int lines = 1000;
+        for (int line = 0; line < lines; ++line)
+        {
+            batch.addLine( line, line + 0.25f, line + 0.5f, -line, -line - 0.25f, -line - 0.5f, line % 2, 0.5f, 0.25f, 1.0f, 3.0f );
+        }
+
+        assertEquals( lines, batch.getLineCount() );
+        assertEquals( 1, batch.getDrawCallCount() );
+        assertRun( batch, 0, 3.0f, 0, lines * LineBatch.VERTICES_PER_LINE );
+        assertTrue( batch.getVertexData().length >= batch.getFloatCount() );
+
+        float[] data = batch.getVertexData();
+        for (int line = 0; line < lines; ++line)
+        {
+            int start = line * LineBatch.VERTICES_PER_LINE * LineBatch.FLOATS_PER_VERTEX;
+            int end   = start + LineBatch.FLOATS_PER_VERTEX;
+            assertEquals( line,          data[start],     0.0f );
+            assertEquals( line + 0.5f,   data[start + 2], 0.0f );
+            assertEquals( -line - 0.25f, data[end + 1],   0.0f );
+            assertEquals( line % 2,      data[start + 3], 0.0f );
+            assertEquals( line % 2,      data[end + 3],   0.0f );
+            assertEquals( 1.0f,          data[end + 6],   0.0f );
+        }
+    }
+
+    // Once a batch has grown to fit a frame, clearing it and building the frame again doesn't need any more storage
+    @Test
+    public void clearKeepsItsStorage()
+    {
+        LineBatch batch = new LineBatch(1);
+        addLines(batch, 100, 2.0f);
+        addLines(batch, 100, 4.0f);
+        float[] data = batch.getVertexData();
+
+        batch.clear();
+        assertTrue( batch.isEmpty() );
+        assertEquals( 0, batch.getLineCount()     );
+        assertEquals( 0, batch.getDrawCallCount() );
+
+        addLines(batch, 1, 7.0f);
+        assertEquals( 1, batch.getDrawCallCount() );
+        assertRun( batch, 0, 7.0f, 0, 2 );
+
+        batch.clear();
+        addLines(batch, 100, 2.0f);
+        addLines(batch, 100, 4.0f);
+        assertSame( data, batch.getVertexData() );
+        assertEquals( 200, batch.getLineCount() );
+    }
+
+    // ----- Helpers -----
+
+    private static void addLines(LineBatch batch, int count, float width)
+    {
+        for (int line = 0; line < count; ++line)
+        {
+            batch.addLine( 0.0f, 0.0f, 0.0f, 1.0f, 1.0f, 1.0f, 1.0f, 1.0f, 1.0f, 1.0f, width );
+        }
+    }
+
+    private static void assertPacked(float[] expected, LineBatch batch)
+    {
+        assertEquals( expected.length, batch.getFloatCount() );
+        float[] data = batch.getVertexData();
+        for (int i = 0; i < expected.length; ++i)
+        {
+            assertEquals( "Float " + i, expected[i], data[i], 0.0f );
+        }
+    }
+
+    private static void assertRun(LineBatch batch, int run, float width, int firstVertex, int vertexCount)
+    {
+        assertEquals( "Run " + run + " width",        width,       batch.getRunWidth(run),       0.0f );
+        assertEquals( "Run " + run + " first vertex", firstVertex, batch.getRunFirstVertex(run)       );
+        assertEquals( "Run " + run + " vertices",     vertexCount, batch.getRunVertexCount(run)       );
+    }
+}
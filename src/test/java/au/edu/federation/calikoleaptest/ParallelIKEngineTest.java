@@ -0,0 +1,240 @@
+package au.edu.federation.calikoleaptest;
+
+import au.edu.federation.leapdatarecorder.LeapDataReader;
+import au.edu.federation.leapdatarecorder.LeapDataWriter;
+import au.edu.federation.leapdatarecorder.RecordingFormat;
+import au.edu.federation.leapwebsocket.SyntheticFrameGenerator;
+import au.edu.federation.leapwebsocket.WebSocketFrame;
+import au.edu.federation.leapwebsocket.WebSocketHand;
+import au.edu.federation.leapwebsocket.WebSocketPointable;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+// Tests that solving the fingers of recorded frames in parallel gives exactly the same joints as solving them one
+// after another - every way the ParallelIKEngine has of splitting up the work is checked against solveSerial().
+public class ParallelIKEngineTest
+{
+    private static final int FRAMES = 240;
+
+    @ClassRule
+    public static TemporaryFolder folder = new TemporaryFolder();
+
+    // The frames of a recording, and more threads than fingers in a frame so that every finger can run at once
+    private static List<WebSocketFrame> frames;
+    private static ForkJoinPool pool;
+
+    @BeforeClass
+    public static void recordFrames() throws IOException
+    {
+        frames = readBack( record() );
+        pool   = new ForkJoinPool(12);
+    }
+
+    @AfterClass
+    public static void shutDownPool()
+    {
+        pool.shutdown();
+    }
+
+    // ----- Warm-started -----
+
+    @Test
+    public void solveMatchesSerial()
+    {
+        SolvedFrame[] serial   = solveSerial(true);
+        SolvedFrame[] parallel = newOutputs();
+
+        ParallelIKEngine engine = new ParallelIKEngine( new FingerChainCache(), pool );
+        IKFrameInput[] inputs = inputs();
+        for (int frame = 0; frame < FRAMES; ++frame)
+        {
+            engine.solve( inputs[frame], parallel[frame] );
+        }
+
+        assertSameJoints(serial, parallel);
+    }
+
+    @Test
+    public void solveAllMatchesSerial()
+    {
+        SolvedFrame[] serial   = solveSerial(true);
+        SolvedFrame[] parallel = newOutputs();
+
+        new ParallelIKEngine( new FingerChainCache(), pool ).solveAll( inputs(), parallel );
+
+        assertSameJoints(serial, parallel);
+    }
+
+    // A long recording solved a piece at a time carries on from each piece to the next
+    @Test
+    public void solveAllInPiecesMatchesSerial()
+    {
+        SolvedFrame[] serial   = solveSerial(true);
+        SolvedFrame[] parallel = newOutputs();
+
+        ParallelIKEngine engine = new ParallelIKEngine( new FingerChainCache(), pool );
+        IKFrameInput[] inputs = inputs();
+        int piece = 37;
+        for (int from = 0; from < FRAMES; from += piece)
+        {
+            int count = Math.min(piece, FRAMES - from);
+            IKFrameInput[] pieceInputs  = new IKFrameInput[count];
+            SolvedFrame[]  pieceOutputs = new SolvedFrame[count];
+            System.arraycopy(inputs,   from, pieceInputs,  0, count);
+            System.arraycopy(parallel, from, pieceOutputs, 0, count);
+            engine.solveAll(pieceInputs, pieceOutputs);
+        }
+
+        assertSameJoints(serial, parallel);
+    }
+
+    // ----- Not warm-started -----
+
+    // Without warm-starting solveAll() splits the run up by frame instead, each piece with a cache of its own
+    @Test
+    public void solveAllByFrameMatchesSerial()
+    {
+        SolvedFrame[] serial   = solveSerial(false);
+        SolvedFrame[] parallel = newOutputs();
+
+        FingerChainCache cache = new FingerChainCache();
+        cache.setWarmStart(false);
+        new ParallelIKEngine(cache, pool).solveAll( inputs(), parallel );
+
+        assertSameJoints(serial, parallel);
+    }
+
+    // ----- Helpers -----
+
+    // Method to write synthetic frames to a BINARY recording. A hand leaves part way through and comes back (as a new
+    // hand, as it would from the Leap), so finger chains are dropped and handed over as well as re-used.
+    private static File record() throws IOException
+    {
+        File file = folder.newFile("hands.ldr");
+        SyntheticFrameGenerator generator = new SyntheticFrameGenerator(17L, 2);
+        LeapDataWriter writer = new LeapDataWriter( file.getPath(), false, RecordingFormat.BINARY, false );
+        for (int frame = 0; frame < FRAMES; ++frame)
+        {
+            WebSocketFrame wsf = generator.next();
+            if (frame >= 80 && frame < 120)
+            {
+                int leftId = wsf.hands().get(1).getId();
+                wsf.hands().remove(1);
+                wsf.pointables().removeIf( wsp -> wsp.getHandId() == leftId );
+            }
+            else if (frame >= 120)
+            {
+                for (WebSocketHand wsh : wsf.hands())
+                {
+                    wsh.setId( wsh.getId() + 100 );
+                }
+                for (WebSocketPointable wsp : wsf.pointables())
+                {
+                    wsp.setHandId( (int)wsp.getHandId() + 100 );
+                    wsp.setId( wsp.getId() + 1000 );
+                }
+            }
+            writer.writeWebSocketFrame(wsf);
+        }
+        writer.close();
+        return file;
+    }
+
+    private static List<WebSocketFrame> readBack(File file)
+    {
+        LeapDataReader reader = new LeapDataReader( file.getPath(), false );
+        List<WebSocketFrame> read = new ArrayList<WebSocketFrame>();
+        for (int frame = 0; frame < FRAMES; ++frame)
+        {
+            WebSocketFrame wsf = new WebSocketFrame();
+            assertTrue( reader.readWebSocketFrame(wsf) );
+            read.add(wsf);
+        }
+        reader.close();
+        return read;
+    }
+
+    private static IKFrameInput[] inputs()
+    {
+        IKFrameInput[] inputs = new IKFrameInput[FRAMES];
+        for (int frame = 0; frame < FRAMES; ++frame)
+        {
+            inputs[frame] = new IKFrameInput().set( frames.get(frame) );
+        }
+        return inputs;
+    }
+
+    private static SolvedFrame[] newOutputs()
+    {
+        SolvedFrame[] outputs = new SolvedFrame[FRAMES];
+        for (int frame = 0; frame < FRAMES; ++frame)
+        {
+            outputs[frame] = new SolvedFrame();
+        }
+        return outputs;
+    }
+
+    // Method to solve every frame one finger after another on this thread
+    private static SolvedFrame[] solveSerial(boolean warmStart)
+    {
+        FingerChainCache cache = new FingerChainCache();
+        cache.setWarmStart(warmStart);
+        ParallelIKEngine engine = new ParallelIKEngine(cache, pool);
+
+        SolvedFrame[] outputs = newOutputs();
+        IKFrameInput[] inputs = inputs();
+        for (int frame = 0; frame < FRAMES; ++frame)
+        {
+            engine.solveSerial( inputs[frame], outputs[frame] );
+        }
+        return outputs;
+    }
+
+    // Method to check every joint of every solved finger is exactly the same
+    private static void assertSameJoints(SolvedFrame[] expected, SolvedFrame[] actual)
+    {
+        int fingersSolved = 0;
+        for (int frame = 0; frame < FRAMES; ++frame)
+        {
+            SolvedFrame e = expected[frame];
+            SolvedFrame a = actual[frame];
+            assertEquals( e.getFrameId(),  a.getFrameId()  );
+            assertEquals( e.getNumHands(), a.getNumHands() );
+
+            for (int finger = 0; finger < SolvedFrame.MAX_SLOTS; ++finger)
+            {
+                String where = "Frame " + frame + ", finger " + finger;
+                assertEquals( where, e.getChainJointCount(finger), a.getChainJointCount(finger) );
+                assertEquals( where, e.getSolveDistance(finger),   a.getSolveDistance(finger), 0.0f );
+                for (int joint = 0; joint < e.getChainJointCount(finger); ++joint)
+                {
+                    for (int axis = 0; axis < 3; ++axis)
+                    {
+                        assertEquals( where + ", joint " + joint, e.getChainJoint(finger, joint, axis), a.getChainJoint(finger, joint, axis), 0.0f );
+                    }
+                }
+
+                if (e.getChainJointCount(finger) > 0)
+                {
+                    ++fingersSolved;
+                }
+            }
+        }
+
+        // Make sure we actually compared something - two hands of five fingers for most of the frames
+        assertTrue( fingersSolved > FRAMES * 5 );
+    }
+}
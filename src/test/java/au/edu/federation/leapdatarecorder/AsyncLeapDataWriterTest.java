@@ -0,0 +1,121 @@
+/***
+ *
+ * File       : AsyncLeapDataWriterTest.java
+ * Description: Tests for the AsyncLeapDataWriter.
+ * Author     : Al Lansley
+ * Date       : 18/10/2026
+ * Version    : 0.1
+ *
+ */
+
+package au.edu.federation.leapdatarecorder;
+
+import au.edu.federation.leapdatarecorder.AsyncLeapDataWriter.OverflowPolicy;
+import au.edu.federation.leapwebsocket.WebSocketFrame;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class AsyncLeapDataWriterTest
+{
+	// A FrameWriter which takes a while over each frame and notes whether it was ever closed while still writing one
+	private static class SlowWriter implements FrameWriter
+	{
+		private final long writeMillis;
+		private volatile boolean writing;
+		private volatile boolean closed;
+		private volatile boolean closedWhileWriting;
+		private volatile boolean writtenAfterClose;
+		private final AtomicInteger framesWritten = new AtomicInteger();
+
+		SlowWriter(long writeMillis) { this.writeMillis = writeMillis; }
+
+		@Override
+		public void writeWebSocketFrame(WebSocketFrame wsf)
+		{
+			writtenAfterClose |= closed;
+			writing = true;
+			try
+			{
+				Thread.sleep(writeMillis);
+			}
+			catch (InterruptedException e)
+			{
+				Thread.currentThread().interrupt();
+			}
+			framesWritten.incrementAndGet();
+			writing = false;
+		}
+
+		@Override
+		public void close()
+		{
+			closedWhileWriting |= writing;
+			closed = true;
+		}
+	}
+
+	@Test
+	public void closeWritesEverythingQueued()
+	{
+		SlowWriter slow = new SlowWriter(1L);
+		AsyncLeapDataWriter writer = new AsyncLeapDataWriter(slow, 64, OverflowPolicy.BLOCK);
+		for (int loop = 0; loop < 50; ++loop)
+		{
+			writer.writeWebSocketFrame( new WebSocketFrame() );
+		}
+		writer.close();
+
+		assertTrue(slow.closed);
+		assertEquals(50, slow.framesWritten.get());
+		assertEquals(50L, writer.getFramesWritten());
+		assertEquals(0L, writer.getFramesDropped());
+		assertEquals(0L, writer.getFramesDroppedOnClose());
+	}
+
+	// When the queue can't be written out in time, the rest of it is dropped - but the wrapped writer is only closed
+	// once the frame being written is finished, and nothing is written to it afterwards
+	@Test
+	public void closeTimeoutNeverClosesWrappedWriterMidWrite()
+	{
+		SlowWriter slow = new SlowWriter(40L);
+		AsyncLeapDataWriter writer = new AsyncLeapDataWriter(slow, 64, OverflowPolicy.BLOCK, 8);
+		for (int loop = 0; loop < 40; ++loop)
+		{
+			writer.writeWebSocketFrame( new WebSocketFrame() );
+		}
+		long droppedOnClose = writer.close( TimeUnit.MILLISECONDS.toNanos(100) );
+
+		assertTrue(slow.closed);
+		assertFalse(slow.closedWhileWriting);
+		assertFalse(slow.writtenAfterClose);
+		assertTrue(slow.framesWritten.get() < 40);
+		assertEquals(slow.framesWritten.get(), writer.getFramesWritten());
+		assertEquals(40L, writer.getFramesWritten() + writer.getFramesDropped());
+
+		// Nothing was dropped for being full, so every dropped frame was dropped by close() - and it says so
+		assertTrue(droppedOnClose > 0L);
+		assertEquals(writer.getFramesDropped(), droppedOnClose);
+		assertEquals(droppedOnClose, writer.getFramesDroppedOnClose());
+	}
+
+	@Test
+	public void dropNewestKeepsTheOldestFrames()
+	{
+		SlowWriter slow = new SlowWriter(20L);
+		AsyncLeapDataWriter writer = new AsyncLeapDataWriter(slow, 4, OverflowPolicy.DROP_NEWEST, 1);
+		for (int loop = 0; loop < 20; ++loop)
+		{
+			writer.writeWebSocketFrame( new WebSocketFrame() );
+		}
+		writer.close();
+
+		assertTrue(writer.getFramesDropped() > 0L);
+		assertEquals(20L, writer.getFramesWritten() + writer.getFramesDropped());
+	}
+}
@@ -0,0 +1,366 @@
+/***
+ *
+ * File       : DeltaFrameCodecTest.java
+ * Description: Round trip tests for the DELTA format's DeltaFrameCodec.
+ * Author     : Al Lansley
+ * Date       : 18/10/2026
+ * Version    : 0.1
+ *
+ */
+
+package au.edu.federation.leapdatarecorder;
+
+import au.edu.federation.leapdatarecorder.DeltaFrameCodec.Quantity;
+import au.edu.federation.leapwebsocket.SyntheticFrameGenerator;
+import au.edu.federation.leapwebsocket.WebSocketFrame;
+import au.edu.federation.leapwebsocket.WebSocketGesture;
+import au.edu.federation.leapwebsocket.WebSocketHand;
+import au.edu.federation.leapwebsocket.WebSocketPointable;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class DeltaFrameCodecTest
+{
+	private static final int KEYFRAME_INTERVAL = 25;
+
+	// ----- Round trips -----
+
+	@Test
+	public void everyValueWithinHalfAStep() throws IOException
+	{
+		List<WebSocketFrame> frames = syntheticFrames(2, 300);
+		DeltaFrameCodec writer = newCodec();
+		List<WebSocketFrame> decoded = decodeAll( encodeAll(writer, frames), readerFor(writer) );
+
+		for (int loop = 0; loop < frames.size(); ++loop)
+		{
+			assertWithinHalfAStep( writer, frames.get(loop), decoded.get(loop) );
+		}
+	}
+
+	// Coarser steps make the error bigger, but it must still stay within half of one
+	@Test
+	public void coarseStepsStayWithinHalfAStep() throws IOException
+	{
+		List<WebSocketFrame> frames = syntheticFrames(2, 200);
+		DeltaFrameCodec writer = newCodec();
+		writer.setStep(Quantity.POSITION,  0.5f);
+		writer.setStep(Quantity.DIRECTION, 0.01f);
+		writer.setStep(Quantity.VELOCITY,  2.0f);
+		List<WebSocketFrame> decoded = decodeAll( encodeAll(writer, frames), readerFor(writer) );
+
+		for (int loop = 0; loop < frames.size(); ++loop)
+		{
+			assertWithinHalfAStep( writer, frames.get(loop), decoded.get(loop) );
+		}
+	}
+
+	// Hands and pointables are matched to the previous frame by id, so ones appearing, disappearing and changing order
+	// must come back just the same
+	@Test
+	public void handsComingAndGoingWithinHalfAStep() throws IOException
+	{
+		List<WebSocketFrame> frames = syntheticFrames(2, 200);
+		for (int loop = 0; loop < frames.size(); ++loop)
+		{
+			WebSocketFrame wsf = frames.get(loop);
+			if (loop % 7 == 3)
+			{
+				removeHand( wsf, wsf.hands().get(0).getId() );
+			}
+			else if (loop % 5 == 1)
+			{
+				Collections.reverse( wsf.hands() );
+				Collections.reverse( wsf.pointables() );
+			}
+			else if (loop % 11 == 0)
+			{
+				wsf.hands().clear();
+				wsf.pointables().clear();
+			}
+		}
+
+		DeltaFrameCodec writer = newCodec();
+		List<WebSocketFrame> decoded = decodeAll( encodeAll(writer, frames), readerFor(writer) );
+		for (int loop = 0; loop < frames.size(); ++loop)
+		{
+			assertWithinHalfAStep( writer, frames.get(loop), decoded.get(loop) );
+		}
+	}
+
+	@Test
+	public void gesturesAndStringsComeBackExactly() throws IOException
+	{
+		List<WebSocketFrame> frames = syntheticFrames(1, 30);
+		for (int loop = 0; loop < frames.size(); ++loop)
+		{
+			WebSocketFrame wsf = frames.get(loop);
+			wsf.pointables().get(0).setTouchZone( (loop % 2 == 0) ? "hovering" : "touching" );
+			wsf.pointables().get(1).setTouchZone("somewhere else");
+			wsf.pointables().get(2).setTool(true);
+
+			WebSocketGesture wsg = wsf.obtainGesture();
+			wsg.setId(loop);
+			wsg.setDuration(1000L * loop);
+			wsg.setState("update");
+			wsg.setType("circle");
+			wsg.getHandIds().add(10);
+			wsg.getPointableIds().addAll( Arrays.asList(100, 101) );
+			wsf.gestures().add(wsg);
+		}
+
+		DeltaFrameCodec writer = newCodec();
+		List<WebSocketFrame> decoded = decodeAll( encodeAll(writer, frames), readerFor(writer) );
+		for (int loop = 0; loop < frames.size(); ++loop)
+		{
+			assertWithinHalfAStep( writer, frames.get(loop), decoded.get(loop) );
+		}
+	}
+
+	// ----- Keyframes -----
+
+	@Test
+	public void keyframeEveryInterval() throws IOException
+	{
+		List<ByteBuffer> records = encodeAll( newCodec(), syntheticFrames(2, 100) );
+		for (int loop = 0; loop < records.size(); ++loop)
+		{
+			boolean keyframe = (records.get(loop).get(0) & 1) != 0;
+			assertEquals( "Record " + loop, loop % KEYFRAME_INTERVAL == 0, keyframe );
+		}
+	}
+
+	// A keyframe mustn't depend on anything before it, so a fresh reader starting at any keyframe gets exactly what
+	// reading from the start does
+	@Test
+	public void keyframesDontDependOnEarlierFrames() throws IOException
+	{
+		DeltaFrameCodec writer = newCodec();
+		List<ByteBuffer> records = encodeAll( writer, syntheticFrames(2, 100) );
+		List<WebSocketFrame> fromStart = decodeAll( records, readerFor(writer) );
+
+		for (int start = KEYFRAME_INTERVAL; start < records.size(); start += KEYFRAME_INTERVAL)
+		{
+			List<WebSocketFrame> fromKeyframe = decodeAll( records.subList( start, records.size() ), readerFor(writer) );
+			for (int loop = 0; loop < fromKeyframe.size(); ++loop)
+			{
+				assertIdentical( fromStart.get(start + loop), fromKeyframe.get(loop) );
+			}
+		}
+	}
+
+	// After reset() the next frame is a keyframe, and the frames after it are counted from there
+	@Test
+	public void resetStartsANewKeyframe() throws IOException
+	{
+		DeltaFrameCodec writer = newCodec();
+		List<WebSocketFrame> frames = syntheticFrames(2, 40);
+		List<ByteBuffer> records = new ArrayList<ByteBuffer>();
+		records.addAll( encodeAll( writer, frames.subList(0, 10) ) );
+		writer.reset();
+		records.addAll( encodeAll( writer, frames.subList(10, 40) ) );
+
+		for (int loop = 0; loop < records.size(); ++loop)
+		{
+			boolean keyframe = (records.get(loop).get(0) & 1) != 0;
+			assertEquals( "Record " + loop, loop == 0 || (loop - 10) % KEYFRAME_INTERVAL == 0 && loop >= 10, keyframe );
+		}
+
+		// A reader starting from the reset decodes the rest
+		List<WebSocketFrame> decoded = decodeAll( records.subList( 10, records.size() ), readerFor(writer) );
+		for (int loop = 0; loop < decoded.size(); ++loop)
+		{
+			assertWithinHalfAStep( writer, frames.get(10 + loop), decoded.get(loop) );
+		}
+	}
+
+	@Test(expected = IOException.class)
+	public void deltaFrameWithoutItsKeyframeIsRejected() throws IOException
+	{
+		DeltaFrameCodec writer = newCodec();
+		List<ByteBuffer> records = encodeAll( writer, syntheticFrames(2, 10) );
+		decodeAll( records.subList( 1, records.size() ), readerFor(writer) );
+	}
+
+	// ----- Helpers -----
+
+	private static DeltaFrameCodec newCodec()
+	{
+		DeltaFrameCodec codec = new DeltaFrameCodec();
+		codec.setKeyframeInterval(KEYFRAME_INTERVAL);
+		return codec;
+	}
+
+	// Method to create a reader from a writer's settings, as a recording's header would
+	private static DeltaFrameCodec readerFor(DeltaFrameCodec writer) throws IOException
+	{
+		ByteArrayOutputStream settings = new ByteArrayOutputStream();
+		writer.writeSettings( new DataOutputStream(settings) );
+		return DeltaFrameCodec.readSettings( new DataInputStream( new ByteArrayInputStream( settings.toByteArray() ) ) );
+	}
+
+	private static List<WebSocketFrame> syntheticFrames(int numHands, int count)
+	{
+		SyntheticFrameGenerator generator = new SyntheticFrameGenerator(5L, numHands);
+		List<WebSocketFrame> frames = new ArrayList<WebSocketFrame>();
+		for (int loop = 0; loop < count; ++loop)
+		{
+			frames.add( generator.next() );
+		}
+		return frames;
+	}
+
+	private static void removeHand(WebSocketFrame wsf, int handId)
+	{
+		wsf.hands().removeIf( wsh -> wsh.getId() == handId );
+		wsf.pointables().removeIf( wsp -> wsp.getHandId() == handId );
+	}
+
+	private static List<ByteBuffer> encodeAll(DeltaFrameCodec codec, List<WebSocketFrame> frames)
+	{
+		List<ByteBuffer> records = new ArrayList<ByteBuffer>();
+		for (WebSocketFrame wsf : frames)
+		{
+			ByteBuffer buf = ByteBuffer.allocate( DeltaFrameCodec.maxEncodedSize(wsf) );
+			codec.encode(wsf, buf);
+			buf.flip();
+			records.add(buf);
+		}
+		return records;
+	}
+
+	private static List<WebSocketFrame> decodeAll(List<ByteBuffer> records, DeltaFrameCodec codec) throws IOException
+	{
+		List<WebSocketFrame> frames = new ArrayList<WebSocketFrame>();
+		for (ByteBuffer record : records)
+		{
+			WebSocketFrame wsf = new WebSocketFrame();
+			ByteBuffer buf = record.duplicate();
+			codec.decodeInto(buf, wsf);
+			assertEquals( "Whole record read", 0, buf.remaining() );
+			frames.add(wsf);
+		}
+		return frames;
+	}
+
+	// Method to check every quantized value came back within half of its step, and everything else exactly
+	private static void assertWithinHalfAStep(DeltaFrameCodec codec, WebSocketFrame expected, WebSocketFrame actual)
+	{
+		assertEquals( expected.getId(),        actual.getId()        );
+		assertEquals( expected.getTimestamp(), actual.getTimestamp() );
+		assertClose( codec, Quantity.SCALAR,   (float)expected.getCurrentFrameRate(), (float)actual.getCurrentFrameRate() );
+		assertClose( codec, Quantity.SCALAR,   expected.getS(), actual.getS() );
+		assertClose( codec, Quantity.ROTATION, expected.getR(), actual.getR() );
+		assertClose( codec, Quantity.POSITION, expected.getT(), actual.getT() );
+		assertClose( codec, Quantity.POSITION, expected.getInteractionBox().getCenter(), actual.getInteractionBox().getCenter() );
+		assertClose( codec, Quantity.POSITION, expected.getInteractionBox().getSize(),   actual.getInteractionBox().getSize()   );
+
+		assertEquals( expected.hands().size(), actual.hands().size() );
+		for (int loop = 0; loop < expected.hands().size(); ++loop)
+		{
+			WebSocketHand e = expected.hands().get(loop);
+			WebSocketHand a = actual.hands().get(loop);
+			assertEquals( e.getId(), a.getId() );
+			assertClose( codec, Quantity.DIRECTION, e.getPalmDirection(),          a.getPalmDirection()          );
+			assertClose( codec, Quantity.DIRECTION, e.getPalmNormal(),             a.getPalmNormal()             );
+			assertClose( codec, Quantity.POSITION,  e.getPalmPosition(),           a.getPalmPosition()           );
+			assertClose( codec, Quantity.VELOCITY,  e.getPalmVelocity(),           a.getPalmVelocity()           );
+			assertClose( codec, Quantity.ROTATION,  e.getR(),                      a.getR()                      );
+			assertClose( codec, Quantity.POSITION,  e.getSphereCenter(),           a.getSphereCenter()           );
+			assertClose( codec, Quantity.POSITION,  e.getSphereRadius(),           a.getSphereRadius()           );
+			assertClose( codec, Quantity.POSITION,  e.getStabilizedPalmPosition(), a.getStabilizedPalmPosition() );
+			assertClose( codec, Quantity.SCALAR,    e.getTimeVisible(),            a.getTimeVisible()            );
+		}
+
+		assertEquals( expected.pointables().size(), actual.pointables().size() );
+		for (int loop = 0; loop < expected.pointables().size(); ++loop)
+		{
+			WebSocketPointable e = expected.pointables().get(loop);
+			WebSocketPointable a = actual.pointables().get(loop);
+			assertEquals( e.getId(),        a.getId()        );
+			assertEquals( e.getHandId(),    a.getHandId()    );
+			assertEquals( e.isTool(),       a.isTool()       );
+			assertEquals( e.getTouchZone(), a.getTouchZone() );
+			assertClose( codec, Quantity.DIRECTION, e.getDirection(),             a.getDirection()             );
+			assertClose( codec, Quantity.POSITION,  e.getLength(),                a.getLength()                );
+			assertClose( codec, Quantity.POSITION,  e.getStabilizedTipPosition(), a.getStabilizedTipPosition() );
+			assertClose( codec, Quantity.SCALAR,    e.getTimeVisible(),           a.getTimeVisible()           );
+			assertClose( codec, Quantity.POSITION,  e.getTipPosition(),           a.getTipPosition()           );
+			assertClose( codec, Quantity.VELOCITY,  e.getTipVelocity(),           a.getTipVelocity()           );
+			assertClose( codec, Quantity.SCALAR,    e.getTouchDistance(),         a.getTouchDistance()         );
+		}
+
+		assertEquals( expected.gestures().size(), actual.gestures().size() );
+		for (int loop = 0; loop < expected.gestures().size(); ++loop)
+		{
+			WebSocketGesture e = expected.gestures().get(loop);
+			WebSocketGesture a = actual.gestures().get(loop);
+			assertEquals( e.getId(),           a.getId()           );
+			assertEquals( e.getDuration(),     a.getDuration()     );
+			assertEquals( e.getHandIds(),      a.getHandIds()      );
+			assertEquals( e.getPointableIds(), a.getPointableIds() );
+			assertEquals( e.getState(),        a.getState()        );
+			assertEquals( e.getType(),         a.getType()         );
+		}
+	}
+
+	private static void assertClose(DeltaFrameCodec codec, Quantity quantity, float expected, float actual)
+	{
+		// Half a step, plus the float rounding of the value we reconstruct
+		double tolerance = codec.getStep(quantity) * 0.5 + Math.ulp(expected) * 2.0;
+		assertTrue( quantity + ": expected " + expected + " but was " + actual + " (step " + codec.getStep(quantity) + ")",
+		            Math.abs( (double)expected - actual ) <= tolerance );
+	}
+
+	private static void assertClose(DeltaFrameCodec codec, Quantity quantity, float[] expected, float[] actual)
+	{
+		assertEquals( expected.length, actual.length );
+		for (int loop = 0; loop < expected.length; ++loop)
+		{
+			assertClose( codec, quantity, expected[loop], actual[loop] );
+		}
+	}
+
+	private static void assertClose(DeltaFrameCodec codec, Quantity quantity, float[][] expected, float[][] actual)
+	{
+		assertEquals( expected.length, actual.length );
+		for (int loop = 0; loop < expected.length; ++loop)
+		{
+			assertClose( codec, quantity, expected[loop], actual[loop] );
+		}
+	}
+
+	// Method to check two decoded frames are exactly the same
+	private static void assertIdentical(WebSocketFrame expected, WebSocketFrame actual)
+	{
+		assertEquals( expected.getId(), actual.getId() );
+		assertEquals( expected.getS(),  actual.getS(), 0.0f );
+		assertArrayEquals( expected.getT(), actual.getT(), 0.0f );
+		assertEquals( expected.hands().size(), actual.hands().size() );
+		for (int loop = 0; loop < expected.hands().size(); ++loop)
+		{
+			assertArrayEquals( expected.hands().get(loop).getPalmPosition(), actual.hands().get(loop).getPalmPosition(), 0.0f );
+			assertArrayEquals( expected.hands().get(loop).getPalmVelocity(), actual.hands().get(loop).getPalmVelocity(), 0.0f );
+		}
+		assertEquals( expected.pointables().size(), actual.pointables().size() );
+		for (int loop = 0; loop < expected.pointables().size(); ++loop)
+		{
+			assertArrayEquals( expected.pointables().get(loop).getTipPosition(), actual.pointables().get(loop).getTipPosition(), 0.0f );
+			assertArrayEquals( expected.pointables().get(loop).getDirection(),   actual.pointables().get(loop).getDirection(),   0.0f );
+		}
+	}
+}
@@ -0,0 +1,221 @@
+/***
+ *
+ * File       : LeapDataReaderTest.java
+ * Description: Tests that a LeapDataReader stops safely on recordings which have been damaged.
+ * Author     : Al Lansley
+ * Date       : 18/10/2026
+ * Version    : 0.1
+ *
+ */
+
+package au.edu.federation.leapdatarecorder;
+
+import au.edu.federation.leapwebsocket.WebSocketFrame;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class LeapDataReaderTest
+{
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	// A damaged length word mustn't have us allocate a buffer for it before finding out the record isn't there
+	@Test
+	public void corruptRecordLengthStopsTheRecording() throws IOException
+	{
+		List<WebSocketFrame> frames = RollingLeapDataWriterTest.syntheticFrames(10);
+		File recording = record(frames, RecordingFormat.BINARY, false);
+
+		// Overwrite the length of the fourth record
+		long offset = LeapFrameCodec.HEADER_SIZE;
+		try ( RandomAccessFile raf = new RandomAccessFile(recording, "rw") )
+		{
+			for (int loop = 0; loop < 3; ++loop)
+			{
+				raf.seek(offset);
+				offset += 4 + raf.readInt();
+			}
+			raf.seek(offset);
+			raf.writeInt(0x7FFFFFF0);
+		}
+
+		LeapDataReader reader = new LeapDataReader(recording.getPath(), false);
+		RollingLeapDataWriterTest.assertSameFrames( frames.subList(0, 3), readAll(reader) );
+		reader.close();
+	}
+
+	// ----- Errors -----
+
+	@Test
+	public void cleanEndHasNoError() throws IOException
+	{
+		List<WebSocketFrame> frames = RollingLeapDataWriterTest.syntheticFrames(20);
+		for (RecordingFormat format : RecordingFormat.values())
+		{
+			for (boolean compress : new boolean[] { false, true })
+			{
+				LeapDataReader reader = LeapDataReader.open( record(frames, format, compress).getPath(), false );
+				assertEquals( format + " " + compress, frames.size(), readAll(reader).size() );
+				assertNull( format + " " + compress, reader.getError() );
+				reader.close();
+			}
+		}
+	}
+
+	// A recording cut off part way through, whether in the middle of a frame or of the gzip stream, is an error rather
+	// than the end of the recording
+	@Test
+	public void truncatedRecordingIsAnError() throws IOException
+	{
+		List<WebSocketFrame> frames = RollingLeapDataWriterTest.syntheticFrames(50);
+		for (RecordingFormat format : RecordingFormat.values())
+		{
+			for (boolean compress : new boolean[] { false, true })
+			{
+				File recording = record(frames, format, compress);
+				truncate( recording, recording.length() * 2 / 3 );
+
+				LeapDataReader reader = LeapDataReader.open(recording.getPath(), false);
+				assertTrue( format + " " + compress, readAll(reader).size() < frames.size() );
+				assertNotNull( format + " " + compress, reader.getError() );
+				reader.close();
+			}
+		}
+	}
+
+	// ...including when the gzip stream is only missing its trailer, so every frame can still be read
+	@Test
+	public void truncatedGzipTrailerIsAnError() throws IOException
+	{
+		List<WebSocketFrame> frames = RollingLeapDataWriterTest.syntheticFrames(10);
+		File recording = record(frames, RecordingFormat.BINARY, true);
+		truncate( recording, recording.length() - 4 );
+
+		LeapDataReader reader = LeapDataReader.open(recording.getPath(), false);
+		readAll(reader);
+		assertNotNull( reader.getError() );
+		reader.close();
+	}
+
+	@Test
+	public void corruptRecordLengthIsAnError() throws IOException
+	{
+		List<WebSocketFrame> frames = RollingLeapDataWriterTest.syntheticFrames(10);
+		File recording = record(frames, RecordingFormat.BINARY, false);
+		try ( RandomAccessFile raf = new RandomAccessFile(recording, "rw") )
+		{
+			raf.seek(LeapFrameCodec.HEADER_SIZE);
+			raf.writeInt(-5);
+		}
+
+		LeapDataReader reader = LeapDataReader.open(recording.getPath(), false);
+		assertFalse( reader.readWebSocketFrame( new WebSocketFrame() ) );
+		assertNotNull( reader.getError() );
+		reader.close();
+	}
+
+	@Test(expected = FileNotFoundException.class)
+	public void openMissingFileThrows() throws IOException
+	{
+		LeapDataReader.open( new File( folder.getRoot(), "missing" ).getPath(), false );
+	}
+
+	@Test(expected = IOException.class)
+	public void openNonRecordingThrows() throws IOException
+	{
+		File notARecording = folder.newFile();
+		Files.write( notARecording.toPath(), "Not a recording at all".getBytes(StandardCharsets.US_ASCII) );
+		LeapDataReader.open(notARecording.getPath(), false);
+	}
+
+	// ----- Looping -----
+
+	@Test
+	public void loopingStartsAgainFromTheFirstFrame() throws IOException
+	{
+		List<WebSocketFrame> frames = RollingLeapDataWriterTest.syntheticFrames(5);
+		File recording = record(frames, RecordingFormat.BINARY, true);
+
+		LeapDataReader reader = new LeapDataReader(recording.getPath(), true);
+		List<WebSocketFrame> read = new ArrayList<WebSocketFrame>();
+		for (int loop = 0; loop < 12; ++loop)
+		{
+			WebSocketFrame wsf = new WebSocketFrame();
+			assertTrue( reader.readWebSocketFrame(wsf) );
+			read.add(wsf);
+		}
+		reader.close();
+
+		List<WebSocketFrame> expected = new ArrayList<WebSocketFrame>();
+		for (int loop = 0; loop < 12; ++loop)
+		{
+			expected.add( frames.get(loop % frames.size()) );
+		}
+		RollingLeapDataWriterTest.assertSameFrames(expected, read);
+	}
+
+	// A recording with nothing in it but its header has nothing to loop over
+	@Test
+	public void loopingEmptyRecordingReturnsFalse() throws IOException
+	{
+		for (RecordingFormat format : RecordingFormat.values())
+		{
+			File recording = record( new ArrayList<WebSocketFrame>(), format, true );
+
+			LeapDataReader reader = new LeapDataReader(recording.getPath(), true);
+			assertFalse( format.toString(), reader.readWebSocketFrame( new WebSocketFrame() ) );
+			assertFalse( format.toString(), reader.readWebSocketFrame( new WebSocketFrame() ) );
+			reader.close();
+		}
+	}
+
+	// ----- Helpers -----
+
+	private File record(List<WebSocketFrame> frames, RecordingFormat format, boolean compress) throws IOException
+	{
+		File recording = new File( folder.newFolder(), "recording" );
+		LeapDataWriter writer = new LeapDataWriter(recording.getPath(), compress, format, false);
+		for (WebSocketFrame wsf : frames)
+		{
+			writer.writeWebSocketFrame(wsf);
+		}
+		writer.close();
+		return recording;
+	}
+
+	private static void truncate(File file, long length) throws IOException
+	{
+		try ( RandomAccessFile raf = new RandomAccessFile(file, "rw") )
+		{
+			raf.setLength(length);
+		}
+	}
+
+	private static List<WebSocketFrame> readAll(LeapDataReader reader)
+	{
+		List<WebSocketFrame> frames = new ArrayList<WebSocketFrame>();
+		WebSocketFrame wsf = new WebSocketFrame();
+		while ( reader.readWebSocketFrame(wsf) )
+		{
+			frames.add(wsf);
+			wsf = new WebSocketFrame();
+		}
+		return frames;
+	}
+}
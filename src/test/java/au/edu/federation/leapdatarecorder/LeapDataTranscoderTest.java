@@ -0,0 +1,101 @@
+/***
+ *
+ * File       : LeapDataTranscoderTest.java
+ * Description: Tests that a LeapDataTranscoder converts and verifies good recordings, and fails the ones it can't read.
+ * Author     : Al Lansley
+ * Date       : 18/10/2026
+ * Version    : 0.1
+ *
+ */
+
+package au.edu.federation.leapdatarecorder;
+
+import au.edu.federation.leapwebsocket.WebSocketFrame;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class LeapDataTranscoderTest
+{
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void convertsAndVerifiesEveryRecording() throws IOException
+	{
+		File input = folder.newFolder();
+		List<WebSocketFrame> frames = RollingLeapDataWriterTest.syntheticFrames(30);
+		record( new File(input, "a.rec"), frames, RecordingFormat.SERIALIZED );
+		record( new File(input, "b.rec"), frames, RecordingFormat.BINARY     );
+
+		for (RecordingFormat format : new RecordingFormat[] { RecordingFormat.BINARY, RecordingFormat.DELTA })
+		{
+			List<LeapDataTranscoder.FileResult> results = new LeapDataTranscoder(format, true).transcodeDirectory( input, folder.newFolder() );
+			assertEquals( 2, results.size() );
+			for (LeapDataTranscoder.FileResult result : results)
+			{
+				assertTrue( result.toString(), result.isOk() );
+				assertEquals( frames.size(), result.frames );
+				assertEquals( frames.size(), result.verifiedFrames );
+			}
+		}
+	}
+
+	// A source which can't be read to its end mustn't be reported as converted, even though what could be read from it
+	// verifies against the output
+	@Test
+	public void failsRecordingsWhichCannotBeRead() throws IOException
+	{
+		File input = folder.newFolder();
+		List<WebSocketFrame> frames = RollingLeapDataWriterTest.syntheticFrames(30);
+		record( new File(input, "a-good.rec"), frames, RecordingFormat.BINARY );
+
+		File truncated = new File(input, "b-truncated.rec");
+		record( truncated, frames, RecordingFormat.BINARY );
+		try ( RandomAccessFile raf = new RandomAccessFile(truncated, "rw") )
+		{
+			raf.setLength( raf.length() / 2 );
+		}
+
+		Files.write( new File(input, "c-garbage.rec").toPath(), "Not a recording at all".getBytes(StandardCharsets.US_ASCII) );
+		Files.write( new File(input, "d-empty.rec").toPath(), new byte[0] );
+
+		LeapDataTranscoder transcoder = new LeapDataTranscoder(RecordingFormat.BINARY, false);
+		List<LeapDataTranscoder.FileResult> results = transcoder.transcodeDirectory( input, folder.newFolder() );
+		assertEquals( 4, results.size() );
+		assertTrue(  results.get(0).toString(), results.get(0).isOk() );
+		assertFalse( results.get(1).toString(), results.get(1).isOk() );
+		assertFalse( results.get(2).toString(), results.get(2).isOk() );
+		assertFalse( results.get(3).toString(), results.get(3).isOk() );
+	}
+
+	// A file which has gone by the time it's converted fails on its own, rather than ending the whole run
+	@Test
+	public void failsMissingRecording() throws IOException
+	{
+		File output = new File( folder.newFolder(), "out.rec" );
+		LeapDataTranscoder.FileResult result = new LeapDataTranscoder(RecordingFormat.BINARY, false).transcodeFile( new File( folder.getRoot(), "missing.rec" ), output );
+		assertFalse( result.isOk() );
+	}
+
+	private static void record(File file, List<WebSocketFrame> frames, RecordingFormat format)
+	{
+		LeapDataWriter writer = new LeapDataWriter(file.getPath(), true, format, false);
+		for (WebSocketFrame wsf : frames)
+		{
+			writer.writeWebSocketFrame(wsf);
+		}
+		writer.close();
+	}
+}
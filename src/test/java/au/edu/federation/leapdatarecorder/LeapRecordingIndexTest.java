@@ -0,0 +1,135 @@
+/***
+ *
+ * File       : LeapRecordingIndexTest.java
+ * Description: Tests for building, saving and reloading a LeapRecordingIndex through a MappedLeapDataReader.
+ * Author     : Al Lansley
+ * Date       : 18/10/2026
+ * Version    : 0.1
+ *
+ */
+
+package au.edu.federation.leapdatarecorder;
+
+import au.edu.federation.leapwebsocket.SyntheticFrameGenerator;
+import au.edu.federation.leapwebsocket.WebSocketFrame;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class LeapRecordingIndexTest
+{
+	private static final int NUM_FRAMES = 200;
+
+	// Where the frame count lives in the sidecar - after the magic, version, source length and modification time
+	private static final int COUNT_OFFSET = 4 + 2 + 8 + 8;
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private String filename;
+	private File   indexFile;
+	private long[] ids = new long[NUM_FRAMES];
+
+	@Before
+	public void writeRecording() throws IOException
+	{
+		filename  = new File(folder.getRoot(), "recording.ldr").getPath();
+		indexFile = new File(filename + LeapRecordingIndex.INDEX_SUFFIX);
+
+		SyntheticFrameGenerator generator = new SyntheticFrameGenerator(7L, 2);
+		LeapDataWriter writer = new LeapDataWriter(filename, false, RecordingFormat.BINARY, false);
+		for (int loop = 0; loop < NUM_FRAMES; ++loop)
+		{
+			WebSocketFrame wsf = generator.next();
+			ids[loop] = wsf.getId();
+			writer.writeWebSocketFrame(wsf);
+		}
+		writer.close();
+
+		// Opening it builds and saves the index
+		MappedLeapDataReader reader = new MappedLeapDataReader(filename, false);
+		reader.close();
+		assertTrue( indexFile.exists() );
+	}
+
+	@Test
+	public void reloadsSavedIndex() throws IOException
+	{
+		long saved = indexFile.lastModified();
+		assertAllFramesReadable();
+		assertEquals(saved, indexFile.lastModified());
+	}
+
+	@Test
+	public void rebuildsIndexWithHugeCount() throws IOException
+	{
+		setCount(Integer.MAX_VALUE);
+		assertAllFramesReadable();
+	}
+
+	@Test
+	public void rebuildsIndexWithNegativeCount() throws IOException
+	{
+		setCount(-1);
+		assertAllFramesReadable();
+	}
+
+	@Test
+	public void rebuildsTruncatedIndex() throws IOException
+	{
+		try ( RandomAccessFile file = new RandomAccessFile(indexFile, "rw") )
+		{
+			file.setLength( file.length() - 10L );
+		}
+		assertAllFramesReadable();
+	}
+
+	@Test
+	public void rebuildsIndexPointingOutsideRecording() throws IOException
+	{
+		try ( RandomAccessFile file = new RandomAccessFile(indexFile, "rw") )
+		{
+			file.seek(COUNT_OFFSET + 4);
+			file.writeLong( new File(filename).length() );
+		}
+		assertAllFramesReadable();
+	}
+
+	// ----- Helpers -----
+
+	private void setCount(int count) throws IOException
+	{
+		try ( RandomAccessFile file = new RandomAccessFile(indexFile, "rw") )
+		{
+			file.seek(COUNT_OFFSET);
+			file.writeInt(count);
+		}
+	}
+
+	private void assertAllFramesReadable() throws IOException
+	{
+		MappedLeapDataReader reader = new MappedLeapDataReader(filename, false);
+		try
+		{
+			assertEquals(NUM_FRAMES, reader.getFrameCount());
+			WebSocketFrame wsf = new WebSocketFrame();
+			for (int loop = 0; loop < NUM_FRAMES; ++loop)
+			{
+				assertTrue( reader.readWebSocketFrame(wsf) );
+				assertEquals(ids[loop], wsf.getId());
+			}
+		}
+		finally
+		{
+			reader.close();
+		}
+	}
+}
@@ -0,0 +1,228 @@
+/***
+ *
+ * File       : RawCaptureReaderTest.java
+ * Description: Tests that a RawCaptureReader reads back what a RawCaptureWriter captured, frame by frame and in bulk, and
+ *              copes with blocks and block headers damaged on disk.
+ * Author     : Al Lansley
+ * Date       : 18/10/2026
+ * Version    : 0.1
+ *
+ */
+
+package au.edu.federation.leapdatarecorder;
+
+import au.edu.federation.leapwebsocket.SyntheticFrameGenerator;
+import au.edu.federation.leapwebsocket.WebSocketFrame;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class RawCaptureReaderTest
+{
+	private static final int MESSAGES_PER_BLOCK = 10;
+	private static final int BLOCKS             = 5;
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	// ids of the frames captured by capture(), in order
+	private final List<Long> ids = new ArrayList<Long>();
+
+	// ----- Round trips -----
+
+	@Test
+	public void readsBackEveryMessage() throws IOException
+	{
+		File capture = capture();
+
+		RawCaptureReader reader = new RawCaptureReader( capture.getPath(), false );
+		List<Long> read = new ArrayList<Long>();
+		long firstReceived = 0L;
+		WebSocketFrame wsf = new WebSocketFrame();
+		while ( reader.readWebSocketFrame(wsf) )
+		{
+			if ( read.isEmpty() )
+			{
+				firstReceived = reader.getReceiveTimeNanos();
+			}
+
+			// Each message was captured a millisecond after the one before it
+			assertEquals( read.size() * 1000000L, reader.getReceiveTimeNanos() - firstReceived );
+			read.add( wsf.getId() );
+		}
+		reader.close();
+
+		assertEquals(ids, read);
+		assertEquals( 0, reader.getBlocksSkipped() );
+		assertEquals( ids, idsOf( RawCaptureReader.decodeAll( capture.getPath() ) ) );
+	}
+
+	// ----- Damaged -----
+
+	// A block which fails its checksum is skipped on its own, reading frame by frame and in bulk
+	@Test
+	public void corruptBlockIsSkipped() throws IOException
+	{
+		File capture = capture();
+		flipBit( capture, blocks(capture).get(1) + RawCaptureWriter.BLOCK_HEADER_SIZE + 40 );
+
+		List<Long> expected = new ArrayList<Long>( ids.subList(0, MESSAGES_PER_BLOCK) );
+		expected.addAll( ids.subList(2 * MESSAGES_PER_BLOCK, ids.size()) );
+		assertEquals( expected, readAll(capture) );
+		assertEquals( expected, idsOf( RawCaptureReader.decodeAll( capture.getPath() ) ) );
+	}
+
+	// A damaged block header could ask for gigabytes - we mustn't believe it, and as there's no telling where the next
+	// block starts, the rest of the capture is skipped
+	@Test
+	public void corruptBlockHeaderSkipsRestOfCapture() throws IOException
+	{
+		File capture = capture();
+		flipBit( capture, blocks(capture).get(1) + 12 ); // The high byte of the compressed length
+
+		List<Long> expected = ids.subList(0, MESSAGES_PER_BLOCK);
+		assertEquals( expected, readAll(capture) );
+		assertEquals( expected, idsOf( RawCaptureReader.decodeAll( capture.getPath() ) ) );
+
+		capture = capture();
+		flipBit( capture, blocks(capture).get(2) + 8 ); // The high byte of the uncompressed length
+
+		expected = ids.subList(0, 2 * MESSAGES_PER_BLOCK);
+		assertEquals( expected, readAll(capture) );
+		assertEquals( expected, idsOf( RawCaptureReader.decodeAll( capture.getPath() ) ) );
+	}
+
+	// Where the writer was killed part way through writing a block, everything before that block is still read
+	@Test
+	public void truncatedFinalBlockIsDropped() throws IOException
+	{
+		File capture = capture();
+		try ( RandomAccessFile raf = new RandomAccessFile(capture, "rw") )
+		{
+			raf.setLength( blocks(capture).get(BLOCKS - 1) + 30 );
+		}
+
+		List<Long> expected = ids.subList(0, (BLOCKS - 1) * MESSAGES_PER_BLOCK);
+		assertEquals( expected, readAll(capture) );
+		assertEquals( expected, idsOf( RawCaptureReader.decodeAll( capture.getPath() ) ) );
+	}
+
+	@Test
+	public void otherVersionIsRejected() throws IOException
+	{
+		File capture = capture();
+		try ( RandomAccessFile raf = new RandomAccessFile(capture, "rw") )
+		{
+			raf.seek(4);
+			raf.writeShort(RawCaptureWriter.FORMAT_VERSION + 1);
+		}
+
+		RawCaptureReader reader = new RawCaptureReader( capture.getPath(), false );
+		assertFalse( reader.readWebSocketFrame( new WebSocketFrame() ) );
+		reader.close();
+
+		try
+		{
+			RawCaptureReader.decodeAll( capture.getPath() );
+		}
+		catch (IOException e)
+		{
+			assertTrue( e.getMessage().contains("not supported") );
+			return;
+		}
+		throw new AssertionError("decodeAll read a capture of another version");
+	}
+
+	// ----- Helpers -----
+
+	// Method to capture BLOCKS blocks of MESSAGES_PER_BLOCK messages each, alternating text and binary messages
+	private File capture() throws IOException
+	{
+		File capture = new File( folder.newFolder(), "capture" + RawCaptureWriter.CAPTURE_EXTENSION );
+		ids.clear();
+
+		SyntheticFrameGenerator generator = new SyntheticFrameGenerator(11L, 2);
+		RawCaptureWriter writer = new RawCaptureWriter( capture.getPath() );
+		writer.setMaxBlockMillis(Long.MAX_VALUE);
+		for (int loop = 0; loop < BLOCKS * MESSAGES_PER_BLOCK; ++loop)
+		{
+			WebSocketFrame wsf = generator.next();
+			String json = generator.toJson(wsf);
+			ids.add( wsf.getId() );
+
+			long arrivalNanos = 1000000L * loop;
+			if (loop % 2 == 0) { writer.append( arrivalNanos, json );                                                  }
+			else               { writer.append( arrivalNanos, ByteBuffer.wrap( json.getBytes(StandardCharsets.UTF_8) ) ); }
+
+			if ( (loop + 1) % MESSAGES_PER_BLOCK == 0 )
+			{
+				writer.flush();
+			}
+		}
+		writer.close();
+
+		assertEquals( BLOCKS, blocks(capture).size() );
+		return capture;
+	}
+
+	private static List<Long> readAll(File capture)
+	{
+		RawCaptureReader reader = new RawCaptureReader( capture.getPath(), false );
+		List<Long> read = new ArrayList<Long>();
+		WebSocketFrame wsf = new WebSocketFrame();
+		while ( reader.readWebSocketFrame(wsf) )
+		{
+			read.add( wsf.getId() );
+		}
+		reader.close();
+		return read;
+	}
+
+	private static List<Long> idsOf(List<WebSocketFrame> frames)
+	{
+		List<Long> read = new ArrayList<Long>();
+		for (WebSocketFrame wsf : frames)
+		{
+			read.add( wsf.getId() );
+		}
+		return read;
+	}
+
+	// Method to find the offset of each block in a capture by walking their headers
+	private static List<Integer> blocks(File capture) throws IOException
+	{
+		ByteBuffer file = ByteBuffer.wrap( Files.readAllBytes( capture.toPath() ) );
+		List<Integer> offsets = new ArrayList<Integer>();
+		int offset = RawCaptureWriter.HEADER_SIZE;
+		while (offset + RawCaptureWriter.BLOCK_HEADER_SIZE <= file.limit())
+		{
+			offsets.add(offset);
+			offset += RawCaptureWriter.BLOCK_HEADER_SIZE + file.getInt(offset + 12);
+		}
+		return offsets;
+	}
+
+	private static void flipBit(File file, long offset) throws IOException
+	{
+		try ( RandomAccessFile raf = new RandomAccessFile(file, "rw") )
+		{
+			raf.seek(offset);
+			int value = raf.read();
+			raf.seek(offset);
+			raf.write(value ^ 0x10);
+		}
+	}
+}
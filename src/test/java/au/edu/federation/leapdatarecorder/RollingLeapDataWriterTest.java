@@ -0,0 +1,312 @@
+/***
+ *
+ * File       : RollingLeapDataWriterTest.java
+ * Description: Tests that a RollingLeapDataWriter rotates its segments by size and by age, and that a SegmentedLeapDataReader
+ *              reads them back across segments as one recording.
+ * Author     : Al Lansley
+ * Date       : 18/10/2026
+ * Version    : 0.1
+ *
+ */
+
+package au.edu.federation.leapdatarecorder;
+
+import au.edu.federation.leapwebsocket.SyntheticFrameGenerator;
+import au.edu.federation.leapwebsocket.WebSocketFrame;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class RollingLeapDataWriterTest
+{
+	private static final String PREFIX = "session";
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	// ----- Rotation -----
+
+	@Test
+	public void rotatesBySize() throws IOException
+	{
+		File directory = folder.newFolder();
+		List<WebSocketFrame> frames = syntheticFrames(200);
+
+		RollingLeapDataWriter writer = new RollingLeapDataWriter( directory.getPath(), PREFIX );
+		writer.setBlockBytes(2048);
+		writer.setMaxSegmentBytes(8192);
+		writeAll(writer, frames);
+
+		File[] segments = SegmentedLeapDataReader.listSegments(directory, PREFIX);
+		assertTrue( "Several segments", segments.length > 2 );
+		assertEquals( writer.getSegmentsWritten(), segments.length );
+
+		// Every segment but the last is rotated as soon as it reaches the limit, so is over it by less than a block
+		for (int loop = 0; loop < segments.length - 1; ++loop)
+		{
+			long length = segments[loop].length();
+			assertTrue( segments[loop] + " is " + length + " bytes", length >= 8192 && length < 8192 + 2048 + 1024 );
+		}
+
+		assertSameFrames( frames, readAll( directory.getPath() ) );
+	}
+
+	@Test
+	public void rotatesByAge() throws IOException, InterruptedException
+	{
+		File directory = folder.newFolder();
+		List<WebSocketFrame> frames = syntheticFrames(12);
+
+		// Every frame is a block of its own, and a segment older than 250ms is closed after its next block
+		RollingLeapDataWriter writer = new RollingLeapDataWriter( directory.getPath(), PREFIX );
+		writer.setMaxBlockMillis(0L);
+		writer.setMaxSegmentMillis(250L);
+		for (int loop = 0; loop < frames.size(); ++loop)
+		{
+			writer.writeWebSocketFrame( frames.get(loop) );
+			if (loop % 4 == 2)
+			{
+				Thread.sleep(300L);
+			}
+		}
+		writer.close();
+
+		// Frames 0-3, 4-7 and 8-11 each land in a segment of their own
+		assertEquals( 3, writer.getSegmentsWritten() );
+		File[] segments = SegmentedLeapDataReader.listSegments(directory, PREFIX);
+		assertEquals( 3, segments.length );
+		for (int loop = 0; loop < segments.length; ++loop)
+		{
+			assertEquals( 4, blocks(segments[loop]).size() );
+		}
+
+		assertSameFrames( frames, readAll( directory.getPath() ) );
+	}
+
+	// A new writer on the same directory carries on numbering from the last segment rather than overwriting it
+	@Test
+	public void carriesOnNumberingFromExistingSegments() throws IOException
+	{
+		File directory = folder.newFolder();
+		List<WebSocketFrame> frames = syntheticFrames(100);
+
+		RollingLeapDataWriter first = new RollingLeapDataWriter( directory.getPath(), PREFIX );
+		first.setBlockBytes(2048);
+		first.setMaxSegmentBytes(4096);
+		writeAll( first, frames.subList(0, 50) );
+
+		RollingLeapDataWriter second = new RollingLeapDataWriter( directory.getPath(), PREFIX );
+		second.setBlockBytes(2048);
+		second.setMaxSegmentBytes(4096);
+		writeAll( second, frames.subList(50, 100) );
+
+		File[] segments = SegmentedLeapDataReader.listSegments(directory, PREFIX);
+		assertEquals( first.getSegmentsWritten() + second.getSegmentsWritten(), segments.length );
+		assertEquals( SegmentedLeapDataReader.segmentName(PREFIX, segments.length), segments[segments.length - 1].getName() );
+
+		assertSameFrames( frames, readAll( directory.getPath() ) );
+	}
+
+	// A block which fails part way through being written is dropped, and the blocks after it go in a new segment rather
+	// than after the torn one, where the reader couldn't find them
+	@Test
+	public void failedBlockStartsNewSegment() throws Exception
+	{
+		File directory = folder.newFolder();
+		List<WebSocketFrame> frames = syntheticFrames(30);
+
+		RollingLeapDataWriter writer = new RollingLeapDataWriter( directory.getPath(), PREFIX );
+		writer.setMaxBlockMillis(Long.MAX_VALUE);
+		writeFlushed( writer, frames.subList(0, 10) );
+
+		// Swap the segment's stream for one which writes half of the next block and then fails, as on a full disk
+		Field streamField = RollingLeapDataWriter.class.getDeclaredField("segmentOutputStream");
+		streamField.setAccessible(true);
+		((FileOutputStream)streamField.get(writer)).close();
+		streamField.set( writer, new FileOutputStream( writer.getCurrentSegmentFile(), true )
+		{
+			@Override
+			public void write(byte[] b, int off, int len) throws IOException
+			{
+				super.write(b, off, len / 2);
+				throw new IOException("No space left on device");
+			}
+		});
+
+		writeFlushed( writer, frames.subList(10, 20) );
+		writeFlushed( writer, frames.subList(20, 30) );
+		writer.close();
+
+		assertEquals( 1,  writer.getBlocksDropped() );
+		assertEquals( 10, writer.getFramesDropped() );
+		assertEquals( 2,  SegmentedLeapDataReader.listSegments(directory, PREFIX).length );
+
+		List<WebSocketFrame> expected = new ArrayList<WebSocketFrame>( frames.subList(0, 10) );
+		expected.addAll( frames.subList(20, 30) );
+		assertSameFrames( expected, readAll( directory.getPath() ) );
+	}
+
+	// Segment names mustn't depend on the default locale, e.g. one whose digits aren't ASCII
+	@Test
+	public void segmentNamesIgnoreDefaultLocale()
+	{
+		Locale original = Locale.getDefault();
+		try
+		{
+			Locale.setDefault( Locale.forLanguageTag("ar-EG-u-nu-arab") );
+			assertEquals( "session-000042.ldrs", SegmentedLeapDataReader.segmentName(PREFIX, 42) );
+		}
+		finally
+		{
+			Locale.setDefault(original);
+		}
+	}
+
+	// ----- Reading back -----
+
+	// Each DELTA block starts with a keyframe, so reading carries on across blocks and segments
+	@Test
+	public void deltaRoundTripAcrossSegments() throws IOException
+	{
+		File directory = folder.newFolder();
+		List<WebSocketFrame> frames = syntheticFrames(300);
+
+		RollingLeapDataWriter writer = new RollingLeapDataWriter( directory.getPath(), PREFIX, RecordingFormat.DELTA );
+		writer.setBlockBytes(1024);
+		writer.setMaxSegmentBytes(4096);
+		writeAll(writer, frames);
+		assertTrue( "Several segments", writer.getSegmentsWritten() > 2 );
+
+		List<WebSocketFrame> read = readAll( directory.getPath() );
+		assertEquals( frames.size(), read.size() );
+		for (int loop = 0; loop < frames.size(); ++loop)
+		{
+			assertEquals( frames.get(loop).getId(),        read.get(loop).getId()        );
+			assertEquals( frames.get(loop).getTimestamp(), read.get(loop).getTimestamp() );
+			assertArrayEquals( frames.get(loop).hands().get(0).getPalmPosition(), read.get(loop).hands().get(0).getPalmPosition(), 0.01f );
+		}
+	}
+
+	@Test
+	public void loopsBackToTheFirstSegment() throws IOException
+	{
+		File directory = folder.newFolder();
+		List<WebSocketFrame> frames = syntheticFrames(40);
+
+		RollingLeapDataWriter writer = new RollingLeapDataWriter( directory.getPath(), PREFIX );
+		writer.setBlockBytes(2048);
+		writer.setMaxSegmentBytes(4096);
+		writeAll(writer, frames);
+
+		SegmentedLeapDataReader reader = new SegmentedLeapDataReader( directory.getPath(), PREFIX, true );
+		WebSocketFrame wsf = new WebSocketFrame();
+		for (int loop = 0; loop < frames.size() * 2 + 5; ++loop)
+		{
+			assertTrue( reader.readWebSocketFrame(wsf) );
+			assertEquals( frames.get( loop % frames.size() ).getId(), wsf.getId() );
+		}
+		reader.close();
+	}
+
+	@Test
+	public void emptyDirectoryHasNoFrames() throws IOException
+	{
+		SegmentedLeapDataReader reader = new SegmentedLeapDataReader( folder.newFolder().getPath(), PREFIX, true );
+		assertFalse( reader.readWebSocketFrame( new WebSocketFrame() ) );
+		reader.close();
+	}
+
+	// ----- Helpers -----
+
+	static List<WebSocketFrame> syntheticFrames(int count)
+	{
+		SyntheticFrameGenerator generator = new SyntheticFrameGenerator(3L, 2);
+		List<WebSocketFrame> frames = new ArrayList<WebSocketFrame>();
+		for (int loop = 0; loop < count; ++loop)
+		{
+			frames.add( generator.next() );
+		}
+		return frames;
+	}
+
+	static void writeAll(RollingLeapDataWriter writer, List<WebSocketFrame> frames)
+	{
+		for (WebSocketFrame wsf : frames)
+		{
+			writer.writeWebSocketFrame(wsf);
+		}
+		writer.close();
+	}
+
+	private static void writeFlushed(RollingLeapDataWriter writer, List<WebSocketFrame> frames)
+	{
+		for (WebSocketFrame wsf : frames)
+		{
+			writer.writeWebSocketFrame(wsf);
+		}
+		writer.flush();
+	}
+
+	static List<WebSocketFrame> readAll(String directoryName)
+	{
+		SegmentedLeapDataReader reader = new SegmentedLeapDataReader(directoryName, PREFIX, false);
+		List<WebSocketFrame> frames = new ArrayList<WebSocketFrame>();
+		WebSocketFrame wsf = new WebSocketFrame();
+		while ( reader.readWebSocketFrame(wsf) )
+		{
+			frames.add(wsf);
+			wsf = new WebSocketFrame();
+		}
+		reader.close();
+		return frames;
+	}
+
+	// Method to check BINARY frames came back exactly, by comparing their encodings
+	static void assertSameFrames(List<WebSocketFrame> expected, List<WebSocketFrame> actual)
+	{
+		assertEquals( expected.size(), actual.size() );
+		for (int loop = 0; loop < expected.size(); ++loop)
+		{
+			assertArrayEquals( "Frame " + loop, encode( expected.get(loop) ), encode( actual.get(loop) ) );
+		}
+	}
+
+	private static byte[] encode(WebSocketFrame wsf)
+	{
+		ByteBuffer buf = ByteBuffer.allocate( LeapFrameCodec.maxEncodedSize(wsf) );
+		LeapFrameCodec.encode(wsf, buf);
+		byte[] bytes = new byte[ buf.position() ];
+		buf.flip();
+		buf.get(bytes);
+		return bytes;
+	}
+
+	// Method to find the offset of each block in a BINARY segment by walking their headers
+	static List<Integer> blocks(File segment) throws IOException
+	{
+		ByteBuffer file = ByteBuffer.wrap( Files.readAllBytes( segment.toPath() ) );
+		List<Integer> offsets = new ArrayList<Integer>();
+		int offset = 4 + 2 + 1;
+		while (offset + RollingLeapDataWriter.BLOCK_HEADER_SIZE <= file.limit())
+		{
+			offsets.add(offset);
+			offset += RollingLeapDataWriter.BLOCK_HEADER_SIZE + file.getInt(offset + 12);
+		}
+		return offsets;
+	}
+}
@@ -0,0 +1,270 @@
+/***
+ *
+ * File       : SegmentedLeapDataReaderTest.java
+ * Description: Tests that a SegmentedLeapDataReader recovers from segments cut short by a crash and blocks damaged on disk.
+ * Author     : Al Lansley
+ * Date       : 18/10/2026
+ * Version    : 0.1
+ *
+ */
+
+package au.edu.federation.leapdatarecorder;
+
+import au.edu.federation.leapwebsocket.WebSocketFrame;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+
+import static au.edu.federation.leapdatarecorder.RollingLeapDataWriterTest.assertSameFrames;
+import static au.edu.federation.leapdatarecorder.RollingLeapDataWriterTest.blocks;
+import static au.edu.federation.leapdatarecorder.RollingLeapDataWriterTest.readAll;
+import static au.edu.federation.leapdatarecorder.RollingLeapDataWriterTest.syntheticFrames;
+import static au.edu.federation.leapdatarecorder.RollingLeapDataWriterTest.writeAll;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class SegmentedLeapDataReaderTest
+{
+	private static final String PREFIX = "session";
+
+	// Frames per block and blocks per segment in the recordings written by record()
+	private static final int FRAMES_PER_BLOCK   = 10;
+	private static final int BLOCKS_PER_SEGMENT = 4;
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private File directory;
+
+	// ----- Cut short -----
+
+	// Where the writer was killed part way through writing a block, everything before that block is still read
+	@Test
+	public void truncatedFinalBlockIsDropped() throws IOException
+	{
+		List<WebSocketFrame> frames = record(2);
+		File last = segment(1);
+		List<Integer> offsets = blocks(last);
+		truncate( last, offsets.get(3) + 50 );
+
+		assertSameFrames( frames.subList(0, frames.size() - FRAMES_PER_BLOCK), readAll( directory.getPath() ) );
+	}
+
+	// Cut off within the header of the final block instead
+	@Test
+	public void truncatedFinalBlockHeaderIsDropped() throws IOException
+	{
+		List<WebSocketFrame> frames = record(2);
+		File last = segment(1);
+		truncate( last, blocks(last).get(3) + 6 );
+
+		assertSameFrames( frames.subList(0, frames.size() - FRAMES_PER_BLOCK), readAll( directory.getPath() ) );
+	}
+
+	// A segment which is cut short doesn't stop the segments after it being read
+	@Test
+	public void truncatedSegmentBeforeOthers() throws IOException
+	{
+		List<WebSocketFrame> frames = record(3);
+		File middle = segment(1);
+		truncate( middle, blocks(middle).get(2) + 50 );
+
+		List<WebSocketFrame> expected = new ArrayList<WebSocketFrame>( frames.subList(0, 60) );
+		expected.addAll( frames.subList(80, 120) );
+		assertSameFrames( expected, readAll( directory.getPath() ) );
+	}
+
+	// A segment created just before a crash that never got its header written is skipped
+	@Test
+	public void segmentWithoutHeaderIsSkipped() throws IOException
+	{
+		List<WebSocketFrame> frames = record(2);
+		truncate( segment(1), 3 );
+
+		assertSameFrames( frames.subList(0, 40), readAll( directory.getPath() ) );
+	}
+
+	// ----- Damaged -----
+
+	// A block which fails its checksum is skipped on its own and reading carries on from the block after it
+	@Test
+	public void corruptBlockIsSkipped() throws IOException
+	{
+		List<WebSocketFrame> frames = record(2);
+		File first = segment(0);
+		flipBit( first, blocks(first).get(1) + RollingLeapDataWriter.BLOCK_HEADER_SIZE + 40 );
+
+		SegmentedLeapDataReader reader = new SegmentedLeapDataReader( directory.getPath(), PREFIX, false );
+		List<WebSocketFrame> read = new ArrayList<WebSocketFrame>();
+		WebSocketFrame wsf = new WebSocketFrame();
+		while ( reader.readWebSocketFrame(wsf) )
+		{
+			read.add(wsf);
+			wsf = new WebSocketFrame();
+		}
+		reader.close();
+
+		List<WebSocketFrame> expected = new ArrayList<WebSocketFrame>( frames.subList(0, 10) );
+		expected.addAll( frames.subList(20, 80) );
+		assertSameFrames(expected, read);
+		assertEquals( 1, reader.getBlocksSkipped() );
+	}
+
+	@Test
+	public void everyCorruptBlockIsSkipped() throws IOException
+	{
+		List<WebSocketFrame> frames = record(2);
+		for (int loop = 0; loop < 2; ++loop)
+		{
+			File segment = segment(loop);
+			flipBit( segment, blocks(segment).get(2) + RollingLeapDataWriter.BLOCK_HEADER_SIZE + 10 );
+		}
+
+		List<WebSocketFrame> expected = new ArrayList<WebSocketFrame>( frames.subList(0, 20) );
+		expected.addAll( frames.subList(30, 60) );
+		expected.addAll( frames.subList(70, 80) );
+		assertSameFrames( expected, readAll( directory.getPath() ) );
+	}
+
+	// A damaged block header could ask for gigabytes - we mustn't believe it, and as there's no telling where the next
+	// block starts, the rest of the segment is skipped
+	@Test
+	public void corruptBlockHeaderSkipsRestOfSegment() throws IOException
+	{
+		List<WebSocketFrame> frames = record(2);
+		File first = segment(0);
+		flipBit( first, blocks(first).get(1) + 12 ); // The high byte of the compressed length
+
+		List<WebSocketFrame> expected = new ArrayList<WebSocketFrame>( frames.subList(0, 10) );
+		expected.addAll( frames.subList(40, 80) );
+		assertSameFrames( expected, readAll( directory.getPath() ) );
+	}
+
+	// Lengths which pass the header's checksum still have to make sense before anything is allocated for them
+	@Test
+	public void outOfRangeBlockHeaderSkipsRestOfSegment() throws IOException
+	{
+		List<WebSocketFrame> frames = record(2);
+		File first = segment(0);
+		int offset = blocks(first).get(2);
+		writeHeader( first, offset, 10, Integer.MAX_VALUE - 8, Integer.MAX_VALUE - 8 );
+
+		List<WebSocketFrame> expected = new ArrayList<WebSocketFrame>( frames.subList(0, 20) );
+		expected.addAll( frames.subList(40, 80) );
+		assertSameFrames( expected, readAll( directory.getPath() ) );
+
+		// Far more frames than could fit in the block
+		record(2);
+		first = segment(0);
+		offset = blocks(first).get(2);
+		writeHeader( first, offset, Integer.MAX_VALUE, 1000, 100 );
+		assertEquals( 60, readAll( directory.getPath() ).size() );
+	}
+
+	// A block that says it's longer than what's left of the segment was cut short, whatever its header says
+	@Test
+	public void blockLongerThanSegmentIsDropped() throws IOException
+	{
+		List<WebSocketFrame> frames = record(2);
+		File last = segment(1);
+		int offset = blocks(last).get(3);
+		ByteBuffer header = readHeader(last, offset);
+		writeHeader( last, offset, header.getInt(4), header.getInt(8), (int)(last.length() - offset) );
+
+		assertSameFrames( frames.subList(0, 70), readAll( directory.getPath() ) );
+	}
+
+	// ----- Helpers -----
+
+	// Method to record the given number of segments, each of BLOCKS_PER_SEGMENT blocks of FRAMES_PER_BLOCK frames
+	private List<WebSocketFrame> record(int segments) throws IOException
+	{
+		directory = folder.newFolder();
+		List<WebSocketFrame> frames = syntheticFrames(segments * BLOCKS_PER_SEGMENT * FRAMES_PER_BLOCK);
+
+		// Write each block out by hand, and have the segment rotated after its last one
+		RollingLeapDataWriter writer = new RollingLeapDataWriter( directory.getPath(), PREFIX );
+		writer.setBlockBytes(1024 * 1024);
+		writer.setMaxBlockMillis(Long.MAX_VALUE);
+		writer.setMaxSegmentMillis(Long.MAX_VALUE);
+		for (int loop = 0; loop < frames.size(); ++loop)
+		{
+			writer.writeWebSocketFrame( frames.get(loop) );
+			if ( (loop + 1) % FRAMES_PER_BLOCK == 0 )
+			{
+				boolean lastBlockOfSegment = (loop + 1) % (FRAMES_PER_BLOCK * BLOCKS_PER_SEGMENT) == 0;
+				writer.setMaxSegmentBytes( lastBlockOfSegment ? 0L : Long.MAX_VALUE );
+				writer.flush();
+			}
+		}
+		writer.close();
+
+		assertEquals( segments, writer.getSegmentsWritten() );
+		for (int loop = 0; loop < segments; ++loop)
+		{
+			assertEquals( BLOCKS_PER_SEGMENT, blocks( segment(loop) ).size() );
+		}
+		return frames;
+	}
+
+	private File segment(int index)
+	{
+		return SegmentedLeapDataReader.listSegments(directory, PREFIX)[index];
+	}
+
+	private static void truncate(File file, long length) throws IOException
+	{
+		assertTrue( length < file.length() );
+		try ( RandomAccessFile raf = new RandomAccessFile(file, "rw") )
+		{
+			raf.setLength(length);
+		}
+	}
+
+	private static ByteBuffer readHeader(File file, long offset) throws IOException
+	{
+		byte[] header = new byte[RollingLeapDataWriter.BLOCK_HEADER_SIZE];
+		try ( RandomAccessFile raf = new RandomAccessFile(file, "r") )
+		{
+			raf.seek(offset);
+			raf.readFully(header);
+		}
+		return ByteBuffer.wrap(header);
+	}
+
+	// Method to overwrite a block header's counts and lengths, keeping its data CRC and giving it a valid header CRC
+	private static void writeHeader(File file, long offset, int frameCount, int rawLength, int compressedLength) throws IOException
+	{
+		ByteBuffer header = readHeader(file, offset);
+		header.putInt(4, frameCount).putInt(8, rawLength).putInt(12, compressedLength);
+
+		CRC32 crc = new CRC32();
+		crc.update( header.array(), 4, 4 * 4 );
+		header.putInt( 20, (int)crc.getValue() );
+
+		try ( RandomAccessFile raf = new RandomAccessFile(file, "rw") )
+		{
+			raf.seek(offset);
+			raf.write( header.array() );
+		}
+	}
+
+	private static void flipBit(File file, long offset) throws IOException
+	{
+		try ( RandomAccessFile raf = new RandomAccessFile(file, "rw") )
+		{
+			raf.seek(offset);
+			int value = raf.read();
+			raf.seek(offset);
+			raf.write(value ^ 0x10);
+		}
+	}
+}
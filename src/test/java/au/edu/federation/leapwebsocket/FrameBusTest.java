@@ -0,0 +1,213 @@
+/***
+ *
+ * File       : FrameBusTest.java
+ * Description: Tests for the FrameBus.
+ * Author     : Al Lansley
+ * Date       : 18/10/2026
+ * Version    : 0.1
+ *
+ */
+
+package au.edu.federation.leapwebsocket;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class FrameBusTest
+{
+	// How long a consumer may take to see an event before we call it stuck
+	private static final long STALL_NANOS = TimeUnit.SECONDS.toNanos(2);
+
+	private final FrameBus<long[]> bus = new FrameBus<long[]>(8, () -> new long[1]);
+
+	@After
+	public void tearDown()
+	{
+		bus.shutdown(0L);
+	}
+
+	// Publishing one event at a time and waiting for it races the producer's check for blocked consumers against a
+	// consumer going back to sleep, every time round. If the producer can miss a consumer which is about to block, the
+	// consumer sleeps through the event it was waiting for.
+	@Test
+	public void blockingConsumerWakesForEveryEvent()
+	{
+		FrameBus<long[]>.Consumer consumer = bus.addConsumer("blocking", (event, sequence, endOfBatch) -> { }, FrameBus.WaitStrategy.BLOCKING);
+
+		long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+		long published = 0L;
+		while (System.nanoTime() < deadline)
+		{
+			long sequence = bus.next();
+			bus.get(sequence)[0] = sequence;
+			bus.publish(sequence);
+			++published;
+
+			long stalledAt = System.nanoTime() + STALL_NANOS;
+			while (consumer.getSequence() < sequence)
+			{
+				if (System.nanoTime() > stalledAt)
+				{
+					fail("Blocking consumer missed the wake-up for event " + sequence + " of " + published);
+				}
+			}
+		}
+		assertEquals(published, consumer.getEventsHandled());
+	}
+
+	// Even if a wake-up is lost - here by moving the cursor on without signalling, as a publish reordered past its check
+	// for blocked consumers would - a blocked consumer mustn't sleep until the next event comes along
+	@Test
+	public void blockedConsumerRecoversFromLostWakeUp() throws InterruptedException
+	{
+		FrameBus<long[]>.Consumer consumer = bus.addConsumer("blocking", (event, sequence, endOfBatch) -> { }, FrameBus.WaitStrategy.BLOCKING);
+		Thread.sleep(100L); // Let it block
+
+		long sequence = bus.next();
+		bus.cursor.setVolatile(sequence);
+
+		long stalledAt = System.nanoTime() + STALL_NANOS;
+		while (consumer.getSequence() < sequence)
+		{
+			if (System.nanoTime() > stalledAt)
+			{
+				fail("Blocked consumer slept through event " + sequence);
+			}
+			Thread.sleep(1L);
+		}
+	}
+
+	// A consumer depending on a BLOCKING one must be woken when that one finishes, not just when the producer publishes
+	@Test
+	public void dependentConsumerWakesWhenDependencyFinishes()
+	{
+		FrameBus<long[]>.Consumer first  = bus.addConsumer("first",  (event, sequence, endOfBatch) -> { }, FrameBus.WaitStrategy.BLOCKING);
+		FrameBus<long[]>.Consumer second = bus.addConsumer("second", (event, sequence, endOfBatch) -> { }, FrameBus.WaitStrategy.BLOCKING, first);
+
+		for (int loop = 0; loop < 20000; ++loop)
+		{
+			long sequence = bus.next();
+			bus.publish(sequence);
+
+			long stalledAt = System.nanoTime() + STALL_NANOS;
+			while (second.getSequence() < sequence)
+			{
+				if (System.nanoTime() > stalledAt)
+				{
+					fail("Dependent consumer missed the wake-up for event " + sequence);
+				}
+			}
+		}
+	}
+
+	@Test
+	public void losslessConsumersSeeEveryEventInOrder()
+	{
+		List<Long> seen = new ArrayList<Long>();
+		bus.addConsumer("collector", (event, sequence, endOfBatch) -> seen.add(event[0]), FrameBus.WaitStrategy.SLEEPING);
+
+		for (long loop = 0L; loop < 1000L; ++loop)
+		{
+			long sequence = bus.next();
+			bus.get(sequence)[0] = loop;
+			bus.publish(sequence);
+		}
+
+		assertTrue( bus.shutdown( TimeUnit.SECONDS.toNanos(5) ) );
+		assertEquals(1000, seen.size());
+		for (int loop = 0; loop < seen.size(); ++loop)
+		{
+			assertEquals(loop, seen.get(loop).longValue());
+		}
+	}
+
+	// ----- Stopping consumers -----
+
+	@Test
+	public void consumerWithDependentsCannotBeRemoved()
+	{
+		FrameBus<long[]>.Consumer first  = bus.addConsumer("first",  (event, sequence, endOfBatch) -> { }, FrameBus.WaitStrategy.BLOCKING);
+		FrameBus<long[]>.Consumer second = bus.addConsumer("second", (event, sequence, endOfBatch) -> { }, FrameBus.WaitStrategy.BLOCKING, first);
+
+		try
+		{
+			bus.removeConsumer(first);
+			fail("Removed a consumer with a dependent");
+		}
+		catch (IllegalStateException expected)
+		{
+			assertTrue( first.isRunning() );
+		}
+
+		// Once its dependent has gone it can go too, and the producer can carry on without either
+		bus.removeConsumer(second);
+		bus.removeConsumer(first);
+		assertEquals( 0, bus.getConsumers().length );
+		publishWithoutStalling(100);
+	}
+
+	// An interrupted BLOCKING consumer stops, so it and anything depending on it must come off the bus rather than
+	// holding up the producer forever
+	@Test
+	public void interruptedConsumerLeavesTheBus() throws InterruptedException
+	{
+		FrameBus<long[]>.Consumer first  = bus.addConsumer("first", (event, sequence, endOfBatch) ->
+		{
+			if (sequence == 3L)
+			{
+				Thread.currentThread().interrupt();
+			}
+		}, FrameBus.WaitStrategy.BLOCKING);
+		FrameBus<long[]>.Consumer second = bus.addConsumer("second", (event, sequence, endOfBatch) -> { }, FrameBus.WaitStrategy.BLOCKING, first);
+		FrameBus<long[]>.Consumer third  = bus.addConsumer("third",  (event, sequence, endOfBatch) -> { }, FrameBus.WaitStrategy.SLEEPING);
+
+		publishWithoutStalling(100);
+
+		long stalledAt = System.nanoTime() + STALL_NANOS;
+		while ( first.isRunning() || second.isRunning() )
+		{
+			if (System.nanoTime() > stalledAt)
+			{
+				fail("Consumers didn't stop");
+			}
+			Thread.sleep(1L);
+		}
+		assertEquals( 1, bus.getConsumers().length );
+		assertTrue( third.isRunning() );
+	}
+
+	// Method to publish more events than the ring holds from a thread of its own, failing if the producer gets stuck
+	private void publishWithoutStalling(int count)
+	{
+		Thread producer = new Thread(() ->
+		{
+			for (int loop = 0; loop < count; ++loop)
+			{
+				long sequence = bus.next();
+				bus.get(sequence)[0] = sequence;
+				bus.publish(sequence);
+			}
+		});
+		producer.setDaemon(true);
+		producer.start();
+
+		try
+		{
+			producer.join( TimeUnit.NANOSECONDS.toMillis(STALL_NANOS) );
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+		}
+		assertFalse( "Producer stalled", producer.isAlive() );
+	}
+}
@@ -0,0 +1,100 @@
+/***
+ *
+ * File       : LatencyMonitorTest.java
+ * Description: Tests for the LatencyMonitor's interval reports and LatencyHistogram snapshots.
+ * Author     : Al Lansley
+ * Date       : 18/10/2026
+ * Version    : 0.1
+ *
+ */
+
+package au.edu.federation.leapwebsocket;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+public class LatencyMonitorTest
+{
+	@Test
+	public void sinceCountsOnlyWhatWasRecordedInBetween()
+	{
+		LatencyHistogram histogram = new LatencyHistogram("since", "Test");
+		record(histogram, 100, 1000L);
+		LatencyHistogram.Snapshot earlier = histogram.snapshot();
+		record(histogram, 150, 5000L);
+
+		LatencyHistogram.Snapshot interval = histogram.snapshot().since(earlier);
+		assertEquals(150L, interval.getCount());
+		assertEquals(5000L, interval.getPercentileNanos(50.0), 5000L / 64L);
+	}
+
+	// A reset in between means everything in the later snapshot is new - including when more has been recorded since
+	// the reset than before it, so the counts alone can't show it
+	@Test
+	public void sinceAcrossResetIsEverythingSinceTheReset()
+	{
+		LatencyHistogram histogram = new LatencyHistogram("sinceReset", "Test");
+		record(histogram, 100, 1000L);
+		LatencyHistogram.Snapshot earlier = histogram.snapshot();
+		histogram.reset();
+		record(histogram, 150, 5000L);
+
+		LatencyHistogram.Snapshot interval = histogram.snapshot().since(earlier);
+		assertEquals(150L, interval.getCount());
+		assertEquals(5000L, interval.getPercentileNanos(50.0), 5000L / 64L);
+		assertEquals(5000L, interval.getMaxNanos());
+	}
+
+	// A stage reset on its own (as it would be over JMX) rather than through LatencyMonitor.resetAll()
+	@Test
+	public void reportAfterStageResetStartsAFreshInterval()
+	{
+		LatencyHistogram histogram = LatencyMonitor.stage("testReportReset", "Test");
+		record(histogram, 100, 1000L);
+		assertEquals(100L, reportedCount("testReportReset"));
+
+		histogram.reset();
+		record(histogram, 150, 5000L);
+		assertEquals(150L, reportedCount("testReportReset"));
+
+		record(histogram, 20, 5000L);
+		assertEquals(20L, reportedCount("testReportReset"));
+	}
+
+	@Test
+	public void reportAfterResetAllStartsAFreshInterval()
+	{
+		LatencyHistogram histogram = LatencyMonitor.stage("testReportResetAll", "Test");
+		record(histogram, 100, 1000L);
+		assertEquals(100L, reportedCount("testReportResetAll"));
+
+		LatencyMonitor.resetAll();
+		record(histogram, 150, 5000L);
+		assertEquals(150L, reportedCount("testReportResetAll"));
+	}
+
+	private static void record(LatencyHistogram histogram, int samples, long nanos)
+	{
+		for (int loop = 0; loop < samples; ++loop)
+		{
+			histogram.record(nanos);
+		}
+	}
+
+	// Method to run a report and get the count column from the given stage's line
+	private static long reportedCount(String stage)
+	{
+		for (String line : LatencyMonitor.report().split("\n"))
+		{
+			String[] columns = line.trim().split("\\s+");
+			if ( columns[0].equals(stage) )
+			{
+				return Long.parseLong( columns[1] );
+			}
+		}
+		fail("No line for " + stage + " in the report.");
+		return -1L;
+	}
+}
@@ -0,0 +1,218 @@
+/***
+ *
+ * File       : LeapJsonParserTest.java
+ * Description: Tests that the LeapJsonParser fills in WebSocketFrames exactly as Gson does, from both Strings and UTF-8
+ *              ByteBuffers.
+ * Author     : Al Lansley
+ * Date       : 18/10/2026
+ * Version    : 0.1
+ *
+ */
+
+package au.edu.federation.leapwebsocket;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonSyntaxException;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+// Each frame is compared field by field by serializing both with Gson - nulls included, and with NaN and infinities
+// allowed - so every field of the frame and all of its children must match, down to the exact float.
+public class LeapJsonParserTest
+{
+	private static final Gson GSON    = new Gson();
+	private static final Gson COMPARE = new GsonBuilder().serializeNulls().serializeSpecialFloatingPointValues().create();
+
+	private final LeapJsonParser parser = new LeapJsonParser();
+
+	@Test
+	public void fixtureMatchesGson() throws IOException
+	{
+		assertSameAsGson( readResource("/fixtures/leap-frame.json") );
+	}
+
+	@Test
+	public void syntheticFramesMatchGson()
+	{
+		SyntheticFrameGenerator generator = new SyntheticFrameGenerator(11L, 2);
+		for (int loop = 0; loop < 50; ++loop)
+		{
+			assertSameAsGson( generator.nextJson() );
+		}
+	}
+
+	@Test
+	public void missingFieldsMatchGson()
+	{
+		assertSameAsGson("{}");
+		assertSameAsGson("{\"id\":5}");
+		assertSameAsGson("{\"hands\":[{}],\"pointables\":[{\"id\":1}],\"gestures\":[{}],\"interactionBox\":{}}");
+		assertSameAsGson("{\"r\":[[1,2],[3]],\"t\":[],\"hands\":[{\"r\":[]}]}");
+	}
+
+	@Test
+	public void nullsMatchGson()
+	{
+		assertSameAsGson("null");
+		assertSameAsGson("{\"id\":null,\"timestamp\":null,\"s\":null,\"currentFrameRate\":null}");
+		assertSameAsGson("{\"hands\":null,\"pointables\":null,\"gestures\":null,\"interactionBox\":null,\"r\":null,\"t\":null}");
+		assertSameAsGson("{\"hands\":[null,{\"id\":null,\"direction\":null}],\"pointables\":[{\"touchZone\":null,\"tipPosition\":null}]}");
+		assertSameAsGson("{\"gestures\":[{\"handIds\":[1,null,3],\"pointableIds\":null,\"state\":null,\"type\":null}]}");
+	}
+
+	@Test
+	public void numbersMatchGson()
+	{
+		assertSameAsGson("{\"currentFrameRate\":1.5e2,\"s\":-2.5E-3,\"timestamp\":1e3,\"id\":-0}");
+		assertSameAsGson("{\"t\":[1e-30,12345678901234567890e-5,0.1],\"s\":3.4028236e38,\"currentFrameRate\":4.9e-325}");
+		assertSameAsGson("{\"t\":[0.30000000000000004,123456789012345678,-1.0E+2],\"timestamp\":9223372036854775807}");
+		assertSameAsGson("{\"hands\":[{\"id\":2.0,\"sphereRadius\":1E1,\"timeVisible\":0.000001}],\"gestures\":[{\"duration\":1.0e6}]}");
+	}
+
+	@Test
+	public void quotedNumbersMatchGson()
+	{
+		assertSameAsGson("{\"timestamp\":\"123\",\"id\":\"7\",\"currentFrameRate\":\"1.5e2\",\"s\":\"NaN\"}");
+		assertSameAsGson("{\"hands\":[{\"id\":\"31\",\"sphereRadius\":\"2.5\"}],\"t\":[\"1\",2,\"-3e1\"]}");
+		assertSameAsGson("{\"gestures\":[{\"handIds\":[\"1\",2],\"duration\":\"1e3\"}],\"timestamp\":\"9223372036854775807\"}");
+
+		assertBothReject("{\"id\":\"1.5\"}");
+		assertBothReject("{\"timestamp\":\"soon\"}");
+		assertBothReject("{\"hands\":[{\"id\":\"3000000000\"}]}");
+	}
+
+	@Test
+	public void stringsAndEscapesMatchGson()
+	{
+		assertSameAsGson("{\"pointables\":[{\"touchZone\":\"hov\\u0065ring\"},{\"touchZone\":\"unknown\"},{\"touchZone\":\"\\\"quoted\\\"\\n\"}]}");
+		assertSameAsGson("{\"gestures\":[{\"state\":\"\u00e9t\u00e9\",\"type\":\"\\u00e9\\u20ac\\ud83d\\ude00\"}]}");
+		assertSameAsGson("{\"pointables\":[{\"touchZone\":\"\u20ac \ud83d\ude00 \\/ \\\\ \\t\"}]}");
+
+		// Escaped keys are matched just as Gson matches them, and unknown ones skipped
+		assertSameAsGson("{\"\\u0069d\":5,\"h\\u0061nds\":[{\"\\u0069d\":3}],\"\\u0078\":{\"\\\"\":[1]}}");
+	}
+
+	// Broken escapes must be rejected the way the rest of the parser rejects bad JSON, not with whatever exception happens
+	// to come out of decoding them
+	@Test
+	public void brokenEscapesAreRejected()
+	{
+		assertRejects("{\"pointables\":[{\"touchZone\":\"hover\\u00\"}]}");
+		assertRejects("{\"pointables\":[{\"touchZone\":\"hover\\u\"}]}");
+		assertRejects("{\"pointables\":[{\"touchZone\":\"\\uzzzz\"}]}");
+		assertRejects("{\"pointables\":[{\"touchZone\":\"\\u+123\"}]}");
+		assertRejects("{\"pointables\":[{\"touchZone\":\"\\u\uff11\uff12\uff13\uff14\"}]}");
+		assertRejects("{\"h\\u00\":5}");
+	}
+
+	@Test
+	public void whitespaceAndUnknownFieldsMatchGson()
+	{
+		assertSameAsGson(" {\n\t\"devices\" : [ { \"a\" : [ true , false , null , \"x\" , -1.5e3 ] } ] ,\r\n \"id\" : 9 , \"id\" : 10 } ");
+	}
+
+	// ----- Helpers -----
+
+	// Method to check the parser fills in a new frame, and a frame previously filled in by another parse, exactly as Gson
+	// does - from both the String and its UTF-8 bytes
+	private void assertSameAsGson(String json)
+	{
+		String expected = COMPARE.toJson( GSON.fromJson(json, WebSocketFrame.class) );
+		String message  = "Parsing " + json;
+
+		if ("null".equals(json))
+		{
+			// Gson has no frame to give us, whereas we leave the frame we were given reset
+			assertEquals( message, COMPARE.toJson( new WebSocketFrame() ), COMPARE.toJson( parser.parse(json) ) );
+			return;
+		}
+
+		assertEquals( message, expected, COMPARE.toJson( parser.parse(json) ) );
+
+		ByteBuffer utf8 = ByteBuffer.wrap( json.getBytes(StandardCharsets.UTF_8) );
+		assertEquals( message, expected, COMPARE.toJson( parser.parse(utf8) ) );
+		assertEquals( "Buffer position moved", 0, utf8.position() );
+
+		// Fill a frame with something else first, to check nothing from it is left over
+		WebSocketFrame reused = new SyntheticFrameGenerator(3L, 2).next();
+		parser.parseInto(json, reused);
+		assertEquals( message, expected, COMPARE.toJson(reused) );
+	}
+
+	// Method to check the parser and Gson both reject some JSON
+	private void assertBothReject(String json)
+	{
+		try
+		{
+			GSON.fromJson(json, WebSocketFrame.class);
+			fail("Gson accepted " + json);
+		}
+		catch (JsonSyntaxException expected)
+		{
+			// As expected
+		}
+
+		try
+		{
+			parser.parse(json);
+			fail("LeapJsonParser accepted " + json);
+		}
+		catch (JsonSyntaxException expected)
+		{
+			// As expected
+		}
+	}
+
+	// Method to check the parser rejects some JSON with a JsonSyntaxException, from both the String and its UTF-8 bytes
+	private void assertRejects(String json)
+	{
+		try
+		{
+			parser.parse(json);
+			fail("LeapJsonParser accepted " + json);
+		}
+		catch (JsonSyntaxException expected)
+		{
+			// As expected
+		}
+
+		try
+		{
+			parser.parse( ByteBuffer.wrap( json.getBytes(StandardCharsets.UTF_8) ) );
+			fail("LeapJsonParser accepted the bytes of " + json);
+		}
+		catch (JsonSyntaxException expected)
+		{
+			// As expected
+		}
+	}
+
+	private static String readResource(String name) throws IOException
+	{
+		try ( InputStream in = LeapJsonParserTest.class.getResourceAsStream(name) )
+		{
+			if (in == null)
+			{
+				throw new IOException("Missing test fixture: " + name);
+			}
+
+			ByteArrayOutputStream out = new ByteArrayOutputStream();
+			byte[] buffer = new byte[8192];
+			int read;
+			while ( (read = in.read(buffer)) != -1 )
+			{
+				out.write(buffer, 0, read);
+			}
+			return new String( out.toByteArray(), StandardCharsets.UTF_8 );
+		}
+	}
+}
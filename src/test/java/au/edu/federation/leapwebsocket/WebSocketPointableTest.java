@@ -0,0 +1,85 @@
+/***
+ *
+ * File       : WebSocketPointableTest.java
+ * Description: Tests that WebSocketPointable.getJointLocations gives the joints it always has.
+ * Author     : Al Lansley
+ * Date       : 18/10/2026
+ * Version    : 0.1
+ *
+ */
+
+package au.edu.federation.leapwebsocket;
+
+import au.edu.federation.utils.Vec3f;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+public class WebSocketPointableTest
+{
+	// getJointLocations has always measured each joint straight back from the tip - it must still give exactly the
+	// same joints as it did before it used a JointEstimator
+	@Test
+	public void jointLocationsUnchanged()
+	{
+		SyntheticFrameGenerator generator = new SyntheticFrameGenerator(23L, 2);
+		Vec3f[] reused = new Vec3f[4];
+		for (int frame = 0; frame < 50; ++frame)
+		{
+			for (WebSocketPointable wsp : generator.next().pointables())
+			{
+				float[][] expected = originalJointLocations(wsp);
+				assertJoints( expected, wsp.getJointLocations() );
+				assertJoints( expected, wsp.getJointLocations(reused) );
+			}
+		}
+	}
+
+	// Re-using an array fills in the Vec3fs already in it rather than replacing them
+	@Test
+	public void reusedArrayKeepsItsVectors()
+	{
+		WebSocketPointable wsp = new SyntheticFrameGenerator(5L, 1).next().pointables().get(0);
+		Vec3f[] reused = { new Vec3f(), new Vec3f(), new Vec3f(), new Vec3f() };
+		Vec3f[] before = reused.clone();
+
+		assertSame( reused, wsp.getJointLocations(reused) );
+		for (int joint = 0; joint < 4; ++joint)
+		{
+			assertSame( before[joint], reused[joint] );
+		}
+		assertJoints( originalJointLocations(wsp), reused );
+	}
+
+	// The joints as getJointLocations worked them out before JointEstimator existed
+	private static float[][] originalJointLocations(WebSocketPointable wsp)
+	{
+		float[] tipPosition = wsp.getTipPosition();
+		float[] direction   = wsp.getDirection();
+		float   length      = wsp.getLength();
+
+		float[][] joints = new float[4][];
+		joints[0] = new float[] { tipPosition[0], tipPosition[1], tipPosition[2] };
+		joints[1] = new float[] { tipPosition[0] - (direction[0] * (1.0f / 5.23f) * length),
+		                          tipPosition[1] - (direction[1] * (1.0f / 5.23f) * length),
+		                          tipPosition[2] - (direction[2] * (1.0f / 5.23f) * length) };
+		joints[2] = new float[] { tipPosition[0] - (direction[0] * (1.618f / 5.23f) * length),
+		                          tipPosition[1] - (direction[1] * (1.618f / 5.23f) * length),
+		                          tipPosition[2] - (direction[2] * (1.618f / 5.23f) * length) };
+		joints[3] = new float[] { tipPosition[0] - (direction[0] * (2.617f / 5.23f) * length),
+		                          tipPosition[1] - (direction[1] * (2.617f / 5.23f) * length),
+		                          tipPosition[2] - (direction[2] * (2.617f / 5.23f) * length) };
+		return joints;
+	}
+
+	private static void assertJoints(float[][] expected, Vec3f[] actual)
+	{
+		for (int joint = 0; joint < 4; ++joint)
+		{
+			assertEquals( "Joint " + joint + " x", expected[joint][0], actual[joint].x, 0.0f );
+			assertEquals( "Joint " + joint + " y", expected[joint][1], actual[joint].y, 0.0f );
+			assertEquals( "Joint " + joint + " z", expected[joint][2], actual[joint].z, 0.0f );
+		}
+	}
+}